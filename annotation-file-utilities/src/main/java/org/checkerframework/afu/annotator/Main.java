@@ -15,6 +15,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -26,6 +27,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.checkerframework.afu.annotator.find.AnnotationInsertion;
@@ -68,7 +70,9 @@ import org.checkerframework.afu.scenelib.io.classfile.ClassFileReader;
 import org.checkerframework.afu.scenelib.type.DeclaredType;
 import org.checkerframework.afu.scenelib.type.Type;
 import org.checkerframework.afu.scenelib.util.CommandLineUtils;
+import org.checkerframework.afu.scenelib.util.OrderedTaskRunner;
 import org.checkerframework.afu.scenelib.util.coll.VivifyingMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.objectweb.asm.TypePath;
 import org.plumelib.options.Option;
 import org.plumelib.options.OptionGroup;
@@ -119,6 +123,8 @@ import org.plumelib.util.IPair;
  *             insertions [default: false]
  *         <li id="option:convert-jaifs"><b>--convert-jaifs=</b><i>boolean</i>. Convert JAIFs to AST
  *             Path format, but do no insertion into source [default: false]
+ *         <li id="option:threads"><b>--threads=</b><i>int</i>. Number of threads used to process
+ *             .java files [default: 1]
  *         <li id="option:help"><b>-h</b> <b>--help=</b><i>boolean</i>. Print usage information and
  *             exit [default: false]
  *       </ul>
@@ -177,6 +183,10 @@ public class Main {
   @Option("Convert JAIFs to AST Path format, but do no insertion into source")
   public static boolean convert_jaifs = false;
 
+  /** The number of threads used to process .java files. */
+  @Option("Number of threads used to process .java files")
+  public static int threads = 1;
+
   @Option("-h Print usage information and exit")
   public static boolean help = false;
 
@@ -195,6 +205,12 @@ public class Main {
   // TODO: remove this.
   public static boolean temporaryDebug = false;
 
+  /** Prints debugging information, if {@link #debug} is true. */
+  private static DebugWriter dbug = new DebugWriter(false);
+
+  /** Prints progress information, if {@link #verbose} is true. */
+  private static DebugWriter verb = new DebugWriter(false);
+
   private static ElementVisitor<Void, AElement> classFilter =
       new ElementVisitor<Void, AElement>() {
         <K, V extends AElement> Void filter(VivifyingMap<K, V> vm0, VivifyingMap<K, V> vm1) {
@@ -359,11 +375,12 @@ public class Main {
   private static void convertInsertion(
       String pkg,
       JCTree.JCCompilationUnit tree,
+      ASTIndex astIndex,
       ASTRecord rec,
       Insertion ins,
       AScene scene,
       Multimap<Insertion, Annotation> insertionSources) {
-    Collection<Annotation> annos = insertionSources.get(ins);
+    Collection<Annotation> annos = insertionSources.get(ins.getOriginal());
     if (rec == null) {
       if (ins.getCriteria().isOnPackage()) {
         for (Annotation anno : annos) {
@@ -396,7 +413,7 @@ public class Main {
             int i = Integer.parseInt(rec.varName);
             decl = i < 0 ? meth.receiver : meth.parameters.getVivify(i);
           } catch (NumberFormatException e) {
-            TreePath path = ASTIndex.getTreePath(tree, rec);
+            TreePath path = astIndex.getTreePath(rec);
             JCTree.JCVariableDecl varTree = null;
             JCTree.JCMethodDecl methTree = null;
             loop:
@@ -461,10 +478,10 @@ public class Main {
             // addInnerTypePaths(decl, rec, ti, insertionSources);
           }
           for (Insertion inner : ti.getInnerTypeInsertions()) {
-            Tree t = ASTIndex.getNode(tree, rec);
+            Tree t = astIndex.getNode(rec);
             if (t != null) {
               ATypeElement elem = findInnerTypeElement(rec, decl, inner);
-              for (Annotation a : insertionSources.get(inner)) {
+              for (Annotation a : insertionSources.get(inner.getOriginal())) {
                 elem.tlAnnotationsHere.add(a);
               }
             }
@@ -490,10 +507,7 @@ public class Main {
    *
    * @param args .jaif files and/or .java files and/or @arg-files, in any order
    */
-  @SuppressWarnings({
-    "ReferenceEquality", // interned operand
-    "EmptyCatch", // TODO
-  })
+  @SuppressWarnings("ReferenceEquality") // interned operand
   public static void main(String[] args) throws IOException {
 
     if (verbose) {
@@ -521,8 +535,8 @@ public class Main {
       throw new Error("Unreachable");
     }
 
-    DebugWriter dbug = new DebugWriter(debug);
-    DebugWriter verb = new DebugWriter(verbose);
+    dbug.setEnabled(debug);
+    verb.setEnabled(verbose);
     TreeFinder.warn.setEnabled(!nowarn);
     TreeFinder.dbug.setEnabled(debug);
     Criteria.dbug.setEnabled(debug);
@@ -538,6 +552,12 @@ public class Main {
       System.exit(1);
     }
 
+    if (threads < 1) {
+      System.out.println("The --threads option must be positive.");
+      options.printUsage();
+      System.exit(1);
+    }
+
     if (file_args.length < 2) {
       System.out.printf("Supplied %d arguments, at least 2 needed%n", file_args.length);
       System.out.printf("Supplied arguments: %s%n", Arrays.toString(args));
@@ -565,7 +585,30 @@ public class Main {
       }
     }
 
-    computeConstructors(javafiles);
+    if (in_place) {
+      for (String javafilename : javafiles) {
+        File javafile = new File(javafilename);
+        File unannotated = new File(javafilename + ".unannotated");
+        // It doesn't make sense to check timestamps;
+        // if the .java.unannotated file exists, then just use it.
+        // A user can rename that file back to just .java to cause the
+        // .java file to be read.
+        if (unannotated.exists()) {
+          verb.debug("Renaming %s to %s%n", unannotated, javafile);
+          boolean success = unannotated.renameTo(javafile);
+          if (!success) {
+            throw new Error(String.format("Failed renaming %s to %s", unannotated, javafile));
+          }
+        }
+      }
+    }
+
+    try {
+      computeConstructors(javafiles);
+    } catch (RuntimeException e) {
+      exitOnCompilerException(e);
+      throw e;
+    }
 
     // The insertions specified by the annotation files.
     Insertions insertions = new Insertions();
@@ -582,7 +625,12 @@ public class Main {
 
     IndexFileParser.setAbbreviate(abbreviate);
     for (String jaifFile : jaifFiles) {
-      IndexFileSpecification spec = new IndexFileSpecification(jaifFile);
+      // Converting a JAIF rewrites all of it, so every class must be read.  Otherwise, annotations
+      // can be inserted only into classes that the Java files declare.
+      IndexFileSpecification spec =
+          convert_jaifs
+              ? new IndexFileSpecification(jaifFile)
+              : new IndexFileSpecification(jaifFile, Main::isDeclaredClass);
       try {
         List<Insertion> parsedSpec = spec.parse();
         if (temporaryDebug) {
@@ -680,337 +728,487 @@ public class Main {
       }
     }
 
-    for (String javafilename : javafiles) {
-      verb.debug("Processing %s%n", javafilename);
-
-      File javafile = new File(javafilename);
-      File unannotated = new File(javafilename + ".unannotated");
-      if (in_place) {
-        // It doesn't make sense to check timestamps;
-        // if the .java.unannotated file exists, then just use it.
-        // A user can rename that file back to just .java to cause the
-        // .java file to be read.
-        if (unannotated.exists()) {
-          verb.debug("Renaming %s to %s%n", unannotated, javafile);
-          boolean success = unannotated.renameTo(javafile);
-          if (!success) {
-            throw new Error(String.format("Failed renaming %s to %s", unannotated, javafile));
-          }
+    // When using multiple threads, the .java files are annotated concurrently, but the annotated
+    // files are written (and all output is printed) in the order of the .java files.  An insertion
+    // on a package declaration may apply to more than one .java file, so it prevents concurrency.
+    // Debugging output is written directly to System.out, so it also prevents concurrency.
+    int annotationThreads =
+        (convert_jaifs || insertions.hasPackageInsertions() || debug || temporaryDebug)
+            ? 1
+            : threads;
+    // The .java files are parsed in batches, each just before it is annotated, so that only the
+    // trees of one batch are in memory at a time.
+    int batchSize = PARSE_BATCH_SIZE * threads;
+    try {
+      for (int start = 0; start < javafiles.size(); start += batchSize) {
+        List<String> batch =
+            javafiles.subList(start, Math.min(start + batchSize, javafiles.size()));
+        Map<String, Source> sources = parseSources(batch);
+        boolean completed =
+            new OrderedTaskRunner(annotationThreads)
+                .run(
+                    batch,
+                    (javafilename, out, err) ->
+                        annotateFile(
+                            javafilename,
+                            sources,
+                            insertions,
+                            annotationImports,
+                            insertionIndex,
+                            insertionOrigins,
+                            scenes,
+                            out,
+                            err),
+                    (javafilename, annotatedFile) -> {
+                      if (annotatedFile == null) {
+                        return false;
+                      }
+                      annotatedFile.write();
+                      return true;
+                    });
+        if (!completed) {
+          break;
         }
       }
+    } catch (RuntimeException e) {
+      exitOnCompilerException(e);
+      throw e;
+    }
+  }
 
-      Source src = fileToSource(javafilename);
-      if (src == null) {
-        return;
-      } else {
-        verb.debug("Parsed %s%n", javafilename);
-      }
-      String fileLineSep;
-      try {
-        // fileLineSep is set here so that exceptions can be caught
-        fileLineSep = FilesPlume.inferLineSeparator(javafilename);
-      } catch (IOException e) {
-        throw new Error("Cannot read " + javafilename, e);
-      }
+  /**
+   * Inserts annotations into a Java file, without writing the result. If {@code --convert-jaifs}
+   * was supplied, instead converts the JAIFs and returns null.
+   *
+   * @param javafilename the Java file
+   * @param sources the Sources created by {@link #parseSources}; the Source for {@code
+   *     javafilename}, if any, is removed
+   * @param insertions the insertions specified by the annotation files
+   * @param annotationImports the packages needed by each annotation
+   * @param insertionIndex for each annotation file, the annotations for each insertion
+   * @param insertionOrigins the annotation file from which each insertion was read
+   * @param scenes the scene for each annotation file
+   * @param out where to print progress messages and warnings
+   * @param err where to print errors
+   * @return the annotated Java file, or null if processing should stop
+   * @throws IOException if there is trouble writing a converted annotation file
+   */
+  private static @Nullable AnnotatedFile annotateFile(
+      String javafilename,
+      Map<String, Source> sources,
+      Insertions insertions,
+      Map<String, Set<String>> annotationImports,
+      Map<String, Multimap<Insertion, Annotation>> insertionIndex,
+      Map<Insertion, String> insertionOrigins,
+      Map<String, AScene> scenes,
+      PrintStream out,
+      PrintStream err)
+      throws IOException {
+    if (verbose) {
+      out.printf("Processing %s%n", javafilename);
+    }
 
-      // Imports required to resolve annotations (when abbreviate==true).
-      LinkedHashSet<String> imports = new LinkedHashSet<>();
-      int num_insertions = 0;
-      String pkg = "";
-
-      for (CompilationUnitTree cut : src.parse()) {
-        JCTree.JCCompilationUnit tree = (JCTree.JCCompilationUnit) cut;
-        ExpressionTree pkgExp = cut.getPackageName();
-        pkg = pkgExp == null ? "" : pkgExp.toString();
-
-        // Create a finder, and use it to get positions.
-        TreeFinder finder = new TreeFinder(tree);
-        SetMultimap<IPair<Integer, ASTPath>, Insertion> positions =
-            finder.getPositions(tree, insertions);
-        if (dbug.isEnabled()) {
-          dbug.debug("In org.checkerframework.afu.annotator.Main:%n");
-          dbug.debug("positions (for %d insertions) = %s%n", insertions.size(), positions);
-        }
+    // Each Source is used only once, in case a file appears twice on the command line.
+    Source src = sources.remove(javafilename);
+    if (src == null) {
+      src = fileToSource(javafilename, err);
+    }
+    if (src == null) {
+      return null;
+    } else if (verbose) {
+      out.printf("Parsed %s%n", javafilename);
+    }
+    // Sources that share a compiler session must not be used concurrently.
+    synchronized (src.getTask()) {
+      return annotateSource(
+          javafilename,
+          src,
+          insertions,
+          annotationImports,
+          insertionIndex,
+          insertionOrigins,
+          scenes,
+          out,
+          err);
+    }
+  }
 
-        if (convert_jaifs) {
-          // With --convert-jaifs command-line option, the program is used only for JAIF conversion.
-          // Execute the following block and then skip the remainder of the loop.
-          Multimap<ASTRecord, Insertion> astInsertions = finder.getPaths();
-          for (Map.Entry<ASTRecord, Collection<Insertion>> entry :
-              astInsertions.asMap().entrySet()) {
-            ASTRecord rec = entry.getKey();
-            for (Insertion ins : entry.getValue()) {
-              if (ins.getCriteria().getASTPath() != null) {
-                continue;
-              }
-              String arg = insertionOrigins.get(ins);
-              AScene scene = scenes.get(arg);
-              Multimap<Insertion, Annotation> insertionSources = insertionIndex.get(arg);
-              // String text =
-              //  ins.getText(abbreviate, false, 0, '\0');
+  /**
+   * Inserts annotations into a parsed Java file, without writing the result. If {@code
+   * --convert-jaifs} was supplied, instead converts the JAIFs and returns null.
+   *
+   * @param javafilename the Java file
+   * @param src the source of the Java file
+   * @param insertions the insertions specified by the annotation files
+   * @param annotationImports the packages needed by each annotation
+   * @param insertionIndex for each annotation file, the annotations for each insertion
+   * @param insertionOrigins the annotation file from which each insertion was read
+   * @param scenes the scene for each annotation file
+   * @param out where to print progress messages and warnings
+   * @param err where to print errors
+   * @return the annotated Java file, or null if processing should stop
+   * @throws IOException if there is trouble writing a converted annotation file
+   */
+  @SuppressWarnings("EmptyCatch") // TODO
+  private static @Nullable AnnotatedFile annotateSource(
+      String javafilename,
+      Source src,
+      Insertions insertions,
+      Map<String, Set<String>> annotationImports,
+      Map<String, Multimap<Insertion, Annotation>> insertionIndex,
+      Map<Insertion, String> insertionOrigins,
+      Map<String, AScene> scenes,
+      PrintStream out,
+      PrintStream err)
+      throws IOException {
+    File javafile = new File(javafilename);
+    File unannotated = new File(javafilename + ".unannotated");
+    String fileLineSep;
+    try {
+      // fileLineSep is set here so that exceptions can be caught
+      fileLineSep = FilesPlume.inferLineSeparator(javafilename);
+    } catch (IOException e) {
+      throw new Error("Cannot read " + javafilename, e);
+    }
 
-              // TODO: adjust for missing end of path (?)
+    // Imports required to resolve annotations (when abbreviate==true).
+    LinkedHashSet<String> imports = new LinkedHashSet<>();
+    int num_insertions = 0;
+    String pkg = "";
+
+    for (CompilationUnitTree cut : parse(src, err)) {
+      JCTree.JCCompilationUnit tree = (JCTree.JCCompilationUnit) cut;
+      ExpressionTree pkgExp = cut.getPackageName();
+      pkg = pkgExp == null ? "" : pkgExp.toString();
+
+      // Create a finder, and use it to get positions.
+      ASTIndex astIndex = ASTIndex.indexOf(tree);
+      TreeFinder finder = new TreeFinder(tree, astIndex, out, err);
+      SetMultimap<IPair<Integer, ASTPath>, Insertion> positions =
+          finder.getPositions(tree, insertions);
+      if (dbug.isEnabled()) {
+        dbug.debug("In org.checkerframework.afu.annotator.Main:%n");
+        dbug.debug("positions (for %d insertions) = %s%n", insertions.size(), positions);
+      }
 
-              if (insertionSources.containsKey(ins)) {
-                convertInsertion(pkg, tree, rec, ins, scene, insertionSources);
-              }
+      if (convert_jaifs) {
+        // With --convert-jaifs command-line option, the program is used only for JAIF conversion.
+        // Execute the following block and then skip the remainder of the loop.
+        Multimap<ASTRecord, Insertion> astInsertions = finder.getPaths();
+        for (Map.Entry<ASTRecord, Collection<Insertion>> entry :
+            astInsertions.asMap().entrySet()) {
+          ASTRecord rec = entry.getKey();
+          for (Insertion ins : entry.getValue()) {
+            if (ins.getCriteria().getASTPath() != null) {
+              continue;
+            }
+            // The finder placed a copy of the insertion that was read from the annotation file.
+            Insertion original = ins.getOriginal();
+            String arg = insertionOrigins.get(original);
+            AScene scene = scenes.get(arg);
+            Multimap<Insertion, Annotation> insertionSources = insertionIndex.get(arg);
+            // String text =
+            //  ins.getText(abbreviate, false, 0, '\0');
+
+            // TODO: adjust for missing end of path (?)
+
+            if (insertionSources.containsKey(original)) {
+              convertInsertion(pkg, tree, astIndex, rec, ins, scene, insertionSources);
             }
           }
-          continue;
         }
+        continue;
+      }
 
-        // Apply the positions to the source file.
-        verb.debug(
+      // Apply the positions to the source file.
+      if (verbose) {
+        out.printf(
             "getPositions returned %d positions in tree for %s%n", positions.size(), javafilename);
+      }
 
-        Set<IPair<Integer, ASTPath>> positionKeysUnsorted = positions.keySet();
-        Set<IPair<Integer, ASTPath>> positionKeysSorted =
-            new TreeSet<IPair<Integer, ASTPath>>(
-                new Comparator<IPair<Integer, ASTPath>>() {
-                  @Override
-                  public int compare(IPair<Integer, ASTPath> p1, IPair<Integer, ASTPath> p2) {
-                    int c = Integer.compare(p2.first, p1.first);
-                    if (c != 0) {
-                      return c;
-                    }
-                    return p2.second == null
-                        ? (p1.second == null ? 0 : -1)
-                        : (p1.second == null ? 1 : p2.second.compareTo(p1.second));
+      Set<IPair<Integer, ASTPath>> positionKeysUnsorted = positions.keySet();
+      Set<IPair<Integer, ASTPath>> positionKeysSorted =
+          new TreeSet<IPair<Integer, ASTPath>>(
+              new Comparator<IPair<Integer, ASTPath>>() {
+                @Override
+                public int compare(IPair<Integer, ASTPath> p1, IPair<Integer, ASTPath> p2) {
+                  int c = Integer.compare(p2.first, p1.first);
+                  if (c != 0) {
+                    return c;
                   }
-                });
-        positionKeysSorted.addAll(positionKeysUnsorted);
-        for (IPair<Integer, ASTPath> pair : positionKeysSorted) {
-          boolean receiverInserted = false;
-          boolean newInserted = false;
-          boolean constructorInserted = false;
-          Set<String> seen = new TreeSet<>();
-          List<Insertion> toInsertList = new ArrayList<>(positions.get(pair));
-          // The Multimap interface doesn't seem to have a way to specify the order of elements in
-          // the collection, so sort them here.
-          toInsertList.sort(insertionSorter);
-          dbug.debug("insertion pos: %d%n", pair.first);
-          dbug.debug("insertions sorted: %s%n", toInsertList);
-          assert pair.first >= 0
-              : "pos is negative: " + pair.first + " " + toInsertList.get(0) + " " + javafilename;
-          for (Insertion iToInsert : toInsertList) {
-            // Possibly add whitespace after the insertion
-            String trailingWhitespace = "";
-            boolean gotSeparateLine = false;
-            int pos = pair.first; // reset each iteration in case of dyn adjustment
-            if (iToInsert.isSeparateLine()) {
-              // System.out.printf("isSeparateLine=true for insertion at pos %d: %s%n", pos,
-              // iToInsert);
-
-              // If an annotation should have its own line, first check that the insertion location
-              // is the first non-whitespace on its line. If so, then the insertion content should
-              // be the annotation, followed, by a line break, followed by a copy of the indentation
-              // of the line being inserted onto. This puts the annotation on its own line aligned
-              // with the contents of the next line.
-
-              // Number of whitespace characters preceeding the insertion position on the same line
-              // (tabs count as one).
-              int indentation = 0;
-              while ((pos - indentation != 0)
-                  // horizontal whitespace
-                  && (src.charAt(pos - indentation - 1) == ' '
-                      || src.charAt(pos - indentation - 1) == '\t')) {
-                // System.out.printf("src.charAt(pos-indentation-1 == %d-%d-1)='%s'%n",
-                //                   pos, indentation, src.charAt(pos-indentation-1));
-                indentation++;
-              }
-              // Checks that insertion position is the first non-whitespace on the line it occurs
-              // on.
-              if ((pos - indentation == 0)
-                  || (src.charAt(pos - indentation - 1) == '\f'
-                      || src.charAt(pos - indentation - 1) == '\n'
-                      || src.charAt(pos - indentation - 1) == '\r')) {
-                trailingWhitespace = fileLineSep + src.substring(pos - indentation, pos);
-                gotSeparateLine = true;
-              }
+                  return p2.second == null
+                      ? (p1.second == null ? 0 : -1)
+                      : (p1.second == null ? 1 : p2.second.compareTo(p1.second));
+                }
+              });
+      positionKeysSorted.addAll(positionKeysUnsorted);
+      for (IPair<Integer, ASTPath> pair : positionKeysSorted) {
+        boolean receiverInserted = false;
+        boolean newInserted = false;
+        boolean constructorInserted = false;
+        Set<String> seen = new TreeSet<>();
+        List<Insertion> toInsertList = new ArrayList<>(positions.get(pair));
+        // The Multimap interface doesn't seem to have a way to specify the order of elements in
+        // the collection, so sort them here.
+        toInsertList.sort(insertionSorter);
+        dbug.debug("insertion pos: %d%n", pair.first);
+        dbug.debug("insertions sorted: %s%n", toInsertList);
+        assert pair.first >= 0
+            : "pos is negative: " + pair.first + " " + toInsertList.get(0) + " " + javafilename;
+        for (Insertion iToInsert : toInsertList) {
+          // Possibly add whitespace after the insertion
+          String trailingWhitespace = "";
+          boolean gotSeparateLine = false;
+          int pos = pair.first; // reset each iteration in case of dyn adjustment
+          if (iToInsert.isSeparateLine()) {
+            // System.out.printf("isSeparateLine=true for insertion at pos %d: %s%n", pos,
+            // iToInsert);
+
+            // If an annotation should have its own line, first check that the insertion location
+            // is the first non-whitespace on its line. If so, then the insertion content should
+            // be the annotation, followed, by a line break, followed by a copy of the indentation
+            // of the line being inserted onto. This puts the annotation on its own line aligned
+            // with the contents of the next line.
+
+            // Number of whitespace characters preceeding the insertion position on the same line
+            // (tabs count as one).
+            int indentation = 0;
+            while ((pos - indentation != 0)
+                // horizontal whitespace
+                && (src.charAt(pos - indentation - 1) == ' '
+                    || src.charAt(pos - indentation - 1) == '\t')) {
+              // System.out.printf("src.charAt(pos-indentation-1 == %d-%d-1)='%s'%n",
+              //                   pos, indentation, src.charAt(pos-indentation-1));
+              indentation++;
             }
-
-            char precedingChar;
-            if (pos != 0) {
-              precedingChar = src.charAt(pos - 1);
-            } else {
-              precedingChar = '\0';
+            // Checks that insertion position is the first non-whitespace on the line it occurs
+            // on.
+            if ((pos - indentation == 0)
+                || (src.charAt(pos - indentation - 1) == '\f'
+                    || src.charAt(pos - indentation - 1) == '\n'
+                    || src.charAt(pos - indentation - 1) == '\r')) {
+              trailingWhitespace = fileLineSep + src.substring(pos - indentation, pos);
+              gotSeparateLine = true;
             }
+          }
 
-            if (iToInsert.getKind() == Insertion.Kind.ANNOTATION) {
-              AnnotationInsertion ai = (AnnotationInsertion) iToInsert;
-              if (ai.isGenerateBound()) { // avoid multiple ampersands
-                try {
-                  String s = src.substring(pos, pos + 9);
-                  if ("Object & ".equals(s)) {
-                    ai.setGenerateBound(false);
-                    precedingChar = '.'; // suppress leading space
-                  }
-                } catch (StringIndexOutOfBoundsException e) {
+          char precedingChar;
+          if (pos != 0) {
+            precedingChar = src.charAt(pos - 1);
+          } else {
+            precedingChar = '\0';
+          }
+
+          if (iToInsert.getKind() == Insertion.Kind.ANNOTATION) {
+            AnnotationInsertion ai = (AnnotationInsertion) iToInsert;
+            if (ai.isGenerateBound()) { // avoid multiple ampersands
+              try {
+                String s = src.substring(pos, pos + 9);
+                if ("Object & ".equals(s)) {
+                  ai.setGenerateBound(false);
+                  precedingChar = '.'; // suppress leading space
                 }
+              } catch (StringIndexOutOfBoundsException e) {
               }
-              if (ai.isGenerateExtends()) { // avoid multiple "extends"
-                try {
-                  String s = src.substring(pos, pos + 9);
-                  if (" extends ".equals(s)) {
-                    ai.setGenerateExtends(false);
-                    pos += 8;
-                  }
-                } catch (StringIndexOutOfBoundsException e) {
+            }
+            if (ai.isGenerateExtends()) { // avoid multiple "extends"
+              try {
+                String s = src.substring(pos, pos + 9);
+                if (" extends ".equals(s)) {
+                  ai.setGenerateExtends(false);
+                  pos += 8;
                 }
+              } catch (StringIndexOutOfBoundsException e) {
               }
-            } else if (iToInsert.getKind() == Insertion.Kind.CAST) {
-              ((CastInsertion) iToInsert).setOnArrayLiteral(src.charAt(pos) == '{');
-            } else if (iToInsert.getKind() == Insertion.Kind.RECEIVER) {
-              ReceiverInsertion ri = (ReceiverInsertion) iToInsert;
-              ri.setAnnotationsOnly(receiverInserted);
-              receiverInserted = true;
-            } else if (iToInsert.getKind() == Insertion.Kind.NEW) {
-              NewInsertion ni = (NewInsertion) iToInsert;
-              ni.setAnnotationsOnly(newInserted);
-              newInserted = true;
-            } else if (iToInsert.getKind() == Insertion.Kind.CONSTRUCTOR) {
-              ConstructorInsertion ci = (ConstructorInsertion) iToInsert;
-              if (constructorInserted) {
-                ci.setAnnotationsOnly(true);
-              }
-              constructorInserted = true;
             }
-
-            String toInsert =
-                iToInsert.getText(abbreviate, gotSeparateLine, pos, precedingChar)
-                    + trailingWhitespace;
-            // eliminate duplicates
-            if (seen.contains(toInsert)) {
-              continue;
+          } else if (iToInsert.getKind() == Insertion.Kind.CAST) {
+            ((CastInsertion) iToInsert).setOnArrayLiteral(src.charAt(pos) == '{');
+          } else if (iToInsert.getKind() == Insertion.Kind.RECEIVER) {
+            ReceiverInsertion ri = (ReceiverInsertion) iToInsert;
+            ri.setAnnotationsOnly(receiverInserted);
+            receiverInserted = true;
+          } else if (iToInsert.getKind() == Insertion.Kind.NEW) {
+            NewInsertion ni = (NewInsertion) iToInsert;
+            ni.setAnnotationsOnly(newInserted);
+            newInserted = true;
+          } else if (iToInsert.getKind() == Insertion.Kind.CONSTRUCTOR) {
+            ConstructorInsertion ci = (ConstructorInsertion) iToInsert;
+            if (constructorInserted) {
+              ci.setAnnotationsOnly(true);
             }
-            seen.add(toInsert);
-
-            // If it's an annotation and already there, don't re-insert.  This is a hack!
-            // Also, I think this is already checked when constructing the
-            // insertions.
-            if (toInsert.startsWith("@")) {
-              int precedingTextPos = pos - toInsert.length() - 1;
-              if (precedingTextPos >= 0) {
-                String precedingTextPlusChar = src.getString().substring(precedingTextPos, pos);
-                if (toInsert.equals(precedingTextPlusChar.substring(0, toInsert.length()))
-                    || toInsert.equals(precedingTextPlusChar.substring(1))) {
-                  dbug.debug(
-                      "Inserting '%s' at %d in code of length %d with preceding text '%s'%n",
-                      toInsert, pos, src.getString().length(), precedingTextPlusChar);
-                  dbug.debug("Already present, skipping%n");
-                  continue;
-                }
+            constructorInserted = true;
+          }
+
+          String toInsert =
+              iToInsert.getText(abbreviate, gotSeparateLine, pos, precedingChar)
+                  + trailingWhitespace;
+          // eliminate duplicates
+          if (seen.contains(toInsert)) {
+            continue;
+          }
+          seen.add(toInsert);
+
+          // If it's an annotation and already there, don't re-insert.  This is a hack!
+          // Also, I think this is already checked when constructing the
+          // insertions.
+          if (toInsert.startsWith("@")) {
+            int precedingTextPos = pos - toInsert.length() - 1;
+            if (precedingTextPos >= 0) {
+              String precedingTextPlusChar = src.substring(precedingTextPos, pos);
+              if (toInsert.equals(precedingTextPlusChar.substring(0, toInsert.length()))
+                  || toInsert.equals(precedingTextPlusChar.substring(1))) {
+                dbug.debug(
+                    "Inserting '%s' at %d in code of length %d with preceding text '%s'%n",
+                    toInsert, pos, src.length(), precedingTextPlusChar);
+                dbug.debug("Already present, skipping%n");
+                continue;
               }
-              int followingTextEndPos = pos + toInsert.length();
-              if (followingTextEndPos < src.getString().length()) {
-                String followingText = src.getString().substring(pos, followingTextEndPos);
-                dbug.debug("followingText=\"%s\"%n", followingText);
-                dbug.debug("toInsert=\"%s\"%n", toInsert);
-                // toInsertNoWs does not contain the trailing whitespace.
-                String toInsertNoWs = toInsert.substring(0, toInsert.length() - 1);
-                if (followingText.equals(toInsert)
-                    || (followingText.substring(0, followingText.length() - 1).equals(toInsertNoWs)
-                        // Untested.  Is there an off-by-one error here?
-                        && Character.isWhitespace(src.getString().charAt(followingTextEndPos)))) {
-                  dbug.debug("Already present, skipping %s%n", toInsertNoWs);
-                  continue;
-                }
+            }
+            int followingTextEndPos = pos + toInsert.length();
+            if (followingTextEndPos < src.length()) {
+              String followingText = src.substring(pos, followingTextEndPos);
+              dbug.debug("followingText=\"%s\"%n", followingText);
+              dbug.debug("toInsert=\"%s\"%n", toInsert);
+              // toInsertNoWs does not contain the trailing whitespace.
+              String toInsertNoWs = toInsert.substring(0, toInsert.length() - 1);
+              if (followingText.equals(toInsert)
+                  || (followingText.substring(0, followingText.length() - 1).equals(toInsertNoWs)
+                      // Untested.  Is there an off-by-one error here?
+                      && Character.isWhitespace(src.charAt(followingTextEndPos)))) {
+                dbug.debug("Already present, skipping %s%n", toInsertNoWs);
+                continue;
               }
             }
+          }
 
-            // TODO: Neither the above hack nor this check should be
-            // necessary.  Find out why re-insertions still occur and
-            // fix properly.
-            if (iToInsert.isInserted()) {
-              continue;
-            }
-            src.insert(pos, toInsert);
-            if (verbose && !debug) {
-              System.out.print(".");
-              num_insertions++;
-              if ((num_insertions % 50) == 0) {
-                System.out.println(); // terminate the line that contains dots
-              }
+          // TODO: Neither the above hack nor this check should be
+          // necessary.  Find out why re-insertions still occur and
+          // fix properly.
+          if (iToInsert.isInserted()) {
+            continue;
+          }
+          src.insert(pos, toInsert);
+          if (verbose && !debug) {
+            out.print(".");
+            num_insertions++;
+            if ((num_insertions % 50) == 0) {
+              out.println(); // terminate the line that contains dots
             }
+          }
+          if (dbug.isEnabled()) {
             dbug.debug("Post-insertion source: %s%n", src.getString());
+          }
 
-            Collection<String> packageNames = nonJavaLangClasses(iToInsert.getPackageNames());
-            if (!packageNames.isEmpty()) {
-              dbug.debug("Need import %s%n  due to insertion %s%n", packageNames, toInsert);
-              imports.addAll(packageNames);
-            }
-            if (iToInsert instanceof AnnotationInsertion) {
-              AnnotationInsertion annoToInsert = (AnnotationInsertion) iToInsert;
-              Set<String> annoImports =
-                  annotationImports.get(annoToInsert.getAnnotationFullyQualifiedName());
-              if (annoImports != null) {
-                imports.addAll(annoImports);
-              }
+          Collection<String> packageNames = nonJavaLangClasses(iToInsert.getPackageNames());
+          if (!packageNames.isEmpty()) {
+            dbug.debug("Need import %s%n  due to insertion %s%n", packageNames, toInsert);
+            imports.addAll(packageNames);
+          }
+          if (iToInsert instanceof AnnotationInsertion) {
+            AnnotationInsertion annoToInsert = (AnnotationInsertion) iToInsert;
+            Set<String> annoImports =
+                annotationImports.get(annoToInsert.getAnnotationFullyQualifiedName());
+            if (annoImports != null) {
+              imports.addAll(annoImports);
             }
           }
         }
       }
+    }
 
-      if (convert_jaifs) {
-        for (Map.Entry<String, AScene> entry : scenes.entrySet()) {
-          String filename = entry.getKey();
-          AScene scene = entry.getValue();
-          try {
-            IndexFileWriter.write(scene, filename + ".converted");
-          } catch (DefException e) {
-            System.err.println(filename + ": " + " format error in conversion");
-            if (print_error_stack) {
-              e.printStackTrace();
-            }
+    if (convert_jaifs) {
+      for (Map.Entry<String, AScene> entry : scenes.entrySet()) {
+        String filename = entry.getKey();
+        AScene scene = entry.getValue();
+        try {
+          IndexFileWriter.write(scene, filename + ".converted");
+        } catch (DefException e) {
+          err.println(filename + ": " + " format error in conversion");
+          if (print_error_stack) {
+            e.printStackTrace(err);
           }
         }
-        return; // done with conversion
       }
+      return null; // done with conversion
+    }
 
-      if (dbug.isEnabled()) {
-        dbug.debug("%d imports to insert%n", imports.size());
-        for (String classname : imports) {
-          dbug.debug("  %s%n", classname);
-        }
+    if (dbug.isEnabled()) {
+      dbug.debug("%d imports to insert%n", imports.size());
+      for (String classname : imports) {
+        dbug.debug("  %s%n", classname);
       }
+    }
 
-      // insert import statements
-      {
-        Pattern importPattern = Pattern.compile("(?m)^import\\b");
-        Pattern packagePattern = Pattern.compile("(?m)^package\\b.*;(\\n|\\r\\n?)");
-        int importIndex = 0; // default: beginning of file
-        String srcString = src.getString();
-        Matcher m = importPattern.matcher(srcString);
-        Set<String> inSource = new TreeSet<>();
-        if (m.find()) {
-          importIndex = m.start();
-          do {
-            int i = m.start();
-            int j = srcString.indexOf(System.lineSeparator(), i) + 1;
-            if (j <= 0) {
-              j = srcString.length();
-            }
-            String s = srcString.substring(i, j);
-            inSource.add(s);
-          } while (m.find());
-        } else {
-          // Debug.info("Didn't find import in " + srcString);
-          m = packagePattern.matcher(srcString);
-          if (m.find()) {
-            importIndex = m.end();
+    // insert import statements
+    {
+      Pattern importPattern = Pattern.compile("(?m)^import\\b");
+      Pattern packagePattern = Pattern.compile("(?m)^package\\b.*;(\\n|\\r\\n?)");
+      int importIndex = 0; // default: beginning of file
+      String srcString = src.getString();
+      Matcher m = importPattern.matcher(srcString);
+      Set<String> inSource = new TreeSet<>();
+      if (m.find()) {
+        importIndex = m.start();
+        do {
+          int i = m.start();
+          int j = srcString.indexOf(System.lineSeparator(), i) + 1;
+          if (j <= 0) {
+            j = srcString.length();
           }
+          String s = srcString.substring(i, j);
+          inSource.add(s);
+        } while (m.find());
+      } else {
+        // Debug.info("Didn't find import in " + srcString);
+        m = packagePattern.matcher(srcString);
+        if (m.find()) {
+          importIndex = m.end();
         }
-        for (String classname : imports) {
-          String toInsert = "import " + classname + ";" + fileLineSep;
-          if (!inSource.contains(toInsert)) {
-            inSource.add(toInsert);
-            src.insert(importIndex, toInsert);
-            importIndex += toInsert.length();
-          }
+      }
+      for (String classname : imports) {
+        String toInsert = "import " + classname + ";" + fileLineSep;
+        if (!inSource.contains(toInsert)) {
+          inSource.add(toInsert);
+          src.insert(importIndex, toInsert);
+          importIndex += toInsert.length();
         }
       }
+    }
 
-      // Write the source file.
+    return new AnnotatedFile(javafile, unannotated, src, pkg);
+  }
+
+  /** A Java file into which annotations have been inserted, but which has not yet been written. */
+  private static class AnnotatedFile {
+    /** The Java file. */
+    final File javafile;
+
+    /** The backup of the Java file, used when {@link #in_place} is true. */
+    final File unannotated;
+
+    /** The source code, with annotations inserted. */
+    final Source src;
+
+    /** The package of the Java file, or "" for the default package. */
+    final String pkg;
+
+    /**
+     * Creates a new AnnotatedFile.
+     *
+     * @param javafile the Java file
+     * @param unannotated the backup of the Java file, used when {@link #in_place} is true
+     * @param src the source code, with annotations inserted
+     * @param pkg the package of the Java file, or "" for the default package
+     */
+    AnnotatedFile(File javafile, File unannotated, Source src, String pkg) {
+      this.javafile = javafile;
+      this.unannotated = unannotated;
+      this.src = src;
+      this.pkg = pkg;
+    }
+
+    /** Writes the annotated source code, to {@link #outdir} or in place. */
+    void write() {
       File outfile = null;
       try {
         if (in_place) {
@@ -1050,23 +1248,79 @@ public class Main {
     }
   }
 
+  /**
+   * The number of .java files that share a compiler session. All the trees of a session stay in
+   * memory until the last of its files has been annotated.
+   */
+  private static final int PARSE_BATCH_SIZE = 32;
+
+  /**
+   * Parses and attributes the given Java files. The files are divided into one group per thread,
+   * and the files in a group share a compiler session (see {@link Source#parseAll}), which is much
+   * faster than using a compiler session per file. The caller bounds the number of files, so that
+   * the trees fit in memory.
+   *
+   * @param javafiles the Java files
+   * @return a map from Java file name to its Source; a file that could not be read is absent, so
+   *     that the problem is reported when the file is processed
+   */
+  private static Map<String, Source> parseSources(List<String> javafiles) {
+    Map<String, Source> sources = new ConcurrentHashMap<>();
+    if (javafiles.isEmpty()) {
+      return sources;
+    }
+    // Distribute the files round-robin, so that consecutive files (which are processed at about the
+    // same time) usually belong to different groups.
+    int numGroups = Math.min(threads, javafiles.size());
+    List<List<String>> groups = new ArrayList<>(numGroups);
+    for (int i = 0; i < numGroups; i++) {
+      groups.add(new ArrayList<>());
+    }
+    for (int i = 0; i < javafiles.size(); i++) {
+      groups.get(i % numGroups).add(javafiles.get(i));
+    }
+    try {
+      new OrderedTaskRunner(threads)
+          .run(
+              groups,
+              (group, out, err) -> {
+                try {
+                  return Source.parseAll(group);
+                } catch (Source.CompilerException | IOException e) {
+                  // Each file will get its own Source, and any problem is reported for that file.
+                  return Collections.<Source>emptyList();
+                }
+              },
+              (group, groupSources) -> {
+                for (int i = 0; i < groupSources.size(); i++) {
+                  sources.put(group.get(i), groupSources.get(i));
+                }
+                return true;
+              });
+    } catch (IOException e) {
+      throw new Error("unreachable", e);
+    }
+    return sources;
+  }
+
   /**
    * Given a Java file name, creates a Source, or returns null.
    *
    * @param javaFileName a Java file name
+   * @param err where to print the problem, if there is one
    * @return a Source for the Java file, or null
    */
-  private static Source fileToSource(String javaFileName) {
+  private static Source fileToSource(String javaFileName, PrintStream err) {
     Source src;
     // Get the source file, and use it to obtain parse trees.
     try {
       src = new Source(javaFileName);
       return src;
     } catch (Source.CompilerException e) {
-      e.printStackTrace();
+      e.printStackTrace(err);
       return null;
     } catch (IOException e) {
-      e.printStackTrace();
+      e.printStackTrace(err);
       return null;
     }
   }
@@ -1094,33 +1348,115 @@ public class Main {
         }
       };
 
+  /**
+   * Parses the given source.
+   *
+   * @param src the source to parse
+   * @param err where to print compiler diagnostics
+   * @return the Tree API roots for the source
+   * @throws RuntimeException whose cause is a {@link Source.CompilerException}, if the source has
+   *     compilation errors
+   */
+  private static Set<CompilationUnitTree> parse(Source src, PrintStream err) {
+    try {
+      return src.parse(err);
+    } catch (Source.CompilerException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Exits, with a failure status, if the exception was thrown by {@link #parse} because of
+   * compilation errors. The errors have already been printed. Otherwise, does nothing.
+   *
+   * @param e an exception
+   */
+  private static void exitOnCompilerException(RuntimeException e) {
+    if (e.getCause() instanceof Source.CompilerException) {
+      System.exit(1);
+    }
+  }
+
   /** Maps from binary class name to whether the class has any explicit constructor. */
   public static Map<String, Boolean> hasExplicitConstructor = new HashMap<>();
 
   /**
-   * Fills in the {@link hasExplicitConstructor} map.
+   * Fills in the {@link hasExplicitConstructor} map. The Java files are only parsed, not
+   * attributed, in batches that share a compiler session, and the trees are discarded once they
+   * have been scanned.
    *
    * @param javaFiles the Java files that were passed on the command line
+   * @throws IOException if there is trouble reading a Java file
    */
-  static void computeConstructors(List<String> javaFiles) {
-    for (String javaFile : javaFiles) {
-      Source src = fileToSource(javaFile);
-      if (src == null) {
-        continue;
-      }
-      for (CompilationUnitTree cut : src.parse()) {
-        TreePathScanner<Void, Void> constructorsScanner =
-            new TreePathScanner<Void, Void>() {
-              @Override
-              public Void visitClass(ClassTree ct, Void p) {
-                String className = TreePathUtil.getBinaryName(getCurrentPath());
-                hasExplicitConstructor.put(className, TreePathUtil.hasConstructor(ct));
-                return super.visitClass(ct, null);
+  static void computeConstructors(List<String> javaFiles) throws IOException {
+    List<List<String>> batches = new ArrayList<>();
+    for (int start = 0; start < javaFiles.size(); start += PARSE_BATCH_SIZE) {
+      batches.add(javaFiles.subList(start, Math.min(start + PARSE_BATCH_SIZE, javaFiles.size())));
+    }
+    new OrderedTaskRunner(threads)
+        .run(
+            batches,
+            (batch, out, err) -> {
+              Map<String, Boolean> result = new HashMap<>();
+              List<List<CompilationUnitTree>> trees;
+              try {
+                trees = Source.parseSyntax(batch);
+              } catch (Source.CompilerException | IOException e) {
+                trees = null;
               }
-            };
-        constructorsScanner.scan(cut, null);
+              if (trees == null) {
+                // Parse each file on its own, so that any problem is reported for the file that has
+                // it.
+                trees = new ArrayList<>(batch.size());
+                for (String javaFile : batch) {
+                  Source src = fileToSource(javaFile, err);
+                  trees.add(
+                      src == null
+                          ? Collections.<CompilationUnitTree>emptyList()
+                          : new ArrayList<>(parse(src, err)));
+                }
+              }
+              for (List<CompilationUnitTree> cuts : trees) {
+                for (CompilationUnitTree cut : cuts) {
+                  TreePathScanner<Void, Void> constructorsScanner =
+                      new TreePathScanner<Void, Void>() {
+                        @Override
+                        public Void visitClass(ClassTree ct, Void p) {
+                          String className = TreePathUtil.getBinaryName(getCurrentPath());
+                          result.put(className, TreePathUtil.hasConstructor(ct));
+                          return super.visitClass(ct, null);
+                        }
+                      };
+                  constructorsScanner.scan(cut, null);
+                }
+              }
+              return result;
+            },
+            (batch, result) -> {
+              hasExplicitConstructor.putAll(result);
+              return true;
+            });
+  }
+
+  /**
+   * Returns true if the given class is declared in the Java files, or is nested in a class that is.
+   * Package annotations, which are stored on {@code package-info} classes, are always needed.
+   * Requires that {@link #computeConstructors} has been called.
+   *
+   * @param className the binary name of a class in an annotation file
+   * @return true if annotations on the class might be inserted into the Java files
+   */
+  private static boolean isDeclaredClass(String className) {
+    if (className.endsWith("package-info") || hasExplicitConstructor.containsKey(className)) {
+      return true;
+    }
+    // The annotation file may name a nested class differently, for example an anonymous class.
+    for (int i = className.indexOf('$'); i > 0; i = className.indexOf('$', i + 1)) {
+      if (hasExplicitConstructor.containsKey(className.substring(0, i))) {
+        return true;
       }
     }
+    return false;
   }
 
   /** A regular expression for classes in the java.lang package. */
@@ -4,16 +4,23 @@ import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.util.JavacTask;
 import com.sun.tools.javac.api.JavacTaskImpl;
 import com.sun.tools.javac.code.Types;
-import java.io.ByteArrayOutputStream;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticCollector;
 import javax.tools.JavaCompiler;
@@ -21,21 +28,57 @@ import javax.tools.JavaCompiler.CompilationTask;
 import javax.tools.JavaFileObject;
 import javax.tools.StandardJavaFileManager;
 import org.checkerframework.checker.mustcall.qual.Owning;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * Represents a Java source file. This class provides three major operations: parsing the source
  * file to obtain a syntax tree (via JSR-199), inserting text into the source file at specified
  * offsets, and writing the rewritten source file.
+ *
+ * <p>A Source is either created for a single file, or by {@link #parseAll}, which parses and
+ * attributes many files in one compiler session.
+ *
+ * <p>Inserted text is kept in a map from offsets in the original text to the text inserted there,
+ * and the rewritten file is produced in one pass by {@link #getString} or {@link #write}. Locating
+ * an index of the current text, to insert or to read with {@link #charAt} or {@link #substring},
+ * takes time logarithmic in the length of the file, and does not copy the file.
  */
 public final class Source {
 
   private JavaCompiler compiler;
   private JavacTask task;
-  private final StringBuilder source;
+
+  /** The original contents of the file. */
+  private final String source;
+
+  /** The text inserted into the file, keyed by the offset in {@link #source} where it appears. */
+  private final NavigableMap<Integer, String> edits = new TreeMap<>();
+
+  /** The total length of the text in {@link #edits}. */
+  private int insertedLength = 0;
+
+  /**
+   * A Fenwick tree of the lengths of the blocks of the current text, or null if nothing has been
+   * inserted. Block {@code i} is the text inserted at offset {@code i} of {@link #source} followed
+   * by the character at that offset, or by a virtual end-of-file character if {@code i ==
+   * source.length()}. Element {@code j} (from 1) is the total length of blocks {@code j -
+   * Integer.lowestOneBit(j)} to {@code j - 1}.
+   */
+  private int @Nullable [] blockLengths = null;
   private DiagnosticCollector<JavaFileObject> diagnostics;
   private String path;
   private Types types;
 
+  /**
+   * The Tree API roots for this file, once it has been parsed and attributed (by {@link #parseAll}
+   * or by {@link #parse}); otherwise null.
+   */
+  private @Nullable Set<CompilationUnitTree> compUnits = null;
+
+  /** Diagnostics for this file that {@link #parse} has not yet printed. */
+  private List<Diagnostic<? extends JavaFileObject>> unreportedDiagnostics =
+      Collections.emptyList();
+
   /**
    * Signifies that a problem has occurred with the compiler that produces the syntax tree for this
    * source file.
@@ -88,22 +131,228 @@ public final class Source {
       this.task = (JavacTask) cTask;
       this.types = Types.instance(((JavacTaskImpl) cTask).getContext());
 
-      // Read the source file into a buffer.
       path = src;
-      source = new StringBuilder();
-      try (ByteArrayOutputStream bytes = new ByteArrayOutputStream();
-          FileInputStream in = new FileInputStream(src)) {
-        int c;
-        while ((c = in.read()) != -1) {
-          bytes.write(c);
+      source = readFile(src);
+    }
+  }
+
+  /**
+   * Creates a Source for a file that was parsed and attributed by {@link #parseAll}.
+   *
+   * @param src the file name
+   * @param compiler the compiler
+   * @param task the task that parsed the file
+   * @param types the types of the task
+   * @param compUnits the Tree API roots for the file
+   * @param diagnostics the diagnostics for the file
+   * @throws IOException if the file couldn't be read
+   */
+  private Source(
+      String src,
+      JavaCompiler compiler,
+      JavacTask task,
+      Types types,
+      Set<CompilationUnitTree> compUnits,
+      List<Diagnostic<? extends JavaFileObject>> diagnostics)
+      throws IOException {
+    this.compiler = compiler;
+    this.task = task;
+    this.types = types;
+    this.path = src;
+    this.source = readFile(src);
+    this.compUnits = compUnits;
+    this.unreportedDiagnostics = diagnostics;
+  }
+
+  /**
+   * Parses and attributes the given Java source files in a single compiler session, which shares
+   * one file manager and one symbol table among all the files. This is much faster than creating a
+   * Source for each file, but all the trees are kept in memory until every one of the Sources is
+   * discarded, so the number of files should be bounded.
+   *
+   * <p>If the files cannot be parsed and attributed together (for example, because one of them has
+   * a syntax error), this returns a separately-compiled Source for each file, so that any problem
+   * is reported by {@link #parse} on the file that has it.
+   *
+   * @param srcs the Java source files
+   * @return a Source for each of the files, in the same order
+   * @throws CompilerException if the compiler could not be set up
+   * @throws IOException if a file couldn't be read
+   */
+  public static List<Source> parseAll(List<String> srcs) throws CompilerException, IOException {
+    JavaCompiler compiler = javax.tools.ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new CompilerException("could not get compiler instance");
+    }
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, null, null)) {
+      if (fileManager == null) {
+        throw new CompilerException("could not get file manager");
+      }
+
+      // Index of each file object in srcs.
+      Map<JavaFileObject, Integer> fileIndex = new HashMap<>();
+      List<JavaFileObject> fileObjs = new ArrayList<>(srcs.size());
+      for (JavaFileObject fileObj : fileManager.getJavaFileObjectsFromStrings(srcs)) {
+        fileIndex.put(fileObj, fileObjs.size());
+        fileObjs.add(fileObj);
+      }
+
+      CompilationTask cTask =
+          compiler.getTask(null, fileManager, diagnostics, Arrays.asList("-g"), null, fileObjs);
+      if (!(cTask instanceof JavacTask)) {
+        throw new CompilerException("could not get a valid JavacTask: " + cTask.getClass());
+      }
+      JavacTask task = (JavacTask) cTask;
+      Types types = Types.instance(((JavacTaskImpl) cTask).getContext());
+
+      List<Set<CompilationUnitTree>> compUnits = new ArrayList<>(srcs.size());
+      List<List<Diagnostic<? extends JavaFileObject>>> fileDiagnostics =
+          new ArrayList<>(srcs.size());
+      for (int i = 0; i < srcs.size(); i++) {
+        compUnits.add(new HashSet<>());
+        fileDiagnostics.add(new ArrayList<>());
+      }
+
+      boolean separately = false;
+      for (CompilationUnitTree tree : task.parse()) {
+        Integer i = fileIndex.get(tree.getSourceFile());
+        if (i == null) {
+          separately = true;
+          break;
+        }
+        compUnits.get(i).add(tree);
+      }
+      // A diagnostic without a source, such as a warning about the options, concerns the whole
+      // session.  A separate session for each file would report it for every file, so it is
+      // reported for every file here too.
+      List<Diagnostic<? extends JavaFileObject>> sessionDiagnostics = new ArrayList<>();
+      for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+        if (d.getKind() == Diagnostic.Kind.ERROR) {
+          separately = true;
+          break;
+        }
+        if (d.getSource() == null) {
+          sessionDiagnostics.add(d);
+          continue;
+        }
+        Integer i = fileIndex.get(d.getSource());
+        if (i == null) {
+          separately = true;
+          break;
+        }
+        fileDiagnostics.get(i).add(d);
+      }
+      if (!sessionDiagnostics.isEmpty()) {
+        for (List<Diagnostic<? extends JavaFileObject>> ds : fileDiagnostics) {
+          ds.addAll(0, sessionDiagnostics);
+        }
+      }
+
+      if (!separately) {
+        // Add type information to the ASTs.
+        try {
+          task.analyze();
+        } catch (Throwable e) {
+          separately = true;
+        }
+      }
+
+      List<Source> result = new ArrayList<>(srcs.size());
+      for (int i = 0; i < srcs.size(); i++) {
+        String src = srcs.get(i);
+        if (separately) {
+          result.add(new Source(src));
+        } else {
+          result.add(
+              new Source(src, compiler, task, types, compUnits.get(i), fileDiagnostics.get(i)));
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Parses, but does not attribute, the given Java source files in a single compiler session. The
+   * trees have no type information, so they are suitable only for syntactic queries, but parsing is
+   * much faster than {@link #parseAll}, and the trees can be discarded as soon as they are used.
+   *
+   * @param srcs the Java source files
+   * @return the Tree API roots for each of the files, in the same order; or null if any of the
+   *     files has a syntax error, which has not been printed
+   * @throws CompilerException if the compiler could not be set up
+   * @throws IOException if a file couldn't be read
+   */
+  public static @Nullable List<List<CompilationUnitTree>> parseSyntax(List<String> srcs)
+      throws CompilerException, IOException {
+    JavaCompiler compiler = javax.tools.ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      throw new CompilerException("could not get compiler instance");
+    }
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+
+    try (StandardJavaFileManager fileManager =
+        compiler.getStandardFileManager(diagnostics, null, null)) {
+      if (fileManager == null) {
+        throw new CompilerException("could not get file manager");
+      }
+
+      Map<JavaFileObject, Integer> fileIndex = new HashMap<>();
+      List<JavaFileObject> fileObjs = new ArrayList<>(srcs.size());
+      List<List<CompilationUnitTree>> result = new ArrayList<>(srcs.size());
+      for (JavaFileObject fileObj : fileManager.getJavaFileObjectsFromStrings(srcs)) {
+        fileIndex.put(fileObj, fileObjs.size());
+        fileObjs.add(fileObj);
+        result.add(new ArrayList<>());
+      }
+
+      CompilationTask cTask =
+          compiler.getTask(null, fileManager, diagnostics, Arrays.asList("-g"), null, fileObjs);
+      if (!(cTask instanceof JavacTask)) {
+        throw new CompilerException("could not get a valid JavacTask: " + cTask.getClass());
+      }
+      for (CompilationUnitTree tree : ((JavacTask) cTask).parse()) {
+        Integer i = fileIndex.get(tree.getSourceFile());
+        if (i == null) {
+          return null;
         }
-        @SuppressWarnings("DefaultCharset") // JDK 8 version does not accept UTF_8 argument
-        String bytesString = bytes.toString();
-        source.append(bytesString);
+        result.get(i).add(tree);
       }
+      for (Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+        if (d.getKind() == Diagnostic.Kind.ERROR) {
+          return null;
+        }
+      }
+      return result;
     }
   }
 
+  /**
+   * Reads a source file.
+   *
+   * @param src the file name
+   * @return the contents of the file
+   * @throws IOException if the file couldn't be read
+   */
+  private static String readFile(String src) throws IOException {
+    byte[] bytes = Files.readAllBytes(Paths.get(src));
+    @SuppressWarnings("DefaultCharset") // javac also uses the default charset
+    String result = new String(bytes);
+    return result;
+  }
+
+  /**
+   * Returns the compiler task that parsed this file. Sources created by the same call to {@link
+   * #parseAll} share a task, and must not be used concurrently.
+   *
+   * @return the compiler task that parsed this file
+   */
+  public JavacTask getTask() {
+    return task;
+  }
+
   /**
    * Returns an object that provides utility methods for types.
    *
@@ -115,10 +364,34 @@ public final class Source {
 
   /**
    * Parse the input file, returning a set of Tree API roots (as <code>CompilationUnitTree</code>s).
+   * The file is parsed only once; later calls return the same trees.
+   *
+   * @return the Tree API roots for the input file
+   * @throws CompilerException if the input file has compilation errors, which have already been
+   *     printed
+   */
+  public Set<CompilationUnitTree> parse() throws CompilerException {
+    return parse(System.err);
+  }
+
+  /**
+   * Parse the input file, returning a set of Tree API roots (as <code>CompilationUnitTree</code>s).
+   * The file is parsed only once; later calls return the same trees.
    *
+   * @param err where to print compiler diagnostics
    * @return the Tree API roots for the input file
+   * @throws CompilerException if the input file has compilation errors, which have already been
+   *     printed
    */
-  public Set<CompilationUnitTree> parse() {
+  public Set<CompilationUnitTree> parse(PrintStream err) throws CompilerException {
+
+    if (compUnits != null) {
+      // Already parsed and attributed, by parseAll (which checked that there are no errors) or by a
+      // previous call.
+      reportDiagnostics(unreportedDiagnostics, err);
+      unreportedDiagnostics = Collections.emptyList();
+      return compUnits;
+    }
 
     try {
       Set<CompilationUnitTree> compUnits = new HashSet<>();
@@ -127,66 +400,218 @@ public final class Source {
         compUnits.add(tree);
       }
 
-      List<Diagnostic<? extends JavaFileObject>> errors = diagnostics.getDiagnostics();
-      if (!diagnostics.getDiagnostics().isEmpty()) {
-        int numErrors = 0;
-        for (Diagnostic<? extends JavaFileObject> d : errors) {
-          System.err.println(d);
-          if (d.getKind() == Diagnostic.Kind.ERROR) {
-            ++numErrors;
-          }
-        }
-        if (numErrors > 0) {
-          System.err.println(numErrors + " error" + (numErrors != 1 ? "s" : ""));
-          System.err.println(
-              "WARNING: Error processing input source files. Please fix and try again.");
-          System.exit(1);
-        }
-      }
+      reportDiagnostics(diagnostics.getDiagnostics(), err);
 
       // Add type information to the AST.
       try {
         task.analyze();
       } catch (Throwable e) {
-        System.err.println("WARNING: skipping " + path);
-        System.err.println("  Type analysis failed due to: " + e.getMessage());
-        return Collections.<CompilationUnitTree>emptySet();
+        err.println("WARNING: skipping " + path);
+        err.println("  Type analysis failed due to: " + e.getMessage());
+        compUnits = Collections.<CompilationUnitTree>emptySet();
       }
 
+      this.compUnits = compUnits;
       return compUnits;
 
     } catch (IOException e) {
-      e.printStackTrace();
+      e.printStackTrace(err);
       throw new Error(e);
     }
 
     // return Collections.<CompilationUnitTree>emptySet();
   }
 
-  // TODO: Can be a problem if offsets get thrown off by previous insertions?
+  /**
+   * Prints the given diagnostics.
+   *
+   * @param diagnostics the diagnostics for this file
+   * @param err where to print the diagnostics
+   * @throws CompilerException if any of the diagnostics is an error
+   */
+  private void reportDiagnostics(
+      List<Diagnostic<? extends JavaFileObject>> diagnostics, PrintStream err)
+      throws CompilerException {
+    if (!diagnostics.isEmpty()) {
+      int numErrors = 0;
+      for (Diagnostic<? extends JavaFileObject> d : diagnostics) {
+        err.println(d);
+        if (d.getKind() == Diagnostic.Kind.ERROR) {
+          ++numErrors;
+        }
+      }
+      if (numErrors > 0) {
+        String numErrorsString = numErrors + " error" + (numErrors != 1 ? "s" : "");
+        err.println(numErrorsString);
+        err.println("WARNING: Error processing input source files. Please fix and try again.");
+        throw new CompilerException(numErrorsString + " in " + path);
+      }
+    }
+  }
+
   /**
    * Inserts the given string into the source file at the given offset.
    *
    * <p>Note that calling this can throw off indices in later parts of the file. Therefore, when
    * doing multiple insertions, you should perform them from the end of the file forward.
    *
-   * @param offset the offset to place the start of the insertion text
+   * @param offset the offset to place the start of the insertion text, in the current text
    * @param str the text to insert
    */
   public void insert(int offset, String str) {
-    source.insert(offset, str);
+    if (offset < 0 || offset > length()) {
+      throw new StringIndexOutOfBoundsException("offset " + offset + ", length " + length());
+    }
+    if (str.isEmpty()) {
+      return;
+    }
+    Location loc = locate(offset);
+    String text = edits.getOrDefault(loc.offset, "");
+    int k = offset - loc.start;
+    edits.put(loc.offset, text.substring(0, k) + str + text.substring(k));
+    if (blockLengths == null) {
+      blockLengths = new int[source.length() + 2];
+      for (int j = 1; j < blockLengths.length; j++) {
+        blockLengths[j] = Integer.lowestOneBit(j);
+      }
+    }
+    for (int j = loc.offset + 1; j < blockLengths.length; j += Integer.lowestOneBit(j)) {
+      blockLengths[j] += str.length();
+    }
+    insertedLength += str.length();
+  }
+
+  /**
+   * Returns the length of the current text, including insertions.
+   *
+   * @return the length of the current text
+   */
+  public int length() {
+    return source.length() + insertedLength;
   }
 
+  /**
+   * Returns the character at the given index of the current text.
+   *
+   * @param index an index into the current text
+   * @return the character at {@code index}
+   */
   public char charAt(int index) {
-    return source.charAt(index);
+    if (index < 0 || index >= length()) {
+      throw new StringIndexOutOfBoundsException("index " + index + ", length " + length());
+    }
+    Location loc = locate(index);
+    String text = edits.get(loc.offset);
+    int k = index - loc.start;
+    if (text != null && k < text.length()) {
+      return text.charAt(k);
+    } else {
+      return source.charAt(loc.offset);
+    }
   }
 
+  /**
+   * Returns a substring of the current text.
+   *
+   * @param start the start index, inclusive
+   * @param end the end index, exclusive
+   * @return the substring of the current text from {@code start} to {@code end}
+   */
   public String substring(int start, int end) {
-    return source.substring(start, end);
+    if (start < 0 || end > length() || start > end) {
+      throw new StringIndexOutOfBoundsException(
+          "begin " + start + ", end " + end + ", length " + length());
+    }
+    Location loc = locate(start);
+    int offset = loc.offset;
+    int k = start - loc.start;
+    Iterator<Map.Entry<Integer, String>> iter =
+        edits.tailMap(offset, true).entrySet().iterator();
+    Map.Entry<Integer, String> next = iter.hasNext() ? iter.next() : null;
+    StringBuilder sb = new StringBuilder(end - start);
+    int pos = start;
+    while (pos < end) {
+      if (next != null && next.getKey() == offset) {
+        // In or after the text inserted at offset.
+        String text = next.getValue();
+        int n = Math.min(end - pos, text.length() - k);
+        if (n > 0) {
+          sb.append(text, k, k + n);
+          pos += n;
+        }
+        next = iter.hasNext() ? iter.next() : null;
+      }
+      int stop = next != null ? next.getKey() : source.length();
+      int n = Math.min(end - pos, stop - offset);
+      sb.append(source, offset, offset + n);
+      pos += n;
+      offset += n;
+      k = 0;
+    }
+    return sb.toString();
   }
 
+  /**
+   * Returns the current text, including insertions.
+   *
+   * @return the current text
+   */
   public String getString() {
-    return source.toString();
+    if (edits.isEmpty()) {
+      return source;
+    }
+    StringBuilder sb = new StringBuilder(length());
+    int pos = 0;
+    for (Map.Entry<Integer, String> e : edits.entrySet()) {
+      sb.append(source, pos, e.getKey());
+      sb.append(e.getValue());
+      pos = e.getKey();
+    }
+    sb.append(source, pos, source.length());
+    return sb.toString();
+  }
+
+  /**
+   * Finds the block of the current text that contains the given index. See {@link #blockLengths}.
+   *
+   * @param index an index into the current text, at most its length
+   * @return the location of {@code index}
+   */
+  private Location locate(int index) {
+    if (blockLengths == null) {
+      return new Location(index, index);
+    }
+    // The largest number of whole blocks that start and end at or before index.
+    int blocks = 0;
+    int rest = index;
+    for (int step = Integer.highestOneBit(blockLengths.length - 1); step > 0; step >>= 1) {
+      int j = blocks + step;
+      if (j < blockLengths.length && blockLengths[j] <= rest) {
+        blocks = j;
+        rest -= blockLengths[j];
+      }
+    }
+    return new Location(blocks, index - rest);
+  }
+
+  /** The result of {@link #locate}: a block of the current text. */
+  private static final class Location {
+    /** The offset in the original text of the block. */
+    final int offset;
+
+    /** The start of the block in the current text. */
+    final int start;
+
+    /**
+     * Creates a new Location.
+     *
+     * @param offset the offset in the original text of the block
+     * @param start the start of the block in the current text
+     */
+    Location(int offset, int start) {
+      this.offset = offset;
+      this.start = start;
+    }
   }
 
   /**
@@ -196,7 +621,7 @@ public final class Source {
    * @throws IOException if the source file couldn't be written
    */
   public void write(@Owning OutputStream out) throws IOException {
-    out.write(source.toString().getBytes(StandardCharsets.UTF_8));
+    out.write(getString().getBytes(StandardCharsets.UTF_8));
     out.flush();
     out.close();
   }
@@ -50,9 +50,11 @@ import com.sun.source.util.TreePath;
 import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.tree.JCTree;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import org.checkerframework.afu.annotator.Main;
 import org.checkerframework.afu.scenelib.io.ASTPath;
+import org.checkerframework.afu.scenelib.io.DebugWriter;
 
 /** A criterion to determine if a node matches a path through the AST. */
 public class ASTPathCriterion implements Criterion {
@@ -85,6 +87,17 @@ public class ASTPathCriterion implements Criterion {
 
   @Override
   public boolean isSatisfiedBy(TreePath path) {
+    return isSatisfiedBy(path, TreeFinder.warn);
+  }
+
+  /**
+   * Determines if the given tree path is matched by this criterion.
+   *
+   * @param path the tree path to test
+   * @param warn where to warn about a wildcard bound that is not allowed
+   * @return true if {@code path} is matched by this criterion
+   */
+  boolean isSatisfiedBy(TreePath path, DebugWriter warn) {
     if (path == null) {
       return false;
     }
@@ -95,11 +108,12 @@ public class ASTPathCriterion implements Criterion {
     // until it reaches a method node (this gets only the part of the path
     // within a method) or class node (this gets only the part of the path
     // within a field).
+    // The trees are collected from the leaf upward and then reversed.
     List<Tree> actualPath = new ArrayList<>();
     Tree leaf = path.getLeaf();
     Tree.Kind kind = leaf.getKind();
     while (kind != Tree.Kind.METHOD && !ASTPath.isClassEquiv(kind)) {
-      actualPath.add(0, leaf);
+      actualPath.add(leaf);
       path = path.getParentPath();
       if (path == null) {
         break;
@@ -110,13 +124,10 @@ public class ASTPathCriterion implements Criterion {
 
     // If astPath starts with Method.* or Class.*, include the
     // MethodTree or ClassTree on actualPath.
-    if (path != null && !astPath.isEmpty()) {
-      Tree.Kind entryKind = astPath.get(0).getTreeKind();
-      if ((entryKind == Tree.Kind.METHOD && kind == Tree.Kind.METHOD)
-          || (entryKind == Tree.Kind.CLASS && ASTPath.isClassEquiv(kind))) {
-        actualPath.add(0, leaf);
-      }
+    if (path != null && !astPath.isEmpty() && includesDeclaration(astPath.get(0), kind)) {
+      actualPath.add(leaf);
     }
+    Collections.reverse(actualPath);
 
     if (debug) {
       System.out.println("ASTPathCriterion.isSatisfiedBy");
@@ -142,7 +153,7 @@ public class ASTPathCriterion implements Criterion {
       ASTPath.ASTEntry astNode = astPath.get(i);
       Tree actualNode = actualPath.get(i);
       if (!kindsMatch(astNode.getTreeKind(), actualNode.getKind())) {
-        return isBoundableWildcard(actualPath, i);
+        return isBoundableWildcard(actualPath, i, warn);
       }
 
       if (debug) {
@@ -157,7 +168,7 @@ public class ASTPathCriterion implements Criterion {
       // location. If it is a match, keep going.
       next = getNext(actualNode, astPath, i);
       if (next == null) {
-        return checkNull(actualPath, i);
+        return checkNull(actualPath, i, warn);
       }
       if (!(next instanceof JCTree)) {
         // converted from array type, not in source AST...
@@ -176,7 +187,7 @@ public class ASTPathCriterion implements Criterion {
         break;
       }
       if (i >= actualPathLen) {
-        return checkNull(actualPath, i - 1);
+        return checkNull(actualPath, i - 1, warn);
       }
       if (!matchNext(next, actualPath.get(i))) {
         if (debug) {
@@ -203,6 +214,21 @@ public class ASTPathCriterion implements Criterion {
     return false;
   }
 
+  /**
+   * Returns true if the path through the source AST that is compared with an AST path starting with
+   * the given entry includes the enclosing declaration, because the entry is Method.* and the
+   * declaration is a method, or the entry is Class.* and the declaration is a class.
+   *
+   * @param first the first entry of an AST path
+   * @param declKind the kind of the method or class declaration that encloses the node
+   * @return true if the declaration is the first element of the path through the source AST
+   */
+  static boolean includesDeclaration(ASTPath.ASTEntry first, Tree.Kind declKind) {
+    Tree.Kind entryKind = first.getTreeKind();
+    return (entryKind == Tree.Kind.METHOD && declKind == Tree.Kind.METHOD)
+        || (entryKind == Tree.Kind.CLASS && ASTPath.isClassEquiv(declKind));
+  }
+
   /**
    * Returns true if the given trees match.
    *
@@ -210,7 +236,7 @@ public class ASTPathCriterion implements Criterion {
    * @param node a tree
    * @return true if the given trees match
    */
-  private boolean matchNext(Tree next, Tree node) {
+  static boolean matchNext(Tree next, Tree node) {
     boolean b1 = next instanceof JCTree;
     boolean b2 = node instanceof JCTree;
     if (b1 && !b2) {
@@ -288,7 +314,16 @@ public class ASTPathCriterion implements Criterion {
     }
   }
 
-  private Tree getNext(Tree actualNode, ASTPath astPath, int ix) {
+  /**
+   * Returns the child of the given node that entry {@code ix} of the given AST path selects. The
+   * result depends only on that entry and on whether it is the last one.
+   *
+   * @param actualNode the source node that corresponds to entry {@code ix}
+   * @param astPath an AST path
+   * @param ix an index into {@code astPath}
+   * @return the selected child, or null if there is none
+   */
+  static Tree getNext(Tree actualNode, ASTPath astPath, int ix) {
     try {
       ASTPath.ASTEntry astNode = astPath.get(ix);
       switch (actualNode.getKind()) {
@@ -768,7 +803,17 @@ public class ASTPathCriterion implements Criterion {
     }
   }
 
-  private boolean checkNull(List<Tree> path, int ix) {
+  /**
+   * Returns true if the rest of {@link #astPath}, from entry {@code ix} on, leads from the last
+   * element of the given path to a location that is not an AST node of its own, such as the
+   * receiver of a method or the type of a constructor.
+   *
+   * @param path the path through the source AST to the node being tested
+   * @param ix the index of the entry of {@link #astPath} that could not be followed further
+   * @param warn where to warn about a wildcard bound that is not allowed
+   * @return true if the rest of {@link #astPath} matches the last element of {@code path}
+   */
+  boolean checkNull(List<Tree> path, int ix, DebugWriter warn) {
     Tree node = path.get(path.size() - 1);
     int last = astPath.size() - 1;
     ASTPath.ASTEntry entry = astPath.get(ix);
@@ -847,12 +892,32 @@ public class ASTPathCriterion implements Criterion {
               && checkTypePath(ix + 1, typeTrees.get(arg));
         }
       case UNBOUNDED_WILDCARD:
-        return isBoundableWildcard(path, path.size() - 1);
+        return isBoundableWildcard(path, path.size() - 1, warn);
       default: // TODO: casts?
         return false;
     }
   }
 
+  /**
+   * Returns false if {@link #checkNull} always returns false when the entry at the index it is
+   * given has the given kind. This must be kept consistent with {@link #checkNull}.
+   *
+   * @param kind the kind of an AST path entry
+   * @return false if {@link #checkNull} returns false for an entry of the given kind
+   */
+  static boolean mayCheckNull(Tree.Kind kind) {
+    switch (kind) {
+      case CLASS:
+      case TYPE_PARAMETER:
+      case METHOD:
+      case NEW_ARRAY:
+      case UNBOUNDED_WILDCARD:
+        return true;
+      default:
+        return false;
+    }
+  }
+
   /**
    * Returns the array depth of the given tree.
    *
@@ -952,7 +1017,7 @@ public class ASTPathCriterion implements Criterion {
    * @param kind2 the second kind to match
    * @return {@code true} if the kinds match as described above, {@code false} otherwise
    */
-  private boolean kindsMatch(Tree.Kind kind1, Tree.Kind kind2) {
+  static boolean kindsMatch(Tree.Kind kind1, Tree.Kind kind2) {
     return kind1 == kind2
         ? true
         : ASTPath.isClassEquiv(kind1)
@@ -1068,7 +1133,7 @@ public class ASTPathCriterion implements Criterion {
    * @param kind the kind to test
    * @return true if the given kind is a wildcard
    */
-  private boolean isWildcard(Tree.Kind kind) {
+  private static boolean isWildcard(Tree.Kind kind) {
     return kind == Tree.Kind.UNBOUNDED_WILDCARD
         || kind == Tree.Kind.EXTENDS_WILDCARD
         || kind == Tree.Kind.SUPER_WILDCARD;
@@ -1078,7 +1143,7 @@ public class ASTPathCriterion implements Criterion {
   //   x instanceof Class<? extends Object>
   // will remain illegal even though it means the same thing as
   //   x instanceof Class<?>.
-  private boolean isBoundableWildcard(List<Tree> actualPath, int i) {
+  static boolean isBoundableWildcard(List<Tree> actualPath, int i, DebugWriter warn) {
     if (i <= 0) {
       return false;
     }
@@ -1088,14 +1153,14 @@ public class ASTPathCriterion implements Criterion {
       // TODO: refactor GenericArrayLoc to use same code?
       Tree ancestor = actualPath.get(i - 1);
       if (ancestor instanceof InstanceOfTree) {
-        TreeFinder.warn.debug(
+        warn.debug(
             "WARNING: wildcard bounds not allowed "
                 + "in 'instanceof' expression; skipping insertion%n");
         return false;
       } else if (i > 1 && ancestor instanceof ParameterizedTypeTree) {
         ancestor = actualPath.get(i - 2);
         if (ancestor instanceof ArrayTypeTree) {
-          TreeFinder.warn.debug(
+          warn.debug(
               "WARNING: wildcard bounds not allowed "
                   + "in 'instanceof' expression; skipping insertion%n");
           return false;
@@ -1111,6 +1176,16 @@ public class ASTPathCriterion implements Criterion {
     return Kind.AST_PATH;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    return o instanceof ASTPathCriterion && astPath.equals(((ASTPathCriterion) o).astPath);
+  }
+
+  @Override
+  public int hashCode() {
+    return astPath.hashCode();
+  }
+
   @Override
   public String toString() {
     return "ASTPathCriterion: " + astPath;
@@ -0,0 +1,386 @@
+package org.checkerframework.afu.annotator.find;
+
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.NewArrayTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.tree.JCTree;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.afu.scenelib.io.ASTPath;
+import org.checkerframework.afu.scenelib.io.DebugWriter;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Evaluates the {@link ASTPathCriterion}s of many insertions together. The AST paths are stored in
+ * a trie keyed by {@link ASTPath.ASTEntry}, so at each tree node:
+ *
+ * <ul>
+ *   <li>the path through the source AST from the enclosing method or class to the node is computed
+ *       once, rather than once per criterion,
+ *   <li>an entry that many AST paths share, such as the Method.body entry that starts every path
+ *       within a method body, is compared with the source AST once, and a mismatch rejects all of
+ *       the paths that share it, and
+ *   <li>among AST paths that continue with different Block.statement entries, only the one that
+ *       selects the statement on the path to the node is followed.
+ * </ul>
+ *
+ * <p>The result for each AST path is the same as that of {@link
+ * ASTPathCriterion#isSatisfiedBy(TreePath)}. Where that method would throw an exception, or for an
+ * AST path that was not given to the constructor, the criterion is evaluated on its own.
+ */
+final class ASTPathMatcher {
+
+  /** A node of the trie, which represents the AST paths that start with its prefix. */
+  private static final class Node {
+    /** The entries on the way from the root to this node. */
+    final ASTPath prefix;
+
+    /** The criterion for the AST path that equals {@link #prefix}, or null if there is none. */
+    @Nullable ASTPathCriterion criterion = null;
+
+    /** The children of this node whose last entry is not Block.statement, keyed by that entry. */
+    final Map<ASTPath.ASTEntry, Node> children = new HashMap<>(4);
+
+    /** The children of this node whose last entry is Block.statement, keyed by its argument. */
+    final Map<Integer, Node> statements = new HashMap<>(4);
+
+    /** The value of {@link ASTPathMatcher#matchCount} when {@link #prefix} was last satisfied. */
+    int satisfied = 0;
+
+    /**
+     * The value of {@link ASTPathMatcher#matchCount} when {@link #criterion} was last found to need
+     * evaluating on its own.
+     */
+    int undecided = 0;
+
+    /**
+     * Creates a node with no children.
+     *
+     * @param prefix the entries on the way from the root to the node
+     */
+    Node(ASTPath prefix) {
+      this.prefix = prefix;
+    }
+
+    /**
+     * Returns the child of this node for the given entry, creating it if necessary.
+     *
+     * @param entry the last entry of the child's prefix
+     * @return the child of this node for {@code entry}
+     */
+    Node child(ASTPath.ASTEntry entry) {
+      if (isStatement(entry)) {
+        return statements.computeIfAbsent(entry.getArgument(), k -> new Node(prefix.extend(entry)));
+      } else {
+        return children.computeIfAbsent(entry, e -> new Node(prefix.extend(e)));
+      }
+    }
+
+    /**
+     * Returns all the children of this node.
+     *
+     * @return all the children of this node
+     */
+    List<Node> allChildren() {
+      List<Node> result = new ArrayList<>(children.size() + statements.size());
+      result.addAll(children.values());
+      result.addAll(statements.values());
+      return result;
+    }
+  }
+
+  /**
+   * Returns true if the given entry is Block.statement.
+   *
+   * @param entry an AST path entry
+   * @return true if {@code entry} selects a statement of a block
+   */
+  private static boolean isStatement(ASTPath.ASTEntry entry) {
+    return entry.getTreeKind() == Tree.Kind.BLOCK && entry.childSelectorIs(ASTPath.STATEMENT);
+  }
+
+  /** The root of the trie, whose prefix is empty. */
+  private final Node root = new Node(ASTPath.empty());
+
+  /**
+   * Maps each AST path of the insertions to the node of the trie where it ends. The keys are
+   * compared by identity, which is cheaper than comparing their entries, since many insertions
+   * have equal AST paths.
+   */
+  private final Map<ASTPath, Node> nodes = new IdentityHashMap<>();
+
+  /** The path to the tree node most recently matched, or null if none has been. */
+  private @Nullable TreePath matchedPath = null;
+
+  /**
+   * The number of calls to {@link #match}. A node whose {@link Node#satisfied} or {@link
+   * Node#undecided} equals this records the result for {@link #matchedPath}, so that the results
+   * need not be cleared between calls.
+   */
+  private int matchCount = 0;
+
+  /** Where to warn about a wildcard bound that is not allowed. */
+  private final DebugWriter warn;
+
+  /**
+   * Creates a matcher for the AST paths of the given insertions.
+   *
+   * @param insertions insertions, some of whose criteria include an AST path
+   * @param warn where to warn about a wildcard bound that is not allowed
+   */
+  ASTPathMatcher(List<Insertion> insertions, DebugWriter warn) {
+    this.warn = warn;
+    for (Insertion i : insertions) {
+      ASTPath astPath = i.getCriteria().getASTPath();
+      if (astPath != null && !astPath.isEmpty() && !nodes.containsKey(astPath)) {
+        Node node = root;
+        for (ASTPath.ASTEntry entry : astPath) {
+          node = node.child(entry);
+        }
+        if (node.criterion == null) {
+          node.criterion = new ASTPathCriterion(astPath);
+        }
+        nodes.put(astPath, node);
+      }
+    }
+  }
+
+  /**
+   * Determines whether the given criterion is satisfied by the leaf of the given path. Consecutive
+   * calls with the same path share the work of matching.
+   *
+   * @param criterion an AST path criterion
+   * @param path the path to the tree node to test, or null
+   * @return the result of {@code criterion.isSatisfiedBy(path)}
+   */
+  boolean isSatisfiedBy(ASTPathCriterion criterion, @Nullable TreePath path) {
+    Node node = nodes.get(criterion.astPath);
+    if (path == null || ASTPathCriterion.debug || node == null) {
+      return criterion.isSatisfiedBy(path, warn);
+    }
+    if (path != matchedPath) {
+      match(path);
+    }
+    if (node.undecided == matchCount) {
+      return criterion.isSatisfiedBy(path, warn);
+    }
+    return node.satisfied == matchCount;
+  }
+
+  /**
+   * Determines which AST paths are satisfied by the leaf of the given path, and records the result
+   * in the nodes where they end.
+   *
+   * @param path the path to a tree node
+   */
+  private void match(TreePath path) {
+    matchedPath = path;
+    matchCount++;
+
+    // The trees from the enclosing method or class (exclusive) to the leaf.  As in
+    // ASTPathCriterion.isSatisfiedBy, they are collected upward and then reversed.
+    List<Tree> trees = new ArrayList<>();
+    Tree leaf = path.getLeaf();
+    Tree.Kind kind = leaf.getKind();
+    while (kind != Tree.Kind.METHOD && !ASTPath.isClassEquiv(kind)) {
+      trees.add(leaf);
+      path = path.getParentPath();
+      if (path == null) {
+        break;
+      }
+      leaf = path.getLeaf();
+      kind = leaf.getKind();
+    }
+    Collections.reverse(trees);
+
+    // The same, preceded by the enclosing method or class, for AST paths that start there.
+    List<Tree> withDecl = null;
+    if (path != null) {
+      withDecl = new ArrayList<>(trees.size() + 1);
+      withDecl.add(leaf);
+      withDecl.addAll(trees);
+    }
+
+    for (Node child : root.allChildren()) {
+      List<Tree> actualPath =
+          withDecl != null && ASTPathCriterion.includesDeclaration(child.prefix.get(0), kind)
+              ? withDecl
+              : trees;
+      if (!actualPath.isEmpty()) {
+        walk(child, 0, actualPath);
+      }
+    }
+  }
+
+  /**
+   * Matches the AST paths that start with the prefix of the given node, whose entries before index
+   * {@code i} have already been matched. This follows the loop in {@link
+   * ASTPathCriterion#isSatisfiedBy(TreePath)}, for all of those AST paths at once.
+   *
+   * @param node a node of the trie, other than the root
+   * @param i the index of the last entry of the prefix of {@code node}
+   * @param actualPath the path through the source AST; temporarily extended by artificial nodes
+   *     that represent array types, but restored before returning
+   */
+  private void walk(Node node, int i, List<Tree> actualPath) {
+    ASTPath.ASTEntry astNode = node.prefix.get(i);
+    Tree actualNode = actualPath.get(i);
+    if (!ASTPathCriterion.kindsMatch(astNode.getTreeKind(), actualNode.getKind())) {
+      if (ASTPathCriterion.isBoundableWildcard(actualPath, i, warn)) {
+        addAll(node);
+      }
+      return;
+    }
+
+    // The AST path that ends with this entry, if any.
+    if (node.criterion != null) {
+      Tree next = ASTPathCriterion.getNext(actualNode, node.prefix, i);
+      if (next == null) {
+        checkNull(node, actualPath, i);
+      } else {
+        boolean extended = extend(actualPath, next, i);
+        int actualPathLen = actualPath.size();
+        if ((i + 1 < actualPathLen && ASTPathCriterion.matchNext(next, actualPath.get(i + 1)))
+            || (i + 1 <= actualPathLen && next instanceof NewArrayTree)) {
+          node.satisfied = matchCount;
+        }
+        if (extended) {
+          actualPath.remove(actualPathLen - 1);
+        }
+      }
+    }
+
+    // The AST paths that continue past this entry.  Whether an entry is the last one matters to
+    // getNext, so pass it the prefix of a child.
+    if (node.children.isEmpty() && node.statements.isEmpty()) {
+      return;
+    }
+    Node someChild =
+        node.children.isEmpty()
+            ? node.statements.values().iterator().next()
+            : node.children.values().iterator().next();
+    Tree next = ASTPathCriterion.getNext(actualNode, someChild.prefix, i);
+    if (next == null) {
+      checkNullBelow(node, actualPath, i);
+      return;
+    }
+    boolean extended = extend(actualPath, next, i);
+    if (i + 1 >= actualPath.size()) {
+      checkNullBelow(node, actualPath, i);
+    } else if (ASTPathCriterion.matchNext(next, actualPath.get(i + 1))) {
+      for (Node child : node.children.values()) {
+        walk(child, i + 1, actualPath);
+      }
+      if (!node.statements.isEmpty()) {
+        walkStatements(node, i + 1, actualPath);
+      }
+    }
+    if (extended) {
+      actualPath.remove(actualPath.size() - 1);
+    }
+  }
+
+  /**
+   * Does the same as calling {@link #walk} on each child of the given node whose last entry is
+   * Block.statement, but follows only the one that can match. That is the one that selects the next
+   * tree on the path through the source AST, because a statement matches only itself. Any other
+   * child selects either no statement, for which {@link ASTPathCriterion#checkNull} is false, or a
+   * statement that does not match.
+   *
+   * @param node a node of the trie
+   * @param i the index of the entry of the children of {@code node}
+   * @param actualPath the path through the source AST
+   */
+  private void walkStatements(Node node, int i, List<Tree> actualPath) {
+    Tree block = actualPath.get(i);
+    if (block.getKind() != Tree.Kind.BLOCK) {
+      if (ASTPathCriterion.isBoundableWildcard(actualPath, i, warn)) {
+        for (Node child : node.statements.values()) {
+          addAll(child);
+        }
+      }
+      return;
+    }
+    if (i + 1 < actualPath.size()) {
+      int index = ((BlockTree) block).getStatements().indexOf(actualPath.get(i + 1));
+      Node child = node.statements.get(index);
+      if (child != null) {
+        walk(child, i, actualPath);
+      }
+    }
+  }
+
+  /**
+   * If the given child is not in the source AST, because it was converted from an array type, and
+   * the path through the source AST ends at index {@code i}, extends the path with the child.
+   *
+   * @param actualPath the path through the source AST
+   * @param next the child selected by entry {@code i}
+   * @param i the index of the current entry
+   * @return true if {@code actualPath} was extended
+   */
+  private static boolean extend(List<Tree> actualPath, Tree next, int i) {
+    if (!(next instanceof JCTree) && actualPath.size() == i + 1) {
+      actualPath.add(next);
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Records whether {@link ASTPathCriterion#checkNull} holds for the criterion of the given node.
+   *
+   * @param node a node whose AST path could not be followed past entry {@code i}
+   * @param actualPath the path through the source AST
+   * @param i the index of the entry that could not be followed
+   */
+  private void checkNull(Node node, List<Tree> actualPath, int i) {
+    try {
+      if (node.criterion.checkNull(actualPath, i, warn)) {
+        node.satisfied = matchCount;
+      }
+    } catch (RuntimeException e) {
+      // Let ASTPathCriterion.isSatisfiedBy throw the exception when it is asked.
+      node.undecided = matchCount;
+    }
+  }
+
+  /**
+   * Records whether {@link ASTPathCriterion#checkNull} holds for each AST path that is longer than
+   * the prefix of the given node and starts with it.
+   *
+   * @param node a node of the trie
+   * @param actualPath the path through the source AST
+   * @param i the index of the last entry of the prefix of {@code node}
+   */
+  private void checkNullBelow(Node node, List<Tree> actualPath, int i) {
+    if (!ASTPathCriterion.mayCheckNull(node.prefix.get(i).getTreeKind())) {
+      return;
+    }
+    for (Node child : node.allChildren()) {
+      if (child.criterion != null) {
+        checkNull(child, actualPath, i);
+      }
+      checkNullBelow(child, actualPath, i);
+    }
+  }
+
+  /**
+   * Records that every AST path that starts with the prefix of the given node is satisfied.
+   *
+   * @param node a node of the trie
+   */
+  private void addAll(Node node) {
+    if (node.criterion != null) {
+      node.satisfied = matchCount;
+    }
+    for (Node child : node.allChildren()) {
+      addAll(child);
+    }
+  }
+}
@@ -82,6 +82,28 @@ public class AnnotationInsertion extends Insertion {
     this(annotation, new Criteria(), false);
   }
 
+  /**
+   * Creates a copy of the given insertion.
+   *
+   * @param other the insertion to copy
+   * @param copier the copier that is copying {@code other}
+   */
+  AnnotationInsertion(AnnotationInsertion other, InsertionCopier copier) {
+    super(other, copier);
+    this.fullyQualifiedAnnotationText = other.fullyQualifiedAnnotationText;
+    this.fullyQualifiedAnnotationName = other.fullyQualifiedAnnotationName;
+    this.annotation = other.annotation;
+    this.type = other.type;
+    this.generateBound = other.generateBound;
+    this.generateExtends = other.generateExtends;
+    this.wasGenerateExtends = other.wasGenerateExtends;
+  }
+
+  @Override
+  AnnotationInsertion copy(InsertionCopier copier) {
+    return new AnnotationInsertion(this, copier);
+  }
+
   public boolean isGenerateExtends() {
     return generateExtends;
   }
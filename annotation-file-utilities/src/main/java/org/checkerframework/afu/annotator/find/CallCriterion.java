@@ -3,6 +3,7 @@ package org.checkerframework.afu.annotator.find;
 import com.sun.source.tree.MethodInvocationTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
+import org.checkerframework.afu.annotator.scanner.ClassOffsets;
 import org.checkerframework.afu.annotator.scanner.MethodCallScanner;
 import org.checkerframework.afu.scenelib.el.RelativeLocation;
 
@@ -10,9 +11,13 @@ public class CallCriterion implements Criterion {
   private final String methodName;
   private final RelativeLocation loc;
 
-  public CallCriterion(String methodName, RelativeLocation loc) {
+  /** The bytecode offsets in the class that contains the method. */
+  private final ClassOffsets offsets;
+
+  public CallCriterion(String methodName, RelativeLocation loc, ClassOffsets offsets) {
     this.methodName = methodName;
     this.loc = loc;
+    this.offsets = offsets;
   }
 
   @Override
@@ -36,7 +41,7 @@ public class CallCriterion implements Criterion {
       int indexInSource = MethodCallScanner.indexOfMethodCallTree(path, leaf);
       boolean b;
       if (loc.isBytecodeOffset()) {
-        int indexInClass = MethodCallScanner.getMethodCallIndex(methodName, loc.offset);
+        int indexInClass = offsets.getMethodCallIndex(methodName, loc.offset);
         b = (indexInSource == indexInClass);
       } else {
         b = (indexInSource == loc.index);
@@ -4,6 +4,7 @@ import com.sun.source.tree.Tree;
 import com.sun.source.tree.TypeCastTree;
 import com.sun.source.util.TreePath;
 import org.checkerframework.afu.annotator.scanner.CastScanner;
+import org.checkerframework.afu.annotator.scanner.ClassOffsets;
 import org.checkerframework.afu.scenelib.el.RelativeLocation;
 
 /** Criterion for being a specific type cast expression. */
@@ -12,9 +13,13 @@ public class CastCriterion implements Criterion {
   private final String methodName;
   private final RelativeLocation loc;
 
-  public CastCriterion(String methodName, RelativeLocation loc) {
+  /** The bytecode offsets in the class that contains the method. */
+  private final ClassOffsets offsets;
+
+  public CastCriterion(String methodName, RelativeLocation loc, ClassOffsets offsets) {
     this.methodName = methodName.substring(0, methodName.lastIndexOf(")") + 1);
     this.loc = loc;
+    this.offsets = offsets;
   }
 
   @Override
@@ -38,7 +43,7 @@ public class CastCriterion implements Criterion {
       int indexInSource = CastScanner.indexOfCastTree(path, leaf);
       boolean b;
       if (loc.isBytecodeOffset()) {
-        int indexInClass = CastScanner.getMethodCastIndex(methodName, loc.offset);
+        int indexInClass = offsets.getCastIndex(methodName, loc.offset);
         b = (indexInSource == indexInClass);
       } else {
         b = (indexInSource == loc.index);
@@ -36,6 +36,23 @@ public class CastInsertion extends Insertion {
     this.type = type;
   }
 
+  /**
+   * Creates a copy of the given insertion.
+   *
+   * @param other the insertion to copy
+   * @param copier the copier that is copying {@code other}
+   */
+  private CastInsertion(CastInsertion other, InsertionCopier copier) {
+    super(other, copier);
+    this.type = copier.copy(other.type);
+    this.onArrayLiteral = other.onArrayLiteral;
+  }
+
+  @Override
+  CastInsertion copy(InsertionCopier copier) {
+    return new CastInsertion(this, copier);
+  }
+
   /**
    * Gets the type for this insertion. It is assumed that the returned value will be modified to
    * update the type to be inserted.
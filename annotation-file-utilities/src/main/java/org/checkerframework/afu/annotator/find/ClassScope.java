@@ -0,0 +1,249 @@
+package org.checkerframework.afu.annotator.find;
+
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import javax.lang.model.element.Name;
+import org.checkerframework.afu.annotator.scanner.AnonymousClassScanner;
+import org.checkerframework.afu.annotator.scanner.LocalClassScanner;
+import org.checkerframework.afu.annotator.scanner.TreePathUtil;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * One of the declarations that enclose a tree, as {@link InClassCriterion} matches them against a
+ * class name: the package, a class, a {@code new} expression, or a method or variable. Each scope
+ * knows the scopes that enclose it, so a tree's innermost scope gives {@link InClassCriterion} all
+ * that it needs, without copying the tree's path.
+ *
+ * <p>A scope is computed once per declaration, and is retained as long as its compilation unit is,
+ * so it is shared by every tree within the declaration. It also records the index of an anonymous
+ * or local class, which otherwise takes a traversal of the enclosing class to compute, and whether
+ * each class name that has been compared with it matched.
+ */
+final class ClassScope {
+
+  /** The kinds of scopes. */
+  enum Kind {
+    /** The compilation unit, whose {@link ClassScope#name} is its package name, if any. */
+    PACKAGE,
+    /** A class, interface, enum, or annotation type with a name, that is not a local class. */
+    CLASS,
+    /** A class without a name that is not the body of a {@code new} expression. */
+    ANONYMOUS_CLASS,
+    /** A class that is declared by a statement in a block. */
+    LOCAL_CLASS,
+    /** A {@code new} expression, with or without a class body. */
+    NEW_CLASS,
+    /** A method or variable. */
+    MEMBER
+  }
+
+  /**
+   * For each compilation unit, the scope of each declaration that has been looked up, keyed by its
+   * tree. The keys are weak, so the scopes are discarded along with their compilation unit.
+   * Compilation units may be processed concurrently, so all access must be synchronized on this
+   * map.
+   */
+  private static final Map<CompilationUnitTree, Map<Tree, ClassScope>> scopes =
+      new WeakHashMap<>();
+
+  /** The kind of this scope. */
+  final Kind kind;
+
+  /**
+   * The tree of this scope, or null for a {@link Kind#PACKAGE} scope, which must not refer to its
+   * compilation unit lest the compilation unit never be discarded.
+   */
+  final @Nullable Tree tree;
+
+  /** The package name or the simple class name, or null if there is none. */
+  final @Nullable String name;
+
+  /** The scopes from the outermost, a {@link Kind#PACKAGE} scope, to this one. */
+  final ClassScope[] chain;
+
+  /** The index of an anonymous or local class, or 0 if it has not been computed. */
+  private int classIndex = 0;
+
+  /** Whether each class name that has been compared with this scope exactly matched it. */
+  private @Nullable Map<String, Boolean> exactMatches = null;
+
+  /** Whether each class name that has been compared with this scope matched it or an outer one. */
+  private @Nullable Map<String, Boolean> matches = null;
+
+  /**
+   * Creates a scope.
+   *
+   * @param parent the enclosing scope, or null for a {@link Kind#PACKAGE} scope
+   * @param kind the kind of the scope
+   * @param tree the tree of the scope, or null for a {@link Kind#PACKAGE} scope
+   * @param name the package name or the simple class name, or null if there is none
+   */
+  private ClassScope(
+      @Nullable ClassScope parent, Kind kind, @Nullable Tree tree, @Nullable String name) {
+    this.kind = kind;
+    this.tree = tree;
+    this.name = name;
+    if (parent == null) {
+      chain = new ClassScope[] {this};
+    } else {
+      chain = Arrays.copyOf(parent.chain, parent.chain.length + 1);
+      chain[parent.chain.length] = this;
+    }
+  }
+
+  /**
+   * Returns the innermost scope that encloses the leaf of the given path, or that is the leaf.
+   *
+   * @param path a path
+   * @return the innermost scope of the leaf of {@code path}
+   */
+  static ClassScope of(TreePath path) {
+    // Find the innermost declaration, skipping the body of an anonymous class, which is part of
+    // the scope of its new expression.
+    while (!declaresScope(path.getLeaf())
+        || (TreePathUtil.hasClassKind(path.getLeaf())
+            && path.getParentPath().getLeaf() instanceof NewClassTree)) {
+      path = path.getParentPath();
+    }
+    CompilationUnitTree cut = path.getCompilationUnit();
+    Tree tree = path.getLeaf();
+    synchronized (scopes) {
+      Map<Tree, ClassScope> unitScopes = scopes.get(cut);
+      ClassScope scope = unitScopes == null ? null : unitScopes.get(tree);
+      if (scope != null) {
+        return scope;
+      }
+    }
+    // Create the scope without holding the lock, so that other compilation units are not delayed.
+    ClassScope scope = create(path);
+    synchronized (scopes) {
+      ClassScope other =
+          scopes.computeIfAbsent(cut, k -> new IdentityHashMap<>()).putIfAbsent(tree, scope);
+      return other != null ? other : scope;
+    }
+  }
+
+  /**
+   * Creates the scope of the declaration at the leaf of the given path.
+   *
+   * @param path the path to a declaration
+   * @return the scope of the declaration
+   */
+  private static ClassScope create(TreePath path) {
+    Tree tree = path.getLeaf();
+    if (tree.getKind() == Tree.Kind.COMPILATION_UNIT) {
+      ExpressionTree packageTree = ((CompilationUnitTree) tree).getPackageName();
+      return new ClassScope(
+          null, Kind.PACKAGE, null, packageTree == null ? null : packageTree.toString());
+    }
+    ClassScope parent = of(path.getParentPath());
+    switch (tree.getKind()) {
+      case NEW_CLASS:
+        return new ClassScope(parent, Kind.NEW_CLASS, tree, null);
+      case METHOD:
+      case VARIABLE:
+        return new ClassScope(parent, Kind.MEMBER, tree, null);
+      default:
+        // A class, which is not the body of a new expression.
+        // Section 14.3 of the JLS says "every local class declaration
+        // statement is immediately contained by a block".
+        Name simpleName = ((ClassTree) tree).getSimpleName();
+        if (path.getParentPath().getLeaf() instanceof BlockTree) {
+          return new ClassScope(parent, Kind.LOCAL_CLASS, tree, simpleName.toString());
+        } else if (simpleName == null || simpleName.length() == 0) {
+          return new ClassScope(parent, Kind.ANONYMOUS_CLASS, tree, null);
+        } else {
+          return new ClassScope(parent, Kind.CLASS, tree, simpleName.toString());
+        }
+    }
+  }
+
+  /**
+   * Returns true if the given tree is a declaration that has a scope.
+   *
+   * @param tree a tree
+   * @return true if {@code tree} has a scope
+   */
+  private static boolean declaresScope(Tree tree) {
+    switch (tree.getKind()) {
+      case COMPILATION_UNIT:
+      case CLASS:
+      case INTERFACE:
+      case ENUM:
+      case ANNOTATION_TYPE:
+      case NEW_CLASS:
+      case METHOD:
+      case VARIABLE:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * Returns the index of this anonymous or local class, or of the anonymous class created by this
+   * new expression, as computed by {@link AnonymousClassScanner} or {@link LocalClassScanner}.
+   *
+   * @param path a path that goes through the tree of this scope
+   * @return the index of this class among the anonymous classes, or among the local classes with
+   *     the same name, of its enclosing class
+   */
+  synchronized int classIndex(TreePath path) {
+    if (classIndex == 0) {
+      classIndex =
+          kind == Kind.LOCAL_CLASS
+              ? LocalClassScanner.indexOfClassTree(path, (ClassTree) tree)
+              : AnonymousClassScanner.indexOfClassTree(path, tree);
+    }
+    return classIndex;
+  }
+
+  /**
+   * Returns whether the given class name matches this scope, or null if they have not been
+   * compared yet.
+   *
+   * @param className a class name
+   * @param exactMatch if true, the class name must match this scope exactly
+   * @return whether {@code className} matches this scope, or null if that is not yet known
+   */
+  synchronized @Nullable Boolean cachedMatch(String className, boolean exactMatch) {
+    Map<String, Boolean> map = exactMatch ? exactMatches : matches;
+    return map == null ? null : map.get(className);
+  }
+
+  /**
+   * Records whether the given class name matches this scope.
+   *
+   * @param className a class name
+   * @param exactMatch if true, the class name must match this scope exactly
+   * @param match whether {@code className} matches this scope
+   */
+  synchronized void cacheMatch(String className, boolean exactMatch, boolean match) {
+    if (exactMatch) {
+      if (exactMatches == null) {
+        exactMatches = new HashMap<>(4);
+      }
+      exactMatches.put(className, match);
+    } else {
+      if (matches == null) {
+        matches = new HashMap<>(4);
+      }
+      matches.put(className, match);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ClassScope(" + kind + (name == null ? "" : " " + name) + ")";
+  }
+}
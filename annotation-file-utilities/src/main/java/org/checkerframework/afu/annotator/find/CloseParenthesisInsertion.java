@@ -10,6 +10,21 @@ public class CloseParenthesisInsertion extends Insertion {
     super(criteria, separateLine);
   }
 
+  /**
+   * Creates a copy of the given insertion.
+   *
+   * @param other the insertion to copy
+   * @param copier the copier that is copying {@code other}
+   */
+  private CloseParenthesisInsertion(CloseParenthesisInsertion other, InsertionCopier copier) {
+    super(other, copier);
+  }
+
+  @Override
+  CloseParenthesisInsertion copy(InsertionCopier copier) {
+    return new CloseParenthesisInsertion(this, copier);
+  }
+
   @Override
   protected String getText(boolean abbreviate) {
     return "))";
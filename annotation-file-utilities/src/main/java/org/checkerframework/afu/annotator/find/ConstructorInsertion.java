@@ -24,6 +24,25 @@ public class ConstructorInsertion extends TypedInsertion {
     super(type, criteria, true, innerTypeInsertions);
   }
 
+  /**
+   * Creates a copy of the given insertion.
+   *
+   * @param other the insertion to copy
+   * @param copier the copier that is copying {@code other}
+   */
+  private ConstructorInsertion(ConstructorInsertion other, InsertionCopier copier) {
+    super(other, copier);
+    this.receiverInsertion = copier.copyReceiver(other.receiverInsertion);
+    for (Insertion ins : other.declarationInsertions) {
+      this.declarationInsertions.add(copier.copy(ins));
+    }
+  }
+
+  @Override
+  ConstructorInsertion copy(InsertionCopier copier) {
+    return new ConstructorInsertion(this, copier);
+  }
+
   @Override
   protected String getText(boolean abbreviate) {
     StringBuilder b = new StringBuilder();
@@ -4,9 +4,12 @@ import com.google.errorprone.annotations.InlineMe;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import org.checkerframework.afu.annotator.Main;
+import org.checkerframework.afu.annotator.scanner.ClassOffsets;
 import org.checkerframework.afu.scenelib.el.BoundLocation;
 import org.checkerframework.afu.scenelib.el.LocalLocation;
 import org.checkerframework.afu.scenelib.el.RelativeLocation;
@@ -30,11 +33,27 @@ public final class Criteria {
   /** The set of criterion objects, indexed by kind. */
   private final Map<Criterion.Kind, Criterion> criteria;
 
+  /**
+   * The values of {@link #criteria}, in order of increasing {@link Criterion.Kind#cost()}, or null
+   * if they must be sorted again.
+   */
+  private volatile Criterion @Nullable [] criteriaByCost = null;
+
   /** Creates a new {@code Criteria} without any {@code Criterion}. */
   public Criteria() {
     this.criteria = new LinkedHashMap<>();
   }
 
+  /**
+   * Creates a new {@code Criteria} with the same {@code Criterion}s as the given one. Adding to
+   * either does not affect the other.
+   *
+   * @param other the criteria to copy
+   */
+  /*package-protected*/ Criteria(Criteria other) {
+    this.criteria = new LinkedHashMap<>(other.criteria);
+  }
+
   /**
    * Add a {@code Criterion} to this {@code Criteria}.
    *
@@ -42,6 +61,7 @@ public final class Criteria {
    */
   public void add(Criterion c) {
     Criterion old = criteria.put(c.getKind(), c);
+    criteriaByCost = null;
     if (old != null && !c.toString().equals(old.toString())) {
       throw new Error("Overwrote " + c.getKind() + " => " + old + "; new = " + c);
     }
@@ -54,6 +74,27 @@ public final class Criteria {
    */
   /*package-protected*/ void addPermitReplacement(Criterion c) {
     criteria.put(c.getKind(), c);
+    criteriaByCost = null;
+  }
+
+  /**
+   * Returns these criteria in order of increasing cost, so that the cheap ones can reject a tree
+   * before the expensive ones are evaluated. Criteria of equal cost stay in the order in which they
+   * were added. Only evaluation through a {@link CriteriaEvaluator} uses this order; the public
+   * {@code isSatisfiedBy} methods evaluate the criteria in the order in which they were added, as
+   * their callers expect, because a criterion may throw an exception for a tree that an earlier
+   * criterion rejects.
+   *
+   * @return these criteria, cheapest first
+   */
+  private Criterion[] criteriaByCost() {
+    Criterion[] result = criteriaByCost;
+    if (result == null) {
+      result = criteria.values().toArray(new Criterion[0]);
+      Arrays.sort(result, Comparator.comparingInt(c -> c.getKind().cost()));
+      criteriaByCost = result;
+    }
+    return result;
   }
 
   /**
@@ -66,20 +107,42 @@ public final class Criteria {
    * @return true if all of these criteria are satisfied by the given path, false otherwise
    */
   public boolean isSatisfiedBy(TreePath path, Tree leaf) {
+    return isSatisfiedBy(path, leaf, null);
+  }
+
+  /**
+   * Determines whether or not the program element at the leaf of the specified path is satisfied by
+   * these criteria, using the given evaluator, which shares results among the insertions being
+   * placed. With an evaluator, the criteria are evaluated cheapest first; without one, in the order
+   * in which they were added.
+   *
+   * @param path the tree path to check against
+   * @param leaf the tree at the leaf of the path; only relevant when the path is null, in which
+   *     case the leaf is a CompilationUnitTree
+   * @param evaluator the evaluator for the criteria of the insertions being placed, or null to
+   *     evaluate each criterion on its own
+   * @return true if all of these criteria are satisfied by the given path, false otherwise
+   */
+  /*package-protected*/ boolean isSatisfiedBy(
+      TreePath path, Tree leaf, @Nullable CriteriaEvaluator evaluator) {
     if (path == null) {
       return false;
     }
     assert path.getLeaf() == leaf;
-    for (Criterion c : criteria.values()) {
-      if (!c.isSatisfiedBy(path, leaf)) {
-        dbug.debug(
-            "UNsatisfied criterion of type %s [%s]:%n    leaf=%s%n",
-            c, c.getClass(), Main.leafString(path));
-        return false;
-      } else {
-        dbug.debug(
-            "satisfied criterion of type %s [%s]:%n    leaf=%s%n",
-            c, c.getClass(), Main.leafString(path));
+    if (evaluator == null) {
+      for (Criterion c : criteria.values()) {
+        if (!logResult(c, c.isSatisfiedBy(path, leaf), path)) {
+          return false;
+        }
+      }
+    } else {
+      Criterion[] byCost = criteriaByCost();
+      for (int i = 0; i < byCost.length; i++) {
+        Criterion c = byCost[i];
+        if (!logResult(c, evaluator.isSatisfiedBy(c, path), path)) {
+          evaluator.skipped(byCost.length - i - 1);
+          return false;
+        }
       }
     }
 
@@ -90,6 +153,23 @@ public final class Criteria {
     return true;
   }
 
+  /**
+   * Logs whether the given criterion is satisfied by the leaf of the given path.
+   *
+   * @param c a criterion
+   * @param satisfied whether {@code c} is satisfied by the leaf of {@code path}
+   * @param path the tree path that was checked
+   * @return {@code satisfied}
+   */
+  private static boolean logResult(Criterion c, boolean satisfied, TreePath path) {
+    if (dbug.isEnabled()) {
+      dbug.debug(
+          "%s criterion of type %s [%s]:%n    leaf=%s%n",
+          satisfied ? "satisfied" : "UNsatisfied", c, c.getClass(), Main.leafString(path));
+    }
+    return satisfied;
+  }
+
   /**
    * Determines whether or not the program element at the leaf of the specified path is satisfied by
    * these criteria.
@@ -544,36 +624,42 @@ public final class Criteria {
   //    return new ParamCriterion(methodName, pos, loc);
   //  }
 
-  public static final Criterion local(String methodName, LocalLocation loc) {
-    return new LocalVariableCriterion(methodName, loc);
+  public static final Criterion local(String methodName, LocalLocation loc, ClassOffsets offsets) {
+    return new LocalVariableCriterion(methodName, loc, offsets);
   }
 
-  public static final Criterion cast(String methodName, RelativeLocation loc) {
-    return new CastCriterion(methodName, loc);
+  public static final Criterion cast(
+      String methodName, RelativeLocation loc, ClassOffsets offsets) {
+    return new CastCriterion(methodName, loc, offsets);
   }
 
-  public static final Criterion newObject(String methodName, RelativeLocation loc) {
-    return new NewCriterion(methodName, loc);
+  public static final Criterion newObject(
+      String methodName, RelativeLocation loc, ClassOffsets offsets) {
+    return new NewCriterion(methodName, loc, offsets);
   }
 
-  public static final Criterion instanceOf(String methodName, RelativeLocation loc) {
-    return new InstanceOfCriterion(methodName, loc);
+  public static final Criterion instanceOf(
+      String methodName, RelativeLocation loc, ClassOffsets offsets) {
+    return new InstanceOfCriterion(methodName, loc, offsets);
   }
 
-  public static Criterion memberReference(String methodName, RelativeLocation loc) {
-    return new MemberReferenceCriterion(methodName, loc);
+  public static Criterion memberReference(
+      String methodName, RelativeLocation loc, ClassOffsets offsets) {
+    return new MemberReferenceCriterion(methodName, loc, offsets);
   }
 
-  public static Criterion methodCall(String methodName, RelativeLocation loc) {
-    return new CallCriterion(methodName, loc);
+  public static Criterion methodCall(
+      String methodName, RelativeLocation loc, ClassOffsets offsets) {
+    return new CallCriterion(methodName, loc, offsets);
   }
 
   public static final Criterion typeArgument(String methodName, RelativeLocation loc) {
     return new TypeArgumentCriterion(methodName, loc);
   }
 
-  public static final Criterion lambda(String methodName, RelativeLocation loc) {
-    return new LambdaCriterion(methodName, loc);
+  public static final Criterion lambda(
+      String methodName, RelativeLocation loc, ClassOffsets offsets) {
+    return new LambdaCriterion(methodName, loc, offsets);
   }
 
   public static final Criterion atBoundLocation(BoundLocation loc) {
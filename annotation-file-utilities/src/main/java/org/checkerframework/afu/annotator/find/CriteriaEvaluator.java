@@ -0,0 +1,104 @@
+package org.checkerframework.afu.annotator.find;
+
+import com.sun.source.tree.Tree;
+import com.sun.source.util.TreePath;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.afu.scenelib.io.DebugWriter;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Evaluates the criteria of the insertions given to {@link TreeFinder#getInsertionsByPosition}, at
+ * each tree that {@link TreeFinder} visits.
+ *
+ * <p>Many insertions have equal criteria, such as the same {@link InClassCriterion} or {@link
+ * InMethodCriterion}, so each criterion is evaluated only once per tree, and the result is reused
+ * for every other insertion with an equal criterion. An {@link ASTPathCriterion} is instead given
+ * to an {@link ASTPathMatcher}, which matches the AST paths of all the insertions at once.
+ *
+ * <p>An evaluator also counts the criteria that it evaluated, those whose results it reused, and
+ * those that {@link Criteria} did not need to evaluate because a cheaper criterion was not
+ * satisfied.
+ */
+final class CriteriaEvaluator {
+
+  /** The matcher for the AST paths of the insertions. */
+  private final ASTPathMatcher astPaths;
+
+  /** Where to warn about an insertion that is not allowed. */
+  private final DebugWriter warn;
+
+  /** The tree at which {@link #results} were computed, or null if none have been. */
+  private @Nullable Tree leaf = null;
+
+  /** Whether each criterion that has been evaluated at {@link #leaf} is satisfied. */
+  private final Map<Criterion, Boolean> results = new HashMap<>();
+
+  /** The number of criteria that have been evaluated. */
+  private long evaluated = 0;
+
+  /** The number of criteria whose results were reused instead of being evaluated. */
+  private long reused = 0;
+
+  /** The number of criteria that were not evaluated because a cheaper one was not satisfied. */
+  private long skipped = 0;
+
+  /**
+   * Creates an evaluator for the criteria of the given insertions.
+   *
+   * @param insertions the insertions to be placed
+   * @param warn where to warn about an insertion that is not allowed
+   */
+  CriteriaEvaluator(List<Insertion> insertions, DebugWriter warn) {
+    this.warn = warn;
+    astPaths = new ASTPathMatcher(insertions, warn);
+  }
+
+  /**
+   * Determines whether the given criterion is satisfied by the given path, reusing the result for
+   * an equal criterion if one has been evaluated at the same tree.
+   *
+   * @param c a criterion
+   * @param path the path to a tree
+   * @return true if {@code c} is satisfied by {@code path}
+   */
+  boolean isSatisfiedBy(Criterion c, TreePath path) {
+    if (c.getKind() == Criterion.Kind.AST_PATH) {
+      evaluated++;
+      return astPaths.isSatisfiedBy((ASTPathCriterion) c, path);
+    }
+    Tree tree = path.getLeaf();
+    if (tree != leaf) {
+      leaf = tree;
+      results.clear();
+    }
+    Boolean result = results.get(c);
+    if (result != null) {
+      reused++;
+      return result;
+    }
+    evaluated++;
+    boolean satisfied =
+        c.getKind() == Criterion.Kind.GENERIC_ARRAY_LOCATION
+            ? ((GenericArrayLocationCriterion) c).isSatisfiedBy(path, warn)
+            : c.isSatisfiedBy(path, tree);
+    results.put(c, satisfied);
+    return satisfied;
+  }
+
+  /**
+   * Records that some criteria were not evaluated, because a cheaper one was not satisfied.
+   *
+   * @param count the number of criteria that were not evaluated
+   */
+  void skipped(int count) {
+    skipped += count;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "CriteriaEvaluator(%d evaluated, %d reused, %d skipped)", evaluated, reused, skipped);
+  }
+}
@@ -10,50 +10,81 @@ import com.sun.source.util.TreePath;
  */
 public interface Criterion {
 
-  /** Types of criterion. */
+  /**
+   * Types of criterion.
+   *
+   * <p>Each kind has a rough cost of evaluating a criterion of that kind: 0 if it examines only the
+   * leaf and its nearby ancestors, 1 if it walks to an enclosing declaration, 2 if it also compares
+   * a method signature, and 3 if it scans a method or class body or walks a type path. {@link
+   * Criteria} evaluates the cheapest criteria first, so that they can reject a tree before the
+   * expensive ones are evaluated.
+   */
   public static enum Kind {
-    IN_METHOD,
+    IN_METHOD(2),
     /*
      * Used for classes, interfaces, enums, annotation types.
      * What would be a better name?
      * Also see Criteria.isClassEquiv
      */
-    IN_CLASS,
-    ENCLOSED_BY,
-    HAS_KIND,
-    NOT_IN_METHOD,
-    TYPE_PARAM,
-    GENERIC_ARRAY_LOCATION,
-    RECEIVER,
-    RETURN_TYPE,
-    SIG_METHOD,
-    PARAM,
-    CAST,
-    LOCAL_VARIABLE,
-    FIELD,
-    NEW,
-    INSTANCE_OF,
-    TYPE_ARGUMENT,
-    METHOD_CALL,
-    METHOD_REFERENCE,
-    LAMBDA_EXPRESSION,
-    BOUND_LOCATION,
-    EXTIMPLS_LOCATION,
-    INTERSECT_LOCATION,
-    METHOD_BOUND,
-    CLASS_BOUND,
-    IN_PACKAGE,
-    AST_PATH,
-    IN_STATIC_INIT,
-    IN_INSTANCE_INIT,
-    IN_FIELD_INIT,
+    IN_CLASS(1),
+    ENCLOSED_BY(1),
+    HAS_KIND(0),
+    NOT_IN_METHOD(1),
+    TYPE_PARAM(0),
+    GENERIC_ARRAY_LOCATION(3),
+    RECEIVER(2),
+    RETURN_TYPE(2),
+    SIG_METHOD(2),
+    PARAM(1),
+    CAST(3),
+    LOCAL_VARIABLE(3),
+    FIELD(2),
+    NEW(3),
+    INSTANCE_OF(3),
+    TYPE_ARGUMENT(3),
+    METHOD_CALL(3),
+    METHOD_REFERENCE(3),
+    LAMBDA_EXPRESSION(3),
+    BOUND_LOCATION(1),
+    EXTIMPLS_LOCATION(0),
+    INTERSECT_LOCATION(0),
+    METHOD_BOUND(2),
+    CLASS_BOUND(1),
+    IN_PACKAGE(1),
+    // Expensive on its own, but TreeFinder matches the AST paths of all insertions together, in one
+    // walk per tree, so that the result for each insertion is just a lookup.
+    AST_PATH(0),
+    IN_STATIC_INIT(3),
+    IN_INSTANCE_INIT(3),
+    IN_FIELD_INIT(2),
     /*
      * This constant is never used. What is the difference to IN_CLASS?
      * Is one for anywhere within a class and this one only for the
      * class declaration itself?
      */
-    CLASS,
-    PACKAGE;
+    CLASS(0),
+    PACKAGE(0);
+
+    /** The rough cost of evaluating a criterion of this kind, from 0 (cheapest) to 3. */
+    private final int cost;
+
+    /**
+     * Creates a kind of criterion.
+     *
+     * @param cost the rough cost of evaluating a criterion of this kind, from 0 (cheapest) to 3
+     */
+    Kind(int cost) {
+      this.cost = cost;
+    }
+
+    /**
+     * Returns the rough cost of evaluating a criterion of this kind.
+     *
+     * @return the rough cost of evaluating a criterion of this kind, from 0 (cheapest) to 3
+     */
+    public int cost() {
+      return cost;
+    }
   }
 
   /**
@@ -0,0 +1,65 @@
+package org.checkerframework.afu.annotator.find;
+
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A pool of canonical {@link Criterion}s. Interning a criterion returns the criterion in the pool
+ * that equals it, or adds the criterion to the pool and returns it if there is none. Thus, when
+ * many insertions have equal criteria, such as the insertions within one method or those at the
+ * same AST path in different methods, they all refer to a single object, and comparing two of the
+ * criteria is usually a comparison of references.
+ *
+ * <p>Only the kinds of criteria that are immutable and compare their contents in {@code equals}
+ * are interned; any other criterion is returned as is. {@link Criteria} are not interned, because
+ * {@link Insertions} changes the criteria of an insertion after it is created.
+ */
+public final class CriterionInterner {
+
+  /** The kinds of criteria that are interned. */
+  private static final Set<Criterion.Kind> INTERNED_KINDS =
+      EnumSet.of(
+          Criterion.Kind.IN_CLASS,
+          Criterion.Kind.IN_METHOD,
+          Criterion.Kind.NOT_IN_METHOD,
+          Criterion.Kind.SIG_METHOD,
+          Criterion.Kind.HAS_KIND,
+          Criterion.Kind.IN_PACKAGE,
+          Criterion.Kind.ENCLOSED_BY,
+          Criterion.Kind.GENERIC_ARRAY_LOCATION,
+          Criterion.Kind.AST_PATH);
+
+  /** The canonical criteria. Each is both a key and its value. */
+  private final Map<Criterion, Criterion> criteria = new HashMap<>();
+
+  /**
+   * Returns the canonical criterion that equals the given one, or the given criterion if its kind
+   * is not interned.
+   *
+   * @param c a criterion
+   * @return the criterion in this pool that equals {@code c}, or {@code c}
+   */
+  public Criterion intern(Criterion c) {
+    if (!INTERNED_KINDS.contains(c.getKind())) {
+      return c;
+    }
+    Criterion canonical = criteria.putIfAbsent(c, c);
+    return canonical != null ? canonical : c;
+  }
+
+  /**
+   * Returns the number of canonical criteria in this pool.
+   *
+   * @return the number of canonical criteria in this pool
+   */
+  public int size() {
+    return criteria.size();
+  }
+
+  @Override
+  public String toString() {
+    return "CriterionInterner(" + criteria.size() + " criteria)";
+  }
+}
@@ -49,6 +49,20 @@ final class EnclosedByCriterion implements Criterion {
     return false;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof EnclosedByCriterion)) {
+      return false;
+    }
+    EnclosedByCriterion other = (EnclosedByCriterion) o;
+    return kind == other.kind;
+  }
+
+  @Override
+  public int hashCode() {
+    return kind.hashCode();
+  }
+
   @Override
   public String toString() {
     return "enclosed by '" + kind + "'";
@@ -20,9 +20,11 @@ import com.sun.tools.javac.tree.JCTree.JCFieldAccess;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Objects;
 import javax.lang.model.type.TypeKind;
 import org.checkerframework.afu.annotator.Main;
 import org.checkerframework.afu.scenelib.el.TypePathEntry;
+import org.checkerframework.afu.scenelib.io.DebugWriter;
 import org.objectweb.asm.TypePath;
 
 /**
@@ -111,6 +113,17 @@ public class GenericArrayLocationCriterion implements Criterion {
 
   @Override
   public boolean isSatisfiedBy(TreePath path) {
+    return isSatisfiedBy(path, TreeFinder.warn);
+  }
+
+  /**
+   * Determines if the given tree path is matched by this criterion.
+   *
+   * @param path the tree path to test
+   * @param warn where to warn about a wildcard bound that is not allowed
+   * @return true if {@code path} is matched by this criterion
+   */
+  boolean isSatisfiedBy(TreePath path, DebugWriter warn) {
     if (path == null || path.getParentPath() == null) {
       if (debug) {
         System.out.println(
@@ -201,7 +214,8 @@ public class GenericArrayLocationCriterion implements Criterion {
               || (leaf instanceof NewClassTree)
               || (leaf instanceof AnnotatedTypeTree
                   && isSatisfiedBy(
-                      TreePath.getPath(path, ((AnnotatedTypeTree) leaf).getUnderlyingType())))
+                      TreePath.getPath(path, ((AnnotatedTypeTree) leaf).getUnderlyingType()),
+                      warn))
               || ((isGenericOrArray(leaf)
                       // or, it might be a raw type
                       || (leaf instanceof IdentifierTree)
@@ -311,14 +325,14 @@ public class GenericArrayLocationCriterion implements Criterion {
         if (gpath != null) { // TODO: skip over existing annotations?
           Tree gparent = gpath.getLeaf();
           if (gparent instanceof InstanceOfTree) {
-            TreeFinder.warn.debug(
+            warn.debug(
                 "WARNING: wildcard bounds not allowed "
                     + "in 'instanceof' expression; skipping insertion%n");
             return false;
           } else if (gparent instanceof ParameterizedTypeTree) {
             gpath = gpath.getParentPath();
             if (gpath != null && gpath.getLeaf() instanceof ArrayTypeTree) {
-              TreeFinder.warn.debug(
+              warn.debug(
                   "WARNING: wildcard bounds not allowed "
                       + "in generic array type; skipping insertion%n");
               return false;
@@ -551,6 +565,31 @@ public class GenericArrayLocationCriterion implements Criterion {
     return Criterion.Kind.GENERIC_ARRAY_LOCATION;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof GenericArrayLocationCriterion)) {
+      return false;
+    }
+    GenericArrayLocationCriterion other = (GenericArrayLocationCriterion) o;
+    return Objects.equals(location, other.location)
+        && Objects.equals(typePathString(), other.typePathString());
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(location, typePathString());
+  }
+
+  /**
+   * Returns the string form of {@link #typePath}, which {@link #equals} and {@link #hashCode}
+   * compare because {@link TypePath} does not implement them.
+   *
+   * @return the string form of {@link #typePath}, or null if it is null
+   */
+  private String typePathString() {
+    return typePath == null ? null : typePath.toString();
+  }
+
   @Override
   public String toString() {
     return "GenericArrayLocationCriterion at "
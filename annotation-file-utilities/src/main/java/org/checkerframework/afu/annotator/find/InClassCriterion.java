@@ -1,20 +1,10 @@
 package org.checkerframework.afu.annotator.find;
 
-import com.sun.source.tree.BlockTree;
-import com.sun.source.tree.ClassTree;
-import com.sun.source.tree.CompilationUnitTree;
-import com.sun.source.tree.ExpressionTree;
 import com.sun.source.tree.NewClassTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import javax.lang.model.element.Name;
-import org.checkerframework.afu.annotator.scanner.AnonymousClassScanner;
-import org.checkerframework.afu.annotator.scanner.LocalClassScanner;
 import org.checkerframework.checker.formatter.qual.FormatMethod;
 import org.checkerframework.checker.signature.qual.ClassGetName;
 
@@ -84,32 +74,48 @@ public final class InClassCriterion implements Criterion {
     if (path == null) {
       return false;
     }
+    ClassScope scope = ClassScope.of(path);
+    if (debug) {
+      return matches(scope, path, className, exactMatch);
+    }
+    Boolean match = scope.cachedMatch(className, exactMatch);
+    if (match == null) {
+      match = matches(scope, path, className, exactMatch);
+      scope.cacheMatch(className, exactMatch, match);
+    }
+    return match;
+  }
 
+  /**
+   * Determines whether the given class name matches the declarations that enclose the leaf of the
+   * given path.
+   *
+   * @param scope the innermost scope of the leaf of {@code path}
+   * @param path the path to the tree being tested
+   * @param className the class name
+   * @param exactMatch if true, require an exact match
+   * @return true if the leaf of {@code path} is in the class named {@code className}
+   */
+  private static boolean matches(
+      ClassScope scope, TreePath path, String className, boolean exactMatch) {
     // However much of the class name remains to match.
     String cname = className;
 
     // It is wrong to work from the leaf up to the root of the tree, which
     // would fail if the criterion is a.second.c and the actual is a.second.c.c.
-    List<Tree> trees = new ArrayList<>();
-    for (Tree tree : path) {
-      trees.add(tree);
-    }
-    Collections.reverse(trees);
-
     boolean insideMatch = false;
-    for (int i = 0; i < trees.size(); i++) {
-      Tree tree = trees.get(i);
+    for (ClassScope s : scope.chain) {
+      Tree tree = s.tree == null ? path.getCompilationUnit() : s.tree;
       boolean checkAnon = false;
       boolean checkLocal = false;
 
-      switch (tree.getKind()) {
-        case COMPILATION_UNIT:
+      switch (s.kind) {
+        case PACKAGE:
           debug("InClassCriterion.isSatisfiedBy:%n  cname=%s%n  tree=%s%n", cname, tree);
-          ExpressionTree packageTree = ((CompilationUnitTree) tree).getPackageName();
-          if (packageTree == null) {
+          if (s.name == null) {
             // compilation unit is in default package; nothing to do
           } else {
-            String declaredPackage = packageTree.toString();
+            String declaredPackage = s.name;
             if (cname.startsWith(declaredPackage + ".")) {
               cname = cname.substring(declaredPackage.length() + 1);
             } else {
@@ -121,41 +127,23 @@ public final class InClassCriterion implements Criterion {
             }
           }
           break;
+        case LOCAL_CLASS:
+          debug("InClassCriterion.isSatisfiedBy:%n  cname=%s%n  tree=%s%n", cname, tree);
+          checkLocal = true;
+          debug(
+              "found local class: InClassCriterion.isSatisfiedBy:%n  cname=%s%n  tree=%s%n",
+              cname, tree);
+          break;
+        case ANONYMOUS_CLASS:
+          debug("InClassCriterion.isSatisfiedBy:%n  cname=%s%n  tree=%s%n", cname, tree);
+          debug(
+              "empty getSimpleName: InClassCriterion.isSatisfiedBy:%n  cname=%s%n  tree=%s%n",
+              cname, tree);
+          checkAnon = true;
+          break;
         case CLASS:
-        case INTERFACE:
-        case ENUM:
-        case ANNOTATION_TYPE:
-          if (i > 0 && trees.get(i - 1) instanceof NewClassTree) {
-            // For an anonymous class, the CLASS tree is always directly inside of
-            // a NEW_CLASS tree. If that's the case here then skip this iteration
-            // since we've already looked at the new class tree in the previous
-            // iteration.
-            break;
-          }
           debug("InClassCriterion.isSatisfiedBy:%n  cname=%s%n  tree=%s%n", cname, tree);
-
-          if (i > 0 && trees.get(i - 1) instanceof BlockTree) {
-            // Section 14.3 of the JLS says "every local class declaration
-            // statement is immediately contained by a block".
-            checkLocal = true;
-            debug(
-                "found local class: InClassCriterion.isSatisfiedBy:%n  cname=%s%n  tree=%s%n",
-                cname, tree);
-            break;
-          }
-
-          // all four Kinds are represented by ClassTree
-          ClassTree c = (ClassTree) tree;
-          Name csn = c.getSimpleName();
-
-          if (csn == null || csn.length() == 0) {
-            debug(
-                "empty getSimpleName: InClassCriterion.isSatisfiedBy:%n  cname=%s%n  tree=%s%n",
-                cname, tree);
-            checkAnon = true;
-            break;
-          }
-          String treeClassName = csn.toString();
+          String treeClassName = s.name;
           if (cname.equals(treeClassName)) {
             if (exactMatch) {
               cname = "";
@@ -166,8 +154,7 @@ public final class InClassCriterion implements Criterion {
           } else if (cname.startsWith(treeClassName + "$")
               || cname.startsWith(treeClassName + ".")) {
             cname = cname.substring(treeClassName.length() + 1);
-          } else if (!treeClassName.isEmpty()) {
-            // treeClassName is empty for anonymous inner class
+          } else {
             // System.out.println("cname else: " + cname);
             debug("false InClassCriterion.isSatisfiedBy:%n  cname=%s%n  tree=%s%n", cname, tree);
             return false;
@@ -185,8 +172,7 @@ public final class InClassCriterion implements Criterion {
             checkAnon = nc.getClassBody() != null;
           }
           break;
-        case METHOD:
-        case VARIABLE:
+        case MEMBER:
           // Avoid searching inside inner classes of the matching class,
           // lest a homographic inner class lead to a spurious match.
           if (insideMatch) {
@@ -194,9 +180,6 @@ public final class InClassCriterion implements Criterion {
             return false;
           }
           break;
-        default:
-          // nothing to do
-          break;
       }
 
       if (checkAnon) {
@@ -224,7 +207,7 @@ public final class InClassCriterion implements Criterion {
           throw new Error("This can't happen: " + cname + "$" + anonclassNumString, e);
         }
 
-        int actualIndexInSource = AnonymousClassScanner.indexOfClassTree(path, tree);
+        int actualIndexInSource = s.classIndex(path);
 
         if (anonclassNum != actualIndexInSource) {
           debug(
@@ -233,8 +216,7 @@ public final class InClassCriterion implements Criterion {
           return false;
         }
       } else if (checkLocal) {
-        ClassTree c = (ClassTree) tree;
-        String treeClassName = c.getSimpleName().toString();
+        String treeClassName = s.name;
 
         Matcher localClassMatcher = localClassPattern.matcher(cname);
         if (!localClassMatcher.matches()) {
@@ -247,7 +229,7 @@ public final class InClassCriterion implements Criterion {
         String localClassName = localClassMatcher.group(2);
         int localClassNum = Integer.parseInt(localClassNumString);
 
-        int actualIndexInSource = LocalClassScanner.indexOfClassTree(path, c);
+        int actualIndexInSource = s.classIndex(path);
 
         if (actualIndexInSource == localClassNum && treeClassName.startsWith(localClassName)) {
           cname = localClassMatcher.group(4);
@@ -274,6 +256,20 @@ public final class InClassCriterion implements Criterion {
     return false;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof InClassCriterion)) {
+      return false;
+    }
+    InClassCriterion other = (InClassCriterion) o;
+    return className.equals(other.className) && exactMatch == other.exactMatch;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * className.hashCode() + Boolean.hashCode(exactMatch);
+  }
+
   @Override
   public String toString() {
     return "In class '" + className + "'" + (exactMatch ? " (exactly)" : "");
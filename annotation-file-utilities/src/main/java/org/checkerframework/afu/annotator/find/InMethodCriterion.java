@@ -45,8 +45,10 @@ final class InMethodCriterion implements Criterion {
 
   @Override
   public boolean isSatisfiedBy(TreePath path) {
-    Criteria.dbug.debug(
-        "InMethodCriterion.isSatisfiedBy(%s); this=%s%n", Main.leafString(path), this.toString());
+    if (Criteria.dbug.isEnabled()) {
+      Criteria.dbug.debug(
+          "InMethodCriterion.isSatisfiedBy(%s); this=%s%n", Main.leafString(path), this);
+    }
 
     // true if the argument is within a variable declaration's initializer expression.
     boolean inDecl = false;
@@ -85,6 +87,20 @@ final class InMethodCriterion implements Criterion {
     return false;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof InMethodCriterion)) {
+      return false;
+    }
+    InMethodCriterion other = (InMethodCriterion) o;
+    return name.equals(other.name);
+  }
+
+  @Override
+  public int hashCode() {
+    return name.hashCode();
+  }
+
   @Override
   public String toString() {
     return "in method '" + name + "'";
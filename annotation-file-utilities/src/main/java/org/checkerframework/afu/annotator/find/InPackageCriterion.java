@@ -4,6 +4,7 @@ import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.tree.ExpressionTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
+import java.util.Objects;
 import org.checkerframework.afu.annotator.Main;
 
 /** Represents the criterion that a program element is in a package with a certain name. */
@@ -35,8 +36,10 @@ final class InPackageCriterion implements Criterion {
       return false;
     }
 
-    Criteria.dbug.debug(
-        "InPackageCriterion.isSatisfiedBy(%s); this=%s", Main.leafString(path), this.toString());
+    if (Criteria.dbug.isEnabled()) {
+      Criteria.dbug.debug(
+          "InPackageCriterion.isSatisfiedBy(%s); this=%s", Main.leafString(path), this);
+    }
 
     do {
       Tree tree = path.getLeaf();
@@ -62,6 +65,20 @@ final class InPackageCriterion implements Criterion {
     return false;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof InPackageCriterion)) {
+      return false;
+    }
+    InPackageCriterion other = (InPackageCriterion) o;
+    return Objects.equals(name, other.name);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(name);
+  }
+
   @Override
   public String toString() {
     return "in package '" + name + "'";
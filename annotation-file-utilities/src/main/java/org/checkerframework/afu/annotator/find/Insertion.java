@@ -1,6 +1,7 @@
 package org.checkerframework.afu.annotator.find;
 
 import com.sun.source.tree.Tree;
+import java.io.PrintStream;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
@@ -53,6 +54,9 @@ public abstract class Insertion {
    */
   protected static Set<String> alwaysQualify = new LinkedHashSet<>();
 
+  /** The insertion that this one is a copy of, or this insertion itself if it is not a copy. */
+  private final Insertion original;
+
   /**
    * Creates a new insertion.
    *
@@ -64,6 +68,41 @@ public abstract class Insertion {
     this.separateLine = separateLine;
     this.packageNames = new LinkedHashSet<String>();
     this.inserted = false;
+    this.original = this;
+  }
+
+  /**
+   * Creates a copy of the given insertion, whose {@link Criteria} is a copy made by the given
+   * copier.
+   *
+   * @param other the insertion to copy
+   * @param copier the copier that is copying {@code other}
+   */
+  Insertion(Insertion other, InsertionCopier copier) {
+    this.criteria = copier.copy(other.criteria);
+    this.separateLine = other.separateLine;
+    this.packageNames = new LinkedHashSet<String>(other.packageNames);
+    this.inserted = other.inserted;
+    this.original = other.original;
+  }
+
+  /**
+   * Returns a copy of this insertion. Insertions that this one refers to, and the objects that
+   * placing this insertion modifies, are copied by {@code copier}.
+   *
+   * @param copier the copier that is copying this insertion
+   * @return a copy of this insertion
+   */
+  abstract Insertion copy(InsertionCopier copier);
+
+  /**
+   * Returns the insertion that this one is a copy of, or this insertion itself if it is not a copy.
+   * {@link Insertions#forOuterClass} returns copies.
+   *
+   * @return the insertion that this one is a copy of
+   */
+  public Insertion getOriginal() {
+    return original;
   }
 
   /**
@@ -383,6 +422,23 @@ public abstract class Insertion {
 
   public static void decorateType(
       List<Insertion> innerTypeInsertions, final Type outerType, ASTPath outerPath) {
+    decorateType(innerTypeInsertions, outerType, outerPath, System.err);
+  }
+
+  /**
+   * Adds each of the given inner type insertions to the correct part of the type, based on the
+   * insertion's type path, and reports any that cannot be added.
+   *
+   * @param innerTypeInsertions the insertions to add to the type
+   * @param outerType the type to add the insertions to
+   * @param outerPath the AST path of the type, or null
+   * @param err where to report an insertion that cannot be added
+   */
+  static void decorateType(
+      List<Insertion> innerTypeInsertions,
+      final Type outerType,
+      ASTPath outerPath,
+      PrintStream err) {
     for (Insertion innerInsertion : innerTypeInsertions) {
       // Set each annotation as inserted (even if it doesn't actually get
       // inserted because of an error) to "disable" the insertion in the global
@@ -466,7 +522,7 @@ public abstract class Insertion {
         }
         type.addAnnotation(annos);
       } catch (Throwable e) {
-        TreeFinder.reportInsertionError(innerInsertion, e);
+        TreeFinder.reportInsertionError(innerInsertion, e, err);
       }
     }
   }
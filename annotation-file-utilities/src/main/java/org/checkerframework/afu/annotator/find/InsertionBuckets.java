@@ -0,0 +1,306 @@
+package org.checkerframework.afu.annotator.find;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import org.checkerframework.afu.annotator.scanner.TreePathUtil;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The insertions that {@link TreeFinder} has not yet placed, bucketed by the method or field that
+ * their criteria require them to be in.
+ *
+ * <p>Without this index, every pending insertion is tested against every tree node. With it, a
+ * node is tested only against the insertions whose bucket key is consistent with the node's
+ * position in the AST. A bucket key is a necessary but not sufficient condition for a match, so
+ * the full {@link Criteria} are still evaluated for each candidate:
+ *
+ * <ul>
+ *   <li>An insertion with an {@link InMethodCriterion} can only match within (or at) a method with
+ *       the same simple name, because that criterion is evaluated against the innermost enclosing
+ *       method. Insertions for {@code <init>()V} and {@code <clinit>()V} can also match within
+ *       initializers that are not enclosed by any method.
+ *   <li>An insertion with a {@link FieldCriterion} can only match within (or at) a variable (or
+ *       class) declaration with the same name.
+ *   <li>Every other insertion is a candidate at every node.
+ * </ul>
+ *
+ * Candidates are returned in the order in which the insertions were given, so the results are the
+ * same as when testing every insertion at every node.
+ *
+ * <p>The keys of a path are computed from those of its parent path, and remembered, so a lookup
+ * does not walk the whole path. This relies on the paths sharing their parent paths, as the paths
+ * of an {@link org.checkerframework.afu.scenelib.io.ASTIndex} do.
+ */
+final class InsertionBuckets {
+
+  /** All the insertions, in the order given to the constructor. */
+  private final Insertion[] insertions;
+
+  /** For each element of {@link #insertions}, whether it has been removed. */
+  private final boolean[] removed;
+
+  /** The number of insertions that have not been removed. */
+  private int size;
+
+  /** Maps a simple method name to the indices of the insertions that must be in such a method. */
+  private final Map<String, List<Integer>> byMethod = new HashMap<>();
+
+  /** The indices of the insertions for initializer code that need not be in any method. */
+  private final List<Integer> outsideMethods = new ArrayList<>();
+
+  /** Maps a field name to the indices of the insertions that must be in that field. */
+  private final Map<String, List<Integer>> byField = new HashMap<>();
+
+  /** The indices of the insertions that are candidates at every node. */
+  private final List<Integer> unkeyed = new ArrayList<>();
+
+  /** The keys of the paths that have been looked up, and of their ancestors. */
+  private final Map<TreePath, PathKeys> pathKeys = new IdentityHashMap<>();
+
+  /** The indices of the current candidates; the first {@link CandidateIterator#count} are used. */
+  private final int[] scratch;
+
+  /** The iterator over the current candidates, which every lookup reuses. */
+  private final CandidateIterator iterator = new CandidateIterator();
+
+  /**
+   * Creates an index of the given insertions.
+   *
+   * @param insertions the insertions to be placed, in the order in which they should be tested
+   */
+  InsertionBuckets(List<Insertion> insertions) {
+    this.insertions = insertions.toArray(new Insertion[0]);
+    this.removed = new boolean[this.insertions.length];
+    this.size = this.insertions.length;
+    this.scratch = new int[this.insertions.length];
+    for (int ix = 0; ix < this.insertions.length; ix++) {
+      Criteria criteria = this.insertions[ix].getCriteria();
+      String methodName = criteria.getMethodName();
+      String fieldName = criteria.getFieldName();
+      if (methodName != null) {
+        String simpleName = methodName.substring(0, methodName.indexOf('('));
+        byMethod.computeIfAbsent(simpleName, k -> new ArrayList<>()).add(ix);
+        if (methodName.equals("<init>()V") || methodName.equals("<clinit>()V")) {
+          outsideMethods.add(ix);
+        }
+      } else if (fieldName != null && fieldName.indexOf('$') < 0 && fieldName.indexOf('.') < 0) {
+        // A dollar sign or a period may match a nested class, via IsCriterion.
+        byField.computeIfAbsent(fieldName, k -> new ArrayList<>()).add(ix);
+      } else {
+        unkeyed.add(ix);
+      }
+    }
+  }
+
+  /**
+   * Returns true if every insertion has been removed.
+   *
+   * @return true if every insertion has been removed
+   */
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the number of insertions that have not been removed.
+   *
+   * @return the number of insertions that have not been removed
+   */
+  int size() {
+    return size;
+  }
+
+  /**
+   * Returns the insertions that have been neither removed nor inserted, in the order given to the
+   * constructor.
+   *
+   * @return the insertions that have not been placed
+   */
+  List<Insertion> remaining() {
+    List<Insertion> result = new ArrayList<>(size);
+    for (int ix = 0; ix < insertions.length; ix++) {
+      if (!removed[ix] && !insertions[ix].isInserted()) {
+        result.add(insertions[ix]);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the insertions that might match the leaf of the given path, in the order given to the
+   * constructor. The iterator's {@code remove} method removes an insertion from this index. The
+   * iterator is reused, so it must not be used after the next call to this method.
+   *
+   * @param path the path to a tree node, or null
+   * @return the insertions that might match the leaf of {@code path}
+   */
+  Iterator<Insertion> candidates(TreePath path) {
+    int count = 0;
+    if (path == null) {
+      // Cannot compute keys, so consider every insertion.
+      for (int ix = 0; ix < insertions.length; ix++) {
+        if (!removed[ix]) {
+          scratch[count++] = ix;
+        }
+      }
+    } else {
+      PathKeys keys = keysOf(path);
+      count = addCandidates(unkeyed, count);
+      List<Integer> methodBucket =
+          keys.methodName == null ? outsideMethods : byMethod.get(keys.methodName);
+      if (methodBucket != null) {
+        count = addCandidates(methodBucket, count);
+      }
+      for (String name : keys.fieldNames) {
+        count = addCandidates(byField.get(name), count);
+      }
+      // The buckets are disjoint, so there are no duplicates to remove.
+      Arrays.sort(scratch, 0, count);
+    }
+    iterator.reset(count);
+    return iterator;
+  }
+
+  /**
+   * Appends the indices in the given bucket of the insertions that have not been removed to {@link
+   * #scratch}.
+   *
+   * @param bucket the indices of some insertions
+   * @param count the number of indices already in {@link #scratch}
+   * @return the number of indices in {@link #scratch}
+   */
+  private int addCandidates(List<Integer> bucket, int count) {
+    for (int ix : bucket) {
+      if (!removed[ix]) {
+        scratch[count++] = ix;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Returns the keys of the given path, computing them from those of its parent path if they have
+   * not been computed yet.
+   *
+   * @param path the path to a tree node
+   * @return the keys of {@code path}
+   */
+  private PathKeys keysOf(TreePath path) {
+    PathKeys keys = pathKeys.get(path);
+    if (keys == null) {
+      TreePath parentPath = path.getParentPath();
+      PathKeys parent = parentPath == null ? PathKeys.NONE : keysOf(parentPath);
+      Tree leaf = path.getLeaf();
+      String declName = null;
+      if (leaf instanceof MethodTree) {
+        keys = new PathKeys(((MethodTree) leaf).getName().toString(), parent.fieldNames);
+      } else if (leaf instanceof VariableTree) {
+        declName = ((VariableTree) leaf).getName().toString();
+      } else if (TreePathUtil.hasClassKind(leaf)) {
+        declName = ((ClassTree) leaf).getSimpleName().toString();
+      }
+      if (keys == null) {
+        if (declName != null
+            && byField.containsKey(declName)
+            && !parent.fieldNames.contains(declName)) {
+          List<String> fieldNames = new ArrayList<>(parent.fieldNames.size() + 1);
+          fieldNames.addAll(parent.fieldNames);
+          fieldNames.add(declName);
+          keys = new PathKeys(parent.methodName, fieldNames);
+        } else {
+          keys = parent;
+        }
+      }
+      pathKeys.put(path, keys);
+    }
+    return keys;
+  }
+
+  /** The bucket keys of a path, which select the insertions that might match its leaf. */
+  private static final class PathKeys {
+    /** The keys of the empty path. */
+    static final PathKeys NONE = new PathKeys(null, Collections.emptyList());
+
+    /** The simple name of the innermost method on the path, or null if there is none. */
+    final @Nullable String methodName;
+
+    /**
+     * The distinct names of the variable and class declarations on the path that are keys of
+     * {@link InsertionBuckets#byField}.
+     */
+    final List<String> fieldNames;
+
+    /**
+     * Creates a new PathKeys.
+     *
+     * @param methodName the simple name of the innermost method on the path, or null
+     * @param fieldNames the distinct names of the declarations on the path that are bucket keys
+     */
+    PathKeys(@Nullable String methodName, List<String> fieldNames) {
+      this.methodName = methodName;
+      this.fieldNames = fieldNames;
+    }
+  }
+
+  /** Iterates over the candidate insertions, given by their indices in {@link #scratch}. */
+  private class CandidateIterator implements Iterator<Insertion> {
+    /** The number of candidates in {@link #scratch}. */
+    private int count = 0;
+
+    /** The position in {@link #scratch} of the next candidate. */
+    private int next = 0;
+
+    /** The index of the candidate most recently returned by {@link #next}, or -1. */
+    private int last = -1;
+
+    /**
+     * Starts iterating over new candidates.
+     *
+     * @param count the number of candidates in {@link #scratch}, in increasing order
+     */
+    void reset(int count) {
+      this.count = count;
+      this.next = 0;
+      this.last = -1;
+    }
+
+    @Override
+    public boolean hasNext() {
+      // Skip candidates that were removed after this iterator was created.
+      while (next < count && removed[scratch[next]]) {
+        next++;
+      }
+      return next < count;
+    }
+
+    @Override
+    public Insertion next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      last = scratch[next++];
+      return insertions[last];
+    }
+
+    @Override
+    public void remove() {
+      if (last == -1 || removed[last]) {
+        throw new IllegalStateException();
+      }
+      removed[last] = true;
+      size--;
+    }
+  }
+}
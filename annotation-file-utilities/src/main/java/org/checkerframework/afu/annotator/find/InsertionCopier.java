@@ -0,0 +1,129 @@
+package org.checkerframework.afu.annotator.find;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import org.checkerframework.afu.scenelib.type.ArrayType;
+import org.checkerframework.afu.scenelib.type.BoundedType;
+import org.checkerframework.afu.scenelib.type.DeclaredType;
+import org.checkerframework.afu.scenelib.type.Type;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Copies {@link Insertion}s, along with the {@link Criteria} and {@link Type}s that they modify
+ * while they are being placed, so that placing the copies does not change the originals.
+ *
+ * <p>An object that several originals share, such as the {@code Criteria} of an element or an
+ * insertion on an inner type that is also in the list of its {@link TypedInsertion}, is copied
+ * only once, and the copies share the copy.
+ */
+final class InsertionCopier {
+
+  /** Maps each object that has been copied to its copy. */
+  private final Map<Object, Object> copies = new IdentityHashMap<>();
+
+  /**
+   * Returns the copy of the given insertion, making it if necessary.
+   *
+   * @param ins an insertion
+   * @return the copy of {@code ins}
+   */
+  Insertion copy(Insertion ins) {
+    Insertion copy = (Insertion) copies.get(ins);
+    if (copy == null) {
+      copy = ins.copy(this);
+      copies.put(ins, copy);
+    }
+    return copy;
+  }
+
+  /**
+   * Returns the copy of the given insertion, or null if it is null.
+   *
+   * @param ins an insertion, or null
+   * @return the copy of {@code ins}, or null
+   */
+  @Nullable ReceiverInsertion copyReceiver(@Nullable ReceiverInsertion ins) {
+    return ins == null ? null : (ReceiverInsertion) copy(ins);
+  }
+
+  /**
+   * Returns a new list of the copies of the given insertions.
+   *
+   * @param insertions insertions
+   * @return the copies of {@code insertions}, in the same order
+   */
+  List<Insertion> copyAll(List<Insertion> insertions) {
+    List<Insertion> result = new ArrayList<>(insertions.size());
+    for (Insertion ins : insertions) {
+      result.add(copy(ins));
+    }
+    return result;
+  }
+
+  /**
+   * Returns the copy of the given criteria, making it if necessary.
+   *
+   * @param criteria criteria
+   * @return the copy of {@code criteria}
+   */
+  Criteria copy(Criteria criteria) {
+    Criteria copy = (Criteria) copies.get(criteria);
+    if (copy == null) {
+      copy = new Criteria(criteria);
+      copies.put(criteria, copy);
+    }
+    return copy;
+  }
+
+  /**
+   * Returns the copy of the given type, making it if necessary. The copy has copies of the
+   * annotations, type arguments, inner type, component type, and bound of the type.
+   *
+   * @param type a type, or null
+   * @return the copy of {@code type}, or null
+   */
+  @Nullable Type copy(@Nullable Type type) {
+    if (type == null) {
+      return null;
+    }
+    Type copy = (Type) copies.get(type);
+    if (copy != null) {
+      return copy;
+    }
+    switch (type.getKind()) {
+      case ARRAY:
+        copy = new ArrayType(copy(((ArrayType) type).getComponentType()));
+        copy.setAnnotations(type.getAnnotations());
+        break;
+      case BOUNDED:
+        // A BoundedType has no annotations of its own.
+        BoundedType bounded = (BoundedType) type;
+        copy =
+            new BoundedType(
+                (DeclaredType) copy(bounded.getName()),
+                bounded.getBoundKind(),
+                (DeclaredType) copy(bounded.getBound()));
+        break;
+      case DECLARED:
+        DeclaredType declared = (DeclaredType) type;
+        DeclaredType declaredCopy = new DeclaredType(declared.getName());
+        if (!declared.isWildcard()) {
+          List<Type> typeParameters = new ArrayList<>();
+          for (Type typeParameter : declared.getTypeParameters()) {
+            typeParameters.add(copy(typeParameter));
+          }
+          declaredCopy.setTypeParameters(typeParameters);
+          declaredCopy.setInnerType((DeclaredType) copy(declared.getInnerType()));
+        }
+        declaredCopy.setAnnotations(type.getAnnotations());
+        copy = declaredCopy;
+        break;
+      default:
+        throw new Error("Unexpected type kind: " + type.getKind());
+    }
+    copies.put(type, copy);
+    return copy;
+  }
+}
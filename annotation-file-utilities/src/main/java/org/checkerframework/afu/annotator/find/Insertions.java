@@ -56,9 +56,14 @@ import org.objectweb.asm.TypePath;
  *
  * <p>The class now serves a second purpose, which should probably be separated out: It attaches
  * {@link ASTPath}-based inner type {@link Insertion}s to a {@link TypedInsertion} on the outer type
- * if one exists (see {@link #organizeTypedInsertions(CompilationUnitTree, String, Collection)}.
+ * if one exists (see {@link #organizeTypedInsertions(ASTIndex, String, Collection)}.
  * Since getting these insertions right depends on this organization, this class is now essential
  * for correctness, not merely for performance.
+ *
+ * <p>The selection methods return copies of the stored {@link Insertion}s (see {@link
+ * Insertion#getOriginal}), which the caller may modify while placing them. Therefore the stored
+ * insertions are never modified, each compilation unit starts from the insertions as they were
+ * read, and compilation units can be processed concurrently.
  */
 public class Insertions implements Iterable<Insertion> {
 
@@ -86,8 +91,20 @@ public class Insertions implements Iterable<Insertion> {
    *     given class
    */
   public Set<Insertion> forClass(CompilationUnitTree cut, String qualifiedClassName) {
+    return forClass(ASTIndex.indexOf(cut), qualifiedClassName);
+  }
+
+  /**
+   * Selects {@link Insertion}s relevant to a given class.
+   *
+   * @param astIndex the index of the current compilation unit
+   * @param qualifiedClassName the fully qualified class name
+   * @return {@link java.util.Set} of {@link Insertion}s with an {@link InClassCriterion} for the
+   *     given class
+   */
+  public Set<Insertion> forClass(ASTIndex astIndex, String qualifiedClassName) {
     Set<Insertion> set = new LinkedHashSet<>();
-    forClass(cut, qualifiedClassName, set);
+    forClass(astIndex, qualifiedClassName, new InsertionCopier(), set);
     return set;
   }
 
@@ -99,8 +116,20 @@ public class Insertions implements Iterable<Insertion> {
    * @return set of {@link Insertion}s with an {@link InClassCriterion} for the given outer class or
    *     one of its local classes
    */
-  @SuppressWarnings("MixedMutabilityReturnType") // clients do not modify the result
   public Set<Insertion> forOuterClass(CompilationUnitTree cut, String qualifiedOuterClassName) {
+    return forOuterClass(ASTIndex.indexOf(cut), qualifiedOuterClassName);
+  }
+
+  /**
+   * Selects {@link Insertion}s relevant to a given outer class and its local classes.
+   *
+   * @param astIndex the index of the current compilation unit
+   * @param qualifiedOuterClassName the fully qualified outer class name
+   * @return set of {@link Insertion}s with an {@link InClassCriterion} for the given outer class or
+   *     one of its local classes
+   */
+  @SuppressWarnings("MixedMutabilityReturnType") // clients do not modify the result
+  public Set<Insertion> forOuterClass(ASTIndex astIndex, String qualifiedOuterClassName) {
     Map<String, Set<Insertion>> map = store.get(qualifiedOuterClassName);
     if (map == null || map.isEmpty()) {
       return Collections.<Insertion>emptySet();
@@ -109,16 +138,24 @@ public class Insertions implements Iterable<Insertion> {
         System.out.printf("forOuterClass(%s): map = %s%n", qualifiedOuterClassName, map);
       }
       Set<Insertion> set = new LinkedHashSet<>();
+      InsertionCopier copier = new InsertionCopier();
       for (String innerClassPath : map.keySet()) {
         String qualifiedClassName = qualifiedOuterClassName + innerClassPath;
-        forClass(cut, qualifiedClassName, set);
+        forClass(astIndex, qualifiedClassName, copier, set);
       }
       return set;
     }
   }
 
-  /** Side-effects {@code result} to add {@link Insertion}s for {@code qualifiedClassName}. */
-  private void forClass(CompilationUnitTree cut, String qualifiedClassName, Set<Insertion> result) {
+  /**
+   * Side-effects {@code result} to add copies of the {@link Insertion}s for {@code
+   * qualifiedClassName}.
+   */
+  private void forClass(
+      ASTIndex astIndex,
+      String qualifiedClassName,
+      InsertionCopier copier,
+      Set<Insertion> result) {
     if (Main.temporaryDebug) {
       System.out.printf(
           "calling forClass(cut, %s, set of size %d)%n", qualifiedClassName, result.size());
@@ -127,11 +164,13 @@ public class Insertions implements Iterable<Insertion> {
     Map<String, Set<Insertion>> map = store.get(outerClass);
     if (map != null) {
       Set<Insertion> set = new TreeSet<>(byASTRecord);
-      set.addAll(map.get(innerClassName(qualifiedClassName)));
+      for (Insertion ins : map.get(innerClassName(qualifiedClassName))) {
+        set.add(copier.copy(ins));
+      }
       if (Main.temporaryDebug) {
         System.out.println("organizeTypedInsertions argument set size = " + set.size());
       }
-      Set<Insertion> organized = organizeTypedInsertions(cut, qualifiedClassName, set);
+      Set<Insertion> organized = organizeTypedInsertions(astIndex, qualifiedClassName, set);
       if (Main.temporaryDebug) {
         System.out.println("organizeTypedInsertions result set size = " + organized.size());
       }
@@ -183,6 +222,26 @@ public class Insertions implements Iterable<Insertion> {
     return size;
   }
 
+  /**
+   * Returns true if some {@link Insertion} in this collection is on a package declaration. Such an
+   * insertion may apply to multiple compilation units.
+   *
+   * @return true if some {@link Insertion} in this collection is on a package declaration
+   */
+  public boolean hasPackageInsertions() {
+    Map<String, Set<Insertion>> map = store.get("");
+    if (map != null) {
+      for (Set<Insertion> set : map.values()) {
+        for (Insertion ins : set) {
+          if (ins.getCriteria().isOnPackage()) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
   @Override
   public Iterator<Insertion> iterator() {
     return new Iterator<Insertion>() {
@@ -243,7 +302,8 @@ public class Insertions implements Iterable<Insertion> {
    */
   @SuppressWarnings("CatchAndPrintStackTrace") // maybe rethrow the exception
   private Set<Insertion> organizeTypedInsertions(
-      CompilationUnitTree cut, String className, Collection<Insertion> insertions) {
+      ASTIndex astIndex, String className, Collection<Insertion> insertions) {
+    CompilationUnitTree cut = astIndex.getCompilationUnit();
     Map<ASTRecord, TypedInsertion> outerInsertions = new HashMap<>();
     Set<Insertion> innerInsertions = new LinkedHashSet<>();
     List<Insertion> innerInsertionsList = new ArrayList<>();
@@ -292,13 +352,13 @@ public class Insertions implements Iterable<Insertion> {
             && entry.childSelectorIs(ASTPath.TYPE)
             && entry.getArgument() == 0) {
           ASTPath parentPath = rec.astPath.getParentPath();
-          node = ASTIndex.getNode(cut, rec.replacePath(parentPath));
+          node = astIndex.getNode(rec.replacePath(parentPath));
           node =
               node instanceof JCTree.JCNewArray
                   ? TypeTree.fromJavacType(((JCTree.JCNewArray) node).type)
                   : null;
         } else {
-          node = ASTIndex.getNode(cut, rec);
+          node = astIndex.getNode(rec);
         }
 
         if (ins instanceof TypedInsertion) {
@@ -311,7 +371,7 @@ public class Insertions implements Iterable<Insertion> {
               ASTRecord rec0 = null;
               if (a == 0) {
                 rec0 = rec.replacePath(p.getParentPath());
-                Tree t = ASTIndex.getNode(cut, rec0);
+                Tree t = astIndex.getNode(rec0);
                 if (t == null || t.toString().startsWith("{")) {
                   rec0 = null;
                 } else {
@@ -320,7 +380,7 @@ public class Insertions implements Iterable<Insertion> {
                 }
               } else if (node != null && !nins.getInnerTypeInsertions().isEmpty()) {
                 if (node instanceof IdentifierTree) {
-                  node = ASTIndex.getNode(cut, rec.replacePath(p.getParentPath()));
+                  node = astIndex.getNode(rec.replacePath(p.getParentPath()));
                 }
                 if ((node instanceof NewArrayTree || node instanceof ArrayTypeTree)
                     && !node.toString().startsWith("{")) {
@@ -374,7 +434,7 @@ public class Insertions implements Iterable<Insertion> {
             while (!temp.isEmpty() && (node == null || !(node instanceof NewArrayTree))) {
               // TODO: avoid repeating work of newArrayInnerTypeDepth()
               temp = temp.getParentPath();
-              node = ASTIndex.getNode(cut, rec.replacePath(temp));
+              node = astIndex.getNode(rec.replacePath(temp));
             }
             if (node == null) {
               // TODO: ???
@@ -469,7 +529,7 @@ public class Insertions implements Iterable<Insertion> {
       } while (!(astack.isEmpty() || outerInsertions.containsKey(rec)));
 
       TypedInsertion tins = outerInsertions.get(rec);
-      TreePath path = ASTIndex.getTreePath(cut, rec);
+      TreePath path = astIndex.getTreePath(rec);
       Tree node = path == null ? null : path.getLeaf();
       if (node == null && topLevelTypePath.isEmpty()) {
         organized.add(ins);
@@ -532,7 +592,7 @@ public class Insertions implements Iterable<Insertion> {
         if (!ap.isEmpty()) {
           do {
             ap = ap.getParentPath();
-            node = ASTIndex.getNode(cut, rec.replacePath(ap));
+            node = astIndex.getNode(rec.replacePath(ap));
           } while (node == null && !ap.isEmpty());
         }
         if (node == null) {
@@ -752,7 +812,7 @@ public class Insertions implements Iterable<Insertion> {
             throw new RuntimeException();
 
           default:
-            node = ASTIndex.getNode(cut, rec);
+            node = astIndex.getNode(rec);
             break;
         }
 
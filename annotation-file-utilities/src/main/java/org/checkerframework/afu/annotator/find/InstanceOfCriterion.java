@@ -4,6 +4,7 @@ import com.sun.source.tree.InstanceOfTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
 import org.checkerframework.afu.annotator.Main;
+import org.checkerframework.afu.annotator.scanner.ClassOffsets;
 import org.checkerframework.afu.annotator.scanner.InstanceOfScanner;
 import org.checkerframework.afu.scenelib.el.RelativeLocation;
 
@@ -12,9 +13,13 @@ public class InstanceOfCriterion implements Criterion {
   private final String methodName;
   private final RelativeLocation loc;
 
-  public InstanceOfCriterion(String methodName, RelativeLocation loc) {
+  /** The bytecode offsets in the class that contains the method. */
+  private final ClassOffsets offsets;
+
+  public InstanceOfCriterion(String methodName, RelativeLocation loc, ClassOffsets offsets) {
     this.methodName = methodName.substring(0, methodName.lastIndexOf(")") + 1);
     this.loc = loc;
+    this.offsets = offsets;
   }
 
   @Override
@@ -66,7 +71,7 @@ public class InstanceOfCriterion implements Criterion {
       Criteria.dbug.debug("return source: %d%n", indexInSource);
       boolean b;
       if (loc.isBytecodeOffset()) {
-        int indexInClass = InstanceOfScanner.getMethodInstanceOfIndex(methodName, loc.offset);
+        int indexInClass = offsets.getInstanceOfIndex(methodName, loc.offset);
         Criteria.dbug.debug("return class: %d%n", indexInClass);
         b = (indexInSource == indexInClass);
       } else {
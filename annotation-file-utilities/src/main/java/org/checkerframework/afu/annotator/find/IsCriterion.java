@@ -63,6 +63,20 @@ final class IsCriterion implements Criterion {
     return false;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof IsCriterion)) {
+      return false;
+    }
+    IsCriterion other = (IsCriterion) o;
+    return kind == other.kind && name.equals(other.name);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * kind.hashCode() + name.hashCode();
+  }
+
   @Override
   public String toString() {
     return "is " + kind.toString().toLowerCase(Locale.getDefault()) + " '" + name + "'";
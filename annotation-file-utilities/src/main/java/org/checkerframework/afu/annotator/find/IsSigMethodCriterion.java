@@ -1,21 +1,9 @@
 package org.checkerframework.afu.annotator.find;
 
-import com.sun.source.tree.AnnotatedTypeTree;
-import com.sun.source.tree.ClassTree;
-import com.sun.source.tree.CompilationUnitTree;
-import com.sun.source.tree.ExpressionTree;
-import com.sun.source.tree.ImportTree;
 import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
-import com.sun.source.tree.TypeParameterTree;
-import com.sun.source.tree.VariableTree;
 import com.sun.source.util.TreePath;
-import java.util.ArrayList;
-import java.util.EnumSet;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 import org.checkerframework.afu.annotator.Main;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.signature.qual.BinaryName;
@@ -30,19 +18,8 @@ import org.plumelib.util.CollectionsPlume;
  */
 public class IsSigMethodCriterion implements Criterion {
 
-  // The context is used for determining the fully qualified name of methods.
-  private static class Context {
-    public final String packageName;
-    public final List<String> imports;
-
-    public Context(String packageName, List<String> imports) {
-      this.packageName = packageName;
-      this.imports = imports;
-    }
-  }
-
-  /** Map from compilation unit to Context. */
-  private static final Map<CompilationUnitTree, Context> contextCache = new HashMap<>();
+  /** The full JVML signature, under which {@link MethodSignature} records the verdicts. */
+  private final String fullSignature;
 
   /**
    * The JVML signature, without return type. This field is used only for diagnostics. Its
@@ -65,6 +42,7 @@ public class IsSigMethodCriterion implements Criterion {
    * @param fullSignature the full JVML signature (that is, a method descriptor)
    */
   public IsSigMethodCriterion(@MethodDescriptor String fullSignature) {
+    this.fullSignature = fullSignature;
     this.signatureWithoutReturnType = fullSignature.substring(0, fullSignature.indexOf(")") + 1);
     this.simpleMethodName = fullSignature.substring(0, fullSignature.indexOf("("));
     try {
@@ -81,89 +59,45 @@ public class IsSigMethodCriterion implements Criterion {
         returnTypeJvml == null ? null : Signatures.fieldDescriptorToBinaryName(returnTypeJvml);
   }
 
-  // called by isSatisfiedBy(TreePath), will get compilation unit on its own
-  private static Context initImports(TreePath path) {
-    CompilationUnitTree topLevel = path.getCompilationUnit();
-    Context result = contextCache.get(topLevel);
-    if (result != null) {
-      return result;
-    }
-
-    ExpressionTree packageTree = topLevel.getPackageName();
-    String packageName;
-    if (packageTree == null) {
-      packageName = ""; // the default package
-    } else {
-      packageName = packageTree.toString();
-    }
-
-    List<String> imports = new ArrayList<>();
-    for (ImportTree i : topLevel.getImports()) {
-      String imported = i.getQualifiedIdentifier().toString();
-      imports.add(imported);
-    }
-
-    result = new Context(packageName, imports);
-    contextCache.put(topLevel, result);
-    return result;
-  }
-
   // Abstracts out the inner loop of matchTypeParams.
-  // goalType is fully-qualified.
+  // goalType is fully-qualified.  simpleType is the type as it appeared in the source code, and
+  // boundType is simpleType with type variables replaced by their bounds, or null if it has none;
+  // both are without generics.
   private boolean matchTypeParam(
-      String goalType, Tree type, Map<String, String> typeToClassMap, Context context) {
-    String simpleType = type.toString();
-
-    boolean haveMatch = matchSimpleType(goalType, simpleType, context);
-    if (!haveMatch) {
-      if (!typeToClassMap.isEmpty()) {
-        for (Map.Entry<String, String> p : typeToClassMap.entrySet()) {
-          simpleType = simpleType.replaceAll("\\b" + p.getKey() + "\\b", p.getValue());
-          haveMatch = matchSimpleType(goalType, simpleType, context);
-          if (!haveMatch) {
-            Criteria.dbug.debug("matchTypeParams() => false:%n");
-            Criteria.dbug.debug("  type = %s%n", type);
-            Criteria.dbug.debug("  simpleType = %s%n", simpleType);
-            Criteria.dbug.debug("  goalType = %s%n", goalType);
-          }
-        }
+      String goalType, String simpleType, @Nullable String boundType, MethodSignature.Unit unit) {
+    boolean haveMatch = matchSimpleType(goalType, simpleType, unit);
+    if (!haveMatch && boundType != null) {
+      haveMatch = matchSimpleType(goalType, boundType, unit);
+      if (!haveMatch) {
+        Criteria.dbug.debug("matchTypeParams() => false:%n");
+        Criteria.dbug.debug("  simpleType = %s%n", simpleType);
+        Criteria.dbug.debug("  boundType = %s%n", boundType);
+        Criteria.dbug.debug("  goalType = %s%n", goalType);
       }
     }
     return haveMatch;
   }
 
-  private boolean matchTypeParams(
-      List<? extends VariableTree> sourceParams,
-      Map<String, String> typeToClassMap,
-      Context context) {
-    assert sourceParams.size() == fullyQualifiedParams.size();
-    for (int i = 0; i < sourceParams.size(); i++) {
+  private boolean matchTypeParams(MethodSignature signature) {
+    assert signature.paramTypes.length == fullyQualifiedParams.size();
+    for (int i = 0; i < signature.paramTypes.length; i++) {
       String fullType = fullyQualifiedParams.get(i);
-      VariableTree vt = sourceParams.get(i);
-      Tree vtType = vt.getType();
-      if (!matchTypeParam(fullType, vtType, typeToClassMap, context)) {
+      if (!matchTypeParam(
+          fullType, signature.paramTypes[i], signature.boundParamTypes[i], signature.unit)) {
         Criteria.dbug.debug(
-            "matchTypeParam() => false:%n  i=%d vt = %s%n  fullType = %s%n", i, vt, fullType);
+            "matchTypeParam() => false:%n  i=%d type = %s%n  fullType = %s%n",
+            i, signature.paramTypes[i], fullType);
         return false;
       }
     }
     return true;
   }
 
-  // simpleType is the name as it appeared in the source code.
+  // simpleType is the name as it appeared in the source code, without generics.
   // fullType is fully-qualified.
   // Both are in Java, not JVML, format.
-  private boolean matchSimpleType(String fullType, String simpleType, Context context) {
-    Criteria.dbug.debug("matchSimpleType(%s, %s, %s)%n", fullType, simpleType, context);
-
-    // must strip off generics, is all of this necessary, though?
-    // do you ever have generics anywhere but at the end?
-    while (simpleType.contains("<")) {
-      int bracketIndex = simpleType.lastIndexOf("<");
-      String beforeBracket = simpleType.substring(0, bracketIndex);
-      String afterBracket = simpleType.substring(simpleType.indexOf(">", bracketIndex) + 1);
-      simpleType = beforeBracket + afterBracket;
-    }
+  private boolean matchSimpleType(String fullType, String simpleType, MethodSignature.Unit unit) {
+    Criteria.dbug.debug("matchSimpleType(%s, %s, %s)%n", fullType, simpleType, unit);
 
     // TODO: arrays?
 
@@ -176,7 +110,7 @@ public class IsSigMethodCriterion implements Criterion {
 
     if (!matchable) {
       // match with this package name
-      String packagePrefix = context.packageName;
+      String packagePrefix = unit.packageName;
       if (packagePrefix.length() > 0) {
         packagePrefix = packagePrefix + ".";
       }
@@ -206,7 +140,7 @@ public class IsSigMethodCriterion implements Criterion {
     // qualified type name denotes that type.
     if (!matchable) {
       // match with any of the imports
-      for (String someImport : context.imports) {
+      for (String someImport : unit.imports) {
         String importPrefix = null;
         if (someImport.contains("*")) {
           // don't include the * in the prefix, should end in .
@@ -284,14 +218,14 @@ public class IsSigMethodCriterion implements Criterion {
       return false;
     }
 
-    Context context = initImports(path);
-
     Tree leaf = path.getLeaf();
 
     if (!(leaf instanceof MethodTree)) {
-      Criteria.dbug.debug(
-          "IsSigMethodCriterion.isSatisfiedBy(%s) => false: not a METHOD tree%n",
-          Main.leafString(path));
+      if (Criteria.dbug.isEnabled()) {
+        Criteria.dbug.debug(
+            "IsSigMethodCriterion.isSatisfiedBy(%s) => false: not a METHOD tree%n",
+            Main.leafString(path));
+      }
       return false;
     }
     // else if ((((JCMethodDecl) leaf).mods.flags & Flags.GENERATEDCONSTR) != 0) {
@@ -303,80 +237,45 @@ public class IsSigMethodCriterion implements Criterion {
 
     MethodTree mt = (MethodTree) leaf;
 
-    if (!simpleMethodName.equals(mt.getName().toString())) {
+    if (!mt.getName().contentEquals(simpleMethodName)) {
       Criteria.dbug.debug("IsSigMethodCriterion.isSatisfiedBy => false: Names don't match%n");
       return false;
     }
 
-    List<? extends VariableTree> sourceParams = mt.getParameters();
-    if (fullyQualifiedParams.size() != sourceParams.size()) {
+    if (fullyQualifiedParams.size() != mt.getParameters().size()) {
       Criteria.dbug.debug(
           "IsSigMethodCriterion.isSatisfiedBy => false: Number of parameters don't match%n");
       return false;
     }
 
-    // now go through all type parameters declared by method
-    // and for each one, create a mapping from the type to the
-    // first declared extended class, defaulting to Object
-    // for example,
-    // <T extends Date> void foo(T t)
-    //  creates mapping: T -> Date
-    // <T extends Date & List> void foo(Object o)
-    //  creates mapping: T -> Date
-    // <T extends Date, U extends List> foo(Object o)
-    //  creates mappings: T -> Date, U -> List
-    // <T> void foo(T t)
-    //  creates mapping: T -> Object
-
-    Map<String, String> typeToClassMap = new HashMap<>();
-    for (TypeParameterTree param : mt.getTypeParameters()) {
-      String paramName = param.getName().toString();
-      String paramClass = "Object";
-      List<? extends Tree> paramBounds = param.getBounds();
-      if (paramBounds != null && paramBounds.size() >= 1) {
-        Tree boundZero = paramBounds.get(0);
-        if (boundZero instanceof AnnotatedTypeTree) {
-          boundZero = ((AnnotatedTypeTree) boundZero).getUnderlyingType();
-        }
-        paramClass = boundZero.toString();
-      }
-      typeToClassMap.put(paramName, paramClass);
-    }
-
-    // Do the same for the enclosing class.
-    // The type variable might not be from the directly enclosing
-    // class, but from a further up class.
-    // Go through all enclosing classes and add the type parameters.
-    {
-      TreePath classpath = path;
-      ClassTree ct = enclosingClass(classpath);
-      while (ct != null) {
-        for (TypeParameterTree param : ct.getTypeParameters()) {
-          String paramName = param.getName().toString();
-          String paramClass = "Object";
-          List<? extends Tree> paramBounds = param.getBounds();
-          if (paramBounds != null && paramBounds.size() >= 1) {
-            Tree pb = paramBounds.get(0);
-            if (pb instanceof AnnotatedTypeTree) {
-              pb = ((AnnotatedTypeTree) pb).getUnderlyingType();
-            }
-            paramClass = pb.toString();
-          }
-          typeToClassMap.put(paramName, paramClass);
-        }
-        classpath = classpath.getParentPath();
-        ct = enclosingClass(classpath);
-      }
+    // The parameter and return types of the method are spelled out once, and shared by all the
+    // criteria that are tested against it; criteria with the same signature share a verdict.
+    MethodSignature signature = MethodSignature.of(path);
+    Boolean match = signature.cachedMatch(fullSignature);
+    if (match == null) {
+      match = matchTypes(signature);
+      signature.cacheMatch(fullSignature, match);
     }
+    return match;
+  }
 
-    if (!matchTypeParams(sourceParams, typeToClassMap, context)) {
+  /**
+   * Returns true if the parameter and return types of the given method match those of this
+   * criterion.
+   *
+   * @param signature the signature of a method with the same name and number of parameters
+   * @return true if the types of {@code signature} match this criterion
+   */
+  private boolean matchTypes(MethodSignature signature) {
+    if (!matchTypeParams(signature)) {
       Criteria.dbug.debug("IsSigMethodCriterion => false: Parameter types don't match%n");
       return false;
     }
 
-    if (mt.getReturnType() != null // must be a constructor
+    if (signature.returnType != null // must be a constructor
         && returnType != null
-        && !matchTypeParam(returnType, mt.getReturnType(), typeToClassMap, context)) {
+        && !matchTypeParam(
+            returnType, signature.returnType, signature.boundReturnType, signature.unit)) {
       Criteria.dbug.debug("IsSigMethodCriterion => false: Return types don't match%n");
       return false;
     }
@@ -390,31 +289,23 @@ public class IsSigMethodCriterion implements Criterion {
     return false;
   }
 
-  /* This is a copy of the method from the Checker Framework
-   * TreeUtils.enclosingClass.
-   * We cannot have a dependency on the Checker Framework.
-   * TODO: as is the case there, anonymous classes are not handled correctly.
-   */
-  private static ClassTree enclosingClass(final TreePath path) {
-    final Set<Tree.Kind> kinds =
-        EnumSet.of(Tree.Kind.CLASS, Tree.Kind.ENUM, Tree.Kind.INTERFACE, Tree.Kind.ANNOTATION_TYPE);
-    TreePath p = path;
-
-    while (p != null) {
-      Tree leaf = p.getLeaf();
-      assert leaf != null; /*nninvariant*/
-      if (kinds.contains(leaf.getKind())) {
-        return (ClassTree) leaf;
-      }
-      p = p.getParentPath();
-    }
+  @Override
+  public Kind getKind() {
+    return Kind.SIG_METHOD;
+  }
 
-    return null;
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof IsSigMethodCriterion)) {
+      return false;
+    }
+    IsSigMethodCriterion other = (IsSigMethodCriterion) o;
+    return fullSignature.equals(other.fullSignature);
   }
 
   @Override
-  public Kind getKind() {
-    return Kind.SIG_METHOD;
+  public int hashCode() {
+    return fullSignature.hashCode();
   }
 
   @Override
@@ -3,6 +3,7 @@ package org.checkerframework.afu.annotator.find;
 import com.sun.source.tree.LambdaExpressionTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
+import org.checkerframework.afu.annotator.scanner.ClassOffsets;
 import org.checkerframework.afu.annotator.scanner.LambdaScanner;
 import org.checkerframework.afu.scenelib.el.RelativeLocation;
 
@@ -10,9 +11,13 @@ public class LambdaCriterion implements Criterion {
   private final String methodName;
   private final RelativeLocation loc;
 
-  public LambdaCriterion(String methodName, RelativeLocation loc) {
+  /** The bytecode offsets in the class that contains the method. */
+  private final ClassOffsets offsets;
+
+  public LambdaCriterion(String methodName, RelativeLocation loc, ClassOffsets offsets) {
     this.methodName = methodName;
     this.loc = loc;
+    this.offsets = offsets;
   }
 
   @Override
@@ -57,7 +62,7 @@ public class LambdaCriterion implements Criterion {
       Criteria.dbug.debug("return source: %d%n", indexInSource);
       boolean b;
       if (loc.isBytecodeOffset()) {
-        int indexInClass = LambdaScanner.getMethodLambdaExpressionIndex(methodName, loc.offset);
+        int indexInClass = offsets.getLambdaExpressionIndex(methodName, loc.offset);
         Criteria.dbug.debug("return class: %d%n", indexInClass);
         b = (indexInSource == indexInClass);
       } else {
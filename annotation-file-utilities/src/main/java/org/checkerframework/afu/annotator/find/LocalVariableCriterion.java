@@ -4,9 +4,8 @@ import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.tree.VariableTree;
 import com.sun.source.util.TreePath;
-import com.sun.tools.javac.util.Pair;
-import java.util.List;
 import java.util.Objects;
+import org.checkerframework.afu.annotator.scanner.ClassOffsets;
 import org.checkerframework.afu.annotator.scanner.LocalVariableScanner;
 import org.checkerframework.afu.scenelib.el.LocalLocation;
 
@@ -21,9 +20,13 @@ public class LocalVariableCriterion implements Criterion {
   private final String fullMethodName;
   private final LocalLocation loc;
 
-  public LocalVariableCriterion(String methodName, LocalLocation loc) {
+  /** The bytecode offsets in the class that contains the method. */
+  private final ClassOffsets offsets;
+
+  public LocalVariableCriterion(String methodName, LocalLocation loc, ClassOffsets offsets) {
     this.fullMethodName = methodName.substring(0, methodName.indexOf(")") + 1);
     this.loc = loc;
+    this.offsets = offsets;
   }
 
   @Override
@@ -70,18 +73,16 @@ public class LocalVariableCriterion implements Criterion {
       }
 
       if (loc.scopeStartDefined()) {
-        Pair<String, Pair<Integer, Integer>> key =
-            Pair.of(fullMethodName, Pair.of(loc.getVarIndex(), loc.getScopeStart()));
-        String potentialVarName = LocalVariableScanner.getFromMethodNameIndexMap(key);
+        String potentialVarName =
+            offsets.getLocalVariableName(fullMethodName, loc.getVarIndex(), loc.getScopeStart());
         if (potentialVarName != null) {
           if (varName.equals(potentialVarName)) {
-            // now use methodNameCounter to ensure that if this is the
+            // now ensure that if this is the
             // i'th variable of this name, its offset is the i'th offset
             // of all variables with this name
-            List<Integer> allOffsetsWithThisName =
-                LocalVariableScanner.getFromMethodNameCounter(fullMethodName, potentialVarName);
-            //      methodNameCounter.get(fullMethodName).get(potentialVarName);
-            Integer thisVariablesOffset = allOffsetsWithThisName.indexOf(loc.getScopeStart());
+            int thisVariablesOffset =
+                offsets.getLocalVariableIndex(
+                    fullMethodName, potentialVarName, loc.getScopeStart());
 
             // now you need to make sure that this is the
             // thisVariablesOffset'th variable tree in the entire source
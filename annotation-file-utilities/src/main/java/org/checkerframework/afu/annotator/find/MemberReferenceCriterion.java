@@ -3,6 +3,7 @@ package org.checkerframework.afu.annotator.find;
 import com.sun.source.tree.MemberReferenceTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
+import org.checkerframework.afu.annotator.scanner.ClassOffsets;
 import org.checkerframework.afu.annotator.scanner.MemberReferenceScanner;
 import org.checkerframework.afu.scenelib.el.RelativeLocation;
 
@@ -10,9 +11,13 @@ public class MemberReferenceCriterion implements Criterion {
   private final String methodName;
   private final RelativeLocation loc;
 
-  public MemberReferenceCriterion(String methodName, RelativeLocation loc) {
+  /** The bytecode offsets in the class that contains the method. */
+  private final ClassOffsets offsets;
+
+  public MemberReferenceCriterion(String methodName, RelativeLocation loc, ClassOffsets offsets) {
     this.methodName = methodName;
     this.loc = loc;
+    this.offsets = offsets;
   }
 
   @Override
@@ -36,7 +41,7 @@ public class MemberReferenceCriterion implements Criterion {
       int indexInSource = MemberReferenceScanner.indexOfMemberReferenceTree(path, leaf);
       boolean b;
       if (loc.isBytecodeOffset()) {
-        int indexInClass = MemberReferenceScanner.getMemberReferenceIndex(methodName, loc.offset);
+        int indexInClass = offsets.getMemberReferenceIndex(methodName, loc.offset);
         b = (indexInSource == indexInClass);
       } else {
         b = (indexInSource == loc.index);
@@ -0,0 +1,255 @@
+package org.checkerframework.afu.annotator.find;
+
+import com.sun.source.tree.AnnotatedTypeTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.ExpressionTree;
+import com.sun.source.tree.ImportTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TypeParameterTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The signature of a method declaration, in the form in which {@link IsSigMethodCriterion} compares
+ * it with a JVM method descriptor: the source spelling of each parameter type and of the return
+ * type, with generics removed, and again with the type variables in scope replaced by their first
+ * bounds. It also records whether each descriptor that has been compared with it matched.
+ *
+ * <p>A signature is computed once per {@link MethodTree}, and is retained as long as its
+ * compilation unit is, so it is shared by all the criteria that are tested against the method.
+ */
+final class MethodSignature {
+
+  /** The kinds of trees that declare a class. */
+  private static final Set<Tree.Kind> CLASS_KINDS =
+      EnumSet.of(Tree.Kind.CLASS, Tree.Kind.ENUM, Tree.Kind.INTERFACE, Tree.Kind.ANNOTATION_TYPE);
+
+  /**
+   * For each compilation unit, its package and imports and the signatures of its methods. The keys
+   * are weak, so the signatures are discarded along with their compilation unit. Compilation units
+   * may be processed concurrently, so all access must be synchronized on this map.
+   */
+  private static final Map<CompilationUnitTree, Unit> units = new WeakHashMap<>();
+
+  /** The package and imports of a compilation unit, and the signatures of its methods. */
+  static final class Unit {
+    /** The name of the package, or "" for the default package. */
+    final String packageName;
+
+    /** The imported names, as written; on-demand imports end with "*". */
+    final List<String> imports;
+
+    /** The signature of each method that has been compared, keyed by its {@link MethodTree}. */
+    final Map<Tree, MethodSignature> signatures = new IdentityHashMap<>();
+
+    /**
+     * Creates the record of the given compilation unit.
+     *
+     * @param cut a compilation unit
+     */
+    Unit(CompilationUnitTree cut) {
+      ExpressionTree packageTree = cut.getPackageName();
+      packageName = packageTree == null ? "" : packageTree.toString();
+      List<String> imports = new ArrayList<>();
+      for (ImportTree i : cut.getImports()) {
+        imports.add(i.getQualifiedIdentifier().toString());
+      }
+      this.imports = Collections.unmodifiableList(imports);
+    }
+
+    @Override
+    public String toString() {
+      return "Unit(" + packageName + ", " + imports + ")";
+    }
+  }
+
+  /** The compilation unit that declares the method. */
+  final Unit unit;
+
+  /** For each parameter, the source spelling of its type without generics. */
+  final String[] paramTypes;
+
+  /**
+   * For each parameter, the spelling in {@link #paramTypes} with type variables replaced by their
+   * bounds, or null if that does not change it.
+   */
+  final @Nullable String[] boundParamTypes;
+
+  /** The source spelling of the return type without generics, or null for a constructor. */
+  final @Nullable String returnType;
+
+  /**
+   * {@link #returnType} with type variables replaced by their bounds, or null if that does not
+   * change it.
+   */
+  final @Nullable String boundReturnType;
+
+  /** Whether each JVM method descriptor that has been compared with this signature matched it. */
+  private final Map<String, Boolean> matches = new HashMap<>(4);
+
+  /**
+   * Returns the signature of the method declared by the leaf of the given path.
+   *
+   * @param path the path to a {@link MethodTree}
+   * @return the signature of the method
+   */
+  static MethodSignature of(TreePath path) {
+    CompilationUnitTree cut = path.getCompilationUnit();
+    Tree method = path.getLeaf();
+    Unit unit;
+    synchronized (units) {
+      unit = units.get(cut);
+      if (unit == null) {
+        unit = new Unit(cut);
+        units.put(cut, unit);
+      }
+      MethodSignature signature = unit.signatures.get(method);
+      if (signature != null) {
+        return signature;
+      }
+    }
+    // Compute the signature without holding the lock, so that other compilation units are not
+    // delayed.
+    MethodSignature signature = new MethodSignature(unit, path);
+    synchronized (units) {
+      MethodSignature other = unit.signatures.putIfAbsent(method, signature);
+      return other != null ? other : signature;
+    }
+  }
+
+  /**
+   * Computes the signature of the method declared by the leaf of the given path.
+   *
+   * @param unit the compilation unit that contains the method
+   * @param path the path to a {@link MethodTree}
+   */
+  private MethodSignature(Unit unit, TreePath path) {
+    this.unit = unit;
+    MethodTree mt = (MethodTree) path.getLeaf();
+
+    // Map each type variable that the method or an enclosing class declares to its first bound,
+    // defaulting to Object.  For example,
+    //   <T extends Date> void foo(T t)                    creates T -> Date
+    //   <T extends Date & List> void foo(Object o)        creates T -> Date
+    //   <T extends Date, U extends List> foo(Object o)    creates T -> Date, U -> List
+    //   <T> void foo(T t)                                 creates T -> Object
+    // The type variable might be declared by a class further out than the directly enclosing one.
+    Map<String, String> typeToClassMap = new HashMap<>();
+    putBounds(mt.getTypeParameters(), typeToClassMap);
+    for (TreePath p = path; p != null; p = p.getParentPath()) {
+      if (CLASS_KINDS.contains(p.getLeaf().getKind())) {
+        putBounds(((ClassTree) p.getLeaf()).getTypeParameters(), typeToClassMap);
+      }
+    }
+
+    List<? extends VariableTree> params = mt.getParameters();
+    paramTypes = new String[params.size()];
+    boundParamTypes = new String[params.size()];
+    for (int i = 0; i < paramTypes.length; i++) {
+      String type = params.get(i).getType().toString();
+      paramTypes[i] = stripGenerics(type);
+      boundParamTypes[i] = bind(type, paramTypes[i], typeToClassMap);
+    }
+    Tree returnTree = mt.getReturnType();
+    if (returnTree == null) {
+      returnType = null;
+      boundReturnType = null;
+    } else {
+      String type = returnTree.toString();
+      returnType = stripGenerics(type);
+      boundReturnType = bind(type, returnType, typeToClassMap);
+    }
+  }
+
+  /**
+   * Maps each of the given type variables to its first bound, or to Object if it has none.
+   *
+   * @param typeParams type parameter declarations
+   * @param typeToClassMap the map to which to add the type variables
+   */
+  private static void putBounds(
+      List<? extends TypeParameterTree> typeParams, Map<String, String> typeToClassMap) {
+    for (TypeParameterTree param : typeParams) {
+      String paramClass = "Object";
+      List<? extends Tree> paramBounds = param.getBounds();
+      if (paramBounds != null && paramBounds.size() >= 1) {
+        Tree boundZero = paramBounds.get(0);
+        if (boundZero instanceof AnnotatedTypeTree) {
+          boundZero = ((AnnotatedTypeTree) boundZero).getUnderlyingType();
+        }
+        paramClass = boundZero.toString();
+      }
+      typeToClassMap.put(param.getName().toString(), paramClass);
+    }
+  }
+
+  /**
+   * Returns the given type with each type variable replaced by its bound and generics removed, or
+   * null if that is the same as the type with only generics removed.
+   *
+   * @param type the source spelling of a type
+   * @param stripped {@code type} without generics
+   * @param typeToClassMap the bound of each type variable in scope
+   * @return {@code type} with the type variables in scope replaced by their bounds, or null
+   */
+  private static @Nullable String bind(
+      String type, String stripped, Map<String, String> typeToClassMap) {
+    if (typeToClassMap.isEmpty()) {
+      return null;
+    }
+    for (Map.Entry<String, String> p : typeToClassMap.entrySet()) {
+      type = type.replaceAll("\\b" + p.getKey() + "\\b", p.getValue());
+    }
+    type = stripGenerics(type);
+    return type.equals(stripped) ? null : type;
+  }
+
+  /**
+   * Removes the type arguments from the given type.
+   *
+   * @param type the source spelling of a type
+   * @return {@code type} without any type arguments
+   */
+  private static String stripGenerics(String type) {
+    while (type.contains("<")) {
+      int bracketIndex = type.lastIndexOf("<");
+      String beforeBracket = type.substring(0, bracketIndex);
+      String afterBracket = type.substring(type.indexOf(">", bracketIndex) + 1);
+      type = beforeBracket + afterBracket;
+    }
+    return type;
+  }
+
+  /**
+   * Returns whether the given descriptor matches this signature, or null if they have not been
+   * compared yet.
+   *
+   * @param descriptor a JVM method descriptor
+   * @return whether {@code descriptor} matches this signature, or null if that is not yet known
+   */
+  synchronized @Nullable Boolean cachedMatch(String descriptor) {
+    return matches.get(descriptor);
+  }
+
+  /**
+   * Records whether the given descriptor matches this signature.
+   *
+   * @param descriptor a JVM method descriptor
+   * @param match whether {@code descriptor} matches this signature
+   */
+  synchronized void cacheMatch(String descriptor, boolean match) {
+    matches.put(descriptor, match);
+  }
+}
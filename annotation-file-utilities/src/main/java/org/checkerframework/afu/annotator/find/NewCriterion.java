@@ -4,6 +4,7 @@ import com.sun.source.tree.NewArrayTree;
 import com.sun.source.tree.NewClassTree;
 import com.sun.source.tree.Tree;
 import com.sun.source.util.TreePath;
+import org.checkerframework.afu.annotator.scanner.ClassOffsets;
 import org.checkerframework.afu.annotator.scanner.NewScanner;
 import org.checkerframework.afu.scenelib.el.RelativeLocation;
 
@@ -15,7 +16,10 @@ public class NewCriterion implements Criterion {
 
   private final RelativeLocation loc;
 
-  public NewCriterion(String methodName, RelativeLocation loc) {
+  /** The bytecode offsets in the class that contains the method. */
+  private final ClassOffsets offsets;
+
+  public NewCriterion(String methodName, RelativeLocation loc, ClassOffsets offsets) {
     this.methodName = methodName.substring(0, methodName.lastIndexOf(")") + 1);
 
     if (!(methodName.startsWith("init for field")
@@ -28,6 +32,7 @@ public class NewCriterion implements Criterion {
     }
 
     this.loc = loc;
+    this.offsets = offsets;
   }
 
   @Override
@@ -58,7 +63,7 @@ public class NewCriterion implements Criterion {
       // System.out.printf("indexInSource=%d%n", indexInSource);
       boolean b;
       if (loc.isBytecodeOffset()) {
-        int indexInClass = NewScanner.getMethodNewIndex(methodName, loc.offset);
+        int indexInClass = offsets.getNewIndex(methodName, loc.offset);
         b = (indexInSource == indexInClass);
       } else {
         b = (indexInSource == loc.index);
@@ -32,6 +32,22 @@ public class NewInsertion extends TypedInsertion {
     qualifyType = false;
   }
 
+  /**
+   * Creates a copy of the given insertion.
+   *
+   * @param other the insertion to copy
+   * @param copier the copier that is copying {@code other}
+   */
+  private NewInsertion(NewInsertion other, InsertionCopier copier) {
+    super(other, copier);
+    this.qualifyType = other.qualifyType;
+  }
+
+  @Override
+  NewInsertion copy(InsertionCopier copier) {
+    return new NewInsertion(this, copier);
+  }
+
   @Override
   protected String getText(boolean abbreviate) {
     if (annotationsOnly || type.getKind() != Type.Kind.ARRAY) {
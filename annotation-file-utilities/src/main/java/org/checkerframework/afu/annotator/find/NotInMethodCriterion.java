@@ -45,6 +45,17 @@ final class NotInMethodCriterion implements Criterion {
     return false;
   }
 
+  @Override
+  public boolean equals(Object o) {
+    // All instances are interchangeable.
+    return o instanceof NotInMethodCriterion;
+  }
+
+  @Override
+  public int hashCode() {
+    return NotInMethodCriterion.class.hashCode();
+  }
+
   @Override
   public String toString() {
     return "not in method";
@@ -31,9 +31,10 @@ final class PackageCriterion implements Criterion {
   @Override
   public boolean isSatisfiedBy(TreePath path) {
     Tree tree = path.getLeaf();
-    Criteria.dbug.debug(
-        "PackageCriterion.isSatisfiedBy(%s, %s); this=%s%n",
-        Main.leafString(path), tree, this.toString());
+    if (Criteria.dbug.isEnabled()) {
+      Criteria.dbug.debug(
+          "PackageCriterion.isSatisfiedBy(%s, %s); this=%s%n", Main.leafString(path), tree, this);
+    }
 
     if (tree instanceof CompilationUnitTree) {
       CompilationUnitTree cu = (CompilationUnitTree) tree;
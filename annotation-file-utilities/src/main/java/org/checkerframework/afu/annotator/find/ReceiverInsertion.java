@@ -42,6 +42,23 @@ public class ReceiverInsertion extends TypedInsertion {
     qualifyThis = false;
   }
 
+  /**
+   * Creates a copy of the given insertion.
+   *
+   * @param other the insertion to copy
+   * @param copier the copier that is copying {@code other}
+   */
+  private ReceiverInsertion(ReceiverInsertion other, InsertionCopier copier) {
+    super(other, copier);
+    this.addComma = other.addComma;
+    this.qualifyThis = other.qualifyThis;
+  }
+
+  @Override
+  ReceiverInsertion copy(InsertionCopier copier) {
+    return new ReceiverInsertion(this, copier);
+  }
+
   /**
    * If {@code true} a comma will be added at the end of the receiver. This will only happen if a
    * receiver is inserted (see {@link #ReceiverInsertion(DeclaredType, Criteria, List)} for a
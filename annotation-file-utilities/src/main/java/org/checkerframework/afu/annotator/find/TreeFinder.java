@@ -48,12 +48,11 @@ import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
 import com.sun.tools.javac.tree.JCTree.JCWildcard;
 import com.sun.tools.javac.util.Position;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.StringJoiner;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -236,21 +235,41 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
     return (parentPath == null) ? null : parentPath.getLeaf();
   }
 
-  /** An alternative to TreePath.getPath(CompilationUnitTree,Tree) that caches its results. */
+  /**
+   * An alternative to TreePath.getPath(CompilationUnitTree,Tree) that looks the path up in the
+   * {@link ASTIndex}'s table of paths, rather than searching the compilation unit.
+   *
+   * @param target a tree in the compilation unit
+   * @return the path to {@code target}, or null if it is not in the compilation unit
+   */
   public TreePath getPath(Tree target) {
-    if (treePathCache.containsKey(target)) {
-      return treePathCache.get(target);
-    }
-    TreePath result = TreePath.getPath(tree, target);
-    treePathCache.put(target, result);
-    return result;
+    return astIndex.getPath(target);
+  }
+
+  /**
+   * Returns the index of the given compilation unit.
+   *
+   * @param node a compilation unit
+   * @return the index of {@code node}
+   */
+  private ASTIndex indexFor(JCCompilationUnit node) {
+    return node == tree ? astIndex : ASTIndex.indexOf(node);
   }
 
-  Map<Tree, TreePath> treePathCache = new HashMap<>();
+  /**
+   * The insertions not yet placed by {@link #getInsertionsByPosition}, or null when {@link #scan}
+   * is called directly.
+   */
+  private InsertionBuckets buckets = null;
+
+  /**
+   * The evaluator for the criteria of the insertions given to {@link #getInsertionsByPosition}, or
+   * null when {@link #scan} is called directly.
+   */
+  private CriteriaEvaluator evaluator = null;
 
   private ASTRecord astRecord(Tree node) {
-    Map<Tree, ASTRecord> index = ASTIndex.indexOf(tree);
-    return index.get(node);
+    return astIndex.get(node);
   }
 
   /**
@@ -376,7 +395,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
     public IPair<ASTRecord, Integer> visitIdentifier(IdentifierTree node, Insertion ins) {
       dbug.debug("TypePositionFinder.visitIdentifier(%s)%n", node);
       // for arrays, need to indent inside array, not right before type
-      ASTRecord rec = ASTIndex.indexOf(tree).get(node);
+      ASTRecord rec = astIndex.get(node);
       ASTPath astPath = ins.getCriteria().getASTPath();
       Tree parent = parent(node);
       Integer i = null;
@@ -621,7 +640,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
             maxDimsSize = Math.max(maxDimsSize, elemDimsSize);
           } else if (elem instanceof JCArrayTypeTree) {
             // Does this ever happen?  javac's Pretty.java handles it.
-            System.out.printf("JCArrayTypeTree: %s%n", elem);
+            out.printf("JCArrayTypeTree: %s%n", elem);
           }
         }
         return maxDimsSize + 1;
@@ -643,7 +662,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
       dbug.debug("TypePositionFinder.visitNewArray%n");
       JCNewArray na = (JCNewArray) node;
       GenericArrayLocationCriterion galc = ins.getCriteria().getGenericArrayLocation();
-      ASTRecord rec = ASTIndex.indexOf(tree).get(node);
+      ASTRecord rec = astIndex.get(node);
       ASTPath astPath = ins.getCriteria().getASTPath();
       String childSelector = null;
       // Invariant:  na.dims.size() == 0  or  na.elems == null  (but not both)
@@ -744,7 +763,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
       if (ASTPath.TYPE.equals(childSelector)) {
         if (na.toString().startsWith("{")) {
           if (ins.getKind() == Insertion.Kind.ANNOTATION) {
-            TreePath parentPath = TreePath.getPath(tree, na).getParentPath();
+            TreePath parentPath = getPath(na).getParentPath();
             if (parentPath != null) {
               Tree parent = parentPath.getLeaf();
               if (parent instanceof VariableTree) {
@@ -754,7 +773,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
                 return IPair.of(rec.replacePath(astPath), na.getStartPosition());
               }
             }
-            System.err.println(
+            err.println(
                 "WARNING: array initializer "
                     + node
                     + " has no explicit type; skipping insertion "
@@ -766,7 +785,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
         }
         if (dim == dimsSize) {
           if (na.elemtype == null) {
-            System.err.println(
+            err.println(
                 "WARNING: array initializer "
                     + node
                     + " has no explicit type; skipping insertion "
@@ -922,16 +941,53 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
   private final TypePositionFinder tpf;
   private final DeclarationPositionFinder dpf;
   private final JCCompilationUnit tree;
+  private final ASTIndex astIndex;
   private final SetMultimap<IPair<Integer, ASTPath>, Insertion> insertions;
   private final SetMultimap<ASTRecord, Insertion> astInsertions;
 
+  /** Where to print progress messages. */
+  private final PrintStream out;
+
+  /** Where to print errors and warnings that cannot be suppressed. */
+  private final PrintStream err;
+
+  /** Prints warnings to {@link #out} if {@link #warn} is enabled. */
+  private final DebugWriter warnings;
+
   /**
    * Creates a {@code TreeFinder} from a source tree.
    *
    * @param tree the source tree to search
    */
   public TreeFinder(JCCompilationUnit tree) {
+    this(tree, ASTIndex.indexOf(tree));
+  }
+
+  /**
+   * Creates a {@code TreeFinder} from a source tree and its index.
+   *
+   * @param tree the source tree to search
+   * @param astIndex the index of {@code tree}
+   */
+  public TreeFinder(JCCompilationUnit tree, ASTIndex astIndex) {
+    this(tree, astIndex, System.out, System.err);
+  }
+
+  /**
+   * Creates a {@code TreeFinder} from a source tree and its index, which prints to the given
+   * streams.
+   *
+   * @param tree the source tree to search
+   * @param astIndex the index of {@code tree}
+   * @param out where to print progress messages and warnings
+   * @param err where to print errors
+   */
+  public TreeFinder(JCCompilationUnit tree, ASTIndex astIndex, PrintStream out, PrintStream err) {
     this.tree = tree;
+    this.astIndex = astIndex;
+    this.out = out;
+    this.err = err;
+    this.warnings = new DebugWriter(warn.isEnabled(), out);
     this.insertions = LinkedHashMultimap.create();
     this.astInsertions = LinkedHashMultimap.create();
     this.tpf = new TypePositionFinder();
@@ -986,25 +1042,36 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
    * insertions map as a value, with a key that is a pair. On return, p contains only the insertions
    * for which no match was found.
    *
+   * <p>When called from {@link #getInsertionsByPosition}, p is not modified; instead, only the
+   * candidates from {@link #buckets} are considered at each node, and they are removed from it.
+   *
    * @param node AST node being considered for annotation insertions
    * @param p list of insertions not yet placed
    */
   @Override
   public Void scan(Tree node, List<Insertion> p) {
-    if (node == null || p.isEmpty()) {
+    if (node == null) {
+      return null;
+    }
+    int pending = buckets == null ? p.size() : buckets.size();
+    if (pending == 0) {
       return null;
     }
 
-    dbug.debug(
-        "TreeFinder.scan(kind=%s, %d insertions): %s%n",
-        node.getKind(), p.size(), Main.treeToString(node));
+    if (dbug.isEnabled()) {
+      dbug.debug(
+          "TreeFinder.scan(kind=%s, %d insertions): %s%n",
+          node.getKind(), pending, Main.treeToString(node));
+    }
     if (Main.temporaryDebug) {
       new Error("backtrace at TreeFinder.scan()").printStackTrace();
     }
     if (!handled(node)) {
-      dbug.debug(
-          "TreeFinder.scan(%s) skipping, unhandled: %s%n",
-          node.getClass(), Main.treeToString(node));
+      if (dbug.isEnabled()) {
+        dbug.debug(
+            "TreeFinder.scan(%s) skipping, unhandled: %s%n",
+            node.getClass(), Main.treeToString(node));
+      }
       // nothing to do
       return super.scan(node, p);
     }
@@ -1030,13 +1097,16 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
       }
     }
 
-    dbug.debug("Considering %d insertions.%n", p.size());
-    for (Iterator<Insertion> it = p.iterator(); it.hasNext(); ) {
+    dbug.debug("Considering %d insertions.%n", pending);
+    for (Iterator<Insertion> it = buckets == null ? p.iterator() : buckets.candidates(path);
+        it.hasNext(); ) {
       Insertion i = it.next();
-      dbug.debug("Considering insertion at tree:%n");
-      dbug.debug("  Insertion: %s%n", i);
-      dbug.debug("  At tree: %s%n", Main.firstLine(node.toString()));
-      dbug.debug("  Tree info: %s%n", node.getClass());
+      if (dbug.isEnabled()) {
+        dbug.debug("Considering insertion at tree:%n");
+        dbug.debug("  Insertion: %s%n", i);
+        dbug.debug("  At tree: %s%n", Main.firstLine(node.toString()));
+        dbug.debug("  Tree info: %s%n", node.getClass());
+      }
       if (i.isInserted()) {
         // Skip this insertion if it has already been inserted. See
         // the ReceiverInsertion class for details.
@@ -1044,17 +1114,18 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
         it.remove();
         continue;
       }
-      if (!i.getCriteria().isSatisfiedBy(path, node)) {
+      if (!i.getCriteria().isSatisfiedBy(path, node, evaluator)) {
         dbug.debug("  ... insertion not satisfied%n");
         continue;
       } else {
-        dbug.debug("  ... insertion satisfied!%n");
-        dbug.debug("    At tree: %s%n", Main.firstLine(node.toString()));
-        dbug.debug("    Tree info: %s%n", node.getClass());
-
         ASTPath astPath = i.getCriteria().getASTPath();
-        dbug.debug(
-            "    astPath = %s [%s]%n", astPath, (astPath == null) ? null : astPath.getClass());
+        if (dbug.isEnabled()) {
+          dbug.debug("  ... insertion satisfied!%n");
+          dbug.debug("    At tree: %s%n", Main.firstLine(node.toString()));
+          dbug.debug("    Tree info: %s%n", node.getClass());
+          dbug.debug(
+              "    astPath = %s [%s]%n", astPath, (astPath == null) ? null : astPath.getClass());
+        }
 
         // If the annotation is not applicable to this location, then
         // continue looking elsewhere for a match.
@@ -1094,8 +1165,10 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
                     : findPositionByASTPath(astPath, path, i);
         if (pos != null) {
           dbug.debug(
-              "  ... satisfied! at %d for node of type %s: %s%n",
-              pos, node.getClass(), Main.treeToString(node));
+              () ->
+                  String.format(
+                      "  ... satisfied! at %d for node of type %s: %s%n",
+                      pos, node.getClass(), Main.treeToString(node)));
           insertions.put(IPair.of(pos, astPath), i);
         }
       }
@@ -1114,7 +1187,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
       // on method declarations of anonymous inner classes.
       if (i.getCriteria().isOnReceiver()
           && path.getParentPath().getParentPath().getLeaf() instanceof NewClassTree) {
-        warn.debug(
+        warnings.debug(
             "WARNING: Cannot insert a receiver parameter "
                 + "on a method declaration of an anonymous inner class.  "
                 + "This insertion will be skipped.%n    Insertion: %s%n",
@@ -1183,7 +1256,6 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
       // in the source tree.  For example, a receiver annotation
       // matches on the method and inserts on the (possibly newly
       // created) receiver.
-      Map<Tree, ASTRecord> astIndex = ASTIndex.indexOf(tree);
       ASTRecord insertRecord = astIndex.get(node);
       dbug.debug("TreeFinder.scan: node=%s%n  critera=%s%n", node, i.getCriteria());
 
@@ -1202,7 +1274,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
           if (pos < 0) { // skip -- inserted w/generated constructor
             return null;
           }
-          dbug.debug("pos=%d at constructor name: %s%n", pos, jcnode.sym.toString());
+          dbug.debug("pos=%d at constructor name: %s%n", pos, jcnode.sym);
         } else {
           IPair<ASTRecord, Integer> pair = tpf.scan(returnType, i);
           insertRecord = pair.first;
@@ -1266,7 +1338,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
           assert handled(node);
           dbug.debug(
               "pos=%d (insertRecord=%s) at type: %s (%s)%n",
-              pos, insertRecord, node.toString(), node.getClass());
+              pos, insertRecord, node, node.getClass());
         } else if (node instanceof MethodTree
             && i.getKind() == Insertion.Kind.CONSTRUCTOR
             && (((JCMethodDecl) node).mods.flags & Flags.GENERATEDCONSTR) != 0) {
@@ -1290,7 +1362,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
       }
       return pos;
     } catch (Throwable e) {
-      reportInsertionError(i, e);
+      reportInsertionError(i, e, err);
       return null;
     }
   }
@@ -1308,7 +1380,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
           && entry.childSelectorIs(ASTPath.PARAMETER)
           && entry.getArgument() == -1
           && path.getParentPath().getParentPath().getLeaf() instanceof NewClassTree) {
-        warn.debug(
+        warnings.debug(
             "WARNING: Cannot insert a receiver parameter "
                 + "on a method declaration of an anonymous inner class.  "
                 + "This insertion will be skipped.%n    Insertion: %s%n",
@@ -1370,7 +1442,6 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
       // in the source tree.  For example, a receiver annotation
       // matches on the method and inserts on the (possibly newly
       // created) receiver.
-      Map<Tree, ASTRecord> astIndex = ASTIndex.indexOf(tree);
       ASTRecord insertRecord = astIndex.get(node);
       dbug.debug("TreeFinder.scan: node=%s%n  criteria=%s%n", node, i.getCriteria());
 
@@ -1400,7 +1471,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
           if (pos < 0) { // skip -- inserted w/generated constructor
             return null;
           }
-          dbug.debug("pos=%d at constructor name: %s%n", pos, jcnode.sym.toString());
+          dbug.debug("pos=%d at constructor name: %s%n", pos, jcnode.sym);
         } else {
           IPair<ASTRecord, Integer> pair = tpf.scan(returnType, i);
           insertRecord = pair.first;
@@ -1488,7 +1559,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
           insertRecord = pair.first;
           pos = pair.second;
           assert handled(node);
-          dbug.debug("pos=%d at type: %s (%s)%n", pos, node.toString(), node.getClass());
+          dbug.debug("pos=%d at type: %s (%s)%n", pos, node, node.getClass());
         } else if (node instanceof MethodTree
             && i.getKind() == Insertion.Kind.CONSTRUCTOR
             && (((JCMethodDecl) node).mods.flags & Flags.GENERATEDCONSTR) != 0) {
@@ -1510,7 +1581,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
       }
       return pos;
     } catch (Throwable e) {
-      reportInsertionError(i, e);
+      reportInsertionError(i, e, err);
       return null;
     }
   }
@@ -1695,20 +1766,31 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
    * @param e the error. If there's a message it will be printed.
    */
   public static void reportInsertionError(Insertion i, Throwable e) {
-    System.err.println("Error processing insertion:");
-    System.err.println("\t" + i);
+    reportInsertionError(i, e, System.err);
+  }
+
+  /**
+   * Reports an error inserting an insertion to the given stream.
+   *
+   * @param i the insertion that caused the error
+   * @param e the error. If there's a message it will be printed.
+   * @param err where to report the error
+   */
+  static void reportInsertionError(Insertion i, Throwable e, PrintStream err) {
+    err.println("Error processing insertion:");
+    err.println("\t" + i);
     if (e.getMessage() != null) {
       // If the message has multiple lines, indent them so it's easier to read.
-      System.err.println(
+      err.println(
           "\tError: "
               + e.getMessage().replace(System.lineSeparator(), System.lineSeparator() + "\t\t"));
     }
     if (dbug.isEnabled() || Main.print_error_stack) {
-      e.printStackTrace();
+      e.printStackTrace(err);
     } else {
-      System.err.println("\tRun with --print_error_stack to see the stack trace.");
+      err.println("\tRun with --print_error_stack to see the stack trace.");
     }
-    System.err.println("\tThis insertion will be skipped.");
+    err.println("\tThis insertion will be skipped.");
   }
 
   /**
@@ -1808,7 +1890,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
 
     Type type = (staticType == null) ? baseType : staticType;
     Insertion.decorateType(
-        receiver.getInnerTypeInsertions(), type, receiver.getCriteria().getASTPath());
+        receiver.getInnerTypeInsertions(), type, receiver.getCriteria().getASTPath(), err);
 
     // If the method doesn't have parameters, don't add a comma.
     receiver.setAddComma(method.getParameters().size() > 0);
@@ -1825,7 +1907,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
       neu.setType(newType);
     }
     Insertion.decorateType(
-        neu.getInnerTypeInsertions(), neu.getType(), neu.getCriteria().getASTPath());
+        neu.getInnerTypeInsertions(), neu.getType(), neu.getCriteria().getASTPath(), err);
   }
 
   private void addConstructor(TreePath path, ConstructorInsertion cons, MethodTree method) {
@@ -1853,10 +1935,10 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
           iter.remove();
         }
       }
-      Insertion.decorateType(recvInner, recv.getType(), cons.getCriteria().getASTPath());
+      Insertion.decorateType(recvInner, recv.getType(), cons.getCriteria().getASTPath(), err);
     }
     Insertion.decorateType(
-        cons.getInnerTypeInsertions(), cons.getType(), cons.getCriteria().getASTPath());
+        cons.getInnerTypeInsertions(), cons.getType(), cons.getCriteria().getASTPath(), err);
   }
 
   public SetMultimap<ASTRecord, Insertion> getPaths() {
@@ -1876,13 +1958,23 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
    */
   public SetMultimap<IPair<Integer, ASTPath>, Insertion> getInsertionsByPosition(
       JCCompilationUnit node, List<Insertion> p) {
-    List<Insertion> uninserted = new ArrayList<>(p);
-    this.scan(node, uninserted);
+    buckets = new InsertionBuckets(p);
+    evaluator = new CriteriaEvaluator(p, warnings);
+    List<Insertion> uninserted;
+    try {
+      this.scan(node, p);
+      uninserted = buckets.remaining();
+      dbug.debug("%s%n", evaluator);
+    } finally {
+      buckets = null;
+      evaluator = null;
+    }
     // There may be many extra annotations in a .jaif file.  For instance,
     // the .jaif file may be for an entire library, but its compilation
     // units are processed one by one.
     // However, we should warn about any insertions that were within the
     // given compilation unit but still didn't get inserted.
+    ASTIndex index = indexFor(node);
     List<? extends Tree> typeDecls = node.getTypeDecls();
     for (Insertion i : uninserted) {
       InClassCriterion c = i.getCriteria().getInClass();
@@ -1890,14 +1982,14 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
         continue;
       }
       for (Tree t : typeDecls) {
-        if (c.isSatisfiedBy(TreePath.getPath(node, t))) {
+        if (c.isSatisfiedBy(index.getPath(t))) {
           // Avoid warnings about synthetic generated methods.
           // This test is too coarse, but is good enough for now.
           // There are also synthetic local variables; maybe suppress
           // warnings about them, too.
           if (!(i.getCriteria().isOnMethod("<init>()V") || i.getCriteria().isOnLocalVariable())) {
             // Should be made more user-friendly
-            System.err.printf(
+            err.printf(
                 "Found class %s, but unable to insert %s:%n  %s%n", c.className, i.getText(), i);
           }
         }
@@ -1906,7 +1998,7 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
     if (dbug.isEnabled()) {
       // Output every insertion that was not given a position:
       for (Insertion i : uninserted) {
-        System.err.println("Unable to insert: " + i);
+        err.println("Unable to insert: " + i);
       }
     }
     dbug.debug("getPositions => %d positions%n", insertions.size());
@@ -1926,21 +2018,21 @@ public class TreeFinder extends TreeScanner<Void, List<Insertion>> {
   public SetMultimap<IPair<Integer, ASTPath>, Insertion> getPositions(
       JCCompilationUnit node, Insertions insertions) {
     List<Insertion> list = new ArrayList<>();
-    treePathCache.clear();
+    ASTIndex index = indexFor(node);
     if (Main.temporaryDebug) {
       System.out.println("insertions size: " + insertions.size());
       System.out.println(
-          "insertions.forOuterClass(\"\") size: " + insertions.forOuterClass(node, "").size());
+          "insertions.forOuterClass(\"\") size: " + insertions.forOuterClass(index, "").size());
       System.out.println("list pre-size: " + list.size());
     }
-    list.addAll(insertions.forOuterClass(node, ""));
+    list.addAll(insertions.forOuterClass(index, ""));
     if (Main.temporaryDebug) {
       System.out.println("list post-size: " + list.size());
     }
     for (JCTree decl : node.getTypeDecls()) {
       if (decl.getTag() == JCTree.Tag.CLASSDEF) {
         String name = ((JCClassDecl) decl).sym.className();
-        Collection<Insertion> forClass = insertions.forOuterClass(node, name);
+        Collection<Insertion> forClass = insertions.forOuterClass(index, name);
         if (Main.temporaryDebug) {
           System.out.println("insertions size: " + insertions.size());
           System.out.println("insertions.forOuterClass(" + name + ") size: " + forClass.size());
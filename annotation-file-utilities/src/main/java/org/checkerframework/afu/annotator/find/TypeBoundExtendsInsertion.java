@@ -14,6 +14,21 @@ public class TypeBoundExtendsInsertion extends AnnotationInsertion {
     super(text, criteria, separateLine);
   }
 
+  /**
+   * Creates a copy of the given insertion.
+   *
+   * @param other the insertion to copy
+   * @param copier the copier that is copying {@code other}
+   */
+  private TypeBoundExtendsInsertion(TypeBoundExtendsInsertion other, InsertionCopier copier) {
+    super(other, copier);
+  }
+
+  @Override
+  TypeBoundExtendsInsertion copy(InsertionCopier copier) {
+    return new TypeBoundExtendsInsertion(this, copier);
+  }
+
   @Override
   protected String getText(boolean abbreviate) {
     return "extends java.lang." + super.getText(abbreviate) + " Object";
@@ -42,6 +42,19 @@ public abstract class TypedInsertion extends Insertion {
     annotationsOnly = false;
   }
 
+  /**
+   * Creates a copy of the given insertion.
+   *
+   * @param other the insertion to copy
+   * @param copier the copier that is copying {@code other}
+   */
+  TypedInsertion(TypedInsertion other, InsertionCopier copier) {
+    super(other, copier);
+    this.type = copier.copy(other.type);
+    this.annotationsOnly = other.annotationsOnly;
+    this.innerTypeInsertions = copier.copyAll(other.innerTypeInsertions);
+  }
+
   /**
    * If {@code true} only the annotations on {@code type} will be inserted. This is useful when the
    * "new" has already been inserted.
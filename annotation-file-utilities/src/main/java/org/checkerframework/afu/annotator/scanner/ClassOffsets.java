@@ -0,0 +1,421 @@
+package org.checkerframework.afu.annotator.scanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The bytecode offsets of the casts, object creations, instanceof checks, method calls, lambda
+ * expressions, and local variables in the methods of one class, as read from its class file by
+ * {@link MethodOffsetClassVisitor}. A ClassOffsets is immutable, so it may be shared by threads.
+ *
+ * <p>Methods are identified by their name and the parenthesized part of their descriptor, such as
+ * {@code "foo(ILjava/lang/String;)"}.
+ */
+public final class ClassOffsets {
+
+  /** The offsets of a class whose class file was not read. */
+  public static final ClassOffsets EMPTY = new Builder().build();
+
+  /** The offsets of the casts in each method. */
+  private final Map<String, Offsets> casts;
+
+  /** The offsets of the object and array creations in each method. */
+  private final Map<String, Offsets> news;
+
+  /** The offsets of the instanceof checks in each method. */
+  private final Map<String, Offsets> instanceOfs;
+
+  /** The offsets of the member references in each method. */
+  private final Map<String, Offsets> memberReferences;
+
+  /** The offsets of the method calls in each method. */
+  private final Map<String, Offsets> methodCalls;
+
+  /** The offsets of the lambda expressions in each method. */
+  private final Map<String, Offsets> lambdaExpressions;
+
+  /**
+   * For each method, the name of each local variable, keyed by its index and its start offset (see
+   * {@link #localVariableKey}).
+   */
+  private final Map<String, Map<Long, String>> localVariableNames;
+
+  /** For each method, the start offsets of the local variables with each name. */
+  private final Map<String, Map<String, Offsets>> localVariableStarts;
+
+  /**
+   * Creates a ClassOffsets from the contents of a builder.
+   *
+   * @param builder the builder
+   */
+  private ClassOffsets(Builder builder) {
+    casts = freeze(builder.casts);
+    news = freeze(builder.news);
+    instanceOfs = freeze(builder.instanceOfs);
+    memberReferences = freeze(builder.memberReferences);
+    methodCalls = freeze(builder.methodCalls);
+    lambdaExpressions = freeze(builder.lambdaExpressions);
+    Map<String, Map<Long, String>> names = new HashMap<>();
+    for (Map.Entry<String, Map<Long, String>> entry : builder.localVariableNames.entrySet()) {
+      names.put(entry.getKey(), Collections.unmodifiableMap(new HashMap<>(entry.getValue())));
+    }
+    localVariableNames = Collections.unmodifiableMap(names);
+    Map<String, Map<String, Offsets>> starts = new HashMap<>();
+    for (Map.Entry<String, Map<String, List<Integer>>> entry :
+        builder.localVariableStarts.entrySet()) {
+      starts.put(entry.getKey(), freeze(entry.getValue()));
+    }
+    localVariableStarts = Collections.unmodifiableMap(starts);
+  }
+
+  /**
+   * Converts lists of offsets into immutable, searchable form.
+   *
+   * @param lists a map whose values are lists of offsets, each in index order
+   * @return an unmodifiable map from the same keys to the same offsets
+   */
+  private static Map<String, Offsets> freeze(Map<String, List<Integer>> lists) {
+    Map<String, Offsets> result = new HashMap<>();
+    for (Map.Entry<String, List<Integer>> entry : lists.entrySet()) {
+      result.put(entry.getKey(), new Offsets(entry.getValue()));
+    }
+    return Collections.unmodifiableMap(result);
+  }
+
+  /**
+   * Returns the index of the cast at the given offset among the casts in the given method, using
+   * 0-based indexing.
+   *
+   * @param methodName the name of the method
+   * @param offset the offset of the cast
+   * @return the index of the cast, or -1 if there is no cast at {@code offset}
+   */
+  public int getCastIndex(String methodName, int offset) {
+    return indexOf(casts, methodName, offset);
+  }
+
+  /**
+   * Returns the index of the object or array creation at the given offset among those in the given
+   * method, using 0-based indexing.
+   *
+   * @param methodName the name of the method
+   * @param offset the offset of the object or array creation
+   * @return the index of the object or array creation
+   * @throws RuntimeException if there is no object or array creation at {@code offset}
+   */
+  public int getNewIndex(String methodName, int offset) {
+    Offsets offsets = news.get(methodName);
+    if (offsets == null) {
+      throw new RuntimeException(
+          "ClassOffsets.getNewIndex() : did not find offsets for method: " + methodName);
+    }
+    int index = offsets.indexOf(offset);
+    if (index < 0) {
+      throw new RuntimeException(
+          "ClassOffsets.getNewIndex() : in method: "
+              + methodName
+              + " did not find offset: "
+              + offset);
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the instanceof check at the given offset among the instanceof checks in
+   * the given method, using 0-based indexing.
+   *
+   * @param methodName the name of the method
+   * @param offset the offset of the instanceof check
+   * @return the index of the instanceof check, or -1 if there is none at {@code offset}
+   */
+  public int getInstanceOfIndex(String methodName, int offset) {
+    return indexOf(instanceOfs, methodName, offset);
+  }
+
+  /**
+   * Returns the index of the member reference at the given offset among the member references in
+   * the given method, using 0-based indexing.
+   *
+   * @param methodName the name of the method
+   * @param offset the offset of the member reference
+   * @return the index of the member reference, or -1 if there is none at {@code offset}
+   */
+  public int getMemberReferenceIndex(String methodName, int offset) {
+    return indexOf(memberReferences, methodName, offset);
+  }
+
+  /**
+   * Returns the index of the method call at the given offset among the method calls in the given
+   * method, using 0-based indexing.
+   *
+   * @param methodName the name of the method
+   * @param offset the offset of the method call
+   * @return the index of the method call, or -1 if there is none at {@code offset}
+   */
+  public int getMethodCallIndex(String methodName, int offset) {
+    return indexOf(methodCalls, methodName, offset);
+  }
+
+  /**
+   * Returns the index of the lambda expression at the given offset among the lambda expressions in
+   * the given method, using 0-based indexing.
+   *
+   * @param methodName the name of the method
+   * @param offset the offset of the lambda expression
+   * @return the index of the lambda expression, or -1 if there is none at {@code offset}
+   */
+  public int getLambdaExpressionIndex(String methodName, int offset) {
+    return indexOf(lambdaExpressions, methodName, offset);
+  }
+
+  /**
+   * Returns the name of the local variable in the given method with the given index and start
+   * offset.
+   *
+   * @param methodName the name of the method
+   * @param index the index of the local variable
+   * @param start the start offset of the local variable's live range
+   * @return the name of the local variable, or null if there is none
+   */
+  public String getLocalVariableName(String methodName, int index, int start) {
+    Map<Long, String> names = localVariableNames.get(methodName);
+    return names == null ? null : names.get(localVariableKey(index, start));
+  }
+
+  /**
+   * Returns the index of the given start offset among the start offsets of the local variables
+   * with the given name in the given method, using 0-based indexing.
+   *
+   * @param methodName the name of the method
+   * @param varName the name of the local variable
+   * @param start the start offset of the local variable's live range
+   * @return the index of {@code start}, or -1 if no such local variable starts there
+   */
+  public int getLocalVariableIndex(String methodName, String varName, int start) {
+    Map<String, Offsets> starts = localVariableStarts.get(methodName);
+    return starts == null ? -1 : indexOf(starts, varName, start);
+  }
+
+  /**
+   * Returns the index of the given offset in the given map's offsets for the given key.
+   *
+   * @param map a map to offsets
+   * @param key the key
+   * @param offset the offset
+   * @return the index of {@code offset}, or -1 if it is not present
+   */
+  private static int indexOf(Map<String, Offsets> map, String key, int offset) {
+    Offsets offsets = map.get(key);
+    return offsets == null ? -1 : offsets.indexOf(offset);
+  }
+
+  /**
+   * Returns the key under which the name of a local variable is stored.
+   *
+   * @param index the index of the local variable
+   * @param start the start offset of the local variable's live range
+   * @return the key for the local variable
+   */
+  private static long localVariableKey(int index, int start) {
+    return ((long) index << 32) | (start & 0xffffffffL);
+  }
+
+  /**
+   * A list of distinct offsets, each with its index in the list, sorted by offset so that the index
+   * of an offset can be found by binary search.
+   */
+  private static final class Offsets {
+    /** The offsets, in increasing order. */
+    private final int[] offsets;
+
+    /** The index of each element of {@link #offsets} in the original list. */
+    private final int[] indices;
+
+    /**
+     * Creates an Offsets from a list of offsets. If an offset occurs more than once, only its first
+     * occurrence is retained, as {@link List#indexOf} would find.
+     *
+     * @param list a list of offsets
+     */
+    Offsets(List<Integer> list) {
+      // Sort (offset, index) pairs by offset, then by index.
+      long[] pairs = new long[list.size()];
+      for (int i = 0; i < pairs.length; i++) {
+        pairs[i] = ((long) list.get(i) << 32) | i;
+      }
+      Arrays.sort(pairs);
+      int[] offsets = new int[pairs.length];
+      int[] indices = new int[pairs.length];
+      int size = 0;
+      for (long pair : pairs) {
+        int offset = (int) (pair >> 32);
+        if (size == 0 || offsets[size - 1] != offset) {
+          offsets[size] = offset;
+          indices[size] = (int) pair;
+          size++;
+        }
+      }
+      this.offsets = Arrays.copyOf(offsets, size);
+      this.indices = Arrays.copyOf(indices, size);
+    }
+
+    /**
+     * Returns the index of the given offset in the original list.
+     *
+     * @param offset an offset
+     * @return the index of {@code offset}, or -1 if it is not present
+     */
+    int indexOf(int offset) {
+      int i = Arrays.binarySearch(offsets, offset);
+      return i < 0 ? -1 : indices[i];
+    }
+  }
+
+  /** Accumulates the offsets of one class. */
+  static final class Builder {
+    /** The offsets of the casts in each method, in index order. */
+    private final Map<String, List<Integer>> casts = new HashMap<>();
+
+    /** The offsets of the object and array creations in each method, in index order. */
+    private final Map<String, List<Integer>> news = new HashMap<>();
+
+    /** The offsets of the instanceof checks in each method, in index order. */
+    private final Map<String, List<Integer>> instanceOfs = new HashMap<>();
+
+    /** The offsets of the member references in each method, in index order. */
+    private final Map<String, List<Integer>> memberReferences = new HashMap<>();
+
+    /** The offsets of the method calls in each method, in index order. */
+    private final Map<String, List<Integer>> methodCalls = new HashMap<>();
+
+    /** The offsets of the lambda expressions in each method, in index order. */
+    private final Map<String, List<Integer>> lambdaExpressions = new HashMap<>();
+
+    /** For each method, the name of each local variable, keyed by its index and start offset. */
+    private final Map<String, Map<Long, String>> localVariableNames = new HashMap<>();
+
+    /** For each method, the start offsets of the local variables with each name, in index order. */
+    private final Map<String, Map<String, List<Integer>>> localVariableStarts = new HashMap<>();
+
+    /** The method of the most recently added cast, or null. */
+    private String prevCastMethodName = null;
+
+    /** The offset of the most recently added cast, or -1. */
+    private int prevCastOffset = -1;
+
+    /** The number of directly nested casts that precede the most recently added cast. */
+    private int nestLevels = 0;
+
+    /**
+     * Returns the list of offsets for the given method.
+     *
+     * @param map a map from methods to lists of offsets
+     * @param methodName the name of the method
+     * @return the list of offsets for {@code methodName} in {@code map}
+     */
+    private static List<Integer> offsets(Map<String, List<Integer>> map, String methodName) {
+      return map.computeIfAbsent(methodName, k -> new ArrayList<>());
+    }
+
+    /**
+     * Adds a cast. This method must be called with monotonically increasing offsets for any one
+     * method.
+     *
+     * @param methodName the name of the method
+     * @param offset the offset of the cast
+     */
+    void addCast(String methodName, int offset) {
+      List<Integer> offsetList = offsets(casts, methodName);
+      if (methodName.equals(prevCastMethodName) && offset - prevCastOffset == 3) {
+        // consecutive instructions -> nested casts -> reverse order!
+        // TODO: other cases for nested casts?
+        ++nestLevels;
+        offsetList.add(offsetList.size() - nestLevels, offset);
+      } else {
+        nestLevels = 0;
+        offsetList.add(offset);
+      }
+      prevCastMethodName = methodName;
+      prevCastOffset = offset;
+    }
+
+    /**
+     * Adds an object or array creation.
+     *
+     * @param methodName the name of the method
+     * @param offset the offset of the object or array creation
+     */
+    void addNew(String methodName, int offset) {
+      offsets(news, methodName).add(offset);
+    }
+
+    /**
+     * Adds an instanceof check.
+     *
+     * @param methodName the name of the method
+     * @param offset the offset of the instanceof check
+     */
+    void addInstanceOf(String methodName, int offset) {
+      offsets(instanceOfs, methodName).add(offset);
+    }
+
+    /**
+     * Adds a member reference.
+     *
+     * @param methodName the name of the method
+     * @param offset the offset of the member reference
+     */
+    void addMemberReference(String methodName, int offset) {
+      offsets(memberReferences, methodName).add(offset);
+    }
+
+    /**
+     * Adds a method call.
+     *
+     * @param methodName the name of the method
+     * @param offset the offset of the method call
+     */
+    void addMethodCall(String methodName, int offset) {
+      offsets(methodCalls, methodName).add(offset);
+    }
+
+    /**
+     * Adds a lambda expression.
+     *
+     * @param methodName the name of the method
+     * @param offset the offset of the lambda expression
+     */
+    void addLambdaExpression(String methodName, int offset) {
+      offsets(lambdaExpressions, methodName).add(offset);
+    }
+
+    /**
+     * Adds a local variable.
+     *
+     * @param methodName the name of the method
+     * @param varName the name of the local variable
+     * @param index the index of the local variable
+     * @param start the start offset of the local variable's live range
+     */
+    void addLocalVariable(String methodName, String varName, int index, int start) {
+      localVariableNames
+          .computeIfAbsent(methodName, k -> new HashMap<>())
+          .put(localVariableKey(index, start), varName);
+      offsets(localVariableStarts.computeIfAbsent(methodName, k -> new HashMap<>()), varName)
+          .add(start);
+    }
+
+    /**
+     * Returns the offsets added so far.
+     *
+     * @return the offsets added so far
+     */
+    ClassOffsets build() {
+      return new ClassOffsets(this);
+    }
+  }
+}
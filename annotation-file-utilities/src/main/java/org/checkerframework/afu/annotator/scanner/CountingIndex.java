@@ -0,0 +1,196 @@
+package org.checkerframework.afu.annotator.scanner;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.InstanceOfTree;
+import com.sun.source.tree.LambdaExpressionTree;
+import com.sun.source.tree.MemberReferenceTree;
+import com.sun.source.tree.MethodInvocationTree;
+import com.sun.source.tree.NewArrayTree;
+import com.sun.source.tree.NewClassTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.TypeCastTree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePath;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * The ordinal of every cast, instanceof, new, lambda expression, member reference, method call, and
+ * local variable within one counting context (see {@link TreePathUtil#findCountingContext}).
+ *
+ * <p>The scanners in this package used to re-scan the counting context each time the index of one
+ * tree was queried, which is quadratic in the number of such trees. An index is computed by one
+ * traversal of its counting context, and is retained as long as its compilation unit is, so it is
+ * shared by all queries made while processing that compilation unit.
+ */
+final class CountingIndex {
+
+  /**
+   * For each compilation unit, the index of each of its counting contexts, keyed by the leaf of the
+   * counting context. The keys are weak, so the indexes are discarded along with their compilation
+   * unit. Compilation units may be processed concurrently, so all access must be synchronized on
+   * this map.
+   */
+  private static final Map<CompilationUnitTree, Map<Tree, CountingIndex>> indexes =
+      new WeakHashMap<>();
+
+  /** The ordinal of each cast, instanceof, new, lambda, member reference, and method call. */
+  private final Map<Tree, Integer> ordinals = new IdentityHashMap<>();
+
+  /** The ordinal of each local variable, among the local variables with the same name. */
+  private final Map<Tree, Integer> varOrdinals = new IdentityHashMap<>();
+
+  /** The number of trees of each kind; new arrays are counted as {@link Tree.Kind#NEW_CLASS}. */
+  private final Map<Tree.Kind, Integer> counts = new HashMap<>();
+
+  /** The number of local variables with each name. */
+  private final Map<String, Integer> varCounts = new HashMap<>();
+
+  /**
+   * Returns the index of the counting context that encloses the given path.
+   *
+   * @param origpath a path
+   * @return the index of the counting context of {@code origpath}, or null if there is none
+   */
+  static CountingIndex of(TreePath origpath) {
+    TreePath path = TreePathUtil.findCountingContext(origpath);
+    if (path == null) {
+      return null;
+    }
+    CompilationUnitTree cut = path.getCompilationUnit();
+    Tree context = path.getLeaf();
+    synchronized (indexes) {
+      Map<Tree, CountingIndex> contexts = indexes.get(cut);
+      CountingIndex index = contexts == null ? null : contexts.get(context);
+      if (index != null) {
+        return index;
+      }
+    }
+    // Build the index without holding the lock, so that other compilation units are not delayed.
+    CountingIndex index = new CountingIndex(path);
+    synchronized (indexes) {
+      CountingIndex other =
+          indexes.computeIfAbsent(cut, k -> new IdentityHashMap<>()).putIfAbsent(context, index);
+      return other != null ? other : index;
+    }
+  }
+
+  /**
+   * Creates the index of the given counting context.
+   *
+   * @param path a counting context
+   */
+  private CountingIndex(TreePath path) {
+    new Builder().scan(path, null);
+  }
+
+  /**
+   * Returns the ordinal of the given tree among the trees of its kind in this counting context,
+   * using 0-based indexing. A {@code NewArrayTree} is counted as a {@code NewClassTree}. If the
+   * tree is not in this counting context, returns one less than the number of trees of its kind.
+   *
+   * @param kind the kind of {@code tree}, or {@code NEW_CLASS} for a new array
+   * @param tree a cast, instanceof, new, lambda, member reference, or method call
+   * @return the index of {@code tree}
+   */
+  int indexOf(Tree.Kind kind, Tree tree) {
+    Integer ordinal = ordinals.get(tree);
+    return ordinal != null ? ordinal : counts.getOrDefault(kind, 0) - 1;
+  }
+
+  /**
+   * Returns the ordinal of the given variable declaration among the declarations of local variables
+   * with the given name in this counting context, using 0-based indexing. If the declaration is not
+   * in this counting context, returns one less than the number of such declarations.
+   *
+   * @param varTree a variable declaration
+   * @param varName the name of the variable
+   * @return the index of {@code varTree}
+   */
+  int indexOfVar(Tree varTree, String varName) {
+    Integer ordinal = varOrdinals.get(varTree);
+    return ordinal != null ? ordinal : varCounts.getOrDefault(varName, 0) - 1;
+  }
+
+  /**
+   * Numbers the trees of a counting context, in the order in which the scanners in this package
+   * visit them.
+   */
+  private class Builder extends CommonScanner {
+    /** The number of variable declarations that enclose the current tree. */
+    private int varDepth = 0;
+
+    /**
+     * Records the next ordinal of the given kind for the given tree.
+     *
+     * @param kind the kind under which to count {@code tree}
+     * @param tree the tree
+     */
+    private void count(Tree.Kind kind, Tree tree) {
+      int ordinal = counts.getOrDefault(kind, 0);
+      counts.put(kind, ordinal + 1);
+      ordinals.put(tree, ordinal);
+    }
+
+    @Override
+    public Void visitTypeCast(TypeCastTree node, Void p) {
+      count(Tree.Kind.TYPE_CAST, node);
+      return super.visitTypeCast(node, p);
+    }
+
+    @Override
+    public Void visitInstanceOf(InstanceOfTree node, Void p) {
+      count(Tree.Kind.INSTANCE_OF, node);
+      return super.visitInstanceOf(node, p);
+    }
+
+    @Override
+    public Void visitNewClass(NewClassTree node, Void p) {
+      count(Tree.Kind.NEW_CLASS, node);
+      return super.visitNewClass(node, p);
+    }
+
+    @Override
+    public Void visitNewArray(NewArrayTree node, Void p) {
+      count(Tree.Kind.NEW_CLASS, node);
+      return super.visitNewArray(node, p);
+    }
+
+    @Override
+    public Void visitLambdaExpression(LambdaExpressionTree node, Void p) {
+      count(Tree.Kind.LAMBDA_EXPRESSION, node);
+      return super.visitLambdaExpression(node, p);
+    }
+
+    @Override
+    public Void visitMemberReference(MemberReferenceTree node, Void p) {
+      count(Tree.Kind.MEMBER_REFERENCE, node);
+      return super.visitMemberReference(node, p);
+    }
+
+    @Override
+    public Void visitMethodInvocation(MethodInvocationTree node, Void p) {
+      count(Tree.Kind.METHOD_INVOCATION, node);
+      return super.visitMethodInvocation(node, p);
+    }
+
+    @Override
+    public Void visitVariable(VariableTree node, Void p) {
+      // Local variables are not counted within the declaration of another variable.
+      if (varDepth == 0) {
+        String name = node.getName().toString();
+        int ordinal = varCounts.getOrDefault(name, 0);
+        varCounts.put(name, ordinal + 1);
+        varOrdinals.put(node, ordinal);
+      }
+      varDepth++;
+      try {
+        return super.visitVariable(node, p);
+      } finally {
+        varDepth--;
+      }
+    }
+  }
+}
@@ -1,6 +1,5 @@
 package org.checkerframework.afu.annotator.scanner;
 
-import com.sun.tools.javac.util.Pair;
 import org.checkerframework.afu.scenelib.io.classfile.CodeOffsetAdapter;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
@@ -12,10 +11,9 @@ import org.objectweb.asm.Opcodes;
 
 /**
  * MethodOffsetClassVisitor is a class visitor that should be passed to ASM's ClassReader in order
- * to retrieve extra information about method offsets needed by all of the
- * org.checkerframework.afu.annotator.scanner classes. This visitor should visit every class that is
- * to be annotated, and should be done before trying to match elements in the tree to the various
- * criterion.
+ * to retrieve extra information about method offsets, which {@link #getOffsets} returns. This
+ * visitor should visit every class that is to be annotated, and should be done before trying to
+ * match elements in the tree to the various criterion.
  */
 // Note: in order to ensure all labels are visited, this class
 // needs to extend ClassWriter and not other class visitor classes.
@@ -31,6 +29,9 @@ public class MethodOffsetClassVisitor extends ClassVisitor {
   /** The name of the method currently being visisted. */
   private String methodName;
 
+  /** The offsets read so far. */
+  private final ClassOffsets.Builder offsets = new ClassOffsets.Builder();
+
   /**
    * Constructs a new {@code MethodOffsetClassVisitor}.
    *
@@ -44,6 +45,15 @@ public class MethodOffsetClassVisitor extends ClassVisitor {
     codeOffsetAdapter = new CodeOffsetAdapter(api, classReader);
   }
 
+  /**
+   * Returns the offsets in the class that this has visited.
+   *
+   * @return the offsets in the class that this has visited
+   */
+  public ClassOffsets getOffsets() {
+    return offsets.build();
+  }
+
   @Override
   public MethodVisitor visitMethod(
       int access, String name, String descriptor, String signature, String[] exceptions) {
@@ -56,8 +66,7 @@ public class MethodOffsetClassVisitor extends ClassVisitor {
 
   /**
    * MethodOffsetMethodVisitor is the method visitor that MethodOffsetClassVisitor uses to visit
-   * particular methods and gather all the offset information by calling the appropriate static
-   * methods in org.checkerframework.afu.annotator.scanner classes.
+   * particular methods and gather all the offset information into {@link #offsets}.
    */
   private class MethodOffsetMethodVisitor extends MethodVisitor {
     /**
@@ -84,9 +93,7 @@ public class MethodOffsetClassVisitor extends ClassVisitor {
     public void visitLocalVariable(
         String name, String descriptor, String signature, Label start, Label end, int index) {
       super.visitLocalVariable(name, descriptor, signature, start, end, index);
-      LocalVariableScanner.addToMethodNameIndexMap(
-          Pair.of(methodName, Pair.of(index, start.getOffset())), name);
-      LocalVariableScanner.addToMethodNameCounter(methodName, name, start.getOffset());
+      offsets.addLocalVariable(methodName, name, index, start.getOffset());
       methodCodeOffsetAdapter.visitLocalVariable(name, descriptor, signature, start, end, index);
     }
 
@@ -101,14 +108,14 @@ public class MethodOffsetClassVisitor extends ClassVisitor {
       super.visitTypeInsn(opcode, descriptor);
       switch (opcode) {
         case Opcodes.CHECKCAST:
-          CastScanner.addCastToMethod(methodName, getOffset());
+          offsets.addCast(methodName, getOffset());
           break;
         case Opcodes.NEW:
         case Opcodes.ANEWARRAY:
-          NewScanner.addNewToMethod(methodName, getOffset());
+          offsets.addNew(methodName, getOffset());
           break;
         case Opcodes.INSTANCEOF:
-          InstanceOfScanner.addInstanceOfToMethod(methodName, getOffset());
+          offsets.addInstanceOf(methodName, getOffset());
           break;
       }
       methodCodeOffsetAdapter.visitTypeInsn(opcode, descriptor);
@@ -117,7 +124,7 @@ public class MethodOffsetClassVisitor extends ClassVisitor {
     @Override
     public void visitMultiANewArrayInsn(String descriptor, int dims) {
       super.visitMultiANewArrayInsn(descriptor, dims);
-      NewScanner.addNewToMethod(methodName, getOffset());
+      offsets.addNew(methodName, getOffset());
       methodCodeOffsetAdapter.visitMultiANewArrayInsn(descriptor, dims);
     }
 
@@ -125,7 +132,7 @@ public class MethodOffsetClassVisitor extends ClassVisitor {
     public void visitIntInsn(int opcode, int operand) {
       super.visitIntInsn(opcode, operand);
       if (opcode == Opcodes.NEWARRAY) {
-        NewScanner.addNewToMethod(methodName, getOffset());
+        offsets.addNew(methodName, getOffset());
       }
       methodCodeOffsetAdapter.visitIntInsn(opcode, operand);
     }
@@ -138,7 +145,7 @@ public class MethodOffsetClassVisitor extends ClassVisitor {
         case Opcodes.INVOKEINTERFACE:
         case Opcodes.INVOKESTATIC:
         case Opcodes.INVOKEVIRTUAL:
-          MethodCallScanner.addMethodCallToMethod(methodName, getOffset());
+          offsets.addMethodCall(methodName, getOffset());
           break;
         default:
           break;
@@ -154,7 +161,7 @@ public class MethodOffsetClassVisitor extends ClassVisitor {
         case Opcodes.INVOKEINTERFACE:
         case Opcodes.INVOKESTATIC:
         case Opcodes.INVOKEVIRTUAL:
-          MethodCallScanner.addMethodCallToMethod(methodName, getOffset());
+          offsets.addMethodCall(methodName, getOffset());
           break;
         default:
           break;
@@ -166,7 +173,7 @@ public class MethodOffsetClassVisitor extends ClassVisitor {
     public void visitInvokeDynamicInsn(
         String name, String descriptor, Handle bsm, Object... bsmArgs) {
       super.visitInvokeDynamicInsn(name, descriptor, bsm, bsmArgs);
-      LambdaScanner.addLambdaExpressionToMethod(methodName, getOffset());
+      offsets.addLambdaExpression(methodName, getOffset());
       methodCodeOffsetAdapter.visitInvokeDynamicInsn(name, descriptor, bsm, bsmArgs);
     }
 
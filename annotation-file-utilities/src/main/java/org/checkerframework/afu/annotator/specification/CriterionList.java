@@ -2,6 +2,8 @@ package org.checkerframework.afu.annotator.specification;
 
 import org.checkerframework.afu.annotator.find.Criteria;
 import org.checkerframework.afu.annotator.find.Criterion;
+import org.checkerframework.afu.annotator.find.CriterionInterner;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 // The notion of a CriterionList as a list of independent elements (with the
 // list being satisfied if each of its elements is) is broken.  For example, a
@@ -22,6 +24,9 @@ import org.checkerframework.afu.annotator.find.Criterion;
  * that creates all the criterion. A CriterionList is immutable, and so copies created by the add()
  * function can safely be passed anywhere. It is supposed to be easier to manipulate than a
  * Criteria.
+ *
+ * <p>A CriterionList may intern the criteria added to it, so that the many lists that contain
+ * equal criteria share them.
  */
 public class CriterionList {
   // This really is a simple data structure to facilitate creation
@@ -29,10 +34,24 @@ public class CriterionList {
   private Criterion current;
   private CriterionList next;
 
+  /** The pool in which added criteria are interned, or null to not intern them. */
+  private final @Nullable CriterionInterner interner;
+
   /** Creates a new CriterionList with no criterion. */
   public CriterionList() {
+    this((CriterionInterner) null);
+  }
+
+  /**
+   * Creates a new CriterionList with no criterion, which interns the criteria added to it and to
+   * the lists created from it.
+   *
+   * @param interner the pool in which to intern added criteria, or null to not intern them
+   */
+  public CriterionList(@Nullable CriterionInterner interner) {
     next = null;
     current = null;
+    this.interner = interner;
   }
 
   /**
@@ -43,23 +62,26 @@ public class CriterionList {
   public CriterionList(Criterion c) {
     current = c;
     next = null;
+    interner = null;
   }
 
   private CriterionList(Criterion c, CriterionList n) {
     current = c;
     next = n;
+    interner = n.interner;
   }
 
   /**
    * Adds the given criterion to the present list and returns a newly-allocated list containing the
-   * result. Does not modify its argument.
+   * result. Does not modify its argument. If this list interns criteria, the new list contains the
+   * canonical criterion that equals the given one.
    *
    * @param c the criterion to add
    * @return a new list containing the given criterion and the rest of the criterion already in this
    *     list
    */
   public CriterionList add(Criterion c) {
-    return new CriterionList(c, this);
+    return new CriterionList(interner == null ? c : interner.intern(c), this);
   }
 
   /**
@@ -10,17 +10,20 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.Predicate;
 import org.checkerframework.afu.annotator.Main;
 import org.checkerframework.afu.annotator.find.AnnotationInsertion;
 import org.checkerframework.afu.annotator.find.CastInsertion;
 import org.checkerframework.afu.annotator.find.CloseParenthesisInsertion;
 import org.checkerframework.afu.annotator.find.ConstructorInsertion;
 import org.checkerframework.afu.annotator.find.Criteria;
+import org.checkerframework.afu.annotator.find.CriterionInterner;
 import org.checkerframework.afu.annotator.find.GenericArrayLocationCriterion;
 import org.checkerframework.afu.annotator.find.Insertion;
 import org.checkerframework.afu.annotator.find.IntersectionTypeLocationCriterion;
 import org.checkerframework.afu.annotator.find.NewInsertion;
 import org.checkerframework.afu.annotator.find.ReceiverInsertion;
+import org.checkerframework.afu.annotator.scanner.ClassOffsets;
 import org.checkerframework.afu.annotator.scanner.MethodOffsetClassVisitor;
 import org.checkerframework.afu.scenelib.Annotation;
 import org.checkerframework.afu.scenelib.el.ABlock;
@@ -45,6 +48,7 @@ import org.checkerframework.afu.scenelib.type.DeclaredType;
 import org.checkerframework.afu.scenelib.type.Type;
 import org.checkerframework.afu.scenelib.util.coll.VivifyingMap;
 import org.checkerframework.checker.formatter.qual.FormatMethod;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.signature.qual.ClassGetName;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassWriter;
@@ -65,9 +69,21 @@ public class IndexFileSpecification {
   /** An insertion for the default constructor, or null. Is a member of insertions if non-null. */
   private ConstructorInsertion constructorInsertion = null;
 
+  /** The bytecode offsets in the class being parsed. */
+  private ClassOffsets classOffsets = ClassOffsets.EMPTY;
+
   private final AScene scene;
   private final String indexFileName;
 
+  /** Returns true for the binary names of the classes whose annotations are read. */
+  private final Predicate<String> classFilter;
+
+  /**
+   * The pool in which the criteria of the insertions are interned, so that the many insertions
+   * with equal criteria share them; or null to not intern them.
+   */
+  private final @Nullable CriterionInterner criterionInterner;
+
   // If set, do not attempt to read class files with Asm.
   // Mostly for debugging and workarounds.
   public static boolean noAsm = false;
@@ -75,13 +91,43 @@ public class IndexFileSpecification {
   private static boolean debug = false;
 
   public IndexFileSpecification(String indexFileName) {
+    this(indexFileName, className -> true);
+  }
+
+  /**
+   * Creates an IndexFileSpecification that reads the annotations on only some classes. Package
+   * annotations and annotation definitions are always read.
+   *
+   * @param indexFileName the index file
+   * @param classFilter returns true for the binary names of the classes whose annotations are read
+   */
+  public IndexFileSpecification(String indexFileName, Predicate<String> classFilter) {
+    this(indexFileName, classFilter, new CriterionInterner());
+  }
+
+  /**
+   * Creates an IndexFileSpecification that reads the annotations on only some classes, and interns
+   * the criteria of its insertions in the given pool.
+   *
+   * @param indexFileName the index file
+   * @param classFilter returns true for the binary names of the classes whose annotations are read
+   * @param criterionInterner the pool in which to intern the criteria of the insertions, or null to
+   *     not intern them
+   */
+  public IndexFileSpecification(
+      String indexFileName,
+      Predicate<String> classFilter,
+      @Nullable CriterionInterner criterionInterner) {
     this.indexFileName = indexFileName;
+    this.classFilter = classFilter;
+    this.criterionInterner = criterionInterner;
     scene = new AScene();
   }
 
   public List<Insertion> parse() throws FileIOException {
     try {
-      Map<String, AnnotationDef> annotationDefs = IndexFileParser.parseFile(indexFileName, scene);
+      Map<String, AnnotationDef> annotationDefs =
+          IndexFileParser.parseFile(indexFileName, scene, classFilter);
       Set<String> defKeys = annotationDefs.keySet();
       Set<String> ambiguous = new LinkedHashSet<>();
       // If a qualified name's unqualified counterpart maps to null in
@@ -164,7 +210,7 @@ public class IndexFileSpecification {
     debug("parseScene()");
 
     // Empty criterion to work from.
-    CriterionList clist = new CriterionList();
+    CriterionList clist = new CriterionList(criterionInterner);
 
     VivifyingMap<String, AElement> packages = scene.packages;
     for (Map.Entry<String, AElement> entry : packages.entrySet()) {
@@ -202,6 +248,7 @@ public class IndexFileSpecification {
    */
   private void parseClass(CriterionList clist, @ClassGetName String className, AClass clazz) {
     constructorInsertion = null; // 0 or 1 per class
+    classOffsets = ClassOffsets.EMPTY;
     if (!noAsm) {
       //  load extra info using asm
       debug("parseClass(%s)", className);
@@ -209,8 +256,9 @@ public class IndexFileSpecification {
         ClassReader classReader = new ClassReader(className);
         ClassWriter classWriter = new ClassWriter(classReader, 0);
         MethodOffsetClassVisitor cv =
-            new MethodOffsetClassVisitor(Opcodes.ASM8, classReader, classWriter);
+            new MethodOffsetClassVisitor(Opcodes.ASM9, classReader, classWriter);
         classReader.accept(cv, 0);
+        classOffsets = cv.getOffsets();
         debug("Done reading %s.class", className);
       } catch (IOException e) {
         // If .class file not found, still proceed, in case
@@ -782,7 +830,7 @@ public class IndexFileSpecification {
     for (Entry<LocalLocation, AField> entry : block.locals.entrySet()) {
       LocalLocation loc = entry.getKey();
       AElement var = entry.getValue();
-      CriterionList varClist = clist.add(Criteria.local(methodName, loc));
+      CriterionList varClist = clist.add(Criteria.local(methodName, loc, classOffsets));
       // parse declaration annotations
       parseElement(varClist, var);
       parseInnerAndOuterElements(varClist, var.type);
@@ -797,7 +845,7 @@ public class IndexFileSpecification {
     for (Entry<RelativeLocation, ATypeElement> entry : exp.typecasts.entrySet()) {
       RelativeLocation loc = entry.getKey();
       ATypeElement cast = entry.getValue();
-      CriterionList castClist = clist.add(Criteria.cast(methodName, loc));
+      CriterionList castClist = clist.add(Criteria.cast(methodName, loc, classOffsets));
       parseInnerAndOuterElements(castClist, cast);
     }
 
@@ -805,7 +853,7 @@ public class IndexFileSpecification {
     for (Entry<RelativeLocation, ATypeElement> entry : exp.news.entrySet()) {
       RelativeLocation loc = entry.getKey();
       ATypeElement newObject = entry.getValue();
-      CriterionList newClist = clist.add(Criteria.newObject(methodName, loc));
+      CriterionList newClist = clist.add(Criteria.newObject(methodName, loc, classOffsets));
       parseInnerAndOuterElements(newClist, newObject);
     }
 
@@ -813,7 +861,7 @@ public class IndexFileSpecification {
     for (Entry<RelativeLocation, ATypeElement> entry : exp.instanceofs.entrySet()) {
       RelativeLocation loc = entry.getKey();
       ATypeElement instanceOf = entry.getValue();
-      CriterionList instanceOfClist = clist.add(Criteria.instanceOf(methodName, loc));
+      CriterionList instanceOfClist = clist.add(Criteria.instanceOf(methodName, loc, classOffsets));
       parseInnerAndOuterElements(instanceOfClist, instanceOf);
     }
 
@@ -821,7 +869,8 @@ public class IndexFileSpecification {
     for (Entry<RelativeLocation, ATypeElement> entry : exp.refs.entrySet()) {
       RelativeLocation loc = entry.getKey();
       ATypeElement ref = entry.getValue();
-      CriterionList instanceOfClist = clist.add(Criteria.memberReference(methodName, loc));
+      CriterionList instanceOfClist =
+          clist.add(Criteria.memberReference(methodName, loc, classOffsets));
       parseInnerAndOuterElements(instanceOfClist, ref);
     }
 
@@ -829,7 +878,7 @@ public class IndexFileSpecification {
     for (Entry<RelativeLocation, ATypeElement> entry : exp.calls.entrySet()) {
       RelativeLocation loc = entry.getKey();
       ATypeElement call = entry.getValue();
-      CriterionList instanceOfClist = clist.add(Criteria.methodCall(methodName, loc));
+      CriterionList instanceOfClist = clist.add(Criteria.methodCall(methodName, loc, classOffsets));
       parseInnerAndOuterElements(instanceOfClist, call);
     }
 
@@ -837,7 +886,7 @@ public class IndexFileSpecification {
     for (Entry<RelativeLocation, AMethod> entry : exp.funs.entrySet()) {
       RelativeLocation loc = entry.getKey();
       AMethod lambda = entry.getValue();
-      CriterionList lambdaClist = clist.add(Criteria.lambda(methodName, loc));
+      CriterionList lambdaClist = clist.add(Criteria.lambda(methodName, loc, classOffsets));
       parseLambdaExpression(className, methodName, lambda, lambdaClist);
     }
   }
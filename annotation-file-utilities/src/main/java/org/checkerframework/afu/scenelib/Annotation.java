@@ -30,6 +30,9 @@ public final class Annotation {
   /** An unmodifiable copy of the passed map of field values. */
   public final Map<String, Object> fieldValues;
 
+  /** The hash code of this annotation, or 0 if it has not been computed yet. */
+  private int hash;
+
   /** Check the representation, throw assertion failure if it is violated. */
   public void checkRep() {
     assert fieldValues != null;
@@ -58,33 +61,43 @@ public final class Annotation {
     for (String fieldname : fieldValues.keySet()) {
       AnnotationFieldType aft = def.fieldTypes.get(fieldname);
       Object value = fieldValues.get(fieldname);
-      String valueString;
-      String classString = value.getClass().toString();
-      if (value instanceof Object[]) {
-        Object[] arr = (Object[]) value;
-        valueString = Arrays.toString(arr);
-        classString += " {";
-        for (Object elt : arr) {
-          classString += " " + elt.getClass();
-        }
-        classString += "}";
-      } else if (value instanceof Collection) {
-        Collection<?> coll = (Collection<?>) value;
-        valueString = Arrays.toString(coll.toArray());
-        classString += " {";
-        for (Object elt : coll) {
-          classString += " " + elt.getClass();
-        }
-        classString += " }";
-      } else {
-        valueString = value.toString();
-        // No need to modify valueString.
-      }
       assert aft.isValidValue(value)
           : String.format(
-              "isValidValue returned false.  aft=%s [%s], value=%s = %s [%s] [%s]%n  def = %s",
-              aft, aft.getClass(), value, valueString, value.getClass(), classString, def);
+              "isValidValue returned false.  aft=%s [%s], value=%s%n  def = %s",
+              aft, aft.getClass(), describeValue(value), def);
+    }
+  }
+
+  /**
+   * Returns a description of the given field value and of its class, for use in error messages.
+   *
+   * @param value a field value
+   * @return a description of {@code value} and of its class
+   */
+  private static String describeValue(Object value) {
+    String valueString;
+    String classString = value.getClass().toString();
+    if (value instanceof Object[]) {
+      Object[] arr = (Object[]) value;
+      valueString = Arrays.toString(arr);
+      classString += " {";
+      for (Object elt : arr) {
+        classString += " " + elt.getClass();
+      }
+      classString += "}";
+    } else if (value instanceof Collection) {
+      Collection<?> coll = (Collection<?>) value;
+      valueString = Arrays.toString(coll.toArray());
+      classString += " {";
+      for (Object elt : coll) {
+        classString += " " + elt.getClass();
+      }
+      classString += " }";
+    } else {
+      valueString = value.toString();
+      // No need to modify valueString.
     }
+    return String.format("%s = %s [%s] [%s]", value, valueString, value.getClass(), classString);
   }
 
   // TODO make sure the field values are valid?
@@ -98,10 +111,29 @@ public final class Annotation {
    */
   public Annotation(AnnotationDef def, Map<String, ? extends Object> fields) {
     this.def = def;
-    this.fieldValues = Collections.unmodifiableMap(new LinkedHashMap<>(fields));
+    this.fieldValues = copyFieldValues(fields);
     checkRep();
   }
 
+  /**
+   * Returns an unmodifiable copy of the given field values. Most annotations have no fields or just
+   * one, and the copy of such a map is smaller than a {@link LinkedHashMap}.
+   *
+   * @param fields the field values of an annotation
+   * @return an unmodifiable copy of {@code fields}, with the same iteration order
+   */
+  private static Map<String, Object> copyFieldValues(Map<String, ? extends Object> fields) {
+    switch (fields.size()) {
+      case 0:
+        return Collections.emptyMap();
+      case 1:
+        Entry<String, ? extends Object> entry = fields.entrySet().iterator().next();
+        return Collections.singletonMap(entry.getKey(), entry.getValue());
+      default:
+        return Collections.unmodifiableMap(new LinkedHashMap<>(fields));
+    }
+  }
+
   /**
    * Construct an Annotation for the given java.lang.annotation.Annotation.
    *
@@ -214,17 +246,24 @@ public final class Annotation {
    * @param o the {@code Annotation} to compare to this
    * @return true if this equals {@code o}
    */
+  @SuppressWarnings("ReferenceEquality") // fast path for interned annotations
   public boolean equals(Annotation o) {
-    return def.equals(o.def()) && fieldValues.equals(o.fieldValues);
+    return this == o || (def.equals(o.def()) && fieldValues.equals(o.fieldValues));
   }
 
   /**
    * Returns the hash code of this annotation as defined on {@link Annotation#hashCode}. Subclasses
    * may wish to override this with a hard-coded XOR/addition of fields to improve performance.
+   * Since annotations are immutable, the hash code is computed only once.
    */
   @Override
   public int hashCode() {
-    return def.hashCode() + fieldValues.hashCode();
+    int h = hash;
+    if (h == 0) {
+      h = def.hashCode() + fieldValues.hashCode();
+      hash = h;
+    }
+    return h;
   }
 
   /**
@@ -10,6 +10,7 @@ import org.checkerframework.afu.scenelib.el.AnnotationDef;
 import org.checkerframework.afu.scenelib.field.AnnotationFieldType;
 import org.checkerframework.afu.scenelib.field.ArrayAFT;
 import org.checkerframework.afu.scenelib.field.ScalarAFT;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.signature.qual.BinaryName;
 
 /**
@@ -43,6 +44,12 @@ public class AnnotationBuilder {
   /** Where the annotation came from, such as a filename. */
   String source;
 
+  /**
+   * The pool in which the annotation, its definition, and its field values are interned, or null
+   * to not intern them.
+   */
+  private final @Nullable AnnotationInterner interner;
+
   boolean arrayInProgress = false;
 
   boolean active = true;
@@ -107,7 +114,7 @@ public class AnnotationBuilder {
       if (!abActive) {
         throw new IllegalStateException("Array is finished");
       }
-      fieldValues.put(fieldName, Collections.<Object>unmodifiableList(arrayElements));
+      fieldValues.put(fieldName, intern(Collections.<Object>unmodifiableList(arrayElements)));
       arrayInProgress = false;
       abActive = false;
     }
@@ -145,7 +152,17 @@ public class AnnotationBuilder {
     if (def == null) {
       fieldTypes.put(fieldName, aft);
     }
-    fieldValues.put(fieldName, x);
+    fieldValues.put(fieldName, intern(x));
+  }
+
+  /**
+   * Returns the canonical instance of the given field value, if this builder interns.
+   *
+   * @param x a field value
+   * @return the canonical instance of {@code x}, or {@code x} itself
+   */
+  private Object intern(Object x) {
+    return interner == null ? x : interner.internValue(x);
   }
 
   /**
@@ -220,14 +237,26 @@ public class AnnotationBuilder {
       assert typeName == null;
       assert fieldTypes.isEmpty();
     }
-    return new Annotation(def, fieldValues);
+    if (interner == null) {
+      return new Annotation(def, fieldValues);
+    }
+    def = interner.intern(def);
+    return interner.intern(new Annotation(def, fieldValues));
   }
 
-  AnnotationBuilder(AnnotationDef def, String source) {
+  /**
+   * Create a new AnnotationBuilder.
+   *
+   * @param def the definition of the annotation being built
+   * @param source where the annotation came from, such as a filename
+   * @param interner the pool in which to intern the annotation, or null to not intern it
+   */
+  AnnotationBuilder(AnnotationDef def, String source, @Nullable AnnotationInterner interner) {
     assert def != null;
     assert source != null;
     this.def = def;
     this.source = source;
+    this.interner = interner;
   }
 
   /**
@@ -235,12 +264,15 @@ public class AnnotationBuilder {
    *
    * @param typeName the name of the annotation being built
    * @param source where the annotation came from, such as a filename
+   * @param interner the pool in which to intern the annotation, or null to not intern it
    */
-  AnnotationBuilder(@BinaryName String typeName, String source) {
+  AnnotationBuilder(
+      @BinaryName String typeName, String source, @Nullable AnnotationInterner interner) {
     assert typeName != null;
     assert source != null;
     this.typeName = typeName;
     this.source = source;
+    this.interner = interner;
   }
 
   /**
@@ -250,13 +282,19 @@ public class AnnotationBuilder {
    * @param tlAnnotationsHere the top-level meta-annotations that appear directly on the annotation
    *     being built. "tl" stands for "top-level".
    * @param source where the annotation came from, such as a filename
+   * @param interner the pool in which to intern the annotation, or null to not intern it
    */
-  AnnotationBuilder(@BinaryName String typeName, Set<Annotation> tlAnnotationsHere, String source) {
+  AnnotationBuilder(
+      @BinaryName String typeName,
+      Set<Annotation> tlAnnotationsHere,
+      String source,
+      @Nullable AnnotationInterner interner) {
     assert typeName != null;
     assert source != null;
     this.typeName = typeName;
     this.tlAnnotationsHere = tlAnnotationsHere;
     this.source = source;
+    this.interner = interner;
   }
 
   @Override
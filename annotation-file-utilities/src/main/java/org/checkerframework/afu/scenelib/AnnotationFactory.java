@@ -3,18 +3,30 @@ package org.checkerframework.afu.scenelib;
 import java.util.Map;
 import java.util.Set;
 import org.checkerframework.afu.scenelib.el.AnnotationDef;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.checkerframework.checker.signature.qual.BinaryName;
 
 /**
  * A very simple {@link AnnotationFactory AnnotationFactory} that creates {@link Annotation}s. It is
  * interested in all annotations and determines their definitions automatically from the fields
- * supplied. Use the singleton {@link #saf}.
+ * supplied. Use the singleton {@link #saf}, or the factory of an {@link AnnotationInterner}, whose
+ * builders return interned annotations.
  */
 public final class AnnotationFactory {
-  private AnnotationFactory() {}
+  /** The pool in which the builders intern what they build, or null to not intern. */
+  private final @Nullable AnnotationInterner interner;
 
-  /** The singleton {@link AnnotationFactory}. */
-  public static final AnnotationFactory saf = new AnnotationFactory();
+  /**
+   * Creates an {@link AnnotationFactory}.
+   *
+   * @param interner the pool in which the builders intern what they build, or null to not intern
+   */
+  AnnotationFactory(@Nullable AnnotationInterner interner) {
+    this.interner = interner;
+  }
+
+  /** The singleton {@link AnnotationFactory}, whose builders do not intern. */
+  public static final AnnotationFactory saf = new AnnotationFactory(null);
 
   /**
    * Returns an {@link AnnotationBuilder} appropriate for building an {@link Annotation} of the
@@ -23,7 +35,7 @@ public final class AnnotationFactory {
    * @param def the definition for the annotation to be built
    */
   public AnnotationBuilder beginAnnotation(AnnotationDef def, String source) {
-    return new AnnotationBuilder(def, source);
+    return new AnnotationBuilder(def, source, interner);
   }
 
   /**
@@ -33,7 +45,7 @@ public final class AnnotationFactory {
   public AnnotationBuilder beginAnnotation(
       java.lang.annotation.Annotation a, Map<String, AnnotationDef> adefs) {
     AnnotationDef def = AnnotationDef.fromClass(a.annotationType(), adefs);
-    return new AnnotationBuilder(def, "Annotation " + a.annotationType());
+    return new AnnotationBuilder(def, "Annotation " + a.annotationType(), interner);
   }
 
   /**
@@ -49,6 +61,6 @@ public final class AnnotationFactory {
   public AnnotationBuilder beginAnnotation(
       @BinaryName String typeName, Set<Annotation> tlAnnotationsHere, String source) {
     assert typeName != null;
-    return new AnnotationBuilder(typeName, tlAnnotationsHere, source);
+    return new AnnotationBuilder(typeName, tlAnnotationsHere, source, interner);
   }
 }
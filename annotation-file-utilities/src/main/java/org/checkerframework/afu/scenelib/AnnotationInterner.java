@@ -0,0 +1,257 @@
+package org.checkerframework.afu.scenelib;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.checkerframework.afu.scenelib.el.AScene;
+import org.checkerframework.afu.scenelib.el.AnnotationDef;
+
+/**
+ * A pool of canonical {@link Annotation}s, {@link AnnotationDef}s, and annotation field values.
+ * Interning an object returns the instance in the pool that equals it, or adds the object to the
+ * pool and returns it if there is none. Thus, when the same annotation is written many times in a
+ * scene, every occurrence can refer to a single object.
+ *
+ * <p>Each {@link AScene} has a pool, {@link AScene#interner}, which the readers of index files,
+ * class files, and binary scene files use through the {@link AnnotationFactory} that {@link
+ * #factory()} returns. Only objects that are no longer modified may be interned: an {@link
+ * AnnotationDef} must have its field types and meta-annotations set first.
+ *
+ * <p>Definitions are interned only together with equal definitions from the same {@link
+ * AnnotationDef#source source}, and annotations only together with annotations of the same
+ * definition. Thus an error about a definition is reported against the file that contains it, even
+ * if an equal definition was read from another file first.
+ *
+ * <p>A pool may be shared by scenes that are read concurrently, such as the scene of each class
+ * that {@link org.checkerframework.afu.scenelib.io.classfile.ClassFileReader#readAll} reads.
+ */
+public final class AnnotationInterner {
+
+  /** The canonical annotations, by their definition and field values. */
+  private final Map<Key, Annotation> annotations = new ConcurrentHashMap<>();
+
+  /**
+   * The canonical annotation definitions, by name. There is usually one per name. Guarded by
+   * {@code this}.
+   */
+  private final Map<String, List<AnnotationDef>> defs = new HashMap<>();
+
+  /**
+   * The canonical annotation definitions, so that interning one again is a cheap lookup. Guarded by
+   * {@code this}.
+   */
+  private final Set<AnnotationDef> canonicalDefs =
+      Collections.newSetFromMap(new IdentityHashMap<>());
+
+  /** The canonical field values other than annotations. Each is both a key and its value. */
+  private final Map<Object, Object> values = new ConcurrentHashMap<>();
+
+  /**
+   * Definitions created from annotation classes by {@link AnnotationDef#fromClass}, shared by all
+   * readers of class files that use this pool. Guarded by itself.
+   */
+  private final Map<String, AnnotationDef> classDefs = new HashMap<>();
+
+  /** The factory whose builders intern what they build in this pool. */
+  private final AnnotationFactory factory = new AnnotationFactory(this);
+
+  /**
+   * Creates a pool that initially contains the {@linkplain Annotations#standardDefs standard
+   * definitions}.
+   */
+  public AnnotationInterner() {
+    for (AnnotationDef ad : Annotations.standardDefs) {
+      classDefs.put(ad.name, ad);
+      intern(ad);
+    }
+  }
+
+  /**
+   * Returns an {@link AnnotationFactory} whose builders intern the annotations they build, and
+   * their definitions and field values, in this pool.
+   *
+   * @return a factory that uses this pool
+   */
+  public AnnotationFactory factory() {
+    return factory;
+  }
+
+  /**
+   * Returns the cache of definitions to pass to {@link AnnotationDef#fromClass}, so that a
+   * definition is created from an annotation class only once for all the class files read into the
+   * scene. It initially contains the {@linkplain Annotations#standardDefs standard definitions}.
+   * Since a pool may be shared by threads, the caller must synchronize on the map while using it.
+   *
+   * @return a map from annotation names to definitions created from annotation classes
+   */
+  public Map<String, AnnotationDef> classDefinitions() {
+    return classDefs;
+  }
+
+  /**
+   * Returns the canonical annotation that equals the given one. Its definition and field values
+   * are canonical too.
+   *
+   * @param a an annotation
+   * @return the annotation in this pool that equals {@code a}
+   */
+  @SuppressWarnings("ReferenceEquality") // interned comparison
+  public Annotation intern(Annotation a) {
+    // Intern the definition first, so that the lookup compares definitions by identity.
+    AnnotationDef def = intern(a.def);
+    if (def == a.def) {
+      Annotation canonical = annotations.get(new Key(a));
+      if (canonical != null) {
+        return canonical;
+      }
+    }
+    boolean changed = def != a.def;
+    Map<String, Object> fieldValues = new LinkedHashMap<>();
+    for (Map.Entry<String, Object> entry : a.fieldValues.entrySet()) {
+      Object value = entry.getValue();
+      Object interned = internValue(value);
+      changed |= interned != value;
+      fieldValues.put(entry.getKey(), interned);
+    }
+    if (changed) {
+      a = new Annotation(def, fieldValues);
+    }
+    Annotation canonical = annotations.putIfAbsent(new Key(a), a);
+    return canonical != null ? canonical : a;
+  }
+
+  /**
+   * Returns the canonical definition that equals the given one and has the same source.
+   *
+   * @param def an annotation definition whose field types and meta-annotations have been set
+   * @return the annotation definition in this pool that equals {@code def} and has its source
+   */
+  public synchronized AnnotationDef intern(AnnotationDef def) {
+    if (canonicalDefs.contains(def)) {
+      return def;
+    }
+    List<AnnotationDef> sameName = defs.get(def.name);
+    if (sameName == null) {
+      sameName = new ArrayList<>(1);
+      defs.put(def.name, sameName);
+    }
+    for (AnnotationDef candidate : sameName) {
+      if (sameDefinition(def, candidate)) {
+        return candidate;
+      }
+    }
+    sameName.add(def);
+    canonicalDefs.add(def);
+    return def;
+  }
+
+  /**
+   * Returns the canonical field value that equals the given one. Lists are made unmodifiable, and
+   * their elements are interned.
+   *
+   * @param value an annotation field value, in one of the forms given at {@link
+   *     Annotation#getFieldValue}
+   * @return the field value in this pool that equals {@code value}
+   */
+  public Object internValue(Object value) {
+    if (value instanceof Annotation) {
+      return intern((Annotation) value);
+    } else if (value instanceof Class) {
+      // Class objects are already unique.
+      return value;
+    }
+    Object canonical = values.get(value);
+    if (canonical != null) {
+      return canonical;
+    }
+    // Do not use computeIfAbsent, because interning the elements of a list modifies the map.
+    if (value instanceof List) {
+      List<?> list = (List<?>) value;
+      if (list.isEmpty()) {
+        canonical = Collections.emptyList();
+      } else {
+        List<Object> elements = new ArrayList<>(list.size());
+        for (Object element : list) {
+          elements.add(internValue(element));
+        }
+        canonical = Collections.unmodifiableList(elements);
+      }
+    } else {
+      canonical = value;
+    }
+    Object existing = values.putIfAbsent(canonical, canonical);
+    return existing != null ? existing : canonical;
+  }
+
+  /**
+   * Returns true if the two definitions are equal and have the same source. This is like {@link
+   * AnnotationDef#equals}, but it terminates when both definitions are meta-annotated with
+   * themselves, as the definition of {@code @Documented} is.
+   *
+   * @param def a definition that is not in the pool
+   * @param candidate a definition in the pool with the same name
+   * @return true if {@code def} and {@code candidate} are equal and have the same source
+   */
+  @SuppressWarnings("ReferenceEquality") // interned comparison
+  private static boolean sameDefinition(AnnotationDef def, AnnotationDef candidate) {
+    if (!def.source.equals(candidate.source)
+        || !def.fieldTypes.equals(candidate.fieldTypes)
+        || def.tlAnnotationsHere.size() != candidate.tlAnnotationsHere.size()) {
+      return false;
+    }
+    outer:
+    for (Annotation a : def.tlAnnotationsHere) {
+      for (Annotation b : candidate.tlAnnotationsHere) {
+        boolean same =
+            a.def == def
+                ? b.def == candidate && a.fieldValues.equals(b.fieldValues)
+                : b.def != candidate && a.equals(b);
+        if (same) {
+          continue outer;
+        }
+      }
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * The key of an annotation in {@link #annotations}. Unlike {@link Annotation#equals}, it compares
+   * definitions by identity, so that annotations of equal definitions from different sources are
+   * kept apart.
+   */
+  private static final class Key {
+    /** The annotation, whose definition is canonical. */
+    private final Annotation annotation;
+
+    /**
+     * Creates a key for the given annotation.
+     *
+     * @param annotation an annotation whose definition is canonical
+     */
+    Key(Annotation annotation) {
+      this.annotation = annotation;
+    }
+
+    @Override
+    @SuppressWarnings("ReferenceEquality") // interned comparison
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Annotation other = ((Key) o).annotation;
+      return annotation.def == other.def && annotation.fieldValues.equals(other.fieldValues);
+    }
+
+    @Override
+    public int hashCode() {
+      return annotation.hashCode();
+    }
+  }
+}
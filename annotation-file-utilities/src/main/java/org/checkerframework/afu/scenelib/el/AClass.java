@@ -212,7 +212,7 @@ public class AClass extends ADeclaration {
   // Static methods
 
   private static VivifyingMap<String, AMethod> createMethodMap() {
-    return new VivifyingMap<String, AMethod>(new LinkedHashMap<>()) {
+    return new VivifyingMap<String, AMethod>(LinkedHashMap::new) {
       @Override
       public AMethod createValueFor(String k) {
         return new AMethod(k);
@@ -226,7 +226,7 @@ public class AClass extends ADeclaration {
   }
 
   private static VivifyingMap<Integer, ABlock> createInitBlockMap() {
-    return new VivifyingMap<Integer, ABlock>(new LinkedHashMap<>()) {
+    return new VivifyingMap<Integer, ABlock>(LinkedHashMap::new) {
       @Override
       public ABlock createValueFor(Integer k) {
         return new ABlock(k);
@@ -240,7 +240,7 @@ public class AClass extends ADeclaration {
   }
 
   private static VivifyingMap<String, AExpression> createFieldInitMap() {
-    return new VivifyingMap<String, AExpression>(new LinkedHashMap<>()) {
+    return new VivifyingMap<String, AExpression>(LinkedHashMap::new) {
       @Override
       public AExpression createValueFor(String k) {
         return new AExpression(k);
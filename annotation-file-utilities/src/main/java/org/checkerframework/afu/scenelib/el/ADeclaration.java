@@ -9,7 +9,7 @@ import org.checkerframework.afu.scenelib.util.coll.VivifyingMap;
 public abstract class ADeclaration extends AElement {
   /** The element's insert-annotation invocations; map key is the AST path to the insertion place */
   public final VivifyingMap<ASTPath, ATypeElement> insertAnnotations =
-      new VivifyingMap<ASTPath, ATypeElement>(new TreeMap<>()) {
+      new VivifyingMap<ASTPath, ATypeElement>(TreeMap::new) {
         @Override
         public ATypeElement createValueFor(ASTPath k) {
           return new ATypeElement(k);
@@ -26,7 +26,7 @@ public abstract class ADeclaration extends AElement {
    * place
    */
   public final VivifyingMap<ASTPath, ATypeElementWithType> insertTypecasts =
-      new VivifyingMap<ASTPath, ATypeElementWithType>(new TreeMap<>()) {
+      new VivifyingMap<ASTPath, ATypeElementWithType>(TreeMap::new) {
         @Override
         public ATypeElementWithType createValueFor(ASTPath k) {
           return new ATypeElementWithType(k);
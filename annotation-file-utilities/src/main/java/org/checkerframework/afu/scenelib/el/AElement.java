@@ -1,9 +1,9 @@
 package org.checkerframework.afu.scenelib.el;
 
 import java.util.LinkedHashMap;
-import java.util.LinkedHashSet;
 import java.util.Set;
 import org.checkerframework.afu.scenelib.Annotation;
+import org.checkerframework.afu.scenelib.util.coll.LazyLinkedHashSet;
 import org.checkerframework.afu.scenelib.util.coll.VivifyingMap;
 
 /**
@@ -56,7 +56,7 @@ public class AElement implements Cloneable {
   }
 
   AElement(Object description, ATypeElement type) {
-    tlAnnotationsHere = new LinkedHashSet<Annotation>();
+    tlAnnotationsHere = new LazyLinkedHashSet<Annotation>();
     this.description = description;
     this.type = type;
   }
@@ -194,7 +194,7 @@ public class AElement implements Cloneable {
   // Static methods
 
   static <K extends Object> VivifyingMap<K, AElement> newVivifyingLHMap_AE() {
-    return new VivifyingMap<K, AElement>(new LinkedHashMap<>()) {
+    return new VivifyingMap<K, AElement>(LinkedHashMap::new) {
       @Override
       public AElement createValueFor(K k) {
         return new AElement(k);
@@ -210,7 +210,7 @@ public class AElement implements Cloneable {
   // Different from the above in that the elements are guaranteed to
   // contain a non-null "type" field.
   static <K extends Object> VivifyingMap<K, AElement> newVivifyingLHMap_AET() {
-    return new VivifyingMap<K, AElement>(new LinkedHashMap<>()) {
+    return new VivifyingMap<K, AElement>(LinkedHashMap::new) {
       @Override
       public AElement createValueFor(K k) {
         return new AElement(k, true);
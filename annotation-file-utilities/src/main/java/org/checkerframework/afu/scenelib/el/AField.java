@@ -64,7 +64,7 @@ public class AField extends ADeclaration {
   }
 
   /** A pattern that matches a string consisting only of digits. */
-  private Pattern digits = Pattern.compile("^[0-9]+$");
+  private static final Pattern digits = Pattern.compile("^[0-9]+$");
 
   /**
    * Set the name of this field or formal parameter.
@@ -155,7 +155,7 @@ public class AField extends ADeclaration {
   }
 
   static <K extends Object> VivifyingMap<K, AField> newVivifyingLHMap_AF() {
-    return new VivifyingMap<K, AField>(new LinkedHashMap<>()) {
+    return new VivifyingMap<K, AField>(LinkedHashMap::new) {
       @Override
       public AField createValueFor(K k) {
         return new AField("" + k);
@@ -6,8 +6,10 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import org.checkerframework.afu.scenelib.Annotation;
+import org.checkerframework.afu.scenelib.AnnotationInterner;
 import org.checkerframework.afu.scenelib.io.IndexFileParser;
 import org.checkerframework.afu.scenelib.util.coll.VivifyingMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * An <code>AScene</code> (annotated scene) represents the annotations on a set of Java classes and
@@ -70,8 +72,27 @@ public class AScene implements Cloneable {
         }
       };
 
-  /** Creates a new {@link AScene} with no classes or packages. */
-  public AScene() {}
+  /**
+   * The pool in which the readers of index files, class files, and binary scene files intern the
+   * annotations that they read into this scene, or null if they do not intern them. Interning lets
+   * every occurrence of an annotation refer to a single object.
+   */
+  public final @Nullable AnnotationInterner interner;
+
+  /** Creates a new {@link AScene} with no classes or packages, which has its own intern pool. */
+  public AScene() {
+    this(new AnnotationInterner());
+  }
+
+  /**
+   * Creates a new {@link AScene} with no classes or packages, which uses the given intern pool.
+   *
+   * @param interner the pool in which to intern the annotations read into this scene, which may be
+   *     shared with other scenes, or null to not intern them
+   */
+  public AScene(@Nullable AnnotationInterner interner) {
+    this.interner = interner;
+  }
 
   /**
    * Copy constructor for {@link AScene}.
@@ -80,6 +101,8 @@ public class AScene implements Cloneable {
    */
   @SuppressWarnings("this-escape")
   public AScene(AScene scene) {
+    // The copy contains the same annotations, so it shares their pool.
+    this.interner = scene.interner;
     for (String key : scene.packages.keySet()) {
       AElement val = scene.packages.get(key);
       packages.put(key, val.clone());
@@ -44,6 +44,12 @@ public final class AnnotationDef extends AElement {
   /** Where the annotation definition came from, such as a file name. */
   public String source;
 
+  /**
+   * The hash code of this definition, or 0 if it has not been computed since the field types were
+   * set.
+   */
+  private int hash;
+
   /**
    * Constructs an annotation definition with the given name. You MUST call setFieldTypes afterward,
    * even if with an empty map. (Yuck.)
@@ -70,7 +76,7 @@ public final class AnnotationDef extends AElement {
     List<String> methods;
     try {
       ClassReader classReader = new ClassReader(name);
-      MethodRecorder methodRecorder = new MethodRecorder(Opcodes.ASM8);
+      MethodRecorder methodRecorder = new MethodRecorder(Opcodes.ASM9);
       classReader.accept(methodRecorder, 0);
       methods = methodRecorder.getMethods();
     } catch (IOException e) {
@@ -180,6 +186,7 @@ public final class AnnotationDef extends AElement {
    */
   public void setFieldTypes(Map<String, ? extends AnnotationFieldType> fieldTypes) {
     this.fieldTypes = Collections.unmodifiableMap(new LinkedHashMap<>(fieldTypes));
+    this.hash = 0;
   }
 
   /**
@@ -277,7 +284,11 @@ public final class AnnotationDef extends AElement {
    * @param o another AnnotationDef to compare this to
    * @return true if this is equal to the given value
    */
+  @SuppressWarnings("ReferenceEquality") // fast path for interned definitions
   public boolean equals(AnnotationDef o) {
+    if (this == o) {
+      return true;
+    }
     boolean sameName = name.equals(o.name);
     boolean sameMetaAnnotations = equalsElement(o);
     boolean sameFieldTypes = fieldTypes.equals(o.fieldTypes);
@@ -295,11 +306,17 @@ public final class AnnotationDef extends AElement {
 
   @Override
   public int hashCode() {
-    return name.hashCode()
-        // Omit tlAnnotationsHere, becase it should be unique and, more
-        // importantly, including it causes an infinite loop.
-        // + tlAnnotationsHere.hashCode()
-        + fieldTypes.hashCode();
+    int h = hash;
+    if (h == 0) {
+      h =
+          name.hashCode()
+              // Omit tlAnnotationsHere, becase it should be unique and, more
+              // importantly, including it causes an infinite loop.
+              // + tlAnnotationsHere.hashCode()
+              + fieldTypes.hashCode();
+      hash = h;
+    }
+    return h;
   }
 
   /**
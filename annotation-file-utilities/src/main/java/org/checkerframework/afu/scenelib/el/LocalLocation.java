@@ -72,39 +72,64 @@ public final class LocalLocation {
    * @param scopeLength the bytecode length of the variable's lifetime
    * @param index the offset of the variable in the stack frame
    */
-  @SuppressWarnings({"NarrowingCompoundAssignment", "CatchAndPrintStackTrace"}) // TODO
   public LocalLocation(int scopeStart, int scopeLength, int index) {
     Label startLabel = new Label();
     Label endLabel = new Label();
+    resolveLabel(startLabel, scopeStart);
+    resolveLabel(endLabel, scopeStart + scopeLength);
 
+    this.start = new Label[] {startLabel};
+    this.end = new Label[] {endLabel};
+    this.index = new int[] {index};
+    this.variableName = null;
+  }
+
+  /**
+   * Resolves the given label to the given bytecode offset, as ASM's MethodWriter does when it
+   * visits the label. Afterward, {@link Label#getOffset} returns {@code bytecodeOffset}. Changes
+   * values reflectively.
+   *
+   * @param label a label
+   * @param bytecodeOffset the bytecode offset of the label
+   */
+  @SuppressWarnings("NarrowingCompoundAssignment") // TODO
+  public static void resolveLabel(Label label, int bytecodeOffset) {
     try {
-      Field flagsField = Label.class.getDeclaredField("flags");
-      Field bytecodeOffsetField = Label.class.getDeclaredField("bytecodeOffset");
-      Field FLAG_RESOLVED_FIELD = Label.class.getDeclaredField("FLAG_RESOLVED");
-
-      flagsField.setAccessible(true);
-      bytecodeOffsetField.setAccessible(true);
-      FLAG_RESOLVED_FIELD.setAccessible(true);
-      // Label.FLAG_RESOLVED is int, but its value is 4 and `Label.flags` is short
-      short FLAG_RESOLVED = (short) (int) (Integer) FLAG_RESOLVED_FIELD.get(null);
-
-      short flags = (Short) flagsField.get(startLabel);
-      flags |= FLAG_RESOLVED;
-      flagsField.set(startLabel, flags);
-      bytecodeOffsetField.set(startLabel, scopeStart);
-
-      flags = (Short) flagsField.get(endLabel);
-      flags |= FLAG_RESOLVED;
-      flagsField.set(endLabel, flags);
-      bytecodeOffsetField.set(endLabel, scopeStart + scopeLength);
+      short flags = (Short) LabelFields.flags.get(label);
+      flags |= LabelFields.FLAG_RESOLVED;
+      LabelFields.flags.set(label, flags);
+      LabelFields.bytecodeOffset.set(label, bytecodeOffset);
     } catch (Exception e) {
       throw new Error(e);
     }
+  }
 
-    this.start = new Label[] {startLabel};
-    this.end = new Label[] {endLabel};
-    this.index = new int[] {index};
-    this.variableName = null;
+  /** The private fields of {@link Label} that {@link #resolveLabel} sets. */
+  private static class LabelFields {
+    /** The field {@code Label.flags}. */
+    static final Field flags;
+
+    /** The field {@code Label.bytecodeOffset}. */
+    static final Field bytecodeOffset;
+
+    /** The value of {@code Label.FLAG_RESOLVED}. */
+    static final short FLAG_RESOLVED;
+
+    static {
+      try {
+        flags = Label.class.getDeclaredField("flags");
+        bytecodeOffset = Label.class.getDeclaredField("bytecodeOffset");
+        Field FLAG_RESOLVED_FIELD = Label.class.getDeclaredField("FLAG_RESOLVED");
+
+        flags.setAccessible(true);
+        bytecodeOffset.setAccessible(true);
+        FLAG_RESOLVED_FIELD.setAccessible(true);
+        // Label.FLAG_RESOLVED is int, but its value is 4 and `Label.flags` is short
+        FLAG_RESOLVED = (short) (int) (Integer) FLAG_RESOLVED_FIELD.get(null);
+      } catch (Exception e) {
+        throw new Error(e);
+      }
+    }
   }
 
   /**
@@ -16,6 +16,8 @@
  * entries. The only way to create any element is to invoke {@link
  * org.checkerframework.afu.scenelib.util.coll.VivifyingMap#getVivify(Object) getVivify()} on a
  * {@link org.checkerframework.afu.scenelib.util.coll.VivifyingMap} static member of the appropriate
- * {@link org.checkerframework.afu.scenelib.el.AElement} superclass.
+ * {@link org.checkerframework.afu.scenelib.el.AElement} superclass. The maps of subelements and
+ * the sets of annotations allocate their storage only when their first entry is added, so the many
+ * elements of a scene that carry nothing cost little.
  */
 package org.checkerframework.afu.scenelib.el;
@@ -51,41 +51,85 @@ import com.sun.source.tree.WhileLoopTree;
 import com.sun.source.tree.WildcardTree;
 import com.sun.source.util.SimpleTreeVisitor;
 import com.sun.source.util.TreePath;
+import com.sun.source.util.TreeScanner;
 import com.sun.tools.javac.code.Symbol.ClassSymbol;
 import com.sun.tools.javac.tree.JCTree;
+import java.lang.ref.WeakReference;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.WeakHashMap;
 import javax.lang.model.element.Name;
 import org.checkerframework.afu.annotator.find.CaseUtils;
 import org.checkerframework.afu.scenelib.util.JVMNames;
 import org.checkerframework.afu.scenelib.util.coll.WrapperMap;
-
-/** Cache of {@code ASTPath} data for the nodes of a compilation unit tree. */
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * Cache of {@code ASTPath} data for the nodes of a compilation unit tree.
+ *
+ * <p>Code that processes a compilation unit should obtain its index once, from {@link #indexOf},
+ * and pass it to the code that needs it. The static methods that take a {@code
+ * CompilationUnitTree} look up the index with {@link #indexOf}.
+ */
 public class ASTIndex extends WrapperMap<Tree, ASTRecord> {
-  // single-item cache
-  private static Tree cachedRoot = null;
-  private static Map<Tree, ASTRecord> cachedIndex = null;
+  /**
+   * The index of each compilation unit whose index is in use. Both the keys and the values are
+   * weak, so an index is discarded once no client refers to it. Compilation units may be processed
+   * concurrently, so all access must be synchronized on this map.
+   */
+  private static final Map<CompilationUnitTree, WeakReference<ASTIndex>> indexes =
+      new WeakHashMap<>();
+
   private static final int EXPECTED_SIZE = 128;
 
   private final CompilationUnitTree cut;
   private final Map<String, Map<String, List<String>>> formals;
 
+  /** The path to each tree in the compilation unit, or null if not yet computed. */
+  private volatile @Nullable Map<Tree, TreePath> paths = null;
+
   /**
-   * Maps source trees in compilation unit to corresponding AST paths.
+   * Returns the index of the given compilation unit, which maps source trees in the compilation
+   * unit to corresponding AST paths. The index is computed only if no client holds a reference to
+   * an index of the same compilation unit.
    *
    * @param root compilation unit to be indexed
    * @return map of trees in compilation unit to AST paths
    */
-  public static Map<Tree, ASTRecord> indexOf(CompilationUnitTree root) {
-    if (cachedRoot == null || !cachedRoot.equals(root)) {
-      cachedRoot = root;
-      cachedIndex = new ASTIndex(root);
+  public static ASTIndex indexOf(CompilationUnitTree root) {
+    synchronized (indexes) {
+      ASTIndex index = lookup(root);
+      if (index != null) {
+        return index;
+      }
+    }
+    // Build the index without holding the lock, so that other compilation units are not delayed.
+    ASTIndex index = new ASTIndex(root);
+    synchronized (indexes) {
+      ASTIndex other = lookup(root);
+      if (other != null) {
+        return other;
+      }
+      indexes.put(root, new WeakReference<>(index));
+      return index;
     }
-    return cachedIndex;
+  }
+
+  /**
+   * Returns the cached index of the given compilation unit, or null. The caller must hold the lock
+   * on {@link #indexes}.
+   *
+   * @param root a compilation unit
+   * @return the cached index of {@code root}, or null if there is none
+   */
+  private static @Nullable ASTIndex lookup(CompilationUnitTree root) {
+    WeakReference<ASTIndex> ref = indexes.get(root);
+    return ref == null ? null : ref.get();
   }
 
   private ASTIndex(CompilationUnitTree root) {
@@ -602,18 +646,95 @@ public class ASTIndex extends WrapperMap<Tree, ASTRecord> {
         null);
   }
 
+  /**
+   * Returns the compilation unit that this indexes.
+   *
+   * @return the compilation unit that this indexes
+   */
+  public CompilationUnitTree getCompilationUnit() {
+    return cut;
+  }
+
   public static ASTRecord getASTPath(CompilationUnitTree cut, Tree node) {
     return indexOf(cut).get(node);
   }
 
   public static TreePath getTreePath(CompilationUnitTree cut, ASTRecord rec) {
-    Tree node = getNode(cut, rec);
-    return node == null ? null : TreePath.getPath(cut, node);
+    return indexOf(cut).getTreePath(rec);
+  }
+
+  /**
+   * Returns the path to the node with the given AST record.
+   *
+   * @param rec an AST record in this compilation unit
+   * @return the path to the node with AST record {@code rec}, or null if there is no such node
+   */
+  public TreePath getTreePath(ASTRecord rec) {
+    Tree node = getNode(rec);
+    return node == null ? null : getPath(node);
+  }
+
+  /**
+   * Returns the path to the given tree. Equivalent to {@code TreePath.getPath(cut, node)}, where
+   * {@code cut} is the compilation unit that this indexes, but takes constant time: the first call
+   * computes the paths to all trees in the compilation unit, in one traversal.
+   *
+   * @param node a tree
+   * @return the path to {@code node}, or null if {@code node} is not in the compilation unit
+   */
+  public TreePath getPath(Tree node) {
+    Map<Tree, TreePath> result = paths;
+    if (result == null) {
+      synchronized (this) {
+        result = paths;
+        if (result == null) {
+          result = computePaths();
+          paths = result;
+        }
+      }
+    }
+    return result.get(node);
+  }
+
+  /**
+   * Computes the path to every tree in the compilation unit.
+   *
+   * @return a map from each tree in the compilation unit to its path
+   */
+  private Map<Tree, TreePath> computePaths() {
+    Map<Tree, TreePath> result = new IdentityHashMap<>();
+    TreePath root = new TreePath(cut);
+    result.put(cut, root);
+    // Traverse in the same order as TreePath.getPath does. If a tree occurs more than once, that
+    // method returns the path to its first occurrence.
+    cut.accept(
+        new TreeScanner<Void, TreePath>() {
+          @Override
+          public Void scan(Tree tree, TreePath parent) {
+            if (tree == null) {
+              return null;
+            }
+            TreePath path = new TreePath(parent, tree);
+            result.putIfAbsent(tree, path);
+            return tree.accept(this, path);
+          }
+        },
+        root);
+    return result;
   }
 
   public static Tree getNode(CompilationUnitTree cut, ASTRecord rec) {
-    Map<Tree, ASTRecord> fwdIndex = ((ASTIndex) indexOf(cut)).back;
-    Map<ASTRecord, Tree> revIndex = ((BiMap<Tree, ASTRecord>) fwdIndex).inverse();
+    return indexOf(cut).getNode(rec);
+  }
+
+  /**
+   * Returns the node with the given AST record.
+   *
+   * @param rec an AST record in this compilation unit
+   * @return the node with AST record {@code rec}, or null if there is no such node
+   */
+  public Tree getNode(ASTRecord rec) {
+    Map<ASTRecord, Tree> revIndex = ((BiMap<Tree, ASTRecord>) back).inverse();
     ExpressionTree et = cut.getPackageName();
     String pkg = et == null ? "" : et.toString();
     if (!pkg.isEmpty() && rec.className.indexOf('.') < 0) {
@@ -625,18 +746,41 @@ public class ASTIndex extends WrapperMap<Tree, ASTRecord> {
 
   public static String getParameterName(
       CompilationUnitTree cut, String className, String methodName, int index) {
+    return indexOf(cut).getParameterName(className, methodName, index);
+  }
+
+  /**
+   * Returns the name of a formal parameter.
+   *
+   * @param className the binary name of the class that declares the method
+   * @param methodName the name and descriptor of the method
+   * @param index the index of the formal parameter
+   * @return the name of the formal parameter, or null if it is not found
+   */
+  public String getParameterName(String className, String methodName, int index) {
     try {
-      ASTIndex ai = (ASTIndex) ASTIndex.indexOf(cut);
-      return ai.formals.get(className).get(methodName).get(index);
+      return formals.get(className).get(methodName).get(index);
     } catch (NullPointerException ex) {
       return null;
     }
   }
 
-  @SuppressWarnings("EmptyCatch") // TODO
   public static Integer getParameterIndex(
       CompilationUnitTree cut, String className, String methodName, String varName) {
-    if (cut != null && className != null && methodName != null && varName != null) {
+    return cut == null ? null : indexOf(cut).getParameterIndex(className, methodName, varName);
+  }
+
+  /**
+   * Returns the index of a formal parameter.
+   *
+   * @param className the binary name of the class that declares the method
+   * @param methodName the name and descriptor of the method
+   * @param varName the name of the formal parameter, or its index as a string
+   * @return the index of the formal parameter, or null if it is not found
+   */
+  @SuppressWarnings("EmptyCatch") // TODO
+  public Integer getParameterIndex(String className, String methodName, String varName) {
+    if (className != null && methodName != null && varName != null) {
       // If `varName` is already a number, return it
       try {
         return Integer.valueOf(varName);
@@ -645,8 +789,7 @@ public class ASTIndex extends WrapperMap<Tree, ASTRecord> {
       }
       // otherwise, look through parameter list for string
       try {
-        ASTIndex ai = (ASTIndex) ASTIndex.indexOf(cut);
-        List<String> names = ai.formals.get(className).get(methodName);
+        List<String> names = formals.get(className).get(methodName);
         int i = 0;
         for (String name : names) {
           if (varName.equals(name)) {
@@ -49,24 +49,34 @@ import com.sun.source.util.TreePath;
 import java.io.IOException;
 import java.io.StreamTokenizer;
 import java.io.StringReader;
-import java.lang.reflect.InvocationTargetException;
 import java.text.Collator;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.Deque;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
 import org.checkerframework.afu.annotator.find.CaseUtils;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.plumelib.util.ArraysPlume;
 
-/** A path through the AST. */
-public class ASTPath extends ImmutableStack<ASTPath.ASTEntry>
-    implements Comparable<ASTPath>, Iterable<ASTPath.ASTEntry> {
+/**
+ * A path through the AST. A path is immutable: {@link #extend} and {@link #getParentPath} return
+ * new paths. A path shares all its entries but the last with its parent path, so extending a path,
+ * as {@link ASTIndex} does for every node of a compilation unit, takes constant time and space. The
+ * entries are collected into an array, which is kept, only when the path is compared or iterated
+ * over or an entry other than the first or last is requested. The hash code of a path is computed
+ * when the path is created. Thus comparing and hashing paths again, as the sorted and hashed
+ * collections of insertions do, allocates nothing.
+ */
+public class ASTPath implements Comparable<ASTPath>, Iterable<ASTPath.ASTEntry> {
+  /** The entries of the empty path. */
+  private static final ASTEntry[] NO_ENTRIES = new ASTEntry[0];
+
+  /** The empty path. */
   private static final ASTPath EMPTY = new ASTPath();
+
   private static final String[] typeSelectors = {
     "bound",
     "identifier",
@@ -118,10 +128,10 @@ public class ASTPath extends ImmutableStack<ASTPath.ASTEntry>
 
   /** A single entry in an AST path. */
   public static class ASTEntry implements Comparable<ASTEntry> {
-    private Tree.Kind treeKind;
-    private String childSelector;
+    private final Tree.Kind treeKind;
+    private final String childSelector;
     /* May be null. */
-    private Integer argument;
+    private final Integer argument;
 
     /**
      * Constructs a new AST entry. For example, in the entry:
@@ -237,7 +247,9 @@ public class ASTPath extends ImmutableStack<ASTPath.ASTEntry>
 
     @Override
     public int compareTo(ASTEntry o) {
-      if (o == null) {
+      if (o == this) {
+        return 0;
+      } else if (o == null) {
         return 1;
       }
       int c = treeKind.compareTo(o.treeKind);
@@ -260,7 +272,9 @@ public class ASTPath extends ImmutableStack<ASTPath.ASTEntry>
 
     @Override
     public int hashCode() {
-      return Objects.hash(treeKind, childSelector, argument);
+      // The same value as Objects.hash(treeKind, childSelector, argument), without the array.
+      return 31 * (31 * (31 + Objects.hashCode(treeKind)) + childSelector.hashCode())
+          + Objects.hashCode(argument);
     }
 
     @Override
@@ -283,7 +297,53 @@ public class ASTPath extends ImmutableStack<ASTPath.ASTEntry>
         }
       };
 
-  ASTPath() {}
+  /** This path without its last entry, or null if this path is empty. */
+  private final @Nullable ASTPath parent;
+
+  /** The last entry of this path, or null if this path is empty. */
+  private final @Nullable ASTEntry last;
+
+  /** The first entry of this path, or null if this path is empty. */
+  private final @Nullable ASTEntry first;
+
+  /** The number of entries in this path. */
+  private final int size;
+
+  /** The hash code of this path. */
+  private final int hash;
+
+  /**
+   * The entries of this path, from the first to the last, or null if they have not been collected
+   * yet. The array is never modified.
+   */
+  private volatile ASTEntry @Nullable [] entries;
+
+  /** Creates an empty path. */
+  ASTPath() {
+    this.parent = null;
+    this.last = null;
+    this.first = null;
+    this.size = 0;
+    this.hash = 0;
+    this.entries = NO_ENTRIES;
+  }
+
+  /**
+   * Creates a path that is the given path followed by the given entry.
+   *
+   * @param parent the path without its last entry
+   * @param last the last entry of the path
+   */
+  private ASTPath(ASTPath parent, ASTEntry last) {
+    this.parent = parent;
+    this.last = last;
+    this.first = parent.size == 0 ? last : parent.first;
+    this.size = parent.size + 1;
+    // The same value as folding the entries from the last to the first, as in
+    //   h = Integer.rotateRight(h ^ entry.hashCode(), 1),
+    // but computed from the hash code of the parent.
+    this.hash = parent.hash ^ Integer.rotateRight(last.hashCode(), size);
+  }
 
   public static ASTPath empty() {
     return EMPTY;
@@ -293,17 +353,93 @@ public class ASTPath extends ImmutableStack<ASTPath.ASTEntry>
     return comparator;
   }
 
-  // TODO: replace w/ skip list?
+  /**
+   * Returns the entries of this path, collecting them the first time.
+   *
+   * @return the entries of this path, from the first to the last; must not be modified
+   */
+  private ASTEntry[] entries() {
+    ASTEntry[] a = entries;
+    if (a == null) {
+      a = new ASTEntry[size];
+      ASTPath p = this;
+      for (int i = size - 1; i >= 0; i--) {
+        a[i] = p.last;
+        p = p.parent;
+      }
+      entries = a;
+    }
+    return a;
+  }
+
   @Override
   public Iterator<ASTEntry> iterator() {
-    ImmutableStack<ASTEntry> s = this;
-    int n = size();
-    ASTEntry[] a = new ASTEntry[n];
-    while (--n >= 0) {
-      a[n] = s.peek();
-      s = s.pop();
+    return Arrays.asList(entries()).iterator();
+  }
+
+  /**
+   * Returns true if this path has no entries.
+   *
+   * @return true if this path has no entries
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the number of entries in this path.
+   *
+   * @return the number of entries in this path
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the index-th entry of this path, counting from the first.
+   *
+   * @param index the index of an entry
+   * @return the index-th entry of this path
+   */
+  public ASTEntry get(int index) {
+    if (!(0 <= index && index < size)) {
+      throw new NoSuchElementException("Has " + size + " elements, asked for #" + index);
     }
-    return Arrays.asList(a).iterator();
+    return index == size - 1 ? last : index == 0 ? first : entries()[index];
+  }
+
+  /**
+   * Returns the last entry of this path.
+   *
+   * @return the last entry of this path
+   */
+  public ASTEntry peek() {
+    if (isEmpty()) {
+      throw new IllegalStateException("peek() on empty path");
+    }
+    return last;
+  }
+
+  /**
+   * Returns this path without its last entry.
+   *
+   * @return this path without its last entry
+   */
+  public ASTPath pop() {
+    if (isEmpty()) {
+      throw new IllegalStateException("pop() on empty path");
+    }
+    return parent;
+  }
+
+  /**
+   * Returns this path followed by the given entry.
+   *
+   * @param entry the entry to add
+   * @return this path followed by {@code entry}
+   */
+  public ASTPath push(ASTEntry entry) {
+    return new ASTPath(this, entry);
   }
 
   public ASTPath extendNewArray(int depth) {
@@ -315,30 +451,21 @@ public class ASTPath extends ImmutableStack<ASTPath.ASTEntry>
   }
 
   public ASTPath add(ASTEntry entry) {
-    ASTPath path = EMPTY;
-    for (ASTEntry e : this) {
-      path = path.extend(e);
-    }
-    return path.extend(entry);
+    return push(entry);
   }
 
   public ASTPath extend(ASTEntry entry) {
-    return (ASTPath) push(entry);
+    return push(entry);
   }
 
   public ASTPath getParentPath() {
-    return (ASTPath) pop();
+    return pop();
   }
 
   public ASTEntry getLast() {
     return peek();
   }
 
-  private static ASTPath canonical(ASTPath astPath) {
-    // TODO
-    return astPath;
-  }
-
   /**
    * Create a new {@code ASTPath} from a formatted string description.
    *
@@ -403,7 +530,7 @@ public class ASTPath extends ImmutableStack<ASTPath.ASTEntry>
      * @return the AST path
      */
     ASTPath parseASTPath() throws ParseException {
-      ASTPath astPath = new ASTPath().extend(parseASTEntry());
+      ASTPath astPath = ASTPath.empty().extend(parseASTEntry());
       while (gotType(',')) {
         getTok();
         astPath = astPath.extend(parseASTEntry());
@@ -710,8 +837,10 @@ public class ASTPath extends ImmutableStack<ASTPath.ASTEntry>
         // in "actualPath". If it's not a match, this is not the correct
         // location. If it is a match, keep going.
         Tree next = null;
-        dbug.debug("astNode: %s%n", astNode);
-        dbug.debug("actualNode: %s%n", actualNode.getKind());
+        if (dbug.isEnabled()) {
+          dbug.debug("astNode: %s%n", astNode);
+          dbug.debug("actualNode: %s%n", actualNode.getKind());
+        }
         if (!kindsMatch(astNode.getTreeKind(), actualNode.getKind())) {
           return false;
         }
@@ -1359,13 +1488,8 @@ public class ASTPath extends ImmutableStack<ASTPath.ASTEntry>
 
   @Override
   public int hashCode() {
-    // hacky fix: remove {Method,Class}.body for comparison
-    ImmutableStack<ASTEntry> s = canonical(this);
-    int hash = 0;
-    while (!s.isEmpty()) {
-      hash = Integer.rotateRight(hash ^ s.peek().hashCode(), 1);
-      s = s.pop();
-    }
+    // Like compareTo, this uses every entry. Paths that differ only in a {Method,Class}.body entry
+    // are distinct; ignoring such entries would have to be done here and in compareTo alike.
     return hash;
   }
 
@@ -1374,38 +1498,30 @@ public class ASTPath extends ImmutableStack<ASTPath.ASTEntry>
     return o instanceof ASTPath && equals((ASTPath) o);
   }
 
+  @SuppressWarnings("ReferenceEquality") // fast path for identical paths
   public boolean equals(ASTPath astPath) {
-    return compareTo(astPath) == 0;
+    return astPath == this
+        || (astPath != null && hashCode() == astPath.hashCode() && compareTo(astPath) == 0);
   }
 
-  @SuppressWarnings("JdkObsolete") // TODO: don't use LinkedList
   @Override
+  @SuppressWarnings("ReferenceEquality") // fast path for identical paths
   public int compareTo(ASTPath o) {
-    // hacky fix: remove {Method,Class}.body for comparison
-    ImmutableStack<ASTEntry> s0 = canonical(this);
-    ImmutableStack<ASTEntry> s1 = canonical(o);
-    Deque<ASTEntry> d0 = new LinkedList<ASTEntry>();
-    Deque<ASTEntry> d1 = new LinkedList<ASTEntry>();
-    while (!s0.isEmpty()) {
-      d0.push(s0.peek());
-      s0 = s0.pop();
+    // The entries are compared as they are, including any {Method,Class}.body entry, so that this
+    // is consistent with hashCode.
+    if (o == this) {
+      return 0;
     }
-    while (!s1.isEmpty()) {
-      d1.push(s1.peek());
-      s1 = s1.pop();
+    int c = Integer.compare(size, o.size);
+    if (c != 0) {
+      return c;
     }
-    int n0 = d0.size();
-    int n1 = d1.size();
-    int c = Integer.compare(n0, n1);
-    if (c == 0) {
-      Iterator<ASTEntry> i0 = d0.iterator();
-      Iterator<ASTEntry> i1 = d1.iterator();
-      while (i0.hasNext()) {
-        c = i0.next().compareTo(i1.next());
-        if (c != 0) {
-          return c;
-        }
-      }
+    // Comparing the arrays is faster than following the parents of both paths, and a path that is
+    // compared is usually compared again, as when insertions are sorted.
+    ASTEntry[] entries0 = entries();
+    ASTEntry[] entries1 = o.entries();
+    for (int i = 0; c == 0 && i < size; i++) {
+      c = entries0[i].compareTo(entries1[i]);
     }
     return c;
   }
@@ -1423,91 +1539,3 @@ public class ASTPath extends ImmutableStack<ASTPath.ASTEntry>
     return sb.toString();
   }
 } // end of class ASTPath
-
-// This class cannot be moved to (say) package org.checkerframework.afu.scenelib.util,
-// probably because of the reflection cleverness.
-/**
- * Immutable stack: operations create new stacks rather than mutate the receiver.
- *
- * @param <E> type of stack elements
- */
-class ImmutableStack<E> {
-
-  // The stack is implemented as a linked list:
-  // each ImmutableStack consists of an element and the rest of the list.
-  private E elem = null;
-  private ImmutableStack<E> rest = null;
-  private int size = 0;
-
-  public ImmutableStack() {}
-
-  private static <T, S extends ImmutableStack<T>> S extend(T el, S s0) {
-    try {
-      @SuppressWarnings("unchecked")
-      S s1 = (S) s0.getClass().getDeclaredConstructor().newInstance();
-      ImmutableStack<T> cs = (ImmutableStack<T>) s1;
-      cs.size = 1 + s0.size();
-      cs.elem = el;
-      cs.rest = s0;
-      return s1;
-    } catch (InstantiationException
-        | InvocationTargetException
-        | IllegalAccessException
-        | NoSuchMethodException e) {
-      throw new RuntimeException(e);
-    }
-  }
-
-  public boolean isEmpty() {
-    return size == 0;
-  }
-
-  public E peek() {
-    if (isEmpty()) {
-      throw new IllegalStateException("peek() on empty stack");
-    }
-    return elem;
-  }
-
-  public ImmutableStack<E> pop() {
-    if (isEmpty()) {
-      throw new IllegalStateException("pop() on empty stack");
-    }
-    return rest;
-  }
-
-  public ImmutableStack<E> push(E elem) {
-    return extend(elem, this);
-  }
-
-  public int size() {
-    return size;
-  }
-
-  /** Return the index-th element of this stack. */
-  public E get(int index) {
-    int n = size();
-
-    if (!(0 <= index && index < n)) {
-      throw new NoSuchElementException("Has " + n + " elements, asked for #" + index);
-    }
-
-    ImmutableStack<E> s = this;
-    while (--n > index) {
-      s = s.pop();
-    }
-    return s.peek();
-  }
-
-  @Override
-  public String toString() {
-    if (size > 0) {
-      StringBuilder sb = new StringBuilder("]").insert(0, peek());
-      for (ImmutableStack<E> stack = pop(); !stack.isEmpty(); stack = stack.pop()) {
-        sb = sb.insert(0, ", ").insert(0, stack.peek());
-      }
-      return sb.insert(0, "[").toString();
-    }
-    return "[]";
-  }
-} // end of class ImmutableStack
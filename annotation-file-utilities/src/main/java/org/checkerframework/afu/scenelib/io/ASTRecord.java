@@ -121,7 +121,13 @@ public class ASTRecord implements Comparable<ASTRecord> {
 
   @Override
   public int hashCode() {
-    return Objects.hash(ast, className, methodName, varName, astPath);
+    // The same value as Objects.hash(ast, className, methodName, varName, astPath), without the
+    // array.
+    int h = 31 + Objects.hashCode(ast);
+    h = 31 * h + Objects.hashCode(className);
+    h = 31 * h + Objects.hashCode(methodName);
+    h = 31 * h + Objects.hashCode(varName);
+    return 31 * h + Objects.hashCode(astPath);
   }
 
   /** Indicates whether this record identifies the given {@link TreePath}. */
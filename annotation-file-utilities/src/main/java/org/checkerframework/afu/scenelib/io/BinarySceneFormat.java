@@ -0,0 +1,135 @@
+package org.checkerframework.afu.scenelib.io;
+
+/**
+ * Constants of the binary scene format, which {@link BinarySceneWriter} writes and {@link
+ * BinarySceneReader} reads. The format holds the same information as an index file, but it can be
+ * loaded without tokenizing or parsing, and the annotations of one class can be loaded without
+ * reading those of the others.
+ *
+ * <p>A file consists of a header followed by six sections:
+ *
+ * <ol>
+ *   <li>The header: {@link #MAGIC}, {@link #VERSION}, and the offset of each section from the start
+ *       of the file, each as a 4-byte big-endian int.
+ *   <li>The string table: the number of strings, the offset of each string from the end of the
+ *       offsets as a 4-byte int, followed by one more offset that marks the end of the last string,
+ *       and the UTF-8 bytes of the strings. Every name and string in the other sections is an
+ *       index into this table.
+ *   <li>The annotation definitions: the name and source of each definition, then the field types
+ *       of each, then the meta-annotations of each. Each distinct definition appears once, and
+ *       annotations refer to it by its index.
+ *   <li>The type paths: each distinct {@code List<TypePathEntry>} that is a key of an inner type
+ *       map, which refers to it by its index.
+ *   <li>The package annotations and the imports of the scene.
+ *   <li>The class directory: the name of each class and the offset of its contents from the start
+ *       of the next section.
+ *   <li>The contents of the classes.
+ * </ol>
+ *
+ * Other than in the header and the string offsets, integers are variable-length: 7 bits per byte,
+ * least significant group first, with the high bit set on all but the last byte. Signed integers
+ * are zigzag-encoded first, so that small negative numbers are small.
+ */
+final class BinarySceneFormat {
+
+  /** Do not instantiate. */
+  private BinarySceneFormat() {
+    throw new Error("Do not instantiate");
+  }
+
+  /** The first four bytes of a binary scene file: "AFUb". */
+  static final int MAGIC = 0x41465562;
+
+  /** The version of the format; a reader rejects files of any other version. */
+  static final int VERSION = 1;
+
+  /** The number of sections, whose offsets follow the magic number and version in the header. */
+  static final int SECTIONS = 6;
+
+  /** The size of the header, in bytes. */
+  static final int HEADER_SIZE = 4 * (2 + SECTIONS);
+
+  // Tags of annotation field types.
+
+  /** The tag of a null field type. */
+  static final byte AFT_NULL = 0;
+
+  /**
+   * The tag of a {@code BasicAFT}, which is followed by the index of its type in {@link #BASIC}.
+   */
+  static final byte AFT_BASIC = 1;
+
+  /** The tag of a {@code ClassTokenAFT}. */
+  static final byte AFT_CLASS = 2;
+
+  /** The tag of an {@code EnumAFT}, which is followed by its type name. */
+  static final byte AFT_ENUM = 3;
+
+  /** The tag of an {@code AnnotationAFT}, which is followed by its definition. */
+  static final byte AFT_ANNOTATION = 4;
+
+  /** The tag of an {@code ArrayAFT}, which is followed by its element type. */
+  static final byte AFT_ARRAY = 5;
+
+  /** The types of the basic annotation field types, in the order of their indices. */
+  static final Class<?>[] BASIC = {
+    byte.class,
+    short.class,
+    int.class,
+    long.class,
+    float.class,
+    double.class,
+    char.class,
+    boolean.class,
+    String.class
+  };
+
+  // Tags of annotation field values, which are those of the class file format.
+
+  /** The tag of a {@code Byte} value. */
+  static final byte VALUE_BYTE = 'B';
+
+  /** The tag of a {@code Short} value. */
+  static final byte VALUE_SHORT = 'S';
+
+  /** The tag of an {@code Integer} value. */
+  static final byte VALUE_INT = 'I';
+
+  /** The tag of a {@code Long} value. */
+  static final byte VALUE_LONG = 'J';
+
+  /** The tag of a {@code Float} value, which is followed by its 4 bytes. */
+  static final byte VALUE_FLOAT = 'F';
+
+  /** The tag of a {@code Double} value, which is followed by its 8 bytes. */
+  static final byte VALUE_DOUBLE = 'D';
+
+  /** The tag of a {@code Character} value. */
+  static final byte VALUE_CHAR = 'C';
+
+  /** The tag of a {@code Boolean} value. */
+  static final byte VALUE_BOOLEAN = 'Z';
+
+  /** The tag of a {@code String} value, including an enum constant. */
+  static final byte VALUE_STRING = 's';
+
+  /** The tag of a {@code Class} value, which is followed by its name. */
+  static final byte VALUE_CLASS = 'c';
+
+  /** The tag of an {@code Annotation} value. */
+  static final byte VALUE_ANNOTATION = '@';
+
+  /** The tag of a {@code List} value, which is followed by its size and its elements. */
+  static final byte VALUE_ARRAY = '[';
+
+  // Tags of the types of insert-typecast invocations.
+
+  /** The tag of a {@code DeclaredType}. */
+  static final byte TYPE_DECLARED = 'L';
+
+  /** The tag of an {@code ArrayType}. */
+  static final byte TYPE_ARRAY = '[';
+
+  /** The tag of a {@code BoundedType}. */
+  static final byte TYPE_BOUNDED = '?';
+}
@@ -0,0 +1,796 @@
+package org.checkerframework.afu.scenelib.io;
+
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.AFT_ANNOTATION;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.AFT_ARRAY;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.AFT_BASIC;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.AFT_CLASS;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.AFT_ENUM;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.AFT_NULL;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.BASIC;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.HEADER_SIZE;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.MAGIC;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.SECTIONS;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.TYPE_ARRAY;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.TYPE_BOUNDED;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.TYPE_DECLARED;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_ANNOTATION;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_ARRAY;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_BOOLEAN;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_BYTE;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_CHAR;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_CLASS;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_DOUBLE;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_FLOAT;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_INT;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_LONG;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_SHORT;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_STRING;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VERSION;
+
+import com.sun.source.tree.Tree;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import org.checkerframework.afu.scenelib.Annotation;
+import org.checkerframework.afu.scenelib.AnnotationInterner;
+import org.checkerframework.afu.scenelib.Annotations;
+import org.checkerframework.afu.scenelib.el.ABlock;
+import org.checkerframework.afu.scenelib.el.AClass;
+import org.checkerframework.afu.scenelib.el.ADeclaration;
+import org.checkerframework.afu.scenelib.el.AElement;
+import org.checkerframework.afu.scenelib.el.AExpression;
+import org.checkerframework.afu.scenelib.el.AField;
+import org.checkerframework.afu.scenelib.el.AMethod;
+import org.checkerframework.afu.scenelib.el.AScene;
+import org.checkerframework.afu.scenelib.el.ATypeElement;
+import org.checkerframework.afu.scenelib.el.ATypeElementWithType;
+import org.checkerframework.afu.scenelib.el.AnnotationDef;
+import org.checkerframework.afu.scenelib.el.BoundLocation;
+import org.checkerframework.afu.scenelib.el.LocalLocation;
+import org.checkerframework.afu.scenelib.el.RelativeLocation;
+import org.checkerframework.afu.scenelib.el.TypeIndexLocation;
+import org.checkerframework.afu.scenelib.el.TypePathEntry;
+import org.checkerframework.afu.scenelib.field.AnnotationAFT;
+import org.checkerframework.afu.scenelib.field.AnnotationFieldType;
+import org.checkerframework.afu.scenelib.field.ArrayAFT;
+import org.checkerframework.afu.scenelib.field.BasicAFT;
+import org.checkerframework.afu.scenelib.field.ClassTokenAFT;
+import org.checkerframework.afu.scenelib.field.EnumAFT;
+import org.checkerframework.afu.scenelib.field.ScalarAFT;
+import org.checkerframework.afu.scenelib.type.ArrayType;
+import org.checkerframework.afu.scenelib.type.BoundedType;
+import org.checkerframework.afu.scenelib.type.DeclaredType;
+import org.checkerframework.afu.scenelib.type.Type;
+import org.checkerframework.afu.scenelib.util.coll.VivifyingMap;
+import org.checkerframework.checker.nullness.qual.Nullable;
+import org.checkerframework.checker.signature.qual.BinaryName;
+import org.objectweb.asm.Label;
+
+/**
+ * BinarySceneReader provides static methods named <code>read</code> that add the annotations in a
+ * file written by {@link BinarySceneWriter} to a given {@link AScene}, as {@link IndexFileParser}
+ * does for an index file.
+ *
+ * <p>A file is mapped into memory rather than read. Only the parts that are needed are decoded: a
+ * string is decoded once, the first time that it is used, and the contents of a class that the
+ * class filter rejects are never touched. All the annotations of the same definition share one
+ * {@link AnnotationDef}, and all the inner types with the same type path share one list.
+ */
+public final class BinarySceneReader {
+
+  /** The contents of the file. Only absolute gets are used, so its position is irrelevant. */
+  private final ByteBuffer buf;
+
+  /** The scene into which annotations are read. */
+  private final AScene scene;
+
+  /** The position in {@link #buf} of the next byte to read. */
+  private int pos;
+
+  /** The position in {@link #buf} of the offset of the first string. */
+  private final int stringOffsets;
+
+  /** The position in {@link #buf} of the bytes of the first string. */
+  private final int stringBytes;
+
+  /** The strings that have been decoded, indexed by their index in the string table. */
+  private final String[] strings;
+
+  /** The annotation definitions, indexed by their index in the definition table. */
+  private final AnnotationDef[] defs;
+
+  /**
+   * The pool in which annotations are interned, or null if they are not. It is null until all the
+   * definitions have been read, since a definition may be interned only once it is complete.
+   */
+  private @Nullable AnnotationInterner interner;
+
+  /** The type paths, indexed by their index in the type path table. */
+  private final List<List<TypePathEntry>> typePaths;
+
+  /**
+   * Creates a new BinarySceneReader and reads the tables of the file.
+   *
+   * @param buf the contents of the file
+   * @param scene the scene into which annotations are read
+   * @throws IOException if {@code buf} is not in the binary scene format
+   */
+  private BinarySceneReader(ByteBuffer buf, AScene scene) throws IOException {
+    this.buf = buf;
+    this.scene = scene;
+    if (buf.limit() < HEADER_SIZE || buf.getInt(0) != MAGIC) {
+      throw new IOException("Not a binary scene file");
+    }
+    if (buf.getInt(4) != VERSION) {
+      throw new IOException(
+          "Binary scene file has version " + buf.getInt(4) + ", expected " + VERSION);
+    }
+
+    pos = section(0);
+    strings = new String[readVarint()];
+    stringOffsets = pos;
+    stringBytes = stringOffsets + 4 * (strings.length + 1);
+
+    pos = section(1);
+    defs = new AnnotationDef[readVarint()];
+    // The standard definitions are used rather than copies of them, as in IndexFileParser, so that
+    // they can be compared with the annotations in Annotations.
+    boolean[] isStandard = new boolean[defs.length];
+    for (int i = 0; i < defs.length; i++) {
+      @SuppressWarnings("signature:assignment") // written from AnnotationDef.name
+      @BinaryName String name = readString();
+      String source = readString();
+      for (AnnotationDef standard : Annotations.standardDefs) {
+        if (standard.name.equals(name)) {
+          defs[i] = standard;
+          isStandard[i] = true;
+        }
+      }
+      if (!isStandard[i]) {
+        defs[i] = new AnnotationDef(name, Annotations.noAnnotations, source);
+      }
+    }
+    // A definition's field types and meta-annotations can refer to any definition, including
+    // itself, so they are read after all the definitions exist.
+    for (int i = 0; i < defs.length; i++) {
+      int fieldCount = readVarint();
+      Map<String, AnnotationFieldType> fieldTypes = new LinkedHashMap<>();
+      for (int j = 0; j < fieldCount; j++) {
+        String fieldName = readString();
+        fieldTypes.put(fieldName, readFieldType());
+      }
+      if (!isStandard[i]) {
+        defs[i].setFieldTypes(fieldTypes);
+      }
+    }
+    for (int i = 0; i < defs.length; i++) {
+      readAnnotations(isStandard[i] ? new HashSet<>() : defs[i].tlAnnotationsHere);
+    }
+    interner = scene.interner;
+    if (interner != null) {
+      for (int i = 0; i < defs.length; i++) {
+        defs[i] = interner.intern(defs[i]);
+      }
+    }
+
+    pos = section(2);
+    int pathCount = readVarint();
+    typePaths = new ArrayList<>(pathCount);
+    for (int i = 0; i < pathCount; i++) {
+      int length = readVarint();
+      List<TypePathEntry> path = new ArrayList<>(length);
+      for (int j = 0; j < length; j++) {
+        int step = readVarint();
+        path.add(TypePathEntry.create(step, readVarint()));
+      }
+      typePaths.add(Collections.unmodifiableList(path));
+    }
+  }
+
+  /**
+   * Reads the binary scene file {@code filename} into {@code scene}.
+   *
+   * @param filename the name of a file written by {@link BinarySceneWriter}
+   * @param scene the scene into which annotations are read
+   * @throws IOException if the file cannot be read or is not in the binary scene format
+   */
+  public static void read(String filename, AScene scene) throws IOException {
+    read(filename, scene, className -> true);
+  }
+
+  /**
+   * Reads the binary scene file {@code filename} into {@code scene}, skipping the classes that
+   * {@code classFilter} rejects. Package annotations are always read.
+   *
+   * @param filename the name of a file written by {@link BinarySceneWriter}
+   * @param scene the scene into which annotations are read
+   * @param classFilter given the binary name of a class, returns true if the class should be read
+   * @throws IOException if the file cannot be read or is not in the binary scene format
+   */
+  public static void read(String filename, AScene scene, Predicate<String> classFilter)
+      throws IOException {
+    ByteBuffer buf;
+    try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+      // The mapping remains valid after the channel is closed.
+      buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    try {
+      read(buf, scene, classFilter);
+    } catch (IOException e) {
+      throw new IOException(filename + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Reads the binary scene in {@code buf} into {@code scene}, skipping the classes that {@code
+   * classFilter} rejects. Package annotations are always read.
+   *
+   * @param buf the contents of a file written by {@link BinarySceneWriter}
+   * @param scene the scene into which annotations are read
+   * @param classFilter given the binary name of a class, returns true if the class should be read
+   * @throws IOException if {@code buf} is not in the binary scene format
+   */
+  public static void read(ByteBuffer buf, AScene scene, Predicate<String> classFilter)
+      throws IOException {
+    try {
+      new BinarySceneReader(buf, scene).read(classFilter);
+    } catch (IndexOutOfBoundsException e) {
+      throw new IOException("Truncated or corrupt binary scene file", e);
+    }
+  }
+
+  /**
+   * Reads the package annotations, the imports, and the classes that {@code classFilter} accepts.
+   *
+   * @param classFilter given the binary name of a class, returns true if the class should be read
+   */
+  private void read(Predicate<String> classFilter) {
+    pos = section(3);
+    int packageCount = readVarint();
+    for (int i = 0; i < packageCount; i++) {
+      readElement(scene.packages.getVivify(readString()));
+    }
+    int importCount = readVarint();
+    for (int i = 0; i < importCount; i++) {
+      String key = readString();
+      Set<String> imported = scene.imports.get(key);
+      if (imported == null) {
+        imported = new LinkedHashSet<>();
+        scene.imports.put(key, imported);
+      }
+      int count = readVarint();
+      for (int j = 0; j < count; j++) {
+        imported.add(readString());
+      }
+    }
+
+    int classes = section(5);
+    pos = section(4);
+    int classCount = readVarint();
+    for (int i = 0; i < classCount; i++) {
+      String className = readString();
+      int offset = readVarint();
+      if (classFilter.test(className)) {
+        int directoryPos = pos;
+        pos = classes + offset;
+        readClass(scene.classes.getVivify(className));
+        pos = directoryPos;
+      }
+    }
+  }
+
+  /**
+   * Returns the offset of a section from the start of the file.
+   *
+   * @param section the index of the section
+   * @return the offset of the section
+   */
+  private int section(int section) {
+    assert section < SECTIONS;
+    return buf.getInt(8 + 4 * section);
+  }
+
+  /**
+   * Reads an unsigned variable-length integer.
+   *
+   * @return the integer
+   */
+  private int readVarint() {
+    int b = buf.get(pos++);
+    if (b >= 0) {
+      return b;
+    }
+    int result = b & 0x7F;
+    for (int shift = 7; ; shift += 7) {
+      b = buf.get(pos++);
+      result |= (b & 0x7F) << shift;
+      if (b >= 0) {
+        return result;
+      }
+    }
+  }
+
+  /**
+   * Reads a signed variable-length integer.
+   *
+   * @return the integer
+   */
+  private int readSigned() {
+    int i = readVarint();
+    return (i >>> 1) ^ -(i & 1);
+  }
+
+  /**
+   * Reads a signed variable-length long integer.
+   *
+   * @return the integer
+   */
+  private long readSignedLong() {
+    long result = 0;
+    for (int shift = 0; ; shift += 7) {
+      int b = buf.get(pos++);
+      result |= (long) (b & 0x7F) << shift;
+      if (b >= 0) {
+        return (result >>> 1) ^ -(result & 1);
+      }
+    }
+  }
+
+  /**
+   * Reads a 4-byte big-endian integer.
+   *
+   * @return the integer
+   */
+  private int readFixed() {
+    int result = buf.getInt(pos);
+    pos += 4;
+    return result;
+  }
+
+  /**
+   * Reads a reference to the string table.
+   *
+   * @return the string
+   */
+  private String readString() {
+    return string(readVarint());
+  }
+
+  /**
+   * Returns a string of the string table, decoding it if it has not already been decoded.
+   *
+   * @param index the index of the string
+   * @return the string
+   */
+  private String string(int index) {
+    String result = strings[index];
+    if (result == null) {
+      int start = stringBytes + buf.getInt(stringOffsets + 4 * index);
+      int end = stringBytes + buf.getInt(stringOffsets + 4 * index + 4);
+      byte[] bytes = new byte[end - start];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = buf.get(start + i);
+      }
+      result = new String(bytes, StandardCharsets.UTF_8);
+      strings[index] = result;
+    }
+    return result;
+  }
+
+  /**
+   * Reads an annotation field type.
+   *
+   * @return the field type, or null
+   */
+  private AnnotationFieldType readFieldType() {
+    byte tag = buf.get(pos++);
+    switch (tag) {
+      case AFT_NULL:
+        return null;
+      case AFT_BASIC:
+        return BasicAFT.forType(BASIC[readVarint()]);
+      case AFT_CLASS:
+        return ClassTokenAFT.ctaft;
+      case AFT_ENUM:
+        return new EnumAFT(readString());
+      case AFT_ANNOTATION:
+        return new AnnotationAFT(defs[readVarint()]);
+      case AFT_ARRAY:
+        return new ArrayAFT((ScalarAFT) readFieldType());
+      default:
+        throw new IndexOutOfBoundsException("Bad annotation field type tag " + tag);
+    }
+  }
+
+  /**
+   * Reads a set of annotations.
+   *
+   * @param annos the set to which to add the annotations
+   */
+  private void readAnnotations(Set<Annotation> annos) {
+    int count = readVarint();
+    for (int i = 0; i < count; i++) {
+      annos.add(readAnnotation());
+    }
+  }
+
+  /**
+   * Reads an annotation.
+   *
+   * @return the annotation
+   */
+  private Annotation readAnnotation() {
+    AnnotationDef def = defs[readVarint()];
+    int fieldCount = readVarint();
+    Map<String, Object> fieldValues = new LinkedHashMap<>();
+    for (int i = 0; i < fieldCount; i++) {
+      String fieldName = readString();
+      fieldValues.put(fieldName, readValue());
+    }
+    Annotation a = new Annotation(def, fieldValues);
+    return interner == null ? a : interner.intern(a);
+  }
+
+  /**
+   * Reads the value of an annotation field.
+   *
+   * @return the value
+   */
+  private Object readValue() {
+    byte tag = buf.get(pos++);
+    switch (tag) {
+      case VALUE_STRING:
+        return readString();
+      case VALUE_INT:
+        return readSigned();
+      case VALUE_BOOLEAN:
+        return buf.get(pos++) != 0;
+      case VALUE_LONG:
+        return readSignedLong();
+      case VALUE_BYTE:
+        return (byte) readSigned();
+      case VALUE_SHORT:
+        return (short) readSigned();
+      case VALUE_CHAR:
+        return (char) readVarint();
+      case VALUE_FLOAT:
+        return Float.intBitsToFloat(readFixed());
+      case VALUE_DOUBLE:
+        long high = readFixed();
+        return Double.longBitsToDouble((high << 32) | (readFixed() & 0xFFFFFFFFL));
+      case VALUE_CLASS:
+        String className = readString();
+        Class<?> primitive = IndexFileParser.primitiveTypes.get(className);
+        if (primitive != null) {
+          return primitive;
+        }
+        try {
+          return Class.forName(className);
+        } catch (ClassNotFoundException e) {
+          throw new Error("Could not load class: " + className, e);
+        }
+      case VALUE_ANNOTATION:
+        return readAnnotation();
+      case VALUE_ARRAY:
+        int size = readVarint();
+        List<Object> elements = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+          elements.add(readValue());
+        }
+        return Collections.unmodifiableList(elements);
+      default:
+        throw new IndexOutOfBoundsException("Bad annotation field value tag " + tag);
+    }
+  }
+
+  /**
+   * Reads the annotations on an element and its type, if it has one.
+   *
+   * @param e the element
+   */
+  private void readElement(AElement e) {
+    readAnnotations(e.tlAnnotationsHere);
+    if (e.type != null) {
+      readTypeElement(e.type);
+    }
+  }
+
+  /**
+   * Reads a type element and its inner types.
+   *
+   * @param t the type element
+   */
+  private void readTypeElement(ATypeElement t) {
+    readAnnotations(t.tlAnnotationsHere);
+    int count = readVarint();
+    for (int i = 0; i < count; i++) {
+      readTypeElement(t.innerTypes.getVivify(typePaths.get(readVarint())));
+    }
+  }
+
+  /**
+   * Reads a declaration, including its AST insertions.
+   *
+   * @param d the declaration
+   */
+  private void readDeclaration(ADeclaration d) {
+    readElement(d);
+    int count = readVarint();
+    for (int i = 0; i < count; i++) {
+      readTypeElement(d.insertAnnotations.getVivify(readASTPath()));
+    }
+    count = readVarint();
+    for (int i = 0; i < count; i++) {
+      ATypeElementWithType t = d.insertTypecasts.getVivify(readASTPath());
+      readTypeElement(t);
+      t.setType(readType());
+    }
+  }
+
+  /**
+   * Reads an AST path.
+   *
+   * @return the AST path
+   */
+  private ASTPath readASTPath() {
+    int size = readVarint();
+    ASTPath path = ASTPath.empty();
+    for (int i = 0; i < size; i++) {
+      Tree.Kind kind = Tree.Kind.valueOf(readString());
+      String childSelector = readString();
+      Integer argument = readVarint() == 0 ? null : readSigned();
+      path = path.extend(new ASTPath.ASTEntry(kind, childSelector, argument));
+    }
+    return path;
+  }
+
+  /**
+   * Reads the type of an insert-typecast invocation.
+   *
+   * @return the type
+   */
+  private Type readType() {
+    byte tag = buf.get(pos++);
+    switch (tag) {
+      case TYPE_ARRAY:
+        List<String> annotations = readStrings();
+        ArrayType array = new ArrayType(readType());
+        array.setAnnotations(annotations);
+        return array;
+      case TYPE_BOUNDED:
+        DeclaredType name = (DeclaredType) readType();
+        BoundedType.BoundKind boundKind = BoundedType.BoundKind.values()[readVarint()];
+        return new BoundedType(name, boundKind, (DeclaredType) readType());
+      case TYPE_DECLARED:
+        DeclaredType declared = new DeclaredType(readString());
+        declared.setAnnotations(readStrings());
+        if (!declared.isWildcard()) {
+          int count = readVarint();
+          for (int i = 0; i < count; i++) {
+            declared.addTypeParameter(readType());
+          }
+          if (readVarint() != 0) {
+            declared.setInnerType((DeclaredType) readType());
+          }
+        }
+        return declared;
+      default:
+        throw new IndexOutOfBoundsException("Bad type tag " + tag);
+    }
+  }
+
+  /**
+   * Reads a list of strings.
+   *
+   * @return the strings
+   */
+  private List<String> readStrings() {
+    int count = readVarint();
+    List<String> result = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      result.add(readString());
+    }
+    return result;
+  }
+
+  /**
+   * Reads a relative location.
+   *
+   * @return the relative location
+   */
+  private RelativeLocation readRelativeLocation() {
+    int offset = readSigned();
+    int index = readSigned();
+    int typeIndex = readSigned();
+    return offset > -1
+        ? RelativeLocation.createOffset(offset, typeIndex)
+        : RelativeLocation.createIndex(index, typeIndex);
+  }
+
+  /**
+   * Reads a local variable location.
+   *
+   * @return the local variable location
+   */
+  private LocalLocation readLocalLocation() {
+    int name = readVarint();
+    int lifetimes = readVarint();
+    Label[] start = new Label[lifetimes];
+    Label[] end = new Label[lifetimes];
+    int[] index = new int[lifetimes];
+    for (int i = 0; i < lifetimes; i++) {
+      index[i] = readSigned();
+      start[i] = readLabel();
+      end[i] = readLabel();
+    }
+    return new LocalLocation(start, end, index, name == 0 ? null : string(name - 1));
+  }
+
+  /**
+   * Reads a label, which is resolved to its bytecode offset unless the offset is -1.
+   *
+   * @return the label
+   */
+  private Label readLabel() {
+    int offset = readSigned();
+    Label label = new Label();
+    if (offset != -1) {
+      LocalLocation.resolveLabel(label, offset);
+    }
+    return label;
+  }
+
+  /**
+   * Reads a map from bound locations to type elements.
+   *
+   * @param bounds the map into which to read
+   */
+  private void readBounds(VivifyingMap<BoundLocation, ATypeElement> bounds) {
+    int count = readVarint();
+    for (int i = 0; i < count; i++) {
+      int paramIndex = readSigned();
+      readTypeElement(bounds.getVivify(new BoundLocation(paramIndex, readSigned())));
+    }
+  }
+
+  /**
+   * Reads a map from type indices to type elements.
+   *
+   * @param types the map into which to read
+   */
+  private void readTypeIndices(VivifyingMap<TypeIndexLocation, ATypeElement> types) {
+    int count = readVarint();
+    for (int i = 0; i < count; i++) {
+      readTypeElement(types.getVivify(new TypeIndexLocation(readSigned())));
+    }
+  }
+
+  /**
+   * Reads a map from relative locations to type elements.
+   *
+   * @param types the map into which to read
+   */
+  private void readRelativeTypes(VivifyingMap<RelativeLocation, ATypeElement> types) {
+    int count = readVarint();
+    for (int i = 0; i < count; i++) {
+      readTypeElement(types.getVivify(readRelativeLocation()));
+    }
+  }
+
+  /**
+   * Reads a map from strings to fields.
+   *
+   * @param fields the map into which to read
+   */
+  private void readNamedFields(VivifyingMap<String, AField> fields) {
+    int count = readVarint();
+    for (int i = 0; i < count; i++) {
+      readDeclaration(fields.getVivify(readString()));
+    }
+  }
+
+  /**
+   * Reads an expression.
+   *
+   * @param x the expression
+   */
+  private void readExpression(AExpression x) {
+    readElement(x);
+    readRelativeTypes(x.typecasts);
+    readRelativeTypes(x.instanceofs);
+    readRelativeTypes(x.news);
+    readRelativeTypes(x.calls);
+    readRelativeTypes(x.refs);
+    int count = readVarint();
+    for (int i = 0; i < count; i++) {
+      readMethod(x.funs.getVivify(readRelativeLocation()));
+    }
+  }
+
+  /**
+   * Reads a block.
+   *
+   * @param block the block
+   */
+  private void readBlock(ABlock block) {
+    readExpression(block);
+    int count = readVarint();
+    for (int i = 0; i < count; i++) {
+      readDeclaration(block.locals.getVivify(readLocalLocation()));
+    }
+  }
+
+  /**
+   * Reads a method.
+   *
+   * @param m the method
+   */
+  private void readMethod(AMethod m) {
+    readDeclaration(m);
+    readBounds(m.bounds);
+    readTypeElement(m.returnType);
+    readDeclaration(m.receiver);
+    int count = readVarint();
+    for (int i = 0; i < count; i++) {
+      readDeclaration(m.parameters.getVivify(readSigned()));
+    }
+    readTypeIndices(m.throwsException);
+    readNamedFields(m.preconditions);
+    readNamedFields(m.postconditions);
+    readBlock(m.body);
+  }
+
+  /**
+   * Reads a class.
+   *
+   * @param c the class
+   */
+  private void readClass(AClass c) {
+    readDeclaration(c);
+    readBounds(c.bounds);
+    readTypeIndices(c.extendsImplements);
+    int count = readVarint();
+    for (int i = 0; i < count; i++) {
+      readMethod(c.methods.getVivify(readString()));
+    }
+    readInitBlocks(c.staticInits);
+    readInitBlocks(c.instanceInits);
+    count = readVarint();
+    for (int i = 0; i < count; i++) {
+      readExpression(c.fieldInits.getVivify(readString()));
+    }
+    count = readVarint();
+    for (int i = 0; i < count; i++) {
+      String name = readString();
+      AField f = c.fields.getVivify(name);
+      readDeclaration(f);
+      if (readVarint() != 0) {
+        f.init = c.fieldInits.getVivify(name);
+      }
+    }
+  }
+
+  /**
+   * Reads a map from indices to initializer blocks.
+   *
+   * @param blocks the map into which to read
+   */
+  private void readInitBlocks(VivifyingMap<Integer, ABlock> blocks) {
+    int count = readVarint();
+    for (int i = 0; i < count; i++) {
+      readBlock(blocks.getVivify(readSigned()));
+    }
+  }
+}
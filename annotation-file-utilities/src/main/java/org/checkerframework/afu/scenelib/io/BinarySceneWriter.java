@@ -0,0 +1,772 @@
+package org.checkerframework.afu.scenelib.io;
+
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.AFT_ANNOTATION;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.AFT_ARRAY;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.AFT_BASIC;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.AFT_CLASS;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.AFT_ENUM;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.AFT_NULL;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.BASIC;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.HEADER_SIZE;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.MAGIC;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.SECTIONS;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.TYPE_ARRAY;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.TYPE_BOUNDED;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.TYPE_DECLARED;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_ANNOTATION;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_ARRAY;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_BOOLEAN;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_BYTE;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_CHAR;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_CLASS;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_DOUBLE;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_FLOAT;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_INT;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_LONG;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_SHORT;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VALUE_STRING;
+import static org.checkerframework.afu.scenelib.io.BinarySceneFormat.VERSION;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.checkerframework.afu.scenelib.Annotation;
+import org.checkerframework.afu.scenelib.el.ABlock;
+import org.checkerframework.afu.scenelib.el.AClass;
+import org.checkerframework.afu.scenelib.el.ADeclaration;
+import org.checkerframework.afu.scenelib.el.AElement;
+import org.checkerframework.afu.scenelib.el.AExpression;
+import org.checkerframework.afu.scenelib.el.AField;
+import org.checkerframework.afu.scenelib.el.AMethod;
+import org.checkerframework.afu.scenelib.el.AScene;
+import org.checkerframework.afu.scenelib.el.ATypeElement;
+import org.checkerframework.afu.scenelib.el.ATypeElementWithType;
+import org.checkerframework.afu.scenelib.el.AnnotationDef;
+import org.checkerframework.afu.scenelib.el.BoundLocation;
+import org.checkerframework.afu.scenelib.el.LocalLocation;
+import org.checkerframework.afu.scenelib.el.RelativeLocation;
+import org.checkerframework.afu.scenelib.el.TypeIndexLocation;
+import org.checkerframework.afu.scenelib.el.TypePathEntry;
+import org.checkerframework.afu.scenelib.field.AnnotationAFT;
+import org.checkerframework.afu.scenelib.field.AnnotationFieldType;
+import org.checkerframework.afu.scenelib.field.ArrayAFT;
+import org.checkerframework.afu.scenelib.field.BasicAFT;
+import org.checkerframework.afu.scenelib.field.ClassTokenAFT;
+import org.checkerframework.afu.scenelib.field.EnumAFT;
+import org.checkerframework.afu.scenelib.type.ArrayType;
+import org.checkerframework.afu.scenelib.type.BoundedType;
+import org.checkerframework.afu.scenelib.type.DeclaredType;
+import org.checkerframework.afu.scenelib.type.Type;
+
+/**
+ * BinarySceneWriter provides two static methods named <code>write</code> that write a given {@link
+ * AScene} to a given {@link OutputStream} or filename, in the binary scene format described in
+ * {@link BinarySceneFormat}. {@link BinarySceneReader} reads the result.
+ *
+ * <p>Unlike {@link IndexFileWriter}, this writes every part of the scene, including the parts that
+ * the index file format cannot express, such as the exceptions that a method throws. It does not
+ * write information that comes from javac rather than from an annotation file, such as {@link
+ * AMethod#contracts} and the {@code TypeMirror}s of fields and methods.
+ */
+public final class BinarySceneWriter {
+
+  /** A growable byte array with methods to append the integers of the binary scene format. */
+  private static final class Buffer extends ByteArrayOutputStream {
+
+    /**
+     * Appends an unsigned variable-length integer.
+     *
+     * @param i the integer, which is treated as unsigned
+     */
+    void writeVarint(int i) {
+      while ((i & ~0x7F) != 0) {
+        write((i & 0x7F) | 0x80);
+        i >>>= 7;
+      }
+      write(i);
+    }
+
+    /**
+     * Appends a signed variable-length integer.
+     *
+     * @param i the integer
+     */
+    void writeSigned(int i) {
+      writeVarint((i << 1) ^ (i >> 31));
+    }
+
+    /**
+     * Appends a signed variable-length long integer.
+     *
+     * @param l the integer
+     */
+    void writeSignedLong(long l) {
+      l = (l << 1) ^ (l >> 63);
+      while ((l & ~0x7FL) != 0) {
+        write((int) ((l & 0x7F) | 0x80));
+        l >>>= 7;
+      }
+      write((int) l);
+    }
+
+    /**
+     * Appends a 4-byte big-endian integer.
+     *
+     * @param i the integer
+     */
+    void writeFixed(int i) {
+      write(i >>> 24);
+      write(i >>> 16);
+      write(i >>> 8);
+      write(i);
+    }
+  }
+
+  /** The scene being written. */
+  private final AScene scene;
+
+  /** The index of each string that has been written, in the string table. */
+  private final Map<String, Integer> strings = new HashMap<>();
+
+  /**
+   * The index of each annotation definition that has been written, in the definition table. This
+   * is an identity map because {@link AnnotationDef#equals} does not terminate for two distinct
+   * definitions that are meta-annotated with themselves, such as two definitions of {@code
+   * Retention}.
+   */
+  private final Map<AnnotationDef, Integer> defs = new IdentityHashMap<>();
+
+  /** The annotation definitions that have been written, in the order of their indices. */
+  private final List<AnnotationDef> defList = new ArrayList<>();
+
+  /** The index of each type path that has been written, in the type path table. */
+  private final Map<List<TypePathEntry>, Integer> typePaths = new LinkedHashMap<>();
+
+  /**
+   * Creates a new BinarySceneWriter.
+   *
+   * @param scene the scene to write
+   */
+  private BinarySceneWriter(AScene scene) {
+    this.scene = scene;
+  }
+
+  /**
+   * Writes the annotations in {@code scene} and their definitions to {@code out} in the binary
+   * scene format.
+   *
+   * @param scene the scene to write
+   * @param out where to write the scene
+   * @throws IOException if {@code out} cannot be written
+   */
+  public static void write(AScene scene, OutputStream out) throws IOException {
+    new BinarySceneWriter(scene).write(out);
+  }
+
+  /**
+   * Writes the annotations in {@code scene} and their definitions to the file {@code filename} in
+   * the binary scene format; see {@link #write(AScene, OutputStream)}.
+   *
+   * @param scene the scene to write
+   * @param filename the name of the file to write
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(AScene scene, String filename) throws IOException {
+    try (OutputStream out = new BufferedOutputStream(new FileOutputStream(filename))) {
+      write(scene, out);
+    }
+  }
+
+  /**
+   * Writes the scene. The sections that refer to the tables are written first, so that the tables
+   * contain exactly what they refer to.
+   *
+   * @param out where to write the scene
+   * @throws IOException if {@code out} cannot be written
+   */
+  private void write(OutputStream out) throws IOException {
+    Buffer classes = new Buffer();
+    Buffer directory = new Buffer();
+    directory.writeVarint(scene.classes.size());
+    for (Map.Entry<String, AClass> ce : scene.classes.entrySet()) {
+      directory.writeVarint(string(ce.getKey()));
+      directory.writeVarint(classes.size());
+      writeClass(classes, ce.getValue());
+    }
+
+    Buffer packages = new Buffer();
+    int packageCount = 0;
+    for (AElement p : scene.packages.values()) {
+      if (p != null) {
+        packageCount++;
+      }
+    }
+    packages.writeVarint(packageCount);
+    for (Map.Entry<String, AElement> pe : scene.packages.entrySet()) {
+      if (pe.getValue() != null) {
+        packages.writeVarint(string(pe.getKey()));
+        writeElement(packages, pe.getValue());
+      }
+    }
+    packages.writeVarint(scene.imports.size());
+    for (Map.Entry<String, Set<String>> ie : scene.imports.entrySet()) {
+      packages.writeVarint(string(ie.getKey()));
+      packages.writeVarint(ie.getValue().size());
+      for (String imported : ie.getValue()) {
+        packages.writeVarint(string(imported));
+      }
+    }
+
+    Buffer paths = new Buffer();
+    paths.writeVarint(typePaths.size());
+    for (List<TypePathEntry> path : typePaths.keySet()) {
+      paths.writeVarint(path.size());
+      for (TypePathEntry entry : path) {
+        paths.writeVarint(entry.step);
+        paths.writeVarint(entry.argument);
+      }
+    }
+
+    // Writing a definition can add more definitions to defList, and writing the meta-annotations
+    // can add more still, so the three parts are written to separate buffers.
+    Buffer defNames = new Buffer();
+    Buffer defFields = new Buffer();
+    Buffer defMetaAnnotations = new Buffer();
+    for (int i = 0; i < defList.size(); i++) {
+      AnnotationDef def = defList.get(i);
+      defNames.writeVarint(string(def.name));
+      defNames.writeVarint(string(def.source));
+      defFields.writeVarint(def.fieldTypes.size());
+      for (Map.Entry<String, AnnotationFieldType> fe : def.fieldTypes.entrySet()) {
+        defFields.writeVarint(string(fe.getKey()));
+        writeFieldType(defFields, fe.getValue());
+      }
+      writeAnnotations(defMetaAnnotations, def.tlAnnotationsHere);
+    }
+    Buffer annotationDefs = new Buffer();
+    annotationDefs.writeVarint(defList.size());
+    defNames.writeTo(annotationDefs);
+    defFields.writeTo(annotationDefs);
+    defMetaAnnotations.writeTo(annotationDefs);
+
+    Buffer stringTable = new Buffer();
+    String[] stringList = new String[strings.size()];
+    for (Map.Entry<String, Integer> se : strings.entrySet()) {
+      stringList[se.getValue()] = se.getKey();
+    }
+    stringTable.writeVarint(stringList.length);
+    Buffer stringBytes = new Buffer();
+    for (String s : stringList) {
+      stringTable.writeFixed(stringBytes.size());
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      stringBytes.write(bytes, 0, bytes.length);
+    }
+    stringTable.writeFixed(stringBytes.size());
+    stringBytes.writeTo(stringTable);
+
+    List<Buffer> sections =
+        Arrays.asList(stringTable, annotationDefs, paths, packages, directory, classes);
+    assert sections.size() == SECTIONS;
+    DataOutputStream data = new DataOutputStream(out);
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    int offset = HEADER_SIZE;
+    for (Buffer section : sections) {
+      data.writeInt(offset);
+      offset += section.size();
+    }
+    for (Buffer section : sections) {
+      section.writeTo(data);
+    }
+    data.flush();
+  }
+
+  /**
+   * Returns the index of the given string in the string table, adding it if necessary.
+   *
+   * @param s a string
+   * @return the index of {@code s}
+   */
+  private int string(String s) {
+    Integer index = strings.get(s);
+    if (index == null) {
+      index = strings.size();
+      strings.put(s, index);
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the given annotation definition in the definition table, adding it if
+   * necessary.
+   *
+   * @param def an annotation definition
+   * @return the index of {@code def}
+   */
+  private int def(AnnotationDef def) {
+    Integer index = defs.get(def);
+    if (index == null) {
+      index = defList.size();
+      defs.put(def, index);
+      defList.add(def);
+    }
+    return index;
+  }
+
+  /**
+   * Returns the index of the given type path in the type path table, adding it if necessary.
+   *
+   * @param path a type path
+   * @return the index of {@code path}
+   */
+  private int typePath(List<TypePathEntry> path) {
+    Integer index = typePaths.get(path);
+    if (index == null) {
+      index = typePaths.size();
+      typePaths.put(path, index);
+    }
+    return index;
+  }
+
+  /**
+   * Writes an annotation field type.
+   *
+   * @param b where to write
+   * @param aft the field type, or null
+   */
+  private void writeFieldType(Buffer b, AnnotationFieldType aft) {
+    if (aft == null) {
+      b.write(AFT_NULL);
+    } else if (aft instanceof BasicAFT) {
+      b.write(AFT_BASIC);
+      b.writeVarint(Arrays.asList(BASIC).indexOf(((BasicAFT) aft).type));
+    } else if (aft instanceof ClassTokenAFT) {
+      b.write(AFT_CLASS);
+    } else if (aft instanceof EnumAFT) {
+      b.write(AFT_ENUM);
+      b.writeVarint(string(((EnumAFT) aft).typeName));
+    } else if (aft instanceof AnnotationAFT) {
+      b.write(AFT_ANNOTATION);
+      b.writeVarint(def(((AnnotationAFT) aft).annotationDef));
+    } else if (aft instanceof ArrayAFT) {
+      b.write(AFT_ARRAY);
+      writeFieldType(b, ((ArrayAFT) aft).elementType);
+    } else {
+      throw new Error("Unexpected annotation field type " + aft.getClass() + ": " + aft);
+    }
+  }
+
+  /**
+   * Writes a set of annotations.
+   *
+   * @param b where to write
+   * @param annos the annotations
+   */
+  private void writeAnnotations(Buffer b, Set<Annotation> annos) {
+    b.writeVarint(annos.size());
+    for (Annotation anno : annos) {
+      writeAnnotation(b, anno);
+    }
+  }
+
+  /**
+   * Writes an annotation.
+   *
+   * @param b where to write
+   * @param anno the annotation
+   */
+  private void writeAnnotation(Buffer b, Annotation anno) {
+    b.writeVarint(def(anno.def));
+    b.writeVarint(anno.fieldValues.size());
+    for (Map.Entry<String, Object> fe : anno.fieldValues.entrySet()) {
+      b.writeVarint(string(fe.getKey()));
+      writeValue(b, fe.getValue());
+    }
+  }
+
+  /**
+   * Writes the value of an annotation field.
+   *
+   * @param b where to write
+   * @param value the value, in one of the forms given on {@link Annotation#getFieldValue}
+   */
+  private void writeValue(Buffer b, Object value) {
+    if (value instanceof String) {
+      b.write(VALUE_STRING);
+      b.writeVarint(string((String) value));
+    } else if (value instanceof Integer) {
+      b.write(VALUE_INT);
+      b.writeSigned((Integer) value);
+    } else if (value instanceof Boolean) {
+      b.write(VALUE_BOOLEAN);
+      b.write((Boolean) value ? 1 : 0);
+    } else if (value instanceof Long) {
+      b.write(VALUE_LONG);
+      b.writeSignedLong((Long) value);
+    } else if (value instanceof Byte) {
+      b.write(VALUE_BYTE);
+      b.writeSigned((Byte) value);
+    } else if (value instanceof Short) {
+      b.write(VALUE_SHORT);
+      b.writeSigned((Short) value);
+    } else if (value instanceof Character) {
+      b.write(VALUE_CHAR);
+      b.writeVarint((Character) value);
+    } else if (value instanceof Float) {
+      b.write(VALUE_FLOAT);
+      b.writeFixed(Float.floatToRawIntBits((Float) value));
+    } else if (value instanceof Double) {
+      b.write(VALUE_DOUBLE);
+      long bits = Double.doubleToRawLongBits((Double) value);
+      b.writeFixed((int) (bits >>> 32));
+      b.writeFixed((int) bits);
+    } else if (value instanceof Class) {
+      b.write(VALUE_CLASS);
+      b.writeVarint(string(((Class<?>) value).getName()));
+    } else if (value instanceof Annotation) {
+      b.write(VALUE_ANNOTATION);
+      writeAnnotation(b, (Annotation) value);
+    } else if (value instanceof List) {
+      List<?> elements = (List<?>) value;
+      b.write(VALUE_ARRAY);
+      b.writeVarint(elements.size());
+      for (Object element : elements) {
+        writeValue(b, element);
+      }
+    } else {
+      throw new Error("Unexpected annotation field value " + value.getClass() + ": " + value);
+    }
+  }
+
+  /**
+   * Writes the annotations on an element and its type, if it has one.
+   *
+   * @param b where to write
+   * @param e the element
+   */
+  private void writeElement(Buffer b, AElement e) {
+    writeAnnotations(b, e.tlAnnotationsHere);
+    if (e.type != null) {
+      writeTypeElement(b, e.type);
+    }
+  }
+
+  /**
+   * Writes a type element and its inner types.
+   *
+   * @param b where to write
+   * @param t the type element
+   */
+  private void writeTypeElement(Buffer b, ATypeElement t) {
+    writeAnnotations(b, t.tlAnnotationsHere);
+    b.writeVarint(t.innerTypes.size());
+    for (Map.Entry<List<TypePathEntry>, ATypeElement> ie : t.innerTypes.entrySet()) {
+      b.writeVarint(typePath(ie.getKey()));
+      writeTypeElement(b, ie.getValue());
+    }
+  }
+
+  /**
+   * Writes a declaration, including its AST insertions.
+   *
+   * @param b where to write
+   * @param d the declaration
+   */
+  private void writeDeclaration(Buffer b, ADeclaration d) {
+    writeElement(b, d);
+    b.writeVarint(d.insertAnnotations.size());
+    for (Map.Entry<ASTPath, ATypeElement> ie : d.insertAnnotations.entrySet()) {
+      writeASTPath(b, ie.getKey());
+      writeTypeElement(b, ie.getValue());
+    }
+    b.writeVarint(d.insertTypecasts.size());
+    for (Map.Entry<ASTPath, ATypeElementWithType> ie : d.insertTypecasts.entrySet()) {
+      writeASTPath(b, ie.getKey());
+      writeTypeElement(b, ie.getValue());
+      writeType(b, ie.getValue().getType());
+    }
+  }
+
+  /**
+   * Writes an AST path.
+   *
+   * @param b where to write
+   * @param path the AST path
+   */
+  private void writeASTPath(Buffer b, ASTPath path) {
+    b.writeVarint(path.size());
+    for (ASTPath.ASTEntry entry : path) {
+      // Tree.Kind is written by name, because its ordinals differ among JDK versions.
+      b.writeVarint(string(entry.getTreeKind().name()));
+      b.writeVarint(string(entry.getChildSelector()));
+      b.writeVarint(entry.hasArgument() ? 1 : 0);
+      if (entry.hasArgument()) {
+        b.writeSigned(entry.getArgument());
+      }
+    }
+  }
+
+  /**
+   * Writes the type of an insert-typecast invocation.
+   *
+   * @param b where to write
+   * @param type the type
+   */
+  private void writeType(Buffer b, Type type) {
+    switch (type.getKind()) {
+      case ARRAY:
+        b.write(TYPE_ARRAY);
+        writeStrings(b, type.getAnnotations());
+        writeType(b, ((ArrayType) type).getComponentType());
+        break;
+      case BOUNDED:
+        BoundedType bounded = (BoundedType) type;
+        b.write(TYPE_BOUNDED);
+        writeType(b, bounded.getName());
+        b.writeVarint(bounded.getBoundKind().ordinal());
+        writeType(b, bounded.getBound());
+        break;
+      case DECLARED:
+        DeclaredType declared = (DeclaredType) type;
+        b.write(TYPE_DECLARED);
+        b.writeVarint(string(declared.getName()));
+        writeStrings(b, type.getAnnotations());
+        if (!declared.isWildcard()) {
+          b.writeVarint(declared.getTypeParameters().size());
+          for (Type typeParameter : declared.getTypeParameters()) {
+            writeType(b, typeParameter);
+          }
+          DeclaredType inner = declared.getInnerType();
+          b.writeVarint(inner == null ? 0 : 1);
+          if (inner != null) {
+            writeType(b, inner);
+          }
+        }
+        break;
+      default:
+        throw new Error("Unexpected type kind " + type.getKind());
+    }
+  }
+
+  /**
+   * Writes a list of strings.
+   *
+   * @param b where to write
+   * @param list the strings
+   */
+  private void writeStrings(Buffer b, List<String> list) {
+    b.writeVarint(list.size());
+    for (String s : list) {
+      b.writeVarint(string(s));
+    }
+  }
+
+  /**
+   * Writes a relative location.
+   *
+   * @param b where to write
+   * @param loc the relative location
+   */
+  private static void writeRelativeLocation(Buffer b, RelativeLocation loc) {
+    b.writeSigned(loc.offset);
+    b.writeSigned(loc.index);
+    b.writeSigned(loc.type_index);
+  }
+
+  /**
+   * Writes a local variable location. A lifetime whose labels have not been resolved to bytecode
+   * offsets is written with offsets of -1.
+   *
+   * @param b where to write
+   * @param loc the local variable location
+   */
+  private void writeLocalLocation(Buffer b, LocalLocation loc) {
+    b.writeVarint(loc.variableName == null ? 0 : string(loc.variableName) + 1);
+    b.writeVarint(loc.index.length);
+    for (int i = 0; i < loc.index.length; i++) {
+      b.writeSigned(loc.index[i]);
+      int start;
+      int end;
+      try {
+        start = loc.start[i].getOffset();
+        end = loc.end[i].getOffset();
+      } catch (IllegalStateException e) {
+        start = -1;
+        end = -1;
+      }
+      b.writeSigned(start);
+      b.writeSigned(end);
+    }
+  }
+
+  /**
+   * Writes a map from bound locations to type elements.
+   *
+   * @param b where to write
+   * @param bounds the map
+   */
+  private void writeBounds(Buffer b, Map<BoundLocation, ATypeElement> bounds) {
+    b.writeVarint(bounds.size());
+    for (Map.Entry<BoundLocation, ATypeElement> be : bounds.entrySet()) {
+      b.writeSigned(be.getKey().paramIndex);
+      b.writeSigned(be.getKey().boundIndex);
+      writeTypeElement(b, be.getValue());
+    }
+  }
+
+  /**
+   * Writes a map from type indices to type elements.
+   *
+   * @param b where to write
+   * @param types the map
+   */
+  private void writeTypeIndices(Buffer b, Map<TypeIndexLocation, ATypeElement> types) {
+    b.writeVarint(types.size());
+    for (Map.Entry<TypeIndexLocation, ATypeElement> te : types.entrySet()) {
+      b.writeSigned(te.getKey().typeIndex);
+      writeTypeElement(b, te.getValue());
+    }
+  }
+
+  /**
+   * Writes a map from relative locations to type elements.
+   *
+   * @param b where to write
+   * @param types the map
+   */
+  private void writeRelativeTypes(Buffer b, Map<RelativeLocation, ATypeElement> types) {
+    b.writeVarint(types.size());
+    for (Map.Entry<RelativeLocation, ATypeElement> te : types.entrySet()) {
+      writeRelativeLocation(b, te.getKey());
+      writeTypeElement(b, te.getValue());
+    }
+  }
+
+  /**
+   * Writes a map from strings to fields.
+   *
+   * @param b where to write
+   * @param fields the map
+   */
+  private void writeNamedFields(Buffer b, Map<String, AField> fields) {
+    b.writeVarint(fields.size());
+    for (Map.Entry<String, AField> fe : fields.entrySet()) {
+      b.writeVarint(string(fe.getKey()));
+      writeDeclaration(b, fe.getValue());
+    }
+  }
+
+  /**
+   * Writes an expression.
+   *
+   * @param b where to write
+   * @param x the expression
+   */
+  private void writeExpression(Buffer b, AExpression x) {
+    writeElement(b, x);
+    writeRelativeTypes(b, x.typecasts);
+    writeRelativeTypes(b, x.instanceofs);
+    writeRelativeTypes(b, x.news);
+    writeRelativeTypes(b, x.calls);
+    writeRelativeTypes(b, x.refs);
+    b.writeVarint(x.funs.size());
+    for (Map.Entry<RelativeLocation, AMethod> fe : x.funs.entrySet()) {
+      writeRelativeLocation(b, fe.getKey());
+      writeMethod(b, fe.getValue());
+    }
+  }
+
+  /**
+   * Writes a block.
+   *
+   * @param b where to write
+   * @param block the block
+   */
+  private void writeBlock(Buffer b, ABlock block) {
+    writeExpression(b, block);
+    b.writeVarint(block.locals.size());
+    for (Map.Entry<LocalLocation, AField> le : block.locals.entrySet()) {
+      writeLocalLocation(b, le.getKey());
+      writeDeclaration(b, le.getValue());
+    }
+  }
+
+  /**
+   * Writes a method.
+   *
+   * @param b where to write
+   * @param m the method
+   */
+  private void writeMethod(Buffer b, AMethod m) {
+    writeDeclaration(b, m);
+    writeBounds(b, m.bounds);
+    writeTypeElement(b, m.returnType);
+    writeDeclaration(b, m.receiver);
+    b.writeVarint(m.parameters.size());
+    for (Map.Entry<Integer, AField> pe : m.parameters.entrySet()) {
+      b.writeSigned(pe.getKey());
+      writeDeclaration(b, pe.getValue());
+    }
+    writeTypeIndices(b, m.throwsException);
+    writeNamedFields(b, m.preconditions);
+    writeNamedFields(b, m.postconditions);
+    writeBlock(b, m.body);
+  }
+
+  /**
+   * Writes a class.
+   *
+   * @param b where to write
+   * @param c the class
+   */
+  private void writeClass(Buffer b, AClass c) {
+    writeDeclaration(b, c);
+    writeBounds(b, c.bounds);
+    writeTypeIndices(b, c.extendsImplements);
+    b.writeVarint(c.methods.size());
+    for (Map.Entry<String, AMethod> me : c.methods.entrySet()) {
+      b.writeVarint(string(me.getKey()));
+      writeMethod(b, me.getValue());
+    }
+    writeInitBlocks(b, c.staticInits);
+    writeInitBlocks(b, c.instanceInits);
+    b.writeVarint(c.fieldInits.size());
+    for (Map.Entry<String, AExpression> fe : c.fieldInits.entrySet()) {
+      b.writeVarint(string(fe.getKey()));
+      writeExpression(b, fe.getValue());
+    }
+    // A field's initializer, if any, is the entry of fieldInits with the same name.
+    b.writeVarint(c.fields.size());
+    for (Map.Entry<String, AField> fe : c.fields.entrySet()) {
+      b.writeVarint(string(fe.getKey()));
+      writeDeclaration(b, fe.getValue());
+      b.writeVarint(fe.getValue().init == null ? 0 : 1);
+    }
+  }
+
+  /**
+   * Writes a map from indices to initializer blocks.
+   *
+   * @param b where to write
+   * @param blocks the map
+   */
+  private void writeInitBlocks(Buffer b, Map<Integer, ABlock> blocks) {
+    b.writeVarint(blocks.size());
+    for (Map.Entry<Integer, ABlock> be : blocks.entrySet()) {
+      b.writeSigned(be.getKey());
+      writeBlock(b, be.getValue());
+    }
+  }
+}
@@ -2,30 +2,57 @@ package org.checkerframework.afu.scenelib.io;
 
 import java.io.BufferedWriter;
 import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
+import java.util.function.Supplier;
 import org.checkerframework.checker.formatter.qual.FormatMethod;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
- * Performs output to System.out. Has a flag {@code enabled} that controls whether output is
- * performed.
+ * Performs output to System.out, or to a given stream. Has a flag {@code enabled} that controls
+ * whether output is performed.
+ *
+ * <p>Unless a stream is given, output goes to the value of System.out at the time of each call, so
+ * it follows any redirection of System.out.
+ *
+ * <p>The arguments to {@link #debug(String, Object...)} are computed, and the varargs array is
+ * allocated, even when this DebugWriter is disabled. Where a message is expensive to compute (for
+ * example, because it prints a javac tree), use {@link #debug(Supplier)}. A lambda that captures
+ * variables is still allocated on each call, so code that runs for every tree node or bytecode
+ * instruction should instead test {@link #isEnabled} before calling {@code debug}.
  */
 public class DebugWriter {
-  /** A PrintWriter for System.out. */
-  private PrintWriter out =
-      new PrintWriter(
-          new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
-
   /** Whether this DebugWriter is enabled. */
   private boolean enabled;
 
+  /** The stream to print to, or null to print to System.out. */
+  private final @Nullable PrintStream out;
+
+  /** The stream that {@link #writer} writes to, or null before the first output. */
+  private @Nullable PrintStream writerStream = null;
+
+  /** Writes to {@link #writerStream}; null before the first output. */
+  private @Nullable PrintWriter writer = null;
+
   /**
    * Creates a new DebugWriter.
    *
    * @param enabled whether this DebugWriter is enabled
    */
   public DebugWriter(boolean enabled) {
+    this(enabled, null);
+  }
+
+  /**
+   * Creates a new DebugWriter that prints to the given stream.
+   *
+   * @param enabled whether this DebugWriter is enabled
+   * @param out the stream to print to, or null to print to System.out
+   */
+  public DebugWriter(boolean enabled, @Nullable PrintStream out) {
     this.enabled = enabled;
+    this.out = out;
   }
 
   /**
@@ -47,7 +74,7 @@ public class DebugWriter {
   }
 
   /**
-   * Print to System.out if this DebugWriter is enabled.
+   * Print if this DebugWriter is enabled.
    *
    * @param format a format string
    * @param args the format string arguments
@@ -55,8 +82,37 @@ public class DebugWriter {
   @FormatMethod
   public void debug(String format, Object... args) {
     if (isEnabled()) {
-      out.print(String.format(format, args));
-      out.flush();
+      print(String.format(format, args));
+    }
+  }
+
+  /**
+   * Print if this DebugWriter is enabled. The message is computed only if this DebugWriter is
+   * enabled.
+   *
+   * @param message computes the text to print
+   */
+  public void debug(Supplier<String> message) {
+    if (isEnabled()) {
+      print(message.get());
+    }
+  }
+
+  /**
+   * Print to the stream of this DebugWriter. The writer is reused until System.out changes.
+   *
+   * @param s the text to print
+   */
+  @SuppressWarnings("ReferenceEquality") // a redirected System.out is a different stream
+  private synchronized void print(String s) {
+    PrintStream stream = out != null ? out : System.out;
+    if (writer == null || stream != writerStream) {
+      writer =
+          new PrintWriter(
+              new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8)));
+      writerStream = stream;
     }
+    writer.print(s);
+    writer.flush();
   }
 }
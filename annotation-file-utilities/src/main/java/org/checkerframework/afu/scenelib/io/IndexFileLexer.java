@@ -0,0 +1,447 @@
+package org.checkerframework.afu.scenelib.io;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StreamTokenizer;
+
+/**
+ * The tokenizer used by {@link IndexFileParser}. It has the same interface as {@link
+ * StreamTokenizer}, and it returns the same tokens as a {@code StreamTokenizer} that has the
+ * following syntax:
+ *
+ * <ul>
+ *   <li>characters up to and including {@code ' '} are whitespace;
+ *   <li>{@code //} starts a comment that ends at the end of the line;
+ *   <li>{@code "} and {@code '} delimit quoted strings;
+ *   <li>{@code -} and the ASCII digits start a number, except that {@code -} by itself is an
+ *       ordinary character;
+ *   <li>ASCII letters, {@code _}, {@code $}, and non-ASCII characters from U+00A0 on start a
+ *       word, which continues as long as there are such characters, digits, or {@code -} (as in
+ *       {@code type-argument});
+ *   <li>all other characters, including {@code .} and {@code /}, are ordinary characters.
+ * </ul>
+ *
+ * <p>There are two differences from {@code StreamTokenizer}, both of which concern numbers. First,
+ * an exponent such as {@code E-5} is part of the number that it follows, rather than a separate
+ * word. Second, {@link #nval} is the double closest to the text of the number, and {@link
+ * #numberText} returns that text so that {@code long} and {@code float} values can be parsed
+ * exactly.
+ *
+ * <p>The input is read in blocks, rather than one character at a time.
+ */
+public final class IndexFileLexer {
+
+  /** The value of {@link #ttype} at the end of the input. */
+  public static final int TT_EOF = StreamTokenizer.TT_EOF;
+
+  /** The value of {@link #ttype} at the end of a line. It is never returned by this class. */
+  public static final int TT_EOL = StreamTokenizer.TT_EOL;
+
+  /** The value of {@link #ttype} for a number, whose value is in {@link #nval}. */
+  public static final int TT_NUMBER = StreamTokenizer.TT_NUMBER;
+
+  /** The value of {@link #ttype} for a word, which is in {@link #sval}. */
+  public static final int TT_WORD = StreamTokenizer.TT_WORD;
+
+  /** The value of {@link #ttype} before the first call to {@link #nextToken}. */
+  private static final int TT_NOTHING = -4;
+
+  /** The largest number of digits of an integer that can be accumulated exactly in a double. */
+  private static final int MAX_EXACT_DIGITS = 15;
+
+  /**
+   * The type of the current token: one of the {@code TT_} constants, a quote character for a quoted
+   * string, or an ordinary character.
+   */
+  public int ttype = TT_NOTHING;
+
+  /**
+   * The current token if it is a word, or the contents of the current token if it is a quoted
+   * string; otherwise null.
+   */
+  public String sval;
+
+  /** The value of the current token if it is a number. */
+  public double nval;
+
+  /** The input. */
+  private final Reader in;
+
+  /** The characters that have been read from {@link #in}. */
+  private char[] buf = new char[8192];
+
+  /** The index in {@link #buf} of the next character to be tokenized. */
+  private int pos = 0;
+
+  /** The number of characters in {@link #buf}. */
+  private int limit = 0;
+
+  /** The index in {@link #buf} of the start of the current token. */
+  private int tokenStart = 0;
+
+  /** True if the end of {@link #in} has been reached. */
+  private boolean eof = false;
+
+  /** The current line number. */
+  private int lineno = 1;
+
+  /**
+   * Creates a new IndexFileLexer.
+   *
+   * @param in the input
+   */
+  public IndexFileLexer(Reader in) {
+    this.in = in;
+  }
+
+  /**
+   * Returns the line number of the current token.
+   *
+   * @return the line number of the current token; the first line is 1
+   */
+  public int lineno() {
+    return lineno;
+  }
+
+  /**
+   * Returns the text of the current token, which must be a number.
+   *
+   * @return the text of the current token, such as {@code "-1.5E10"}
+   */
+  public String numberText() {
+    assert ttype == TT_NUMBER;
+    return new String(buf, tokenStart, pos - tokenStart);
+  }
+
+  /**
+   * Reads the next token.
+   *
+   * @return the type of the token, which is also stored in {@link #ttype}
+   * @throws IOException if the input cannot be read
+   */
+  public int nextToken() throws IOException {
+    sval = null;
+    int c;
+    for (; ; ) {
+      // Forget the previous token, so that fill() need not keep it.
+      tokenStart = pos;
+      c = peek();
+      if (c < 0) {
+        return ttype = TT_EOF;
+      } else if (c <= ' ') {
+        pos++;
+        if (c == '\n') {
+          lineno++;
+        } else if (c == '\r') {
+          lineno++;
+          if (peek() == '\n') {
+            pos++;
+          }
+        }
+      } else if (c == '/' && peek(1) == '/') {
+        pos += 2;
+        while ((c = peek()) >= 0 && c != '\n' && c != '\r') {
+          pos++;
+        }
+      } else {
+        break;
+      }
+    }
+
+    pos++;
+    if (c == '-' || ('0' <= c && c <= '9')) {
+      if (c == '-') {
+        int d = peek();
+        if (d != '.' && (d < '0' || '9' < d)) {
+          return ttype = '-';
+        }
+      }
+      return ttype = scanNumber();
+    } else if (isWordStart(c)) {
+      while (isWordPart(peek())) {
+        pos++;
+      }
+      sval = new String(buf, tokenStart, pos - tokenStart);
+      return ttype = TT_WORD;
+    } else if (c == '"' || c == '\'') {
+      sval = scanQuoted(c);
+      return ttype = c;
+    } else {
+      return ttype = c;
+    }
+  }
+
+  /**
+   * Returns the first character of the token after the current one, without reading that token.
+   *
+   * @return the first character of the next token, or -1 at the end of the input
+   * @throws IOException if the input cannot be read
+   */
+  public int peekNextTokenStart() throws IOException {
+    int offset = 0;
+    for (; ; ) {
+      int c = peek(offset);
+      if (c == '/' && peek(offset + 1) == '/') {
+        offset += 2;
+        while ((c = peek(offset)) >= 0 && c != '\n' && c != '\r') {
+          offset++;
+        }
+      } else if (c < 0 || c > ' ') {
+        return c;
+      } else {
+        offset++;
+      }
+    }
+  }
+
+  /**
+   * Reads the rest of a number, whose first character has been read, and sets {@link #nval}.
+   *
+   * @return {@link #TT_NUMBER}
+   * @throws IOException if the input cannot be read
+   */
+  private int scanNumber() throws IOException {
+    boolean negative = buf[tokenStart] == '-';
+    boolean seenDot = false;
+    int digits = negative ? 0 : 1;
+    long value = negative ? 0 : buf[tokenStart] - '0';
+    for (; ; ) {
+      int c = peek();
+      if ('0' <= c && c <= '9') {
+        if (!seenDot) {
+          value = value * 10 + (c - '0');
+        }
+        digits++;
+      } else if (c == '.' && !seenDot) {
+        seenDot = true;
+      } else {
+        break;
+      }
+      pos++;
+    }
+    boolean exponent = false;
+    if (digits > 0 && (peek() == 'e' || peek() == 'E')) {
+      int signLength = (peek(1) == '+' || peek(1) == '-') ? 1 : 0;
+      int c = peek(1 + signLength);
+      if ('0' <= c && c <= '9') {
+        exponent = true;
+        pos += 1 + signLength;
+        while ('0' <= (c = peek()) && c <= '9') {
+          pos++;
+        }
+      }
+    }
+    if (!seenDot && !exponent && digits <= MAX_EXACT_DIGITS) {
+      nval = negative ? -(double) value : value;
+    } else if (digits == 0) {
+      // "-." is a number, as in StreamTokenizer.
+      nval = -0.0;
+    } else {
+      nval = Double.parseDouble(new String(buf, tokenStart, pos - tokenStart));
+    }
+    return TT_NUMBER;
+  }
+
+  /**
+   * Reads the rest of a quoted string, whose opening quote has been read. The string ends at the
+   * matching quote, which is also read, or before the end of the line.
+   *
+   * @param quote the quote character
+   * @return the contents of the string, with escape sequences replaced
+   * @throws IOException if the input cannot be read
+   */
+  private String scanQuoted(int quote) throws IOException {
+    // The contents start after the quote, at tokenStart + 1; fill() may move them within buf.
+    StringBuilder sb = null;
+    int c;
+    while ((c = peek()) >= 0 && c != quote && c != '\n' && c != '\r') {
+      if (c != '\\') {
+        pos++;
+        if (sb != null) {
+          sb.append((char) c);
+        }
+        continue;
+      }
+      if (sb == null) {
+        sb = new StringBuilder();
+        sb.append(buf, tokenStart + 1, pos - tokenStart - 1);
+      }
+      pos++;
+      c = read();
+      if ('0' <= c && c <= '7') {
+        int first = c;
+        c -= '0';
+        int c2 = peek();
+        if ('0' <= c2 && c2 <= '7') {
+          pos++;
+          c = (c << 3) + (c2 - '0');
+          c2 = peek();
+          if ('0' <= c2 && c2 <= '7' && first <= '3') {
+            pos++;
+            c = (c << 3) + (c2 - '0');
+          }
+        }
+      } else {
+        switch (c) {
+          case 'a':
+            c = 0x7;
+            break;
+          case 'b':
+            c = '\b';
+            break;
+          case 'f':
+            c = 0xC;
+            break;
+          case 'n':
+            c = '\n';
+            break;
+          case 'r':
+            c = '\r';
+            break;
+          case 't':
+            c = '\t';
+            break;
+          case 'v':
+            c = 0xB;
+            break;
+          default:
+            break;
+        }
+      }
+      sb.append((char) c);
+    }
+    String result =
+        sb == null ? new String(buf, tokenStart + 1, pos - tokenStart - 1) : sb.toString();
+    if (c == quote) {
+      pos++;
+    }
+    return result;
+  }
+
+  /**
+   * Returns true if the given character starts a word.
+   *
+   * @param c a character, or -1 for the end of the input
+   * @return true if {@code c} starts a word
+   */
+  private static boolean isWordStart(int c) {
+    return ('a' <= c && c <= 'z')
+        || ('A' <= c && c <= 'Z')
+        || c == '_'
+        || c == '$'
+        || c >= 128 + 32;
+  }
+
+  /**
+   * Returns true if the given character can be part of a word after its first character.
+   *
+   * @param c a character, or -1 for the end of the input
+   * @return true if {@code c} can continue a word
+   */
+  private static boolean isWordPart(int c) {
+    return isWordStart(c) || ('0' <= c && c <= '9') || c == '-';
+  }
+
+  /**
+   * Reads the next character.
+   *
+   * @return the next character, or -1 at the end of the input
+   * @throws IOException if the input cannot be read
+   */
+  private int read() throws IOException {
+    int c = peek();
+    if (c >= 0) {
+      pos++;
+    }
+    return c;
+  }
+
+  /**
+   * Returns the next character without reading it.
+   *
+   * @return the next character, or -1 at the end of the input
+   * @throws IOException if the input cannot be read
+   */
+  private int peek() throws IOException {
+    if (pos < limit || fill(0)) {
+      return buf[pos];
+    }
+    return -1;
+  }
+
+  /**
+   * Returns a character after the next one without reading it.
+   *
+   * @param offset the number of characters to look past
+   * @return the character {@code offset} characters after the next one, or -1 if there is none
+   * @throws IOException if the input cannot be read
+   */
+  private int peek(int offset) throws IOException {
+    if (pos + offset < limit || fill(offset)) {
+      return buf[pos + offset];
+    }
+    return -1;
+  }
+
+  /**
+   * Reads more of the input into {@link #buf}, keeping the current token.
+   *
+   * @param offset the offset from {@link #pos} of the character that is needed
+   * @return true if {@code buf[pos + offset]} is available, false if the input ends before it
+   * @throws IOException if the input cannot be read
+   */
+  private boolean fill(int offset) throws IOException {
+    while (pos + offset >= limit) {
+      if (eof) {
+        return false;
+      }
+      if (tokenStart > 0) {
+        System.arraycopy(buf, tokenStart, buf, 0, limit - tokenStart);
+        limit -= tokenStart;
+        pos -= tokenStart;
+        tokenStart = 0;
+      } else if (limit == buf.length) {
+        char[] newBuf = new char[buf.length * 2];
+        System.arraycopy(buf, 0, newBuf, 0, limit);
+        buf = newBuf;
+      }
+      int n = in.read(buf, limit, buf.length - limit);
+      if (n < 0) {
+        eof = true;
+      } else {
+        limit += n;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public String toString() {
+    String ret;
+    switch (ttype) {
+      case TT_EOF:
+        ret = "EOF";
+        break;
+      case TT_EOL:
+        ret = "EOL";
+        break;
+      case TT_WORD:
+        ret = sval;
+        break;
+      case TT_NUMBER:
+        ret = "n=" + nval;
+        break;
+      case TT_NOTHING:
+        ret = "NOTHING";
+        break;
+      case '"':
+      case '\'':
+        ret = sval;
+        break;
+      default:
+        ret = "'" + (char) ttype + "'";
+        break;
+    }
+    return "Token[" + ret + "], line " + lineno;
+  }
+}
@@ -4,7 +4,6 @@ import com.sun.source.tree.Tree.Kind;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.io.Reader;
-import java.io.StreamTokenizer;
 import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
@@ -19,6 +18,7 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 import org.checkerframework.afu.scenelib.Annotation;
 import org.checkerframework.afu.scenelib.AnnotationBuilder;
@@ -85,14 +85,26 @@ public final class IndexFileParser {
 
   private static boolean abbreviate = true;
 
+  /** A class filter that accepts every class. */
+  private static final Predicate<String> allClasses = className -> true;
+
   // The input
-  private final StreamTokenizer st;
+  private final IndexFileLexer st;
   // filename or other source
   private final String source;
 
+  /**
+   * Returns true for the binary names of the classes to read. The blocks of other classes are
+   * skipped without being parsed.
+   */
+  private final Predicate<String> classFilter;
+
   // The output
   private final AScene scene;
 
+  /** The factory for annotations, which interns them in the scene's pool if it has one. */
+  private final AnnotationFactory af;
+
   private String curPkgPrefix;
 
   /**
@@ -121,7 +133,7 @@ public final class IndexFileParser {
 
   /** True if the next thing from st is the given string token. */
   private boolean checkKeyword(String s) {
-    return st.ttype == StreamTokenizer.TT_WORD && st.sval.equals(s);
+    return st.ttype == IndexFileLexer.TT_WORD && st.sval.equals(s);
   }
 
   /**
@@ -156,16 +168,16 @@ public final class IndexFileParser {
       // Alternately, could use st.toString().
       String found;
       switch (st.ttype) {
-        case StreamTokenizer.TT_WORD:
+        case IndexFileLexer.TT_WORD:
           found = st.sval;
           break;
-        case StreamTokenizer.TT_NUMBER:
+        case IndexFileLexer.TT_NUMBER:
           found = "" + st.nval;
           break;
-        case StreamTokenizer.TT_EOL:
+        case IndexFileLexer.TT_EOL:
           found = "end of line";
           break;
-        case StreamTokenizer.TT_EOF:
+        case IndexFileLexer.TT_EOF:
           found = "end of file";
           break;
         default:
@@ -275,7 +287,7 @@ public final class IndexFileParser {
       return null;
     } else {
       String val = st.sval;
-      if (st.ttype == StreamTokenizer.TT_WORD && isValidIdentifier(val)) {
+      if (st.ttype == IndexFileLexer.TT_WORD && isValidIdentifier(val)) {
         return val;
       } else {
         return null;
@@ -319,7 +331,7 @@ public final class IndexFileParser {
       return null;
     } else {
       String val = st.sval;
-      if (st.ttype == StreamTokenizer.TT_WORD && primitiveTypes.containsKey(val)) {
+      if (st.ttype == IndexFileLexer.TT_WORD && primitiveTypes.containsKey(val)) {
         return st.sval;
       } else {
         return null;
@@ -347,7 +359,7 @@ public final class IndexFileParser {
   }
 
   private int checkNNInteger() {
-    if (st.ttype == StreamTokenizer.TT_NUMBER) {
+    if (st.ttype == IndexFileLexer.TT_NUMBER) {
       int x = (int) st.nval;
       if (x == st.nval && x >= -1) // shouldn't give us a huge number
       return x;
@@ -369,7 +381,7 @@ public final class IndexFileParser {
   // class objects. Class.forName doesn't directly support these.
   // Using this map we can go from "void.class" to the correct
   // Class object.
-  private static final Map<String, Class<?>> primitiveTypes;
+  static final Map<String, Class<?>> primitiveTypes;
 
   static {
     Map<String, Class<?>> pt = new LinkedHashMap<>();
@@ -406,7 +418,7 @@ public final class IndexFileParser {
     while (!matchKeyword("class")) {
       if (st.ttype >= 0) {
         type.append((char) st.ttype);
-      } else if (st.ttype == StreamTokenizer.TT_WORD) {
+      } else if (st.ttype == IndexFileLexer.TT_WORD) {
         type.append(st.sval);
       } else {
         throw new ParseException("Found something that doesn't belong in a signature");
@@ -428,6 +440,61 @@ public final class IndexFileParser {
     return result;
   }
 
+  /**
+   * Parses a float or double annotation value. In addition to a number, which may have a suffix
+   * such as {@code f}, this accepts {@code NaN}, {@code Infinity}, and {@code -Infinity}, which
+   * {@link IndexFileWriter} writes, and a quotient such as {@code 0.0f/0.0f}, which {@link
+   * BasicAFT#format} writes for NaN.
+   *
+   * @param isFloat true to parse a float, false to parse a double
+   * @return the value, a Float or a Double
+   * @throws IOException if there is trouble reading the index file
+   * @throws ParseException if the file contents are not valid
+   */
+  private Object parseFloatingPoint(boolean isFloat) throws IOException, ParseException {
+    double value = parseFloatingPointOperand(isFloat);
+    if (matchChar('/')) {
+      double divisor = parseFloatingPointOperand(isFloat);
+      if (isFloat) {
+        return (float) value / (float) divisor;
+      }
+      value /= divisor;
+    }
+    return isFloat ? (Object) (float) value : (Object) value;
+  }
+
+  /**
+   * Parses a float or double value that is not a quotient; see {@link #parseFloatingPoint}.
+   *
+   * @param isFloat true to parse a float, false to parse a double
+   * @return the value; if {@code isFloat} is true, it is exactly representable as a float
+   * @throws IOException if there is trouble reading the index file
+   * @throws ParseException if the file contents are not valid
+   */
+  private double parseFloatingPointOperand(boolean isFloat) throws IOException, ParseException {
+    if (matchKeyword("NaN")) {
+      return Double.NaN;
+    }
+    boolean negative = matchChar('-');
+    if (matchKeyword("Infinity")) {
+      return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+    }
+    if (negative || st.ttype != IndexFileLexer.TT_NUMBER) {
+      throw new ParseException("Expected a number literal");
+    }
+    String text = st.numberText();
+    st.nextToken();
+    // permit optional suffix after floating-point literals
+    if (!matchKeyword("f") && !matchKeyword("F") && !matchKeyword("d")) {
+      matchKeyword("D");
+    }
+    try {
+      return isFloat ? Float.parseFloat(text) : Double.parseDouble(text);
+    } catch (NumberFormatException e) {
+      throw new ParseException("Invalid number literal: " + text);
+    }
+  }
+
   /** Parse scalar annotation value. */
   // HMMM can a (readonly) Integer be casted to a writable Object?
   private Object parseScalarAFV(ScalarAFT aft) throws IOException, ParseException {
@@ -457,9 +524,12 @@ public final class IndexFileParser {
           throw new ParseException("Expected a string literal");
         }
         st.nextToken();
+      } else if (type == float.class || type == double.class) {
+        val = parseFloatingPoint(type == float.class);
       } else {
-        if (st.ttype == StreamTokenizer.TT_NUMBER) {
+        if (st.ttype == IndexFileLexer.TT_NUMBER) {
           double n = st.nval;
+          String text = st.numberText();
           st.nextToken();
           if (type == byte.class) {
             val = (byte) n;
@@ -468,23 +538,14 @@ public final class IndexFileParser {
           } else if (type == int.class) {
             val = (int) n;
           } else if (type == long.class) {
-            val = (long) n;
+            // Parse the text, because not every long can be represented as a double.
+            try {
+              val = Long.parseLong(text);
+            } catch (NumberFormatException e) {
+              val = (long) n;
+            }
             // permit optional 'L' character after long literals
             matchKeyword("L");
-          } else if (type == float.class) {
-            val = (float) n;
-            // StreamTokenizer can't handle all floating point numbers, so parse them here.
-            if (st.sval.matches("E[0-9]+")) {
-              val = Float.parseFloat(val + st.sval);
-              st.nextToken();
-            }
-          } else if (type == double.class) {
-            val = n;
-            // StreamTokenizer can't handle all floating point numbers, so parse them here.
-            if (st.sval.matches("E[0-9]+")) {
-              val = Double.parseDouble(val + st.sval);
-              st.nextToken();
-            }
           } else {
             throw new AssertionError();
           }
@@ -523,7 +584,7 @@ public final class IndexFileParser {
                 + aaft.annotationDef.name
                 + " was expected");
       }
-      AnnotationBuilder ab = AnnotationFactory.saf.beginAnnotation(d, source);
+      AnnotationBuilder ab = af.beginAnnotation(d, source);
       // interested in this annotation,
       // so should be interested in subannotations
       assert ab != null;
@@ -642,12 +703,12 @@ public final class IndexFileParser {
   private void parseAnnotations(AElement e) throws IOException, ParseException {
     while (checkChar('@')) {
       AnnotationDef d = parseAnnotationHead();
-      AnnotationBuilder ab = AnnotationFactory.saf.beginAnnotation(d, source);
+      AnnotationBuilder ab = af.beginAnnotation(d, source);
       if (ab == null) {
         // don't care about the result
         // but need to skip over it anyway
         @SuppressWarnings("unused")
-        Object trash = parseAnnotationBody(d, AnnotationFactory.saf.beginAnnotation(d, source));
+        Object trash = parseAnnotationBody(d, af.beginAnnotation(d, source));
       } else {
         Annotation a = parseAnnotationBody(d, ab);
         for (Annotation other : e.tlAnnotationsHere) {
@@ -761,7 +822,7 @@ public final class IndexFileParser {
     Map<String, AnnotationFieldType> fields = new LinkedHashMap<>();
 
     // yuck; it would be nicer to do a positive match
-    while (st.ttype != StreamTokenizer.TT_EOF
+    while (st.ttype != IndexFileLexer.TT_EOF
         && !checkKeyword("annotation")
         && !checkKeyword("class")
         && !checkKeyword("package")) {
@@ -774,6 +835,10 @@ public final class IndexFileParser {
     }
 
     ad.setFieldTypes(fields);
+    if (scene.interner != null) {
+      // An equal definition that was read earlier from the same index file replaces this one.
+      ad = scene.interner.intern(ad);
+    }
 
     // Now add the definition to the map of all definitions.
     addDef(ad, basename);
@@ -946,7 +1011,7 @@ public final class IndexFileParser {
     while (!matchChar(':')) {
       if (st.ttype >= 0) {
         key += st.ttype == 46 ? '/' : (char) st.ttype;
-      } else if (st.ttype == StreamTokenizer.TT_WORD) {
+      } else if (st.ttype == IndexFileLexer.TT_WORD) {
         key += st.sval;
       } else {
         throw new ParseException("Found something that doesn't belong in a signature");
@@ -1651,6 +1716,10 @@ public final class IndexFileParser {
     expectKeyword("class");
     String basename = expectIdentifier();
     String fullName = curPkgPrefix + basename;
+    if (!classFilter.test(fullName)) {
+      skipClass();
+      return;
+    }
 
     AClass c = scene.classes.getVivify(fullName);
     expectChar(':');
@@ -1681,11 +1750,36 @@ public final class IndexFileParser {
     c.methods.prune();
   }
 
+  /**
+   * Skips the rest of a class block, whose name has been read. Stops at the {@code package}, {@code
+   * class}, or {@code annotation} keyword that starts the next top-level block, or at the end of
+   * the file. The contents of the block are not checked.
+   *
+   * @throws IOException if there is trouble reading the index file
+   */
+  private void skipClass() throws IOException {
+    // These keywords can also occur within a class block: "class" in a class literal such as
+    // "java.lang.String.class", and "annotation" in an identifier or in a descriptor such as
+    // "Ljava/lang/annotation/Retention;".  A block starts with "annotation @" or "class", the
+    // latter not after a ".".
+    boolean afterDot = false;
+    for (; st.ttype != IndexFileLexer.TT_EOF; st.nextToken()) {
+      if (st.ttype == IndexFileLexer.TT_WORD) {
+        if (st.sval.equals("package")
+            || (st.sval.equals("class") && !afterDot)
+            || (st.sval.equals("annotation") && st.peekNextTokenStart() == '@')) {
+          return;
+        }
+      }
+      afterDot = st.ttype == '.';
+    }
+  }
+
   // Reads the index file in this.st and puts the information in this.scene.
   private void parse() throws ParseException, IOException {
     st.nextToken();
 
-    while (st.ttype != StreamTokenizer.TT_EOF) {
+    while (st.ttype != IndexFileLexer.TT_EOF) {
       expectKeyword("package");
 
       String pkg;
@@ -1711,7 +1805,7 @@ public final class IndexFileParser {
           parseAnnotationDef();
         } else if (checkKeyword("class")) {
           parseClass();
-        } else if (checkKeyword("package") || st.ttype == StreamTokenizer.TT_EOF) {
+        } else if (checkKeyword("package") || st.ttype == IndexFileLexer.TT_EOF) {
           break;
         } else {
           throw new ParseException(
@@ -1775,8 +1869,17 @@ public final class IndexFileParser {
     */
   }
 
-  private IndexFileParser(Reader in, String source, AScene scene) {
+  /**
+   * Creates a new IndexFileParser.
+   *
+   * @param in the index file
+   * @param source the name of the index file, or another description of its source
+   * @param scene the scene into which to read the annotations
+   * @param classFilter returns true for the binary names of the classes to read
+   */
+  private IndexFileParser(Reader in, String source, AScene scene, Predicate<String> classFilter) {
     this.source = source;
+    this.classFilter = classFilter;
     defs = new LinkedHashMap<>();
     for (AnnotationDef ad : Annotations.standardDefs) {
       try {
@@ -1786,28 +1889,10 @@ public final class IndexFileParser {
       }
     }
 
-    st = new StreamTokenizer(in);
-    st.slashSlashComments(true);
-
-    // restrict numbers -- don't really need, could interfere with
-    // annotation values
-    // st.ordinaryChar('-');
-    // HMMM this fixes fully-qualified-name strangeness but breaks
-    // floating-point numbers
-    st.ordinaryChar('.');
-
-    // argggh!!! stupid default needs to be overridden! see java bug 4217680
-    st.ordinaryChar('/');
-
-    // for "type-argument"
-    st.wordChars('-', '-');
-
-    // java identifiers can contain numbers, _, and $
-    st.wordChars('0', '9');
-    st.wordChars('_', '_');
-    st.wordChars('$', '$');
+    st = new IndexFileLexer(in);
 
     this.scene = scene;
+    this.af = scene.interner == null ? AnnotationFactory.saf : scene.interner.factory();
 
     // See if the nonnull analysis picks up on this:
     // curPkgPrefix == ""; // will get changed later anyway
@@ -1823,12 +1908,10 @@ public final class IndexFileParser {
    * used are not saved anywhere and will not be included if the scene is written back to an index
    * file. Similarly, retention policies on definitions of annotations that are never used at the
    * top level are dropped.
-   *
-   * <p>Caveat: Parsing of floating point numbers currently does not work.
    */
   public static Map<String, AnnotationDef> parse(LineNumberReader in, String filename, AScene scene)
       throws IOException, ParseException {
-    IndexFileParser parser = new IndexFileParser(in, filename, scene);
+    IndexFileParser parser = new IndexFileParser(in, filename, scene, allClasses);
     // no filename is available in the exception messages
     return parseAndReturnAnnotationDefs(null, in, parser);
   }
@@ -1839,10 +1922,29 @@ public final class IndexFileParser {
    */
   public static Map<String, AnnotationDef> parseFile(String filename, AScene scene)
       throws IOException {
+    return parseFile(filename, scene, allClasses);
+  }
+
+  /**
+   * Reads annotations on some classes from the index file <code>filename</code> and merges them
+   * into <code>scene</code>; see {@link #parse(LineNumberReader, String, AScene)}. All package
+   * annotations and annotation definitions are read, but the block of a class is skipped, without
+   * being parsed, unless <code>classFilter</code> returns true for the class's binary name. This is
+   * faster than reading the whole file when only a few of its classes are needed.
+   *
+   * @param filename the index file
+   * @param scene the scene into which to read the annotations
+   * @param classFilter returns true for the binary names of the classes to read, such as {@code
+   *     "java.util.Map$Entry"}
+   * @return the annotation definitions in the file
+   * @throws IOException if the file cannot be read or parsed
+   */
+  public static Map<String, AnnotationDef> parseFile(
+      String filename, AScene scene, Predicate<String> classFilter) throws IOException {
     try (LineNumberReader in =
         new LineNumberReader(
             Files.newBufferedReader(Paths.get(filename), StandardCharsets.UTF_8))) {
-      IndexFileParser parser = new IndexFileParser(in, filename, scene);
+      IndexFileParser parser = new IndexFileParser(in, filename, scene, classFilter);
       return parseAndReturnAnnotationDefs(filename, in, parser);
     }
   }
@@ -1860,7 +1962,7 @@ public final class IndexFileParser {
             + fileContents
             + "----------------END----------------\n";
     LineNumberReader in = new LineNumberReader(new StringReader(fileContents));
-    IndexFileParser parser = new IndexFileParser(in, filename, scene);
+    IndexFileParser parser = new IndexFileParser(in, filename, scene, allClasses);
     return parseAndReturnAnnotationDefs(filename, in, parser);
   }
 
@@ -1870,8 +1972,12 @@ public final class IndexFileParser {
       parser.parse();
       return Collections.unmodifiableMap(parser.defs);
     } catch (IOException e) {
+      // The lexer reads ahead of the current token, so report the line of the token instead.
+      // LineNumberReader numbers lines from 0.
+      in.setLineNumber(parser.st.lineno() - 1);
       throw filename == null ? new FileIOException(in, e) : new FileIOException(in, filename, e);
     } catch (ParseException e) {
+      in.setLineNumber(parser.st.lineno() - 1);
       throw filename == null ? new FileIOException(in, e) : new FileIOException(in, filename, e);
     }
   }
@@ -1884,7 +1990,7 @@ public final class IndexFileParser {
    */
   public static Type parseType(String text, String filename) {
     StringReader in = new StringReader(text);
-    IndexFileParser parser = new IndexFileParser(in, filename, null);
+    IndexFileParser parser = new IndexFileParser(in, filename, null, allClasses);
     try {
       parser.st.nextToken();
       return parser.parseType();
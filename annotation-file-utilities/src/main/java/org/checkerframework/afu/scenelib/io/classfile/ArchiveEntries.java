@@ -0,0 +1,265 @@
+package org.checkerframework.afu.scenelib.io.classfile;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.StringJoiner;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * The entries of a jar file, of a directory of class files, or of the {@code jrt:/} image of the
+ * running JDK's modules, read one at a time. A jar file is streamed, so it is never entirely in
+ * memory. The files in a directory are returned in order of their names, which are relative to the
+ * directory and use '/' as the separator, as in a jar file.
+ *
+ * <p>{@link #next} throws {@link UncheckedIOException} if an entry cannot be read.
+ */
+final class ArchiveEntries implements Iterator<ArchiveEntries.Entry>, Closeable {
+
+  /** The scheme of the file system of the modules of the running JDK, followed by its root. */
+  static final String JRT = "jrt:/";
+
+  /** One entry of a jar file or directory. */
+  static final class Entry {
+    /** The name of the entry. */
+    private final String name;
+
+    /** The modification time of the entry, in milliseconds since the epoch, or -1. */
+    private final long time;
+
+    /** The contents of the entry. */
+    private final byte[] contents;
+
+    /**
+     * Creates a new Entry.
+     *
+     * @param name the name of the entry
+     * @param time the modification time of the entry, in milliseconds since the epoch, or -1
+     * @param contents the contents of the entry
+     */
+    Entry(String name, long time, byte[] contents) {
+      this.name = name;
+      this.time = time;
+      this.contents = contents;
+    }
+
+    /**
+     * Returns the name of the entry, such as {@code "a/b/C.class"}.
+     *
+     * @return the name of the entry
+     */
+    String getName() {
+      return name;
+    }
+
+    /**
+     * Returns the modification time of the entry.
+     *
+     * @return the modification time of the entry, in milliseconds since the epoch, or -1
+     */
+    long getTime() {
+      return time;
+    }
+
+    /**
+     * Returns the contents of the entry. The result must not be modified.
+     *
+     * @return the contents of the entry
+     */
+    byte[] getContents() {
+      return contents;
+    }
+
+    /**
+     * Returns true if the entry is a class file.
+     *
+     * @return true if the entry is a class file
+     */
+    boolean isClass() {
+      return name.endsWith(".class");
+    }
+  }
+
+  /** The jar file being read, or null if a directory is being read. */
+  private final @Nullable ZipInputStream zip;
+
+  /** The directory being read, in any file system, or null if a jar file is being read. */
+  private final @Nullable Path directory;
+
+  /** The names of the files in {@link #directory} that have not yet been read. */
+  private final Iterator<String> fileNames;
+
+  /** The next entry of {@link #zip}, or null if it has not been read or there are no more. */
+  private @Nullable ZipEntry nextZipEntry = null;
+
+  /**
+   * Creates a new ArchiveEntries.
+   *
+   * @param zip the jar file to read, or null
+   * @param directory the directory to read, or null
+   * @param fileNames the names of the files in {@code directory}
+   */
+  private ArchiveEntries(
+      @Nullable ZipInputStream zip, @Nullable Path directory, Iterator<String> fileNames) {
+    this.zip = zip;
+    this.directory = directory;
+    this.fileNames = fileNames;
+  }
+
+  /**
+   * Opens a jar file or directory for reading.
+   *
+   * @param input a jar file or a directory
+   * @return the entries of {@code input}
+   * @throws IOException if {@code input} cannot be opened
+   */
+  static ArchiveEntries open(File input) throws IOException {
+    if (input.isDirectory()) {
+      return openDirectory(input.toPath());
+    } else {
+      ZipInputStream zip = new ZipInputStream(new BufferedInputStream(new FileInputStream(input)));
+      return new ArchiveEntries(zip, null, Collections.emptyIterator());
+    }
+  }
+
+  /**
+   * Opens a jar file, a directory, or the modules of the running JDK for reading. The latter is
+   * given as {@code jrt:/} for all modules, or as {@code jrt:/} followed by a module name such as
+   * {@code jrt:/java.base}. The names of the entries of all modules start with the module name.
+   *
+   * @param input a jar file, a directory, or a {@code jrt:/} URI
+   * @return the entries of {@code input}
+   * @throws IOException if {@code input} cannot be opened
+   */
+  static ArchiveEntries open(String input) throws IOException {
+    if (!input.startsWith(JRT)) {
+      return open(new File(input));
+    }
+    FileSystem jrt;
+    try {
+      jrt = FileSystems.getFileSystem(URI.create(JRT));
+    } catch (RuntimeException e) {
+      // There is no jrt:/ file system before JDK 9.
+      throw new IOException("Cannot open " + input, e);
+    }
+    String module = input.substring(JRT.length());
+    Path directory = module.isEmpty() ? jrt.getPath("/modules") : jrt.getPath("/modules", module);
+    if (!Files.isDirectory(directory)) {
+      throw new FileNotFoundException(input);
+    }
+    return openDirectory(directory);
+  }
+
+  /**
+   * Opens a directory for reading.
+   *
+   * @param directory a directory, in any file system
+   * @return the entries of {@code directory}
+   * @throws IOException if {@code directory} cannot be read
+   */
+  private static ArchiveEntries openDirectory(Path directory) throws IOException {
+    List<String> fileNames;
+    try (Stream<Path> files = Files.walk(directory)) {
+      fileNames =
+          files
+              .filter(Files::isRegularFile)
+              .map(p -> toName(directory.relativize(p)))
+              .sorted()
+              .collect(Collectors.toList());
+    }
+    return new ArchiveEntries(null, directory, fileNames.iterator());
+  }
+
+  /**
+   * Returns the name of an entry, which uses '/' as the separator.
+   *
+   * @param relativePath the path of a file, relative to the directory being read
+   * @return the name of the entry for the file
+   */
+  private static String toName(Path relativePath) {
+    StringJoiner name = new StringJoiner("/");
+    for (Path element : relativePath) {
+      name.add(element.toString());
+    }
+    return name.toString();
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (zip == null) {
+      return fileNames.hasNext();
+    }
+    if (nextZipEntry == null) {
+      try {
+        nextZipEntry = zip.getNextEntry();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+    return nextZipEntry != null;
+  }
+
+  @Override
+  public Entry next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    try {
+      if (zip == null) {
+        String name = fileNames.next();
+        Path file = directory.resolve(name);
+        long time = Files.getLastModifiedTime(file).toMillis();
+        return new Entry(name, time, Files.readAllBytes(file));
+      } else {
+        ZipEntry zipEntry = nextZipEntry;
+        nextZipEntry = null;
+        return new Entry(zipEntry.getName(), zipEntry.getTime(), readAll(zip));
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (zip != null) {
+      zip.close();
+    }
+  }
+
+  /**
+   * Reads the rest of the given stream.
+   *
+   * @param in a stream
+   * @return the bytes remaining in {@code in}
+   * @throws IOException if {@code in} cannot be read
+   */
+  static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    int n;
+    while ((n = in.read(buffer)) != -1) {
+      result.write(buffer, 0, n);
+    }
+    return result.toByteArray();
+  }
+}
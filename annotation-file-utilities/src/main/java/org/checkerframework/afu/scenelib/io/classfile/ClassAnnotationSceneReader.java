@@ -38,7 +38,6 @@ import org.checkerframework.checker.signature.qual.BinaryName;
 import org.checkerframework.checker.signature.qual.ClassGetName;
 import org.objectweb.asm.AnnotationVisitor;
 import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
@@ -56,7 +55,10 @@ import org.objectweb.asm.TypeReference;
  *
  * <p>The proper usage of this class is to construct a {@code ClassAnnotationSceneReader} with an
  * {@link AScene} into which annotations should be inserted, then pass this as a {@link
- * org.objectweb.asm.ClassVisitor} to {@link org.objectweb.asm.ClassReader#accept}
+ * org.objectweb.asm.ClassVisitor} to {@link org.objectweb.asm.ClassReader#accept}. Nothing is
+ * written: the class file is only read. Unless {@link #hasCodeTypeAnnotations} is true, {@link
+ * ClassReader#SKIP_CODE} may be passed to {@code accept}, since only type annotations are read from
+ * method bodies.
  *
  * <p>All other methods are intended to be called only by {@link
  * org.objectweb.asm.ClassReader#accept}, and should not be called anywhere else, due to the order
@@ -88,16 +90,16 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
   @SuppressWarnings("HidingField") // TODO!!
   private final ClassReader classReader;
 
-  /** ClassWriter for generating the modified class file. */
-  private final ClassWriter classWriter;
-
   /**
    * Holds definitions we've seen so far. Maps from annotation name to the definition itself. Maps
    * from both the qualified name and the unqualified name. If the unqualified name is not unique,
-   * it maps to null and the qualified name should be used instead.
+   * it maps to null and the qualified name should be used instead. If the scene has an intern
+   * pool, this is shared by all readers of class files into the scene.
    */
-  private final Map<String, AnnotationDef> annotationDefinitions =
-      initialiseAnnotationDefinitions();
+  private final Map<String, AnnotationDef> annotationDefinitions;
+
+  /** The factory for annotations, which interns them in the scene's pool if it has one. */
+  private final AnnotationFactory annotationFactory;
 
   private static Map<String, AnnotationDef> initialiseAnnotationDefinitions() {
     Map<String, AnnotationDef> result = new HashMap<>();
@@ -118,12 +120,17 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
    */
   public ClassAnnotationSceneReader(
       int api, ClassReader classReader, AScene scene, boolean ignoreBridgeMethods) {
-    super(api, classReader);
+    super(api, classReader, null);
     this.classReader = classReader;
-    this.classWriter = new ClassWriter(this.classReader, api);
-    super.cv = classWriter;
     this.scene = scene;
     this.ignoreBridgeMethods = ignoreBridgeMethods;
+    if (scene.interner == null) {
+      this.annotationDefinitions = initialiseAnnotationDefinitions();
+      this.annotationFactory = AnnotationFactory.saf;
+    } else {
+      this.annotationDefinitions = scene.interner.classDefinitions();
+      this.annotationFactory = scene.interner.factory();
+    }
   }
 
   @Override
@@ -134,7 +141,6 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
       String signature,
       String superName,
       String[] interfaces) {
-    classWriter.visit(version, access, name, signature, superName, interfaces);
     aClass = scene.classes.getVivify(name.replace('/', '.'));
   }
 
@@ -144,8 +150,7 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
       System.out.printf(
           "visitAnnotation(%s, %s) in %s (%s)%n", descriptor, visible, this, this.getClass());
     }
-    AnnotationVisitor annotationWriter = classWriter.visitAnnotation(descriptor, visible);
-    return new AnnotationSceneReader(this.api, descriptor, visible, aClass, annotationWriter);
+    return new AnnotationSceneReader(this.api, descriptor, visible, aClass);
   }
 
   @Override
@@ -158,20 +163,8 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
     }
     // typeRef.getSort(): TypeReference.CLASS_TYPE_PARAMETER,
     // TypeReference.CLASS_TYPE_PARAMETER_BOUND or TypeReference.CLASS_EXTENDS.
-    AnnotationVisitor annotationWriter =
-        classWriter.visitTypeAnnotation(typeRef, typePath, descriptor, visible);
     return new TypeAnnotationSceneReader(
-        this.api,
-        descriptor,
-        visible,
-        aClass,
-        annotationWriter,
-        typeRef,
-        typePath,
-        null,
-        null,
-        null,
-        null);
+        this.api, descriptor, visible, aClass, typeRef, typePath, null, null, null, null);
   }
 
   @Override
@@ -183,14 +176,14 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
           access, name, descriptor, signature, value, this, this.getClass());
     }
     AField aField = aClass.fields.getVivify(name);
-    FieldVisitor fieldWriter = classWriter.visitField(access, name, descriptor, signature, value);
-    return new FieldAnnotationSceneReader(this.api, aField, fieldWriter);
+    return new FieldAnnotationSceneReader(this.api, aField);
   }
 
   @Override
   public MethodVisitor visitMethod(
       int access, String name, String descriptor, String signature, String[] exceptions) {
     if (ignoreBridgeMethods && (access & Opcodes.ACC_BRIDGE) != 0) {
+      skipMethod();
       return null;
     }
     if (trace) {
@@ -199,8 +192,52 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
           access, name, descriptor, signature, Arrays.toString(exceptions), this, this.getClass());
     }
     AMethod aMethod = aClass.methods.getVivify(name + descriptor);
-    MethodVisitor methodWriter = super.visitMethod(access, name, descriptor, signature, exceptions);
-    return new MethodAnnotationSceneReader(this.api, aMethod, methodWriter);
+    // The CodeOffsetAdapter's visitor tracks the offset of each label.
+    MethodVisitor offsetTracker =
+        super.visitMethod(access, name, descriptor, signature, exceptions);
+    return new MethodAnnotationSceneReader(this.api, aMethod, offsetTracker);
+  }
+
+  /**
+   * Returns true if the Code attribute of some method of the given class has type annotations,
+   * which are on instructions, local variables, or exception handlers. Reads only the attribute
+   * tables of the class file, so it is much cheaper than visiting the methods' code.
+   *
+   * @param classReader the reader for a class
+   * @return true if some method of the class has type annotations within its code
+   */
+  public static boolean hasCodeTypeAnnotations(ClassReader classReader) {
+    char[] buffer = new char[classReader.getMaxStringLength()];
+    // skip the interfaces
+    int u = classReader.header + 8 + 2 * classReader.readUnsignedShort(classReader.header + 6);
+    // fields, then methods
+    for (int members = 0; members < 2; members++) {
+      int memberCount = classReader.readUnsignedShort(u);
+      u += 2;
+      while (--memberCount >= 0) {
+        int attrCount = classReader.readUnsignedShort(u + 6);
+        u += 8;
+        while (--attrCount >= 0) {
+          if (members == 1 && "Code".equals(classReader.readUTF8(u, buffer))) {
+            // skip max_stack, max_locals, the bytecodes, and the exception table
+            int v = u + 14 + classReader.readInt(u + 10);
+            v += 2 + 8 * classReader.readUnsignedShort(v);
+            int codeAttrCount = classReader.readUnsignedShort(v);
+            v += 2;
+            while (--codeAttrCount >= 0) {
+              String codeAttrName = classReader.readUTF8(v, buffer);
+              if ("RuntimeVisibleTypeAnnotations".equals(codeAttrName)
+                  || "RuntimeInvisibleTypeAnnotations".equals(codeAttrName)) {
+                return true;
+              }
+              v += 6 + classReader.readInt(v + 2);
+            }
+          }
+          u += 6 + classReader.readInt(u + 2);
+        }
+      }
+    }
+    return false;
   }
 
   /**
@@ -251,9 +288,6 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
     /** The AnnotationBuilder used to create this annotation. */
     private AnnotationBuilder annotationBuilder;
 
-    /** The AnnotationVisitor used to visit this annotation. */
-    protected AnnotationVisitor annotationWriter;
-
     /** An offset into the method's bytecodes. */
     protected int savedOffset;
 
@@ -288,8 +322,10 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
         throw new Error(e);
       }
 
-      AnnotationDef ad = AnnotationDef.fromClass(annoClass, annotationDefinitions);
-      return ad;
+      // The definitions may be shared with readers in other threads.
+      synchronized (annotationDefinitions) {
+        return AnnotationDef.fromClass(annoClass, annotationDefinitions);
+      }
     }
 
     /**
@@ -300,19 +336,12 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
      * @param descriptor the class descriptor of the enumeration class
      * @param visible whether or not this annotation is visible at run time
      * @param aElement the AElement into which the annotation visited should be inserted
-     * @param annotationWriter the AnnotationWriter passed by the caller
      */
     @SuppressWarnings("ReferenceEquality") // interned comparison
-    AnnotationSceneReader(
-        int api,
-        String descriptor,
-        boolean visible,
-        AElement aElement,
-        AnnotationVisitor annotationWriter) {
-      super(api, annotationWriter);
+    AnnotationSceneReader(int api, String descriptor, boolean visible, AElement aElement) {
+      super(api);
       this.visible = visible;
       this.aElement = aElement;
-      this.annotationWriter = annotationWriter;
       if (trace) {
         System.out.printf("AnnotationSceneReader(%s, %s, %s)%n", descriptor, visible, aElement);
       }
@@ -321,7 +350,7 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
         AnnotationDef ad = getAnnotationDef(descriptor);
 
         AnnotationBuilder ab =
-            AnnotationFactory.saf.beginAnnotation(
+            annotationFactory.beginAnnotation(
                 ad,
                 // "ClassReader " + cr.getClassName()
                 "TODO: ClassAnnotationSceneReader");
@@ -451,8 +480,7 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
         System.out.printf(
             "visitAnnotation(%s, %s) in %s (%s)%n", name, descriptor, this, this.getClass());
       }
-      AnnotationVisitor annotationWriter = this.annotationWriter.visitAnnotation(name, descriptor);
-      return new NestedAnnotationSceneReader(this.api, this, name, descriptor, annotationWriter);
+      return new NestedAnnotationSceneReader(this.api, this, name, descriptor);
     }
 
     @Override
@@ -460,8 +488,7 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
       if (trace) {
         System.out.printf("visitArray(%s) in %s (%s)%n", name, this, this.getClass());
       }
-      AnnotationVisitor annotationWriter = this.annotationWriter.visitArray(name);
-      return new ArrayAnnotationSceneReader(this.api, this, name, annotationWriter);
+      return new ArrayAnnotationSceneReader(this.api, this, name);
     }
 
     /**
@@ -483,7 +510,6 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
       if (trace) {
         System.out.printf("visitEnd on %s (%s)%n", this, this.getClass());
       }
-      annotationWriter.visitEnd();
       Annotation a = makeAnnotation();
 
       if (a.def.isTypeAnnotation() && (aElement instanceof AMethod)) {
@@ -580,7 +606,6 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
      * @param descriptor the descriptor of the reader
      * @param visible whether or not this annotation is visible at run time
      * @param aElement the AElement into which the annotation visited should be inserted
-     * @param annotationWriter the AnnotationWriter passed by the caller
      * @param typeRef A reference to the annotated type. This has information about the target type,
      *     param index and bound index for the type annotation. @see org.objectweb.asm.TypeReference
      * @param typePath The path to the annotated type argument, wildcard bound, array element type,
@@ -598,24 +623,12 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
         String descriptor,
         boolean visible,
         AElement aElement,
-        AnnotationVisitor annotationWriter,
         int typeRef,
         TypePath typePath,
         Label[] start,
         Label[] end,
         int[] index) {
-      this(
-          api,
-          descriptor,
-          visible,
-          aElement,
-          annotationWriter,
-          typeRef,
-          typePath,
-          start,
-          end,
-          index,
-          null);
+      this(api, descriptor, visible, aElement, typeRef, typePath, start, end, index, null);
     }
 
     /**
@@ -626,7 +639,6 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
      * @param descriptor the descriptor of the reader
      * @param visible whether or not this annotation is visible at run time
      * @param aElement the AElement into which the annotation visited should be inserted
-     * @param annotationWriter the AnnotationWriter passed by the caller
      * @param typeRef A reference to the annotated type. This has information about the target type,
      *     param index and bound index for the type annotation. @see org.objectweb.asm.TypeReference
      * @param typePath The path to the annotated type argument, wildcard bound, array element type,
@@ -645,14 +657,13 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
         String descriptor,
         boolean visible,
         AElement aElement,
-        AnnotationVisitor annotationWriter,
         int typeRef,
         TypePath typePath,
         Label[] start,
         Label[] end,
         int[] index,
         @Nullable String localVariableName) {
-      super(api, descriptor, visible, aElement, annotationWriter);
+      super(api, descriptor, visible, aElement);
       this.typeReference = new TypeReference(typeRef);
       this.typePath = typePath;
       this.start = start;
@@ -681,7 +692,6 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
       if (trace) {
         System.out.printf("visitEnd on %s (%s)%n", this, this.getClass());
       }
-      annotationWriter.visitEnd();
       // TEMP
       // If the expression used to initialize a field contains annotations
       // on instanceOfs, typecasts, or news, javac enters
@@ -1223,15 +1233,10 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
      * @param parent the parent AnnotationSceneReader
      * @param name the name of the field
      * @param descriptor the descriptor of the field
-     * @param annotationWriter the writer to output the annotations
      */
     NestedAnnotationSceneReader(
-        int api,
-        AnnotationSceneReader parent,
-        String name,
-        String descriptor,
-        AnnotationVisitor annotationWriter) {
-      super(api, descriptor, parent.visible, parent.aElement, annotationWriter);
+        int api, AnnotationSceneReader parent, String name, String descriptor) {
+      super(api, descriptor, parent.visible, parent.aElement);
       if (trace) {
         System.out.printf("NestedAnnotationSceneReader(%s, %s, %s)%n", parent, name, descriptor);
       }
@@ -1244,7 +1249,6 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
     public void visitEnd() {
       // Do not call super, as that already builds the annotation, causing an exception.
       // super.visitEnd();
-      annotationWriter.visitEnd();
       if (trace) {
         System.out.printf("visitEnd on %s (%s)%n", this, this.getClass());
       }
@@ -1286,14 +1290,9 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
      * @param api the ASM API version to use
      * @param parent the parent AnnotationSceneReader
      * @param fieldName the name of the field
-     * @param annotationWriter the writer to output the annotations
      */
-    ArrayAnnotationSceneReader(
-        int api,
-        AnnotationSceneReader parent,
-        String fieldName,
-        AnnotationVisitor annotationWriter) {
-      super(api, dummyDesc, parent.visible, parent.aElement, annotationWriter);
+    ArrayAnnotationSceneReader(int api, AnnotationSceneReader parent, String fieldName) {
+      super(api, dummyDesc, parent.visible, parent.aElement);
       if (trace) {
         System.out.printf("ArrayAnnotationSceneReader(%s, %s)%n", parent, fieldName);
       }
@@ -1324,7 +1323,6 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
             "visit(%s, %s) (%s) in %s (%s)%n",
             name, value, value.getClass(), this, this.getClass());
       }
-      annotationWriter.visit(name, value);
       ScalarAFT aft;
       if (value.getClass().equals(org.objectweb.asm.Type.class)) {
         // What if it's an annotation?
@@ -1351,7 +1349,6 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
         System.out.printf(
             "visitEnum(%s, %s, %s) in %s (%s)%n", name, descriptor, value, this, this.getClass());
       }
-      annotationWriter.visitEnum(name, descriptor, value);
       prepareForElement(new EnumAFT(classDescToName(descriptor)));
       assert arrayBuilder != null;
       arrayBuilder.appendElement(value);
@@ -1359,7 +1356,6 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
 
     @Override
     public AnnotationVisitor visitArray(String name) {
-      annotationWriter.visitArray(name);
       throw new AssertionError("Multidimensional array in annotation!");
     }
 
@@ -1372,8 +1368,7 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
       // The NASR will regurgitate the name we pass here when it calls
       // supplySubannotation.  Since we ignore the name there, it doesn't
       // matter what name we pass here.
-      AnnotationVisitor annotationWriter = this.annotationWriter.visitAnnotation(name, descriptor);
-      return new NestedAnnotationSceneReader(this.api, this, name, descriptor, annotationWriter);
+      return new NestedAnnotationSceneReader(this.api, this, name, descriptor);
     }
 
     @Override
@@ -1381,7 +1376,6 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
       if (trace) {
         System.out.printf("visitEnd on %s (%s)%n", this, this.getClass());
       }
-      annotationWriter.visitEnd();
       if (arrayBuilder != null) {
         arrayBuilder.finish();
       } else {
@@ -1410,20 +1404,15 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
     /** Field to be visisted. */
     private final AElement aField;
 
-    /** FieldVisitor for writing the current field. */
-    private final FieldVisitor fieldWriter;
-
     /**
      * Constructs a new FieldAnnotationScene reader.
      *
      * @param api the ASM API version to use
      * @param aField the Field to be visisted
-     * @param fieldWriter a FieldWriter for writing the current field
      */
-    FieldAnnotationSceneReader(int api, AElement aField, FieldVisitor fieldWriter) {
-      super(api, fieldWriter);
+    FieldAnnotationSceneReader(int api, AElement aField) {
+      super(api);
       this.aField = aField;
-      this.fieldWriter = fieldWriter;
     }
 
     @Override
@@ -1432,8 +1421,7 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
         System.out.printf(
             "visitAnnotation(%s, %s) in %s (%s)%n", descriptor, visible, this, this.getClass());
       }
-      AnnotationVisitor annotationWriter = fieldWriter.visitAnnotation(descriptor, visible);
-      return new AnnotationSceneReader(this.api, descriptor, visible, aField, annotationWriter);
+      return new AnnotationSceneReader(this.api, descriptor, visible, aField);
     }
 
     @Override
@@ -1444,20 +1432,8 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
             "visitTypeAnnotation(%s, %s, %s, %s); aField=%s, aField.type=%s in %s (%s)%n",
             typeRef, typePath, descriptor, visible, aField, aField.type, this, this.getClass());
       }
-      AnnotationVisitor annotationWriter =
-          fieldWriter.visitTypeAnnotation(typeRef, typePath, descriptor, visible);
       return new TypeAnnotationSceneReader(
-          this.api,
-          descriptor,
-          visible,
-          aField.type,
-          annotationWriter,
-          typeRef,
-          typePath,
-          null,
-          null,
-          null,
-          null);
+          this.api, descriptor, visible, aField.type, typeRef, typePath, null, null, null, null);
     }
   }
 
@@ -1474,9 +1450,6 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
     /** Method to be visited. */
     private final AElement aMethod;
 
-    /** MethodVisitor for writing the current method. */
-    private final MethodVisitor methodWriter;
-
     /**
      * The name of a local variable being visited. Used to capture the local variable name seen in
      * visitLocalVariable so that it can be used in visitLocalVariableTypeAnnotation.
@@ -1488,12 +1461,18 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
      *
      * @param api the ASM API version to use
      * @param aMethod the Method to be visisted
-     * @param methodWriter a MethodWriter for writing the current field
+     * @param offsetTracker a visitor that tracks the bytecode offset of the current instruction
      */
-    MethodAnnotationSceneReader(int api, AElement aMethod, MethodVisitor methodWriter) {
-      super(api, methodWriter);
+    MethodAnnotationSceneReader(int api, AElement aMethod, MethodVisitor offsetTracker) {
+      super(api, offsetTracker);
       this.aMethod = aMethod;
-      this.methodWriter = methodWriter;
+    }
+
+    @Override
+    public void visitLabel(Label label) {
+      super.visitLabel(label);
+      // No MethodWriter resolves the label, and local variable annotations need its offset.
+      LocalLocation.resolveLabel(label, offset);
     }
 
     @Override
@@ -1502,8 +1481,7 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
         System.out.printf(
             "visitAnnotation(%s, %s) in %s (%s)%n", descriptor, visible, this, this.getClass());
       }
-      AnnotationVisitor annotationWriter = methodWriter.visitAnnotation(descriptor, visible);
-      return new AnnotationSceneReader(this.api, descriptor, visible, aMethod, annotationWriter);
+      return new AnnotationSceneReader(this.api, descriptor, visible, aMethod);
     }
 
     @Override
@@ -1514,14 +1492,8 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
             "visitParameterAnnotation(%s, %s, %s) in %s (%s)%n",
             parameter, descriptor, visible, this, this.getClass());
       }
-      AnnotationVisitor annotationWriter =
-          methodWriter.visitParameterAnnotation(parameter, descriptor, visible);
       return new AnnotationSceneReader(
-          this.api,
-          descriptor,
-          visible,
-          ((AMethod) aMethod).parameters.getVivify(parameter),
-          annotationWriter);
+          this.api, descriptor, visible, ((AMethod) aMethod).parameters.getVivify(parameter));
     }
 
     @Override
@@ -1539,19 +1511,8 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
             "visitTypeAnnotation(%s, %s, %s, %s) method=%s in %s (%s)%n",
             typeRef, typePath, descriptor, visible, aMethod, this, this.getClass());
       }
-      AnnotationVisitor annotationWriter =
-          methodWriter.visitTypeAnnotation(typeRef, typePath, descriptor, visible);
       return new TypeAnnotationSceneReader(
-          this.api,
-          descriptor,
-          visible,
-          aMethod,
-          annotationWriter,
-          typeRef,
-          typePath,
-          null,
-          null,
-          null);
+          this.api, descriptor, visible, aMethod, typeRef, typePath, null, null, null);
     }
 
     @Override
@@ -1563,19 +1524,8 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
             typeRef, typePath, descriptor, visible, aMethod, this, this.getClass());
       }
       // TODO: Need to send offset from here
-      AnnotationVisitor annotationWriter =
-          methodWriter.visitInsnAnnotation(typeRef, typePath, descriptor, visible);
       return new TypeAnnotationSceneReader(
-          this.api,
-          descriptor,
-          visible,
-          aMethod,
-          annotationWriter,
-          typeRef,
-          typePath,
-          null,
-          null,
-          null);
+          this.api, descriptor, visible, aMethod, typeRef, typePath, null, null, null);
     }
 
     @Override
@@ -1586,19 +1536,8 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
             "visitTryCatchAnnotation(%s, %s, %s, %s) method=%s in %s (%s)%n",
             typeRef, typePath, descriptor, visible, aMethod, this, this.getClass());
       }
-      AnnotationVisitor annotationWriter =
-          methodWriter.visitTryCatchAnnotation(typeRef, typePath, descriptor, visible);
       return new TypeAnnotationSceneReader(
-          this.api,
-          descriptor,
-          visible,
-          aMethod,
-          annotationWriter,
-          typeRef,
-          typePath,
-          null,
-          null,
-          null);
+          this.api, descriptor, visible, aMethod, typeRef, typePath, null, null, null);
     }
 
     @Override
@@ -1624,15 +1563,11 @@ public class ClassAnnotationSceneReader extends CodeOffsetAdapter {
             this,
             this.getClass());
       }
-      AnnotationVisitor annotationWriter =
-          methodWriter.visitLocalVariableAnnotation(
-              typeRef, typePath, start, end, index, descriptor, visible);
       return new TypeAnnotationSceneReader(
           this.api,
           descriptor,
           visible,
           aMethod,
-          annotationWriter,
           typeRef,
           typePath,
           start,
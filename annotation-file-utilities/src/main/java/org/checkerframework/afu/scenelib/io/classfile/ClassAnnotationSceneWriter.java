@@ -159,11 +159,10 @@ public class ClassAnnotationSceneWriter extends CodeOffsetAdapter {
       String signature,
       String superName,
       String[] interfaces) {
-    classReader.accept(new MethodCodeIndexer(api), 0);
     super.visit(version, access, name, signature, superName, interfaces);
     // class files store fully qualified class names with '/' instead of '.'
-    name = name.replace('/', '.');
-    aClass = scene.classes.getVivify(name);
+    aClass = scene.classes.getVivify(name.replace('/', '.'));
+    classReader.accept(new MethodCodeIndexer(api), 0);
   }
 
   @Override
@@ -186,6 +185,11 @@ public class ClassAnnotationSceneWriter extends CodeOffsetAdapter {
   public MethodVisitor visitMethod(
       int access, String name, String descriptor, String signature, String[] exceptions) {
     ensureVisitSceneClassAnnotations();
+    if (isUnannotated(name + descriptor)) {
+      // Returning the ClassWriter's own visitor lets ClassReader copy the
+      //  method's bytes instead of visiting every instruction.
+      return copyMethod(access, name, descriptor, signature, exceptions);
+    }
     // MethodAnnotationSceneWriter ensures that the method visits all
     //  its annotations in the scene.
     // MethodAdapter is used here only for getting around an unsound
@@ -194,6 +198,18 @@ public class ClassAnnotationSceneWriter extends CodeOffsetAdapter {
         api, name, descriptor, super.visitMethod(access, name, descriptor, signature, exceptions));
   }
 
+  /**
+   * Returns true if the scene has no annotations to insert into the given method of this class.
+   * Like {@link MethodAnnotationSceneWriter}, vivifies the method in the scene, so that the scene
+   * ends up the same whether or not the method is copied unchanged.
+   *
+   * @param methodSignature the name and descriptor of a method, as in "foo(Ljava/lang/String)V"
+   * @return true if the scene has nothing to insert into the method
+   */
+  private boolean isUnannotated(String methodSignature) {
+    return aClass.methods.getVivify(methodSignature).isEmpty();
+  }
+
   @Override
   public void visitEnd() {
     ensureVisitSceneClassAnnotations();
@@ -1277,6 +1293,10 @@ public class ClassAnnotationSceneWriter extends CodeOffsetAdapter {
     public MethodVisitor visitMethod(
         int access, String name, String descriptor, String signature, String[] exceptions) {
       String methodDescription = name + descriptor;
+      if (isUnannotated(methodDescription)) {
+        // The method is copied unchanged, so its offsets are not needed.
+        return null;
+      }
       constrs = dynamicConstructors.get(methodDescription);
       if (constrs == null) {
         constrs = new TreeSet<>();
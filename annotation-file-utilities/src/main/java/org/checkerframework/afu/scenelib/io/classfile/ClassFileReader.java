@@ -1,11 +1,19 @@
 package org.checkerframework.afu.scenelib.io.classfile;
 
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.TreeMap;
+import org.checkerframework.afu.scenelib.AnnotationInterner;
+import org.checkerframework.afu.scenelib.el.AClass;
 import org.checkerframework.afu.scenelib.el.AScene;
+import org.checkerframework.afu.scenelib.el.DefException;
 import org.checkerframework.afu.scenelib.io.IndexFileWriter;
 import org.checkerframework.afu.scenelib.util.CommandLineUtils;
+import org.checkerframework.afu.scenelib.util.OrderedTaskRunner;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Opcodes;
 import org.plumelib.options.Option;
@@ -30,6 +38,15 @@ public class ClassFileReader {
   @Option("print progress messages")
   public static boolean verbose = false;
 
+  @Option("<file> extract from whole jar files, class directories, or modules into this index file")
+  public static String output = null;
+
+  @Option("with --output, write one index file per package into the directory --output")
+  public static boolean per_package = false;
+
+  @Option("number of threads used to extract annotations, with --output")
+  public static int threads = 1;
+
   private static String linesep = System.lineSeparator();
 
   static String usage =
@@ -40,7 +57,12 @@ public class ClassFileReader {
           "a/b/C.class.  Extracts the annotations from each such argument and prints",
           "them in index-file format to a.second.C.jaif .  Arguments beginning with a",
           "single '@' are interpreted as argument files to be read and expanded into",
-          "the command line.  A few options are available only when invoked via the",
+          "the command line.",
+          "With --output, each argument is instead a jar file, a directory of class files,",
+          "jrt:/ (the modules of the running JDK), or jrt:/ followed by a module name such as",
+          "jrt:/java.base.  The annotations of all of their classes are written to one index",
+          "file, or with --per-package to one index file per package.",
+          "A few options are available only when invoked via the",
           "script extract-annotations, not when invoked as a Java program:",
           "  --debug-script               - make the extract-annotations script output debugging"
               + " information",
@@ -94,6 +116,10 @@ public class ClassFileReader {
       options.printUsage();
       System.exit(-1);
     }
+    if (output != null) {
+      mainForArchives(file_args);
+      return;
+    }
 
     // check args for well-formed names
     for (String arg : file_args) {
@@ -102,6 +128,8 @@ public class ClassFileReader {
       }
     }
 
+    // The scenes share a pool, so that a definition is created from an annotation class only once.
+    AnnotationInterner interner = new AnnotationInterner();
     for (String origName : file_args) {
       if (verbose) {
         System.out.println("reading: " + origName);
@@ -111,7 +139,7 @@ public class ClassFileReader {
         origName = origName.replace(".class", "");
       }
 
-      AScene scene = new AScene();
+      AScene scene = new AScene(interner);
       try {
         if (className.endsWith(".class")) {
           read(scene, className);
@@ -140,6 +168,81 @@ public class ClassFileReader {
     }
   }
 
+  /**
+   * Implements the main method for {@code --output}: extracts the annotations from whole jar files,
+   * class directories, or modules into one index file, or one per package.
+   *
+   * @param file_args jar files, class directories, or {@code jrt:/} URIs
+   */
+  private static void mainForArchives(String[] file_args) {
+    if (threads < 1) {
+      System.out.println("The --threads option must be positive.");
+      System.exit(-1);
+    }
+    AScene scene = new AScene();
+    try {
+      long start = System.nanoTime();
+      int classCount = 0;
+      for (String input : file_args) {
+        if (verbose) {
+          System.out.println("reading: " + input);
+        }
+        classCount += readAll(scene, input, threads);
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.printf(
+          "Read %d classes in %.2f seconds (%.0f classes/sec)%n",
+          classCount, seconds, classCount / seconds);
+      if (verbose) {
+        System.out.println("printing results to : " + output);
+      }
+      if (per_package) {
+        writePerPackage(scene, new File(output));
+      } else {
+        IndexFileWriter.write(scene, output);
+      }
+    } catch (IOException e) {
+      System.out.println("There was an error in reading or writing: " + e.getMessage());
+    } catch (Exception e) {
+      System.out.println("Unknown error trying to extract annotations");
+      System.out.println(e.getMessage());
+      e.printStackTrace();
+      System.out.println("Please submit a bug report at");
+      System.out.println("  https://github.com/typetools/annotation-tools/issues");
+      System.out.println("Be sure to include a copy of the output trace, instructions on how");
+      System.out.println("to reproduce this error, and all input files.  Thanks!");
+    }
+  }
+
+  /**
+   * Writes the classes of the given scene to one index file per package, named after the package.
+   *
+   * @param scene the scene to write
+   * @param directory the directory in which to write the index files
+   * @throws IOException if an index file cannot be written
+   * @throws DefException if the scene has inconsistent annotation definitions
+   */
+  private static void writePerPackage(AScene scene, File directory)
+      throws IOException, DefException {
+    Map<String, AScene> packageScenes = new TreeMap<>();
+    for (Map.Entry<String, AClass> entry : scene.classes.entrySet()) {
+      String className = entry.getKey();
+      int dot = className.lastIndexOf('.');
+      String packageName = dot == -1 ? "unnamed-package" : className.substring(0, dot);
+      packageScenes
+          .computeIfAbsent(packageName, k -> new AScene(scene.interner))
+          .classes
+          .put(className, entry.getValue());
+    }
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Cannot create directory " + directory);
+    }
+    for (Map.Entry<String, AScene> entry : packageScenes.entrySet()) {
+      File file = new File(directory, entry.getKey() + ".jaif");
+      IndexFileWriter.write(entry.getValue(), file.getPath());
+    }
+  }
+
   /** If s is not a valid representation of a class, print a warning message and return false. */
   public static boolean checkClass(String arg) {
     // check for invalid class file paths with '.'
@@ -200,7 +303,72 @@ public class ClassFileReader {
    */
   public static void read(AScene scene, ClassReader classReader) {
     ClassAnnotationSceneReader ca =
-        new ClassAnnotationSceneReader(Opcodes.ASM8, classReader, scene, ignore_bridge_methods);
-    classReader.accept(ca, 0);
+        new ClassAnnotationSceneReader(Opcodes.ASM9, classReader, scene, ignore_bridge_methods);
+    // Method bodies are visited only for the type annotations in them.
+    int parsingOptions = ClassReader.SKIP_FRAMES;
+    if (!ClassAnnotationSceneReader.hasCodeTypeAnnotations(classReader)) {
+      parsingOptions |= ClassReader.SKIP_CODE;
+    }
+    classReader.accept(ca, parsingOptions);
+  }
+
+  /**
+   * Reads the annotations from every class of a jar file, a class directory, or the modules of the
+   * running JDK, and inserts them into {@code scene}. The latter are given as {@code jrt:/} for all
+   * modules, or as {@code jrt:/} followed by a module name, such as {@code jrt:/java.base}.
+   * Module descriptors and the entries under {@code META-INF} are skipped, as are class files that
+   * are malformed or have an unsupported version, after a message is printed.
+   *
+   * <p>The entries are read sequentially, and the classes are parsed concurrently, each into a
+   * scene of its own. Those scenes are merged into {@code scene} in the order of the entries, so
+   * the result does not depend on the number of threads. If several classes have the same name,
+   * the first one is kept.
+   *
+   * @param scene the scene into which the annotations should be inserted
+   * @param input a jar file, a directory containing class files, or a {@code jrt:/} URI
+   * @param threads the number of threads used to parse classes
+   * @return the number of classes read
+   * @throws IOException if there is a problem reading {@code input}
+   */
+  public static int readAll(AScene scene, String input, int threads) throws IOException {
+    OrderedTaskRunner runner = new OrderedTaskRunner(threads);
+    int[] classCount = {0};
+    try (ArchiveEntries entries = ArchiveEntries.open(input)) {
+      try {
+        runner.run(
+            entries,
+            (entry, out, err) -> {
+              String name = entry.getName();
+              if (!entry.isClass()
+                  || name.startsWith("META-INF/")
+                  || name.endsWith("module-info.class")) {
+                return null;
+              }
+              // Share the pool of the scene, so that equal annotations in different classes are a
+              // single object.
+              AScene classScene = new AScene(scene.interner);
+              try {
+                read(classScene, new ClassReader(entry.getContents()));
+              } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                // ASM throws these for a malformed class file, or one with an unsupported version.
+                out.printf("Skipping %s: %s%n", name, e);
+                return null;
+              }
+              return classScene;
+            },
+            (entry, classScene) -> {
+              if (classScene != null) {
+                for (Map.Entry<String, AClass> c : classScene.classes.entrySet()) {
+                  scene.classes.putIfAbsent(c.getKey(), c.getValue());
+                }
+                classCount[0]++;
+              }
+              return true;
+            });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+    return classCount[0];
   }
 }
@@ -1,13 +1,22 @@
 package org.checkerframework.afu.scenelib.io.classfile;
 
-import java.io.FileInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.checkerframework.afu.scenelib.AnnotationInterner;
+import org.checkerframework.afu.scenelib.el.AClass;
 import org.checkerframework.afu.scenelib.el.AScene;
 import org.checkerframework.afu.scenelib.io.IndexFileParser;
 import org.checkerframework.afu.scenelib.util.CommandLineUtils;
+import org.checkerframework.afu.scenelib.util.OrderedTaskRunner;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Opcodes;
 import org.plumelib.options.Option;
@@ -28,6 +37,12 @@ public class ClassFileWriter {
   @Option("print progress messages")
   public static boolean verbose = false;
 
+  @Option("<jarfile> insert into a whole jar file or class directory, writing this jar file")
+  public static String output = null;
+
+  @Option("number of threads used to insert annotations, with --output")
+  public static int threads = 1;
+
   private static String linesep = System.getProperty("line.separator");
 
   static String usage =
@@ -46,7 +61,15 @@ public class ClassFileWriter {
           + linesep
           + "Arguments beginning with a single '@' are interpreted as argument files to"
           + linesep
-          + "be read and expanded into the command line.  Options:";
+          + "be read and expanded into the command line."
+          + linesep
+          + "usage: insert-annotations --output=out.jar [options] in.jar indexfile1 indexfile2 ..."
+          + linesep
+          + "Read annotations from all the index files, insert them into every class of the jar"
+          + linesep
+          + "file or class directory in.jar, and write the result, including the jar's other"
+          + linesep
+          + "entries, to out.jar.  Options:";
 
   /**
    * Main method meant to be a convenient way to write annotations from an index file to a class
@@ -61,6 +84,8 @@ public class ClassFileWriter {
    * <pre>
    *   -h, --help   print usage information and exit
    *   --version    print version information and exit
+   *   --output     insert into a whole jar file or class directory, writing this jar file
+   *   --threads    number of threads used to insert annotations, with --output
    * </pre>
    *
    * @param args options and classes and index files to analyze;
@@ -98,6 +123,10 @@ public class ClassFileWriter {
       options.printUsage();
       System.exit(-1);
     }
+    if (output != null) {
+      mainForJar(options, file_args);
+      return;
+    }
     if (file_args.length % 2 == 1) {
       System.out.println("Must supply an even number of arguments.");
       options.printUsage();
@@ -111,6 +140,8 @@ public class ClassFileWriter {
       }
     }
 
+    // The scenes share a pool, so that a definition is created from an annotation class only once.
+    AnnotationInterner interner = new AnnotationInterner();
     for (int i = 0; i < file_args.length; i++) {
       String className = file_args[i];
       i++;
@@ -122,7 +153,7 @@ public class ClassFileWriter {
       }
       String indexFileName = file_args[i];
 
-      AScene scene = new AScene();
+      AScene scene = new AScene(interner);
 
       IndexFileParser.parseFile(indexFileName, scene);
 
@@ -167,7 +198,8 @@ public class ClassFileWriter {
 
   /**
    * Inserts the annotations contained in <code> scene </code> into the class file contained in
-   * <code> fileName </code>, and write the result back into <code> fileName </code>.
+   * <code> fileName </code>, and write the result back into <code> fileName </code>. If <code>
+   * scene </code> has no annotations for the class, the file is not written.
    *
    * @param scene the scene containing the annotations to insert into a class
    * @param fileName the file name of the class the annotations should be inserted into. Should be a
@@ -181,18 +213,15 @@ public class ClassFileWriter {
   public static void insert(AScene scene, String fileName, boolean overwrite) throws IOException {
     assert fileName.endsWith(".class");
 
-    // can't just call other insert, because this closes the input stream
-    ClassReader classReader;
-    try (InputStream in = new FileInputStream(fileName)) {
-      classReader = new ClassReader(in);
+    byte[] classBytes = Files.readAllBytes(Paths.get(fileName));
+    byte[] result = insertIntoClassFile(scene, classBytes, overwrite, false);
+    if (result == classBytes) {
+      // nothing to insert, so leave the file alone
+      return;
     }
 
-    ClassAnnotationSceneWriter classAnnotationSceneWriter =
-        new ClassAnnotationSceneWriter(Opcodes.ASM8, classReader, scene, overwrite);
-    classReader.accept(classAnnotationSceneWriter, 0);
-
     try (OutputStream fos = new FileOutputStream(fileName)) {
-      fos.write(classAnnotationSceneWriter.toByteArray());
+      fos.write(result);
     }
   }
 
@@ -214,14 +243,7 @@ public class ClassFileWriter {
    */
   public static void insert(AScene scene, InputStream input, OutputStream out, boolean overwrite)
       throws IOException {
-    ClassReader classReader = new ClassReader(input);
-
-    ClassAnnotationSceneWriter classAnnotationSceneWriter =
-        new ClassAnnotationSceneWriter(Opcodes.ASM8, classReader, scene, overwrite);
-
-    classReader.accept(classAnnotationSceneWriter, 0);
-
-    out.write(classAnnotationSceneWriter.toByteArray());
+    out.write(insertIntoClassFile(scene, ArchiveEntries.readAll(input), overwrite, false));
   }
 
   /**
@@ -241,15 +263,154 @@ public class ClassFileWriter {
    */
   public static void insert(
       AScene scene, String className, String outputFileName, boolean overwrite) throws IOException {
-    ClassReader classReader = new ClassReader(className);
+    // find the class the same way as ClassReader(String)
+    byte[] classBytes;
+    try (InputStream in =
+        ClassLoader.getSystemResourceAsStream(className.replace('.', '/') + ".class")) {
+      if (in == null) {
+        throw new IOException("Class not found");
+      }
+      classBytes = ArchiveEntries.readAll(in);
+    }
 
-    ClassAnnotationSceneWriter classAnnotationSceneWriter =
-        new ClassAnnotationSceneWriter(Opcodes.ASM8, classReader, scene, overwrite);
+    try (OutputStream fos = new FileOutputStream(outputFileName)) {
+      fos.write(insertIntoClassFile(scene, classBytes, overwrite, false));
+    }
+  }
 
-    classReader.accept(classAnnotationSceneWriter, 0);
+  /**
+   * Implements the main method for {@code --output}: inserts the annotations from index files into
+   * a whole jar file or class directory.
+   *
+   * @param options the command-line options, for printing usage information
+   * @param file_args a jar file or class directory, followed by index files
+   * @throws IOException if an index file cannot be read
+   */
+  private static void mainForJar(Options options, String[] file_args) throws IOException {
+    if (file_args.length < 2) {
+      System.out.println("Must supply a jar file or class directory and at least one index file.");
+      options.printUsage();
+      System.exit(-1);
+    }
+    if (threads < 1) {
+      System.out.println("The --threads option must be positive.");
+      System.exit(-1);
+    }
+    String input = file_args[0];
 
-    try (OutputStream fos = new FileOutputStream(outputFileName)) {
-      fos.write(classAnnotationSceneWriter.toByteArray());
+    // Parse the index files once, into one scene, rather than once per class.
+    AScene scene = new AScene();
+    for (int i = 1; i < file_args.length; i++) {
+      if (verbose) {
+        System.out.printf("Reading index file %s%n", file_args[i]);
+      }
+      IndexFileParser.parseFile(file_args[i], scene);
+    }
+
+    try {
+      if (verbose) {
+        System.out.printf("Reading %s; writing with annotations to %s%n", input, output);
+      }
+      insertAll(scene, input, output, true, threads);
+    } catch (IOException e) {
+      System.out.printf("IOException: %s%n", e.getMessage());
+    } catch (Exception e) {
+      System.out.println("Unknown error trying to insert annotations into: " + input);
+      e.printStackTrace();
+      System.out.flush();
+      System.out.println("Please submit a bug report at");
+      System.out.println("  https://github.com/typetools/annotation-tools/issues");
+      System.out.println(
+          "Be sure to include a copy of the following output trace, instructions on how");
+      System.out.println("to reproduce this error, and all input files.  Thanks!");
+    }
+  }
+
+  /**
+   * Inserts the annotations contained in {@code scene} into every class of a jar file or a class
+   * directory, and writes the resulting classes, and all the other files, to a new jar file. The
+   * input is read sequentially; the classes for which {@code scene} has annotations are rewritten
+   * concurrently, and all other entries are copied unchanged. The entries of the output are in the
+   * same order as those of the input (sorted by name, for a directory).
+   *
+   * <p>Each class is rewritten using its own copy of its part of {@code scene}, so {@code scene}
+   * is not modified.
+   *
+   * @param scene the scene containing the annotations to insert into the classes
+   * @param input a jar file or a directory containing class files
+   * @param outputJar the jar file to write
+   * @param overwrite controls behavior when an annotation exists on a particular element in both
+   *     the scene and the class file. If true, then the one from the scene is used; else the
+   *     existing annotation in the class file is retained.
+   * @param threads the number of threads used to rewrite classes
+   * @throws IOException if there is a problem reading {@code input} or writing {@code outputJar}
+   */
+  public static void insertAll(
+      AScene scene, String input, String outputJar, boolean overwrite, int threads)
+      throws IOException {
+    OrderedTaskRunner runner = new OrderedTaskRunner(threads);
+    try (ArchiveEntries entries = ArchiveEntries.open(new File(input));
+        ZipOutputStream out =
+            new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(outputJar)))) {
+      try {
+        runner.run(
+            entries,
+            (entry, stdout, stderr) -> {
+              byte[] contents = entry.getContents();
+              return entry.isClass()
+                  ? insertIntoClassFile(scene, contents, overwrite, true)
+                  : contents;
+            },
+            (entry, contents) -> {
+              ZipEntry outEntry = new ZipEntry(entry.getName());
+              if (entry.getTime() != -1) {
+                outEntry.setTime(entry.getTime());
+              }
+              out.putNextEntry(outEntry);
+              out.write(contents);
+              out.closeEntry();
+              return true;
+            });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
     }
   }
+
+  /**
+   * Returns the given class file with the annotations contained in {@code scene} inserted. If
+   * {@code scene} has no annotations for the class, returns {@code classBytes} itself, without
+   * parsing the class any further than its header. Methods for which {@code scene} has no
+   * annotations are copied unchanged.
+   *
+   * @param scene the scene containing the annotations to insert into the class
+   * @param classBytes a class file
+   * @param overwrite controls behavior when an annotation exists on a particular element in both
+   *     the scene and the class file. If true, then the one from the scene is used; else the
+   *     existing annotation in the class file is retained.
+   * @param copyClass if true, the class is rewritten using its own copy of its part of {@code
+   *     scene}, so {@code scene} is not modified and this may be called concurrently; else the
+   *     elements of the class in {@code scene} are vivified
+   * @return the class file with the annotations inserted
+   */
+  private static byte[] insertIntoClassFile(
+      AScene scene, byte[] classBytes, boolean overwrite, boolean copyClass) {
+    ClassReader classReader = new ClassReader(classBytes);
+    String className = classReader.getClassName().replace('/', '.');
+    AClass aClass = scene.classes.get(className);
+    if (aClass == null || aClass.isEmpty()) {
+      return classBytes;
+    }
+    AScene writerScene = scene;
+    if (copyClass) {
+      // The writer vivifies elements of the scene, so give it a scene of its own, which shares the
+      // pool of the scene.
+      writerScene = new AScene(scene.interner);
+      writerScene.classes.put(className, aClass.clone());
+    }
+    ClassAnnotationSceneWriter classAnnotationSceneWriter =
+        new ClassAnnotationSceneWriter(Opcodes.ASM9, classReader, writerScene, overwrite);
+    classReader.accept(classAnnotationSceneWriter, 0);
+    return classAnnotationSceneWriter.toByteArray();
+  }
 }
@@ -2,6 +2,7 @@ package org.checkerframework.afu.scenelib.io.classfile;
 
 import java.util.Arrays;
 import org.checkerframework.afu.scenelib.io.DebugWriter;
+import org.checkerframework.checker.nullness.qual.Nullable;
 import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
@@ -48,7 +49,19 @@ public class CodeOffsetAdapter extends ClassVisitor {
    * @param classReader the ClassReader for the class
    */
   public CodeOffsetAdapter(int api, ClassReader classReader) {
-    super(api, new ClassWriter(classReader, 0));
+    this(api, classReader, new ClassWriter(classReader, 0));
+  }
+
+  /**
+   * Constructs a new CodeOffsetAdapter that delegates to the given visitor.
+   *
+   * @param api the ASM API version to use
+   * @param classReader the ClassReader for the class
+   * @param classVisitor the visitor to which to delegate, or null
+   */
+  protected CodeOffsetAdapter(
+      int api, ClassReader classReader, @Nullable ClassVisitor classVisitor) {
+    super(api, classVisitor);
     this.classReader = classReader;
     // const pool size is (not lowest) upper bound of string length
     buffer = new char[classReader.header];
@@ -64,6 +77,36 @@ public class CodeOffsetAdapter extends ClassVisitor {
     methodStart += 2;
   }
 
+  /**
+   * Visits a method that is to be copied unchanged. Returns the visitor of the underlying {@link
+   * ClassWriter} itself, so that the {@link ClassReader} copies the method's bytes as they are
+   * rather than visiting its instructions. The method's code offsets are not tracked.
+   *
+   * @param access the method's access flags
+   * @param name the method's name
+   * @param descriptor the method's descriptor
+   * @param signature the method's signature, or null
+   * @param exceptions the internal names of the method's exception classes, or null
+   * @return the visitor that copies the method
+   */
+  protected MethodVisitor copyMethod(
+      int access, String name, String descriptor, String signature, String[] exceptions) {
+    skipMethod();
+    return super.visitMethod(access, name, descriptor, signature, exceptions);
+  }
+
+  /**
+   * Skips the method being visited, for which {@link #visitMethod} is not called. This must be
+   * called so that the offsets of later methods are tracked correctly.
+   */
+  protected void skipMethod() {
+    int attrCount = classReader.readUnsignedShort(methodStart + 6);
+    methodStart += 8;
+    while (--attrCount >= 0) {
+      methodStart += 6 + classReader.readInt(methodStart + 2);
+    }
+  }
+
   @Override
   public MethodVisitor visitMethod(
       int access, String name, String descriptor, String signature, String[] exceptions) {
@@ -125,28 +168,37 @@ public class CodeOffsetAdapter extends ClassVisitor {
       @Override
       public void visitFieldInsn(int opcode, String owner, String name, String descriptor) {
         super.visitFieldInsn(opcode, owner, name, descriptor);
-        debug.debug("%d visitFieldInsn(%d, %s, %s, %s)%n", offset, opcode, owner, name, descriptor);
+        if (debug.isEnabled()) {
+          debug.debug(
+              "%d visitFieldInsn(%d, %s, %s, %s)%n", offset, opcode, owner, name, descriptor);
+        }
         advance(3);
       }
 
       @Override
       public void visitIincInsn(int var, int increment) {
         super.visitIincInsn(var, increment);
-        debug.debug("%d visitIincInsn(%d, %d)%n", offset, var, increment);
+        if (debug.isEnabled()) {
+          debug.debug("%d visitIincInsn(%d, %d)%n", offset, var, increment);
+        }
         advance(3);
       }
 
       @Override
       public void visitInsn(int opcode) {
         super.visitInsn(opcode);
-        debug.debug("%d visitInsn(%d)%n", offset, opcode);
+        if (debug.isEnabled()) {
+          debug.debug("%d visitInsn(%d)%n", offset, opcode);
+        }
         advance(1);
       }
 
       @Override
       public void visitIntInsn(int opcode, int operand) {
         super.visitIntInsn(opcode, operand);
-        debug.debug("%d visitIntInsn(%d, %d)%n", offset, opcode, operand);
+        if (debug.isEnabled()) {
+          debug.debug("%d visitIntInsn(%d, %d)%n", offset, opcode, operand);
+        }
         advance(opcode == Opcodes.SIPUSH ? 3 : 2);
       }
 
@@ -154,16 +206,20 @@ public class CodeOffsetAdapter extends ClassVisitor {
       public void visitInvokeDynamicInsn(
           String name, String descriptor, Handle bsm, Object... bsmArgs) {
         super.visitInvokeDynamicInsn(name, descriptor, bsm, bsmArgs);
-        debug.debug(
-            "%d visitInvokeDynamicInsn(%s, %s, %s, %s)%n",
-            offset, name, descriptor, bsm, Arrays.toString(bsmArgs));
+        if (debug.isEnabled()) {
+          debug.debug(
+              "%d visitInvokeDynamicInsn(%s, %s, %s, %s)%n",
+              offset, name, descriptor, bsm, Arrays.toString(bsmArgs));
+        }
         advance(5);
       }
 
       @Override
       public void visitJumpInsn(int opcode, Label label) {
         super.visitJumpInsn(opcode, label);
-        debug.debug("%d visitJumpInsn(%d, %s)%n", offset, opcode, label);
+        if (debug.isEnabled()) {
+          debug.debug("%d visitJumpInsn(%d, %s)%n", offset, opcode, label);
+        }
         // account for wide instructions goto_w (200) and jsr_w (201)
         advance(classReader.readByte(codeStart + offset) < 200 ? 3 : 4);
         assert offset > 0 && methodEnd > codeStart + offset;
@@ -172,7 +228,9 @@ public class CodeOffsetAdapter extends ClassVisitor {
       @Override
       public void visitLdcInsn(Object cst) {
         super.visitLdcInsn(cst);
-        debug.debug("%d visitLdcInsn(%s)%n", offset, cst);
+        if (debug.isEnabled()) {
+          debug.debug("%d visitLdcInsn(%s)%n", offset, cst);
+        }
         // account for wide instructions ldc_w (19) and ldc2_w (20)
         advance(classReader.readByte(codeStart + offset) > 18 ? 3 : 2);
         assert offset > 0 && methodEnd > codeStart + offset;
@@ -181,9 +239,11 @@ public class CodeOffsetAdapter extends ClassVisitor {
       @Override
       public void visitLookupSwitchInsn(Label dflt, int[] keys, Label[] labels) {
         super.visitLookupSwitchInsn(dflt, keys, labels);
-        debug.debug(
-            "%d visitLookupSwitchInsn(%s, %s, %s)%n",
-            offset, dflt, Arrays.toString(keys), Arrays.toString(labels));
+        if (debug.isEnabled()) {
+          debug.debug(
+              "%d visitLookupSwitchInsn(%s, %s, %s)%n",
+              offset, dflt, Arrays.toString(keys), Arrays.toString(labels));
+        }
         previousOffset = offset;
         offset += 8 - (offset & 3);
         offset += 4 + 8 * readInt(offset);
@@ -194,8 +254,10 @@ public class CodeOffsetAdapter extends ClassVisitor {
       @Override
       public void visitMethodInsn(int opcode, String owner, String name, String descriptor) {
         super.visitMethodInsn(opcode, owner, name, descriptor);
-        debug.debug(
-            "%d visitMethodInsn(%d, %s, %s, %s)%n", offset, opcode, owner, name, descriptor);
+        if (debug.isEnabled()) {
+          debug.debug(
+              "%d visitMethodInsn(%d, %s, %s, %s)%n", offset, opcode, owner, name, descriptor);
+        }
         advance(opcode == Opcodes.INVOKEINTERFACE ? 5 : 3);
       }
 
@@ -203,25 +265,31 @@ public class CodeOffsetAdapter extends ClassVisitor {
       public void visitMethodInsn(
           int opcode, String owner, String name, String descriptor, boolean isInterface) {
         super.visitMethodInsn(opcode, owner, name, descriptor, isInterface);
-        debug.debug(
-            "%d visitMethodInsn(%d, %s, %s, %s, %s)%n",
-            offset, opcode, owner, name, descriptor, isInterface);
+        if (debug.isEnabled()) {
+          debug.debug(
+              "%d visitMethodInsn(%d, %s, %s, %s, %s)%n",
+              offset, opcode, owner, name, descriptor, isInterface);
+        }
         advance(opcode == Opcodes.INVOKEINTERFACE ? 5 : 3);
       }
 
       @Override
       public void visitMultiANewArrayInsn(String descriptor, int dims) {
         super.visitMultiANewArrayInsn(descriptor, dims);
-        debug.debug("%d visitMultiANewArrayInsn(%s, %d)%n", offset, descriptor, dims);
+        if (debug.isEnabled()) {
+          debug.debug("%d visitMultiANewArrayInsn(%s, %d)%n", offset, descriptor, dims);
+        }
         advance(4);
       }
 
       @Override
       public void visitTableSwitchInsn(int min, int max, Label dflt, Label... labels) {
         super.visitTableSwitchInsn(min, max, dflt, labels);
-        debug.debug(
-            "%d visitTableSwitchInsn(%d, %d, %s, %s)%n",
-            offset, min, max, dflt, Arrays.toString(labels));
+        if (debug.isEnabled()) {
+          debug.debug(
+              "%d visitTableSwitchInsn(%d, %d, %s, %s)%n",
+              offset, min, max, dflt, Arrays.toString(labels));
+        }
         previousOffset = offset;
         offset += 8 - (offset & 3);
         offset += 4 * (readInt(offset + 4) - readInt(offset) + 3);
@@ -231,14 +299,18 @@ public class CodeOffsetAdapter extends ClassVisitor {
       @Override
       public void visitTypeInsn(int opcode, String descriptor) {
         super.visitTypeInsn(opcode, descriptor);
-        debug.debug("%d visitTypeInsn(%d, %s)%n", offset, opcode, descriptor);
+        if (debug.isEnabled()) {
+          debug.debug("%d visitTypeInsn(%d, %s)%n", offset, opcode, descriptor);
+        }
         advance(3);
       }
 
       @Override
       public void visitVarInsn(int opcode, int var) {
         super.visitVarInsn(opcode, var);
-        debug.debug("%d visitVarInsn(%d, %d)%n", offset, opcode, var);
+        if (debug.isEnabled()) {
+          debug.debug("%d visitVarInsn(%d, %d)%n", offset, opcode, var);
+        }
         advance(var < 4 ? 1 : 2);
       }
 
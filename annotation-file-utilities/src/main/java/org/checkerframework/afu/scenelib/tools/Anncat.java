@@ -10,6 +10,8 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import org.checkerframework.afu.scenelib.el.AScene;
 import org.checkerframework.afu.scenelib.el.DefException;
+import org.checkerframework.afu.scenelib.io.BinarySceneReader;
+import org.checkerframework.afu.scenelib.io.BinarySceneWriter;
 import org.checkerframework.afu.scenelib.io.IndexFileParser;
 import org.checkerframework.afu.scenelib.io.IndexFileWriter;
 import org.checkerframework.afu.scenelib.io.JavapParser;
@@ -35,8 +37,10 @@ public class Anncat {
     System.err.println("        ( --javap <in.javap> )");
     System.err.println("        | ( --index <in.jaif> )");
     System.err.println("        | ( --class <in.class> )");
+    System.err.println("        | ( --binary <in.bin> )");
     System.err.println("    <outspec> ::=");
     System.err.println("        ( --index <out.jaif> )");
+    System.err.println("        | ( --binary <out.bin> )");
     System.err.println("        | ( --class [ --overwrite ] <orig.class> [ --to <out.class> ] )");
     System.err.println("If outspec is omitted, default is index file to stdout.");
   }
@@ -85,6 +89,13 @@ public class Anncat {
           System.err.println("Reading class file " + infile + "...");
           ClassFileReader.read(theScene, infile);
           System.err.println("Finished.");
+        } else if (args[idx].equals("--binary")) {
+          idx++;
+          usageAssert(idx < args.length);
+          String infile = args[idx++];
+          System.err.println("Reading binary scene file " + infile + "...");
+          BinarySceneReader.read(infile, theScene);
+          System.err.println("Finished.");
         } else {
           usageAssert(false);
         }
@@ -110,6 +121,15 @@ public class Anncat {
             IndexFileWriter.write(theScene, w);
           }
           System.err.println("Finished.");
+        } else if (args[idx].equals("--binary")) {
+          idx++;
+          usageAssert(idx < args.length);
+          String outfile = args[idx];
+          idx++;
+          usageAssert(idx == args.length);
+          System.err.println("Writing binary scene file to " + outfile + "...");
+          BinarySceneWriter.write(theScene, outfile);
+          System.err.println("Finished.");
         } else if (args[idx].equals("--class")) {
           idx++;
           usageAssert(idx < args.length);
@@ -0,0 +1,356 @@
+package org.checkerframework.afu.scenelib.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs a worker over a sequence of inputs, using a bounded pool of threads, and commits the results
+ * in the order of the inputs.
+ *
+ * <p>Each worker is given the streams to which it should print its output. Output printed to them
+ * is buffered, and is replayed to System.out and System.err when the worker's result is committed.
+ * Therefore, the program's output is the same as if the inputs had been processed one after
+ * another. An exception thrown by a worker is rethrown (after its output is replayed) when its
+ * result would have been committed; results for later inputs are discarded.
+ *
+ * <p>With a single thread, each input is processed and committed in the calling thread, and the
+ * worker is given System.out and System.err themselves.
+ */
+public class OrderedTaskRunner {
+
+  /**
+   * Processes one input. Called concurrently from multiple threads, so it must not modify state
+   * that is shared with other inputs, and it must print only to the streams that it is given.
+   *
+   * @param <I> the type of inputs
+   * @param <R> the type of results
+   */
+  public interface Worker<I, R> {
+    /**
+     * Processes the given input.
+     *
+     * @param input the input to process
+     * @param out where to print output that would otherwise go to System.out
+     * @param err where to print output that would otherwise go to System.err
+     * @return the result of processing the input
+     * @throws IOException if there is trouble reading or writing a file
+     */
+    R process(I input, PrintStream out, PrintStream err) throws IOException;
+  }
+
+  /**
+   * Commits the result of processing one input. Always called from the thread that called {@link
+   * #run}, in the order of the inputs.
+   *
+   * @param <I> the type of inputs
+   * @param <R> the type of results
+   */
+  public interface Committer<I, R> {
+    /**
+     * Commits the result of processing the given input.
+     *
+     * @param input the input that was processed
+     * @param result the result of {@link Worker#process} on the input
+     * @return true to continue with the next input, false to stop
+     * @throws IOException if there is trouble writing a file
+     */
+    boolean commit(I input, R result) throws IOException;
+  }
+
+  /** The number of threads. */
+  private final int threads;
+
+  /**
+   * Creates a new OrderedTaskRunner.
+   *
+   * @param threads the number of threads; must be positive
+   */
+  public OrderedTaskRunner(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive: " + threads);
+    }
+    this.threads = threads;
+  }
+
+  /**
+   * Returns the number of threads used by this runner.
+   *
+   * @return the number of threads used by this runner
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Processes each of the inputs with the worker, and commits each result with the committer, in
+   * the order of the inputs.
+   *
+   * @param <I> the type of inputs
+   * @param <R> the type of results
+   * @param inputs the inputs to process
+   * @param worker processes an input; may be called concurrently
+   * @param committer commits a result; called from the current thread, in the order of the inputs
+   * @return true if every result was committed, false if the committer stopped early
+   * @throws IOException if the worker or the committer throws IOException
+   */
+  public <I, R> boolean run(List<I> inputs, Worker<I, R> worker, Committer<I, R> committer)
+      throws IOException {
+    if (inputs.size() <= 1) {
+      return runSequentially(inputs.iterator(), worker, committer);
+    } else {
+      return run(inputs.iterator(), worker, committer);
+    }
+  }
+
+  /**
+   * Processes each of the inputs with the worker, and commits each result with the committer, in
+   * the order of the inputs. Only a bounded number of inputs are retrieved from the iterator before
+   * their results are committed, so the inputs need not all fit in memory at once.
+   *
+   * @param <I> the type of inputs
+   * @param <R> the type of results
+   * @param inputs the inputs to process; its methods are called from the current thread
+   * @param worker processes an input; may be called concurrently
+   * @param committer commits a result; called from the current thread, in the order of the inputs
+   * @return true if every result was committed, false if the committer stopped early
+   * @throws IOException if the worker or the committer throws IOException
+   */
+  public <I, R> boolean run(Iterator<I> inputs, Worker<I, R> worker, Committer<I, R> committer)
+      throws IOException {
+    if (threads == 1) {
+      return runSequentially(inputs, worker, committer);
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      // Keep a bounded number of inputs in flight, so that the results that are waiting to be
+      // committed do not use too much memory.
+      int window = 2 * threads;
+      Deque<I> pendingInputs = new ArrayDeque<>();
+      Deque<Future<TaskResult<R>>> pending = new ArrayDeque<>();
+      while (true) {
+        while (pending.size() < window && inputs.hasNext()) {
+          I input = inputs.next();
+          pendingInputs.add(input);
+          pending.add(executor.submit(() -> runTask(worker, input)));
+        }
+        if (pending.isEmpty()) {
+          return true;
+        }
+        TaskResult<R> taskResult = getUninterruptibly(pending.remove());
+        taskResult.output.replay(System.out, System.err);
+        if (taskResult.exception != null) {
+          rethrow(taskResult.exception);
+        }
+        if (!committer.commit(pendingInputs.remove(), taskResult.result)) {
+          return false;
+        }
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /**
+   * Processes and commits each of the inputs in the current thread.
+   *
+   * @param <I> the type of inputs
+   * @param <R> the type of results
+   * @param inputs the inputs to process
+   * @param worker processes an input
+   * @param committer commits a result
+   * @return true if every result was committed, false if the committer stopped early
+   * @throws IOException if the worker or the committer throws IOException
+   */
+  private static <I, R> boolean runSequentially(
+      Iterator<I> inputs, Worker<I, R> worker, Committer<I, R> committer) throws IOException {
+    while (inputs.hasNext()) {
+      I input = inputs.next();
+      if (!committer.commit(input, worker.process(input, System.out, System.err))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Runs the worker on one input, buffering its output.
+   *
+   * @param <I> the type of inputs
+   * @param <R> the type of results
+   * @param worker the worker
+   * @param input the input
+   * @return the result of the worker, and its output
+   */
+  private static <I, R> TaskResult<R> runTask(Worker<I, R> worker, I input) {
+    TaskResult<R> taskResult = new TaskResult<>();
+    BufferedOutput output = taskResult.output;
+    try {
+      taskResult.result = worker.process(input, output.out, output.err);
+    } catch (Throwable e) {
+      taskResult.exception = e;
+    } finally {
+      output.out.flush();
+      output.err.flush();
+    }
+    return taskResult;
+  }
+
+  /**
+   * Waits for the given future, which never throws an exception.
+   *
+   * @param <T> the type of the future's value
+   * @param future the future to wait for
+   * @return the future's value
+   */
+  private static <T> T getUninterruptibly(Future<T> future) {
+    boolean interrupted = false;
+    try {
+      while (true) {
+        try {
+          return future.get();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        } catch (ExecutionException e) {
+          throw new Error("Unexpected exception in task", e.getCause());
+        }
+      }
+    } finally {
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  /**
+   * Rethrows an exception thrown by {@link Worker#process}.
+   *
+   * @param e the exception
+   * @throws IOException if {@code e} is an IOException
+   */
+  private static void rethrow(Throwable e) throws IOException {
+    if (e instanceof IOException) {
+      throw (IOException) e;
+    } else if (e instanceof RuntimeException) {
+      throw (RuntimeException) e;
+    } else if (e instanceof Error) {
+      throw (Error) e;
+    } else {
+      throw new Error(e);
+    }
+  }
+
+  /**
+   * The result of running a worker on one input.
+   *
+   * @param <R> the type of results
+   */
+  private static class TaskResult<R> {
+    /** The result of the worker, if it completed normally. */
+    R result;
+
+    /** The exception thrown by the worker, or null if it completed normally. */
+    Throwable exception;
+
+    /** What the worker printed. */
+    final BufferedOutput output = new BufferedOutput();
+  }
+
+  /** The output printed by one task, in the order it was printed. */
+  private static class BufferedOutput {
+    /** The stream given to the task in place of System.out. */
+    final PrintStream out = new PrintStream(new Channel(false), true);
+
+    /** The stream given to the task in place of System.err. */
+    final PrintStream err = new PrintStream(new Channel(true), true);
+
+    /** The output; each element is one run of bytes written to the same stream. */
+    private final List<byte[]> chunks = new ArrayList<>();
+
+    /** For each element of {@link #chunks}, whether it was written to {@link #err}. */
+    private final List<Boolean> chunkIsErr = new ArrayList<>();
+
+    /** Output written to {@link #currentIsErr} that has not yet been added to {@link #chunks}. */
+    private final ByteArrayOutputStream current = new ByteArrayOutputStream();
+
+    /** Whether {@link #current} holds output for {@link #err}. */
+    private boolean currentIsErr = false;
+
+    /**
+     * Records output.
+     *
+     * @param isErr whether the output was written to {@link #err}
+     * @param b the bytes
+     * @param off the offset of the output in {@code b}
+     * @param len the number of bytes
+     */
+    void write(boolean isErr, byte[] b, int off, int len) {
+      if (isErr != currentIsErr) {
+        endChunk();
+        currentIsErr = isErr;
+      }
+      current.write(b, off, len);
+    }
+
+    /** Moves the contents of {@link #current} to {@link #chunks}. */
+    private void endChunk() {
+      if (current.size() > 0) {
+        chunks.add(current.toByteArray());
+        chunkIsErr.add(currentIsErr);
+        current.reset();
+      }
+    }
+
+    /**
+     * Writes the recorded output to the given streams.
+     *
+     * @param origOut where to write output that was written to {@link #out}
+     * @param origErr where to write output that was written to {@link #err}
+     */
+    void replay(PrintStream origOut, PrintStream origErr) {
+      endChunk();
+      for (int i = 0; i < chunks.size(); i++) {
+        PrintStream stream = chunkIsErr.get(i) ? origErr : origOut;
+        byte[] chunk = chunks.get(i);
+        stream.write(chunk, 0, chunk.length);
+        stream.flush();
+      }
+    }
+
+    /** The stream underlying {@link #out} or {@link #err}, which records what is written to it. */
+    private class Channel extends OutputStream {
+      /** Whether this is the stream underlying {@link #err} (as opposed to {@link #out}). */
+      private final boolean isErr;
+
+      /**
+       * Creates a new Channel.
+       *
+       * @param isErr whether this is the stream underlying {@link #err}
+       */
+      Channel(boolean isErr) {
+        this.isErr = isErr;
+      }
+
+      @Override
+      public void write(int b) {
+        write(new byte[] {(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(byte[] b, int off, int len) {
+        BufferedOutput.this.write(isErr, b, off, len);
+      }
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package org.checkerframework.afu.scenelib.util.coll;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import org.checkerframework.checker.nullness.qual.Nullable;
+
+/**
+ * A set that iterates in insertion order, like a {@link LinkedHashSet}, but that creates the {@link
+ * LinkedHashSet} only when a second element is added. Most elements of a scene carry no annotations
+ * or just one, so this saves a {@link LinkedHashSet} for each of them. The set does not permit null
+ * elements.
+ *
+ * @param <E> the type of the elements
+ */
+public class LazyLinkedHashSet<E> extends AbstractSet<E> {
+
+  /** The initial capacity of {@link #many}; few elements carry more than a few annotations. */
+  private static final int INITIAL_CAPACITY = 4;
+
+  /** The only element, if the set has exactly one and {@link #many} is null. */
+  private @Nullable E single;
+
+  /** The elements, once a second element has been added; otherwise null. */
+  private @Nullable Set<E> many;
+
+  /** Creates a new, empty {@link LazyLinkedHashSet}. */
+  public LazyLinkedHashSet() {}
+
+  @Override
+  public boolean add(E e) {
+    if (e == null) {
+      throw new NullPointerException();
+    }
+    if (many != null) {
+      return many.add(e);
+    } else if (single == null) {
+      single = e;
+      return true;
+    } else if (isSingle(e)) {
+      return false;
+    } else {
+      many = new LinkedHashSet<>(INITIAL_CAPACITY);
+      many.add(single);
+      many.add(e);
+      single = null;
+      return true;
+    }
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (many != null) {
+      return many.contains(o);
+    } else {
+      return isSingle(o);
+    }
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (many != null) {
+      return many.remove(o);
+    } else if (isSingle(o)) {
+      single = null;
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  /**
+   * Returns true if the set has just one element, in {@link #single}, and it equals the given
+   * object. Like {@link java.util.HashMap}, this compares hash codes before calling {@code equals},
+   * so {@code equals} is called in the same cases as for a {@link LinkedHashSet}.
+   *
+   * @param o an object
+   * @return true if {@code o} equals {@link #single}
+   */
+  private boolean isSingle(@Nullable Object o) {
+    return single != null
+        && o != null
+        && (o == single || (o.hashCode() == single.hashCode() && o.equals(single)));
+  }
+
+  @Override
+  public void clear() {
+    single = null;
+    many = null;
+  }
+
+  @Override
+  public Iterator<E> iterator() {
+    if (many != null) {
+      return many.iterator();
+    } else if (single == null) {
+      return Collections.emptyIterator();
+    } else {
+      return new SingleIterator();
+    }
+  }
+
+  @Override
+  public int size() {
+    if (many != null) {
+      return many.size();
+    } else {
+      return single == null ? 0 : 1;
+    }
+  }
+
+  /** An iterator over a set that has one element, which is in {@link #single}. */
+  private class SingleIterator implements Iterator<E> {
+    /** The element to return, or null if it has been returned. */
+    private @Nullable E next = single;
+
+    /** The element that {@link #remove} removes, or null if it may not be called. */
+    private @Nullable E last = null;
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public E next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      last = next;
+      next = null;
+      return last;
+    }
+
+    @Override
+    public void remove() {
+      if (last == null) {
+        throw new IllegalStateException();
+      }
+      LazyLinkedHashSet.this.remove(last);
+      last = null;
+    }
+  }
+}
@@ -2,6 +2,7 @@ package org.checkerframework.afu.scenelib.util.coll;
 
 import java.util.Iterator;
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * A {@link VivifyingMap} is a map with two additional methods:
@@ -24,6 +25,17 @@ public abstract class VivifyingMap<K, V> extends WrapperMap<K, V> {
     super(back);
   }
 
+  /**
+   * Constructs a new {@link VivifyingMap} whose backing map is created by the given supplier, such
+   * as {@code LinkedHashMap::new}, when the first entry is put. Until then, the map is empty and
+   * allocates nothing, which matters for the many maps in a scene that are never used.
+   *
+   * @param backSupplier creates the backing map, which must be empty
+   */
+  public VivifyingMap(Supplier<? extends Map<K, V>> backSupplier) {
+    super(backSupplier);
+  }
+
   /**
    * Like {@code get()}, this returns the value to which the specified key is mapped. However, this
    * never returns null. If the key is not currently mapped to a value, this method stores a new
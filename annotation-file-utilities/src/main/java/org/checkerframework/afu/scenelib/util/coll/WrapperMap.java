@@ -1,26 +1,70 @@
 package org.checkerframework.afu.scenelib.util.coll;
 
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Supplier;
+import org.checkerframework.checker.nullness.qual.Nullable;
 
 /**
  * A {@link WrapperMap} is a map all of whose methods delegate by default to those of a supplied
  * {@linkplain #back backing map}. Subclasses can add or override methods. Compare to {@link
  * java.io.FilterInputStream}.
+ *
+ * <p>The backing map can instead be created when the first entry is put, so that an empty {@link
+ * WrapperMap} costs little more than its own object. The views returned by {@link #keySet}, {@link
+ * #values}, and {@link #entrySet} before then read whichever backing map is current, so they
+ * reflect later changes, as the views of any map do.
  */
 public class WrapperMap<K, V> implements Map<K, V> {
-  /** The backing map. */
-  protected final Map<K, V> back;
+  /**
+   * The backing map. If it is created lazily, this is an empty immutable map, shared by all empty
+   * {@link WrapperMap}s, until the first entry is put.
+   */
+  protected Map<K, V> back;
+
+  /** Creates the backing map when the first entry is put, or null if it exists already. */
+  private @Nullable Supplier<? extends Map<K, V>> backSupplier;
 
   /** Constructs a new {@link WrapperMap} with the given backing map. */
   protected WrapperMap(Map<K, V> back) {
     this.back = back;
   }
 
+  /**
+   * Constructs a new {@link WrapperMap} whose backing map is created by the given supplier when the
+   * first entry is put.
+   *
+   * @param backSupplier creates the backing map, which must be empty
+   */
+  protected WrapperMap(Supplier<? extends Map<K, V>> backSupplier) {
+    this.back = Collections.emptyMap();
+    this.backSupplier = backSupplier;
+  }
+
+  /**
+   * Returns the backing map for a modification that might add an entry, creating it if it does not
+   * exist yet.
+   *
+   * @return the backing map, which is modifiable
+   */
+  private Map<K, V> writableBack() {
+    if (backSupplier != null) {
+      back = backSupplier.get();
+      backSupplier = null;
+    }
+    return back;
+  }
+
   @Override
   public void clear() {
-    back.clear();
+    if (backSupplier == null) {
+      back.clear();
+    }
   }
 
   @Override
@@ -35,7 +79,7 @@ public class WrapperMap<K, V> implements Map<K, V> {
 
   @Override
   public Set<java.util.Map.Entry<K, V>> entrySet() {
-    return back.entrySet();
+    return backSupplier == null ? back.entrySet() : new EntrySet();
   }
 
   @Override
@@ -50,22 +94,24 @@ public class WrapperMap<K, V> implements Map<K, V> {
 
   @Override
   public Set<K> keySet() {
-    return back.keySet();
+    return backSupplier == null ? back.keySet() : new KeySet();
   }
 
   @Override
   public V put(K key, V value) {
-    return back.put(key, value);
+    return writableBack().put(key, value);
   }
 
   @Override
   public void putAll(Map<? extends K, ? extends V> m) {
-    back.putAll(m);
+    if (!m.isEmpty()) {
+      writableBack().putAll(m);
+    }
   }
 
   @Override
   public V remove(Object key) {
-    return back.remove(key);
+    return backSupplier == null ? back.remove(key) : null;
   }
 
   @Override
@@ -75,7 +121,7 @@ public class WrapperMap<K, V> implements Map<K, V> {
 
   @Override
   public Collection<V> values() {
-    return back.values();
+    return backSupplier == null ? back.values() : new Values();
   }
 
   @Override
@@ -92,4 +138,83 @@ public class WrapperMap<K, V> implements Map<K, V> {
   public String toString() {
     return back.toString();
   }
+
+  /** A view of the keys of this map, which reads the backing map that is current. */
+  private final class KeySet extends AbstractSet<K> {
+    @Override
+    public Iterator<K> iterator() {
+      return back.keySet().iterator();
+    }
+
+    @Override
+    public int size() {
+      return back.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return back.containsKey(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      return back.keySet().remove(o);
+    }
+
+    @Override
+    public void clear() {
+      WrapperMap.this.clear();
+    }
+  }
+
+  /** A view of the entries of this map, which reads the backing map that is current. */
+  private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+    @Override
+    public Iterator<Map.Entry<K, V>> iterator() {
+      return back.entrySet().iterator();
+    }
+
+    @Override
+    public int size() {
+      return back.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return back.entrySet().contains(o);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+      return back.entrySet().remove(o);
+    }
+
+    @Override
+    public void clear() {
+      WrapperMap.this.clear();
+    }
+  }
+
+  /** A view of the values of this map, which reads the backing map that is current. */
+  private final class Values extends AbstractCollection<V> {
+    @Override
+    public Iterator<V> iterator() {
+      return back.values().iterator();
+    }
+
+    @Override
+    public int size() {
+      return back.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+      return back.containsValue(o);
+    }
+
+    @Override
+    public void clear() {
+      WrapperMap.this.clear();
+    }
+  }
 }
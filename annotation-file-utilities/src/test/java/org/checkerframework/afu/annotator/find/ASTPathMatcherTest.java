@@ -0,0 +1,256 @@
+package org.checkerframework.afu.annotator.find;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.afu.scenelib.io.ASTPath;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that {@link ASTPathMatcher} gives the same result as {@link
+ * ASTPathCriterion#isSatisfiedBy(TreePath)} for every AST path and every tree of a compilation
+ * unit.
+ */
+public class ASTPathMatcherTest {
+
+  /** The compilation unit whose trees the AST paths are matched against. */
+  private static final String SOURCE =
+      String.join(
+          "\n",
+          "import java.util.List;",
+          "class T {",
+          "  T(List<String> a, int[] b) {}",
+          "  T() {}",
+          "  void m(T this, List<?> w, List<? extends Number> n) {",
+          "    int[][] x = new int[3][4];",
+          "    String[] y = new String[] {\"a\", \"b\"};",
+          "    int[] z = {1, 2};",
+          "    List<?> l = null;",
+          "    if (w instanceof List<?>) {",
+          "      x = null;",
+          "    }",
+          "    {",
+          "      Object o = new Object();",
+          "    }",
+          "  }",
+          "}");
+
+  @Test
+  public void testBlockStatements() throws Exception {
+    check(
+        "Method.body, Block.statement 0",
+        "Method.body, Block.statement 0, Variable.type",
+        "Method.body, Block.statement 0, Variable.type, ArrayType.type",
+        "Method.body, Block.statement 1, Variable.initializer",
+        "Method.body, Block.statement 4, If.thenStatement, Block.statement 0,"
+            + " ExpressionStatement.expression, Assignment.expression",
+        "Method.body, Block.statement 5, Block.statement 0, Variable.initializer,"
+            + " NewClass.identifier",
+        "Method.body, Block.statement 9",
+        "Method.body, Block.statement 9, Variable.type");
+  }
+
+  @Test
+  public void testNewArrays() throws Exception {
+    check(
+        "Method.body, Block.statement 0, Variable.initializer, NewArray.type 0",
+        "Method.body, Block.statement 0, Variable.initializer, NewArray.type 1",
+        "Method.body, Block.statement 0, Variable.initializer, NewArray.type 2",
+        "Method.body, Block.statement 0, Variable.initializer, NewArray.dimension 0",
+        "Method.body, Block.statement 0, Variable.initializer, NewArray.dimension 1",
+        "Method.body, Block.statement 0, Variable.initializer, NewArray.dimension 2",
+        "Method.body, Block.statement 1, Variable.initializer, NewArray.type 0",
+        "Method.body, Block.statement 1, Variable.initializer, NewArray.type 1",
+        "Method.body, Block.statement 1, Variable.initializer, NewArray.initializer 0",
+        "Method.body, Block.statement 1, Variable.initializer, NewArray.initializer 5",
+        "Method.body, Block.statement 2, Variable.initializer, NewArray.type 0",
+        "Method.body, Block.statement 2, Variable.initializer, NewArray.initializer 1");
+  }
+
+  @Test
+  public void testConstructors() throws Exception {
+    check(
+        "Method.type",
+        "Method.parameter 0, Variable.type",
+        "Method.parameter 0, Variable.type, ParameterizedType.typeArgument 0",
+        "Method.parameter 1, Variable.type, ArrayType.type",
+        "Method.parameter -1",
+        "Method.parameter -1, ParameterizedType.typeArgument 0",
+        // A constructor has no type parameters, so this throws an exception.
+        "Method.typeParameter 0, TypeParameter.bound 0");
+  }
+
+  @Test
+  public void testWildcards() throws Exception {
+    check(
+        "Method.parameter 0, Variable.type, ParameterizedType.typeArgument 0",
+        "Method.parameter 0, Variable.type, ParameterizedType.typeArgument 0, Wildcard.bound",
+        "Method.parameter 1, Variable.type, ParameterizedType.typeArgument 0, Wildcard.bound",
+        "Method.body, Block.statement 3, Variable.type, ParameterizedType.typeArgument 0,"
+            + " Wildcard.bound",
+        "Method.body, Block.statement 4, If.condition, Parenthesized.expression, InstanceOf.type,"
+            + " ParameterizedType.typeArgument 0, Wildcard.bound");
+  }
+
+  /**
+   * Checks that a matcher for the given AST paths agrees with {@link
+   * ASTPathCriterion#isSatisfiedBy(TreePath)} on every tree of {@link #SOURCE}, and that at least
+   * one of the AST paths is satisfied by some tree.
+   *
+   * @param astPaths AST paths, in the format of an index file
+   * @throws IOException if the source cannot be parsed
+   */
+  private static void check(String... astPaths) throws IOException {
+    List<ASTPathCriterion> criteria = new ArrayList<>(astPaths.length);
+    List<Insertion> insertions = new ArrayList<>(astPaths.length);
+    for (String s : astPaths) {
+      ASTPathCriterion criterion = new ASTPathCriterion(parse(s));
+      Criteria c = new Criteria();
+      c.add(criterion);
+      criteria.add(criterion);
+      insertions.add(new AnnotationInsertion("@A", c, false));
+    }
+    ASTPathMatcher matcher = new ASTPathMatcher(insertions, TreeFinder.warn);
+
+    int satisfied = 0;
+    for (TreePath path : treePaths()) {
+      // As in TreeFinder, all the criteria are evaluated at one tree before the next tree.
+      for (ASTPathCriterion criterion : criteria) {
+        String expected = outcome(() -> criterion.isSatisfiedBy(path));
+        String actual = outcome(() -> matcher.isSatisfiedBy(criterion, path));
+        Assert.assertEquals(
+            criterion.astPath + " at " + path.getLeaf().getKind() + " " + path.getLeaf(),
+            expected,
+            actual);
+        if (expected.equals("true")) {
+          satisfied++;
+        }
+      }
+    }
+    Assert.assertTrue("no AST path is satisfied", satisfied > 0);
+  }
+
+  /**
+   * Returns the AST path that the given string denotes. Each entry is a tree kind, as named in an
+   * index file, followed by a child selector and an optional argument.
+   *
+   * @param s an AST path, such as "Method.body, Block.statement 0"
+   * @return the AST path that {@code s} denotes
+   */
+  private static ASTPath parse(String s) {
+    ASTPath result = ASTPath.empty();
+    for (String entry : s.split(", ")) {
+      String[] words = entry.split("[. ]");
+      Tree.Kind kind = KINDS.get(words[0]);
+      Assert.assertNotNull(words[0], kind);
+      result =
+          result.extend(
+              words.length == 2
+                  ? new ASTPath.ASTEntry(kind, words[1])
+                  : new ASTPath.ASTEntry(kind, words[1], Integer.valueOf(words[2])));
+    }
+    return result;
+  }
+
+  /** The tree kinds of the entries in the AST paths of the tests, as IndexFileParser maps them. */
+  private static final Map<String, Tree.Kind> KINDS = new HashMap<>();
+
+  static {
+    KINDS.put("ArrayType", Tree.Kind.ARRAY_TYPE);
+    KINDS.put("Assignment", Tree.Kind.ASSIGNMENT);
+    KINDS.put("Block", Tree.Kind.BLOCK);
+    KINDS.put("ExpressionStatement", Tree.Kind.EXPRESSION_STATEMENT);
+    KINDS.put("If", Tree.Kind.IF);
+    KINDS.put("InstanceOf", Tree.Kind.INSTANCE_OF);
+    KINDS.put("Method", Tree.Kind.METHOD);
+    KINDS.put("NewArray", Tree.Kind.NEW_ARRAY);
+    KINDS.put("NewClass", Tree.Kind.NEW_CLASS);
+    KINDS.put("ParameterizedType", Tree.Kind.PARAMETERIZED_TYPE);
+    KINDS.put("Parenthesized", Tree.Kind.PARENTHESIZED);
+    KINDS.put("TypeParameter", Tree.Kind.TYPE_PARAMETER);
+    KINDS.put("Variable", Tree.Kind.VARIABLE);
+    // IndexFileParser uses UNBOUNDED_WILDCARD for every wildcard.
+    KINDS.put("Wildcard", Tree.Kind.UNBOUNDED_WILDCARD);
+  }
+
+  /** A computation whose outcome is compared. */
+  private interface Computation {
+    /**
+     * Performs the computation.
+     *
+     * @return the result of the computation
+     */
+    boolean compute();
+  }
+
+  /**
+   * Returns the result of the given computation, or the class of the exception that it throws.
+   *
+   * @param computation a computation
+   * @return "true", "false", or the name of an exception class
+   */
+  private static String outcome(Computation computation) {
+    try {
+      return String.valueOf(computation.compute());
+    } catch (RuntimeException e) {
+      return e.getClass().getName();
+    }
+  }
+
+  /**
+   * Parses and attributes {@link #SOURCE}, and returns the paths to all of its trees other than
+   * the compilation unit, in preorder.
+   *
+   * @return the paths to the trees of {@link #SOURCE}
+   * @throws IOException if the source cannot be parsed
+   */
+  private static List<TreePath> treePaths() throws IOException {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    JavaFileObject file =
+        new SimpleJavaFileObject(URI.create("string:///T.java"), JavaFileObject.Kind.SOURCE) {
+          @Override
+          public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return SOURCE;
+          }
+        };
+    JavacTask task =
+        (JavacTask)
+            compiler.getTask(
+                null,
+                null,
+                null,
+                Arrays.asList("-proc:none"),
+                null,
+                Collections.singletonList(file));
+    Iterable<? extends CompilationUnitTree> cuts = task.parse();
+    task.analyze();
+    List<TreePath> result = new ArrayList<>();
+    for (CompilationUnitTree cut : cuts) {
+      new TreePathScanner<Void, Void>() {
+        @Override
+        public Void scan(Tree tree, Void p) {
+          if (tree != null) {
+            result.add(new TreePath(getCurrentPath(), tree));
+          }
+          return super.scan(tree, p);
+        }
+      }.scan(new TreePath(cut), null);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,39 @@
+package org.checkerframework.afu.annotator.find;
+
+import java.util.Arrays;
+import org.checkerframework.afu.scenelib.el.TypePathEntry;
+import org.junit.Assert;
+import org.junit.Test;
+import org.objectweb.asm.TypePath;
+
+/** Tests that {@link CriterionInterner} merges equal criteria, and only those. */
+public class CriterionInternerTest {
+
+  @Test
+  public void testEqualCriteriaAreMerged() {
+    CriterionInterner interner = new CriterionInterner();
+    Criterion first = Criteria.inClass("p.C", false);
+    Assert.assertSame(first, interner.intern(first));
+    Assert.assertSame(first, interner.intern(Criteria.inClass("p.C", false)));
+    Assert.assertNotSame(first, interner.intern(Criteria.inClass("p.D", false)));
+  }
+
+  @Test
+  public void testGenericArrayLocations() {
+    CriterionInterner interner = new CriterionInterner();
+    Criterion outer = interner.intern(new GenericArrayLocationCriterion());
+    Criterion array = interner.intern(new GenericArrayLocationCriterion(TypePath.fromString("[")));
+    Criterion arrayOfArray =
+        interner.intern(new GenericArrayLocationCriterion(TypePath.fromString("[[")));
+    Assert.assertNotSame(outer, array);
+    Assert.assertNotSame(array, arrayOfArray);
+    // The same location, whether given as a type path or as a list of entries.
+    Assert.assertSame(
+        array,
+        interner.intern(
+            new GenericArrayLocationCriterion(Arrays.asList(TypePathEntry.ARRAY_ELEMENT))));
+    Assert.assertSame(
+        arrayOfArray,
+        interner.intern(new GenericArrayLocationCriterion(TypePath.fromString("[["))));
+  }
+}
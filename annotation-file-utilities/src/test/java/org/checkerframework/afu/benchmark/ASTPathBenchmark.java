@@ -0,0 +1,133 @@
+package org.checkerframework.afu.benchmark;
+
+import com.sun.source.tree.Tree;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.LongSupplier;
+import org.checkerframework.afu.scenelib.io.ASTPath;
+
+/**
+ * Measures the time and allocation of {@link ASTPath#compareTo} and {@link ASTPath#hashCode}, which
+ * the annotator calls when it sorts insertions and looks them up in hashed collections.
+ *
+ * <p>Invoke as:
+ *
+ * <pre>
+ * java ASTPathBenchmark [<i>paths</i>]
+ * </pre>
+ */
+public class ASTPathBenchmark {
+
+  /** The entries from which the paths are built. */
+  private static final ASTPath.ASTEntry[] ENTRIES = {
+    new ASTPath.ASTEntry(Tree.Kind.BLOCK, ASTPath.STATEMENT, 0),
+    new ASTPath.ASTEntry(Tree.Kind.BLOCK, ASTPath.STATEMENT, 1),
+    new ASTPath.ASTEntry(Tree.Kind.VARIABLE, ASTPath.INITIALIZER),
+    new ASTPath.ASTEntry(Tree.Kind.VARIABLE, ASTPath.TYPE),
+    new ASTPath.ASTEntry(Tree.Kind.METHOD_INVOCATION, ASTPath.ARGUMENT, 0),
+    new ASTPath.ASTEntry(Tree.Kind.PARAMETERIZED_TYPE, ASTPath.TYPE_ARGUMENT, 0),
+    new ASTPath.ASTEntry(Tree.Kind.NEW_ARRAY, ASTPath.TYPE, 0),
+    new ASTPath.ASTEntry(Tree.Kind.NEW_ARRAY, ASTPath.TYPE, 1),
+  };
+
+  /** Do not instantiate. */
+  private ASTPathBenchmark() {
+    throw new Error("Do not instantiate");
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the number of paths (optional)
+   */
+  public static void main(String[] args) {
+    int count = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    List<ASTPath> paths = generate(count);
+    System.out.printf("%d paths%n", count);
+
+    // Warm up, so that both operations are compiled.
+    for (int round = 0; round < 5; round++) {
+      sort(paths);
+      hash(paths);
+    }
+
+    report("compareTo", () -> sort(paths));
+    report("hashCode", () -> hash(paths));
+  }
+
+  /**
+   * Sorts a copy of the paths, and returns the number of comparisons.
+   *
+   * @param paths the paths to sort
+   * @return the number of calls to {@link ASTPath#compareTo}
+   */
+  private static long sort(List<ASTPath> paths) {
+    List<ASTPath> copy = new ArrayList<>(paths);
+    long[] calls = new long[1];
+    Collections.sort(
+        copy,
+        (p1, p2) -> {
+          calls[0]++;
+          return p1.compareTo(p2);
+        });
+    return calls[0];
+  }
+
+  /**
+   * Hashes each path many times, and returns the number of calls.
+   *
+   * @param paths the paths to hash
+   * @return the number of calls to {@link ASTPath#hashCode}
+   */
+  private static long hash(List<ASTPath> paths) {
+    int sum = 0;
+    long calls = 0;
+    for (int i = 0; i < 20; i++) {
+      for (ASTPath path : paths) {
+        sum += path.hashCode();
+        calls++;
+      }
+    }
+    if (sum == 42) {
+      System.out.println();
+    }
+    return calls;
+  }
+
+  /**
+   * Runs one operation of the benchmark and prints its time and allocation per call.
+   *
+   * @param name the name of the operation
+   * @param operation runs the operation and returns the number of calls it made
+   */
+  private static void report(String name, LongSupplier operation) {
+    Measurement<Long> m = Measurement.allocated(operation::getAsLong);
+    long calls = m.result;
+    System.out.printf(
+        "%-10s %10.1f ns/call %10.1f bytes/call%n",
+        name, (double) m.nanos / calls, (double) m.bytes / calls);
+  }
+
+  /**
+   * Returns paths of 3 to 10 entries, many of which share a prefix, as the paths within one method
+   * do.
+   *
+   * @param count the number of paths
+   * @return the paths
+   */
+  private static List<ASTPath> generate(int count) {
+    Random random = new Random(0);
+    List<ASTPath> paths = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      ASTPath path = ASTPath.empty().extend(new ASTPath.ASTEntry(Tree.Kind.METHOD, ASTPath.BODY));
+      int length = 2 + random.nextInt(8);
+      for (int j = 0; j < length; j++) {
+        path = path.extend(ENTRIES[random.nextInt(ENTRIES.length)]);
+      }
+      paths.add(path);
+    }
+    return paths;
+  }
+}
@@ -0,0 +1,136 @@
+package org.checkerframework.afu.benchmark;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.checkerframework.afu.scenelib.AnnotationInterner;
+import org.checkerframework.afu.scenelib.el.AScene;
+import org.checkerframework.afu.scenelib.io.IndexFileParser;
+import org.checkerframework.afu.scenelib.io.ParseException;
+
+/**
+ * Reports the heap that a scene read by {@link IndexFileParser} retains, and the time to read it,
+ * with and without an {@link AnnotationInterner}.
+ *
+ * <p>Invoke as:
+ *
+ * <pre>
+ * java -Xmx2g AnnotationInternerBenchmark [<i>classes</i> | <i>file.jaif</i>]
+ * </pre>
+ *
+ * If no index file is given, one with the given number of classes (by default 20000) is generated.
+ * Like the output of type inference, it contains a few distinct annotations, each written many
+ * times.
+ */
+public class AnnotationInternerBenchmark {
+
+  /** Do not instantiate. */
+  private AnnotationInternerBenchmark() {
+    throw new Error("Do not instantiate");
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the number of classes or an index file (optional)
+   * @throws IOException if the index file cannot be read
+   */
+  public static void main(String[] args) throws IOException {
+    String text;
+    if (args.length > 0 && args[0].endsWith(".jaif")) {
+      text = new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8);
+    } else {
+      text = generate(args.length > 0 ? Integer.parseInt(args[0]) : 20000);
+    }
+    System.out.printf("%d characters%n", text.length());
+
+    // Warm up, so that both variants are compiled.
+    for (int round = 0; round < 3; round++) {
+      parse(text, new AScene());
+      parse(text, new AScene((AnnotationInterner) null));
+    }
+
+    long plain = report("not interned", text, false);
+    long interned = report("interned", text, true);
+    System.out.printf(
+        "saved %.1f MB (%.0f%%)%n",
+        (plain - interned) / 1e6, 100.0 * (plain - interned) / plain);
+  }
+
+  /**
+   * Reads the index file into a new scene, and prints the time that took and the heap that the
+   * scene retains.
+   *
+   * @param name the name of the variant
+   * @param text an index file
+   * @param intern whether the scene has an intern pool
+   * @return the number of bytes that the scene retains
+   */
+  private static long report(String name, String text, boolean intern) {
+    Measurement<AScene> m =
+        Measurement.retained(
+            () -> {
+              AScene scene = new AScene(intern ? new AnnotationInterner() : null);
+              parse(text, scene);
+              return scene;
+            });
+    System.out.printf("%-14s %8.1f ms %8.1f MB retained%n", name, m.nanos / 1e6, m.bytes / 1e6);
+    if (m.result.classes.isEmpty()) {
+      System.out.println("empty scene");
+    }
+    return m.bytes;
+  }
+
+  /**
+   * Parses the given text into the given scene.
+   *
+   * @param text an index file
+   * @param scene the scene into which to read the index file
+   */
+  private static void parse(String text, AScene scene) {
+    try {
+      IndexFileParser.parse(
+          new LineNumberReader(new StringReader(text)), "AnnotationInternerBenchmark", scene);
+    } catch (IOException | ParseException e) {
+      throw new Error(e);
+    }
+  }
+
+  /**
+   * Returns an index file with the given number of classes, each of which has fields, methods, and
+   * parameters annotated with a few distinct annotations.
+   *
+   * @param classes the number of classes
+   * @return an index file
+   */
+  private static String generate(int classes) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("package q:\n");
+    sb.append("annotation @Nullable: @java.lang.annotation.Retention(value=RUNTIME)\n");
+    sb.append("annotation @NonNull: @java.lang.annotation.Retention(value=RUNTIME)\n");
+    sb.append("annotation @Pure: @java.lang.annotation.Retention(value=RUNTIME)\n");
+    sb.append("annotation @EnsuresNonNull: @java.lang.annotation.Retention(value=RUNTIME)\n");
+    sb.append("  String[] value\n\n");
+    for (int c = 0; c < classes; c++) {
+      sb.append("class C").append(c).append(":\n");
+      for (int f = 0; f < 4; f++) {
+        sb.append("  field f").append(f).append(":\n    type: @Nullable\n");
+      }
+      for (int m = 0; m < 8; m++) {
+        sb.append("  method m").append(m).append("(Ljava/lang/Object;Ljava/lang/String;)");
+        sb.append("Ljava/lang/Object;: @Pure");
+        if (m % 4 == 0) {
+          sb.append(" @EnsuresNonNull(value={\"f0\"})");
+        }
+        sb.append("\n    return: @NonNull\n");
+        sb.append("    parameter #0:\n      type: @Nullable\n");
+        sb.append("    parameter #1:\n      type: @NonNull\n");
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+}
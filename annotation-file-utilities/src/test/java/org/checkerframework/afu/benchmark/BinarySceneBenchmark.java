@@ -0,0 +1,106 @@
+package org.checkerframework.afu.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.checkerframework.afu.scenelib.el.AScene;
+import org.checkerframework.afu.scenelib.io.BinarySceneReader;
+import org.checkerframework.afu.scenelib.io.BinarySceneWriter;
+import org.checkerframework.afu.scenelib.io.IndexFileParser;
+
+/**
+ * Compares the time to load a scene from an index file with {@link IndexFileParser} with the time
+ * to load it from the equivalent binary scene file with {@link BinarySceneReader}, both for the
+ * whole scene and for a single class.
+ *
+ * <p>Invoke as:
+ *
+ * <pre>
+ * java BinarySceneBenchmark [<i>classes</i> [<i>iterations</i>]]
+ * </pre>
+ *
+ * The index file is generated by {@link IndexFileLexerBenchmark}; it has 20000 classes by default.
+ */
+public class BinarySceneBenchmark {
+
+  /** Do not instantiate. */
+  private BinarySceneBenchmark() {
+    throw new Error("Do not instantiate");
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the number of classes (optional), followed by the number of iterations (optional)
+   * @throws IOException if a temporary file cannot be written or read
+   */
+  public static void main(String[] args) throws IOException {
+    int classes = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    Path jaif = Files.createTempFile("BinarySceneBenchmark", ".jaif");
+    Path bin = Files.createTempFile("BinarySceneBenchmark", ".bin");
+    try {
+      Files.write(jaif, IndexFileLexerBenchmark.generate(classes).getBytes(StandardCharsets.UTF_8));
+      AScene scene = new AScene();
+      IndexFileParser.parseFile(jaif.toString(), scene);
+      BinarySceneWriter.write(scene, bin.toString());
+      System.out.printf(
+          "%d classes, %d iterations; index file %d bytes, binary scene file %d bytes%n",
+          classes, iterations, Files.size(jaif), Files.size(bin));
+
+      String oneClass = "p.C" + (classes / 2);
+      // Warm up, so that all variants are compiled.
+      for (int round = 0; round < 3; round++) {
+        IndexFileParser.parseFile(jaif.toString(), new AScene());
+        BinarySceneReader.read(bin.toString(), new AScene());
+      }
+      report(
+          "index file", iterations, () -> IndexFileParser.parseFile(jaif.toString(), new AScene()));
+      report("binary", iterations, () -> BinarySceneReader.read(bin.toString(), new AScene()));
+      report(
+          "index file, 1 class",
+          iterations,
+          () -> IndexFileParser.parseFile(jaif.toString(), new AScene(), oneClass::equals));
+      report(
+          "binary, 1 class",
+          iterations,
+          () -> BinarySceneReader.read(bin.toString(), new AScene(), oneClass::equals));
+    } finally {
+      Files.delete(jaif);
+      Files.delete(bin);
+    }
+  }
+
+  /** A way of loading a scene. */
+  private interface Load {
+    /**
+     * Loads the scene.
+     *
+     * @throws IOException if the scene cannot be read
+     */
+    void run() throws IOException;
+  }
+
+  /**
+   * Runs one variant of the benchmark and prints its time and allocation per load.
+   *
+   * @param name the name of the variant
+   * @param iterations the number of times to load the scene
+   * @param variant the variant
+   * @throws IOException if the scene cannot be read
+   */
+  private static void report(String name, int iterations, Load variant) throws IOException {
+    Measurement<Void> m =
+        Measurement.allocated(
+            () -> {
+              for (int it = 0; it < iterations; it++) {
+                variant.run();
+              }
+              return null;
+            });
+    System.out.printf(
+        "%-20s %10.2f ms/load %10.1f MB/load%n",
+        name, m.nanos / 1e6 / iterations, m.bytes / 1e6 / iterations);
+  }
+}
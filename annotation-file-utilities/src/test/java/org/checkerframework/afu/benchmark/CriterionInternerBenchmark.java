@@ -0,0 +1,133 @@
+package org.checkerframework.afu.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import org.checkerframework.afu.annotator.find.CriterionInterner;
+import org.checkerframework.afu.annotator.find.Insertion;
+import org.checkerframework.afu.annotator.specification.IndexFileSpecification;
+import org.plumelib.util.FileIOException;
+
+/**
+ * Reports the heap that the insertions built by {@link IndexFileSpecification} retain, and the
+ * time to build them, with and without a {@link CriterionInterner}.
+ *
+ * <p>Invoke as:
+ *
+ * <pre>
+ * java -Xmx8g CriterionInternerBenchmark [<i>classes</i> | <i>file.jaif</i>]
+ * </pre>
+ *
+ * If no index file is given, one with the given number of classes (by default 2000, which gives
+ * 1,000,000 annotations) is generated. Each class has 10 methods, and each method has 50
+ * annotations, most of them at AST paths that recur in every method.
+ */
+public class CriterionInternerBenchmark {
+
+  /** Do not instantiate. */
+  private CriterionInternerBenchmark() {
+    throw new Error("Do not instantiate");
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the number of classes or an index file (optional)
+   * @throws IOException if the index file cannot be read or written
+   */
+  public static void main(String[] args) throws IOException {
+    Path file;
+    if (args.length > 0 && args[0].endsWith(".jaif")) {
+      file = Paths.get(args[0]);
+    } else {
+      file = Files.createTempFile("CriterionInternerBenchmark", ".jaif");
+      file.toFile().deleteOnExit();
+      String text = generate(args.length > 0 ? Integer.parseInt(args[0]) : 2000);
+      Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+    }
+    // There are no class files for the generated classes.
+    IndexFileSpecification.noAsm = true;
+
+    // Warm up, so that both variants are compiled.
+    parse(file, false);
+    parse(file, true);
+
+    long plain = report("not interned", file, false);
+    long interned = report("interned", file, true);
+    System.out.printf(
+        "saved %.1f MB (%.0f%%)%n",
+        (plain - interned) / 1e6, 100.0 * (plain - interned) / plain);
+  }
+
+  /**
+   * Builds the insertions of the index file, and prints the time that took and the heap that the
+   * insertions and their scene retain.
+   *
+   * @param name the name of the variant
+   * @param file an index file
+   * @param intern whether the criteria of the insertions are interned
+   * @return the number of bytes that the insertions and their scene retain
+   */
+  private static long report(String name, Path file, boolean intern) {
+    Measurement<List<Insertion>> m = Measurement.retained(() -> parse(file, intern));
+    System.out.printf(
+        "%-14s %8d insertions %8.1f ms %8.1f MB retained%n",
+        name, m.result.size(), m.nanos / 1e6, m.bytes / 1e6);
+    return m.bytes;
+  }
+
+  /**
+   * Builds the insertions of the given index file.
+   *
+   * @param file an index file
+   * @param intern whether to intern the criteria of the insertions
+   * @return the insertions
+   */
+  private static List<Insertion> parse(Path file, boolean intern) {
+    IndexFileSpecification spec =
+        new IndexFileSpecification(
+            file.toString(), className -> true, intern ? new CriterionInterner() : null);
+    try {
+      return spec.parse();
+    } catch (FileIOException e) {
+      throw new Error(e);
+    }
+  }
+
+  /**
+   * Returns an index file with the given number of classes, each of which has methods whose
+   * return types, parameters, and expressions are annotated.
+   *
+   * @param classes the number of classes
+   * @return an index file
+   */
+  private static String generate(int classes) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("package q:\n");
+    sb.append("annotation @Nullable: @java.lang.annotation.Target(value={TYPE_USE})\n");
+    sb.append("annotation @NonNull: @java.lang.annotation.Target(value={TYPE_USE})\n\n");
+    for (int c = 0; c < classes; c++) {
+      sb.append("class C").append(c).append(":\n");
+      for (int m = 0; m < 10; m++) {
+        sb.append("  method m").append(m).append("(Ljava/util/List;Ljava/lang/String;)");
+        sb.append("Ljava/util/List;:\n");
+        sb.append("    return: @NonNull\n      inner-type 3, 0: @Nullable\n");
+        sb.append("    parameter #0:\n      type: @Nullable\n        inner-type 3, 0: @NonNull\n");
+        sb.append("    parameter #1:\n      type: @NonNull\n");
+        for (int s = 0; s < 15; s++) {
+          sb.append("    insert-annotation Method.body, Block.statement ").append(s);
+          sb.append(", Variable.type, ParameterizedType.typeArgument 0: @Nullable\n");
+          sb.append("    insert-annotation Method.body, Block.statement ").append(s);
+          sb.append(", Variable.type: @NonNull\n");
+          sb.append("    insert-annotation Method.body, Block.statement ").append(s);
+          sb.append(", Variable.initializer, NewClass.identifier: @NonNull\n");
+        }
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+}
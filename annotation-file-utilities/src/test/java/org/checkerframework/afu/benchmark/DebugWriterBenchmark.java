@@ -0,0 +1,187 @@
+package org.checkerframework.afu.benchmark;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TreeScanner;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import org.checkerframework.afu.annotator.Main;
+import org.checkerframework.afu.scenelib.io.DebugWriter;
+
+/**
+ * Compares the cost of a disabled {@link DebugWriter} call whose arguments are computed eagerly
+ * with that of one whose message is computed by a {@link java.util.function.Supplier}, and with
+ * one that is guarded by {@link DebugWriter#isEnabled}. The message is the one that {@code
+ * TreeFinder.scan} prints for every tree node.
+ *
+ * <p>Invoke as:
+ *
+ * <pre>
+ * java DebugWriterBenchmark [<i>iterations</i>]
+ * </pre>
+ */
+public class DebugWriterBenchmark {
+
+  /** The source code whose trees are formatted. */
+  private static final String SOURCE =
+      String.join(
+          "\n",
+          "import java.util.*;",
+          "class Bench<T extends Comparable<T>> {",
+          "  Map<String, List<T>> map = new HashMap<>();",
+          "  int count(List<? extends T> list, T key) {",
+          "    int n = 0;",
+          "    for (T t : list) {",
+          "      if (t.compareTo(key) == 0 && !map.containsKey(t.toString())) {",
+          "        n += (int) Math.max(1, list.size() / 2);",
+          "      }",
+          "    }",
+          "    Runnable r = () -> map.put(\"x\", new ArrayList<T>(list));",
+          "    return n instanceof Integer ? n : -1;",
+          "  }",
+          "}");
+
+  /** A disabled DebugWriter. */
+  private static final DebugWriter dbug = new DebugWriter(false);
+
+  /** Do not instantiate. */
+  private DebugWriterBenchmark() {
+    throw new Error("Do not instantiate");
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the number of iterations over all the tree nodes (optional)
+   * @throws IOException if the source code cannot be parsed
+   */
+  public static void main(String[] args) throws IOException {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    List<Tree> nodes = parse();
+    System.out.printf("%d tree nodes, %d iterations%n", nodes.size(), iterations);
+
+    // Warm up, so that all variants are compiled.
+    for (int round = 0; round < 3; round++) {
+      eager(nodes, iterations / 10);
+      lazy(nodes, iterations / 10);
+      guarded(nodes, iterations / 10);
+    }
+
+    report("eager arguments", nodes.size() * (long) iterations, () -> eager(nodes, iterations));
+    report("Supplier", nodes.size() * (long) iterations, () -> lazy(nodes, iterations));
+    report("isEnabled guard", nodes.size() * (long) iterations, () -> guarded(nodes, iterations));
+  }
+
+  /**
+   * Calls the disabled DebugWriter with eagerly-computed arguments.
+   *
+   * @param nodes the trees to format
+   * @param iterations how many times to process each tree
+   */
+  private static void eager(List<Tree> nodes, int iterations) {
+    for (int it = 0; it < iterations; it++) {
+      for (Tree node : nodes) {
+        dbug.debug(
+            "TreeFinder.scan(kind=%s, %d insertions): %s%n",
+            node.getKind(), it, Main.treeToString(node));
+      }
+    }
+  }
+
+  /**
+   * Calls the disabled DebugWriter with a Supplier.
+   *
+   * @param nodes the trees to format
+   * @param iterations how many times to process each tree
+   */
+  private static void lazy(List<Tree> nodes, int iterations) {
+    for (int it = 0; it < iterations; it++) {
+      int pending = it;
+      for (Tree node : nodes) {
+        dbug.debug(
+            () ->
+                String.format(
+                    "TreeFinder.scan(kind=%s, %d insertions): %s%n",
+                    node.getKind(), pending, Main.treeToString(node)));
+      }
+    }
+  }
+
+  /**
+   * Calls the disabled DebugWriter only if it is enabled.
+   *
+   * @param nodes the trees to format
+   * @param iterations how many times to process each tree
+   */
+  private static void guarded(List<Tree> nodes, int iterations) {
+    for (int it = 0; it < iterations; it++) {
+      for (Tree node : nodes) {
+        if (dbug.isEnabled()) {
+          dbug.debug(
+              "TreeFinder.scan(kind=%s, %d insertions): %s%n",
+              node.getKind(), it, Main.treeToString(node));
+        }
+      }
+    }
+  }
+
+  /**
+   * Runs one variant of the benchmark and prints its time and allocation per call.
+   *
+   * @param name the name of the variant
+   * @param calls the number of DebugWriter calls that the variant makes
+   * @param variant the variant
+   */
+  private static void report(String name, long calls, Runnable variant) {
+    Measurement<Void> m =
+        Measurement.allocated(
+            () -> {
+              variant.run();
+              return null;
+            });
+    System.out.printf(
+        "%-16s %10.1f ns/call %10.1f bytes/call%n",
+        name, (double) m.nanos / calls, (double) m.bytes / calls);
+  }
+
+  /**
+   * Parses {@link #SOURCE} and returns all of its trees.
+   *
+   * @return all the trees in {@link #SOURCE}
+   * @throws IOException if the source code cannot be parsed
+   */
+  private static List<Tree> parse() throws IOException {
+    JavaFileObject file =
+        new SimpleJavaFileObject(URI.create("string:///Bench.java"), JavaFileObject.Kind.SOURCE) {
+          @Override
+          public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return SOURCE;
+          }
+        };
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    JavacTask task =
+        (JavacTask)
+            compiler.getTask(null, null, null, null, null, Collections.singletonList(file));
+    List<Tree> nodes = new ArrayList<>();
+    for (CompilationUnitTree cut : task.parse()) {
+      new TreeScanner<Void, Void>() {
+        @Override
+        public Void scan(Tree tree, Void p) {
+          if (tree != null) {
+            nodes.add(tree);
+          }
+          return super.scan(tree, p);
+        }
+      }.scan(cut, null);
+    }
+    return nodes;
+  }
+}
@@ -0,0 +1,191 @@
+package org.checkerframework.afu.benchmark;
+
+import java.io.IOException;
+import java.io.LineNumberReader;
+import java.io.StreamTokenizer;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import org.checkerframework.afu.scenelib.el.AScene;
+import org.checkerframework.afu.scenelib.io.IndexFileLexer;
+import org.checkerframework.afu.scenelib.io.IndexFileParser;
+import org.checkerframework.afu.scenelib.io.ParseException;
+
+/**
+ * Compares the throughput of {@link IndexFileLexer} with that of the {@link StreamTokenizer} that
+ * {@link IndexFileParser} formerly used, configured as the parser configured it, and reports the
+ * throughput of the whole parser. Each tokenizer reads from a {@link LineNumberReader}, as in the
+ * parser.
+ *
+ * <p>Invoke as:
+ *
+ * <pre>
+ * java IndexFileLexerBenchmark [<i>iterations</i> [<i>file.jaif</i>]]
+ * </pre>
+ *
+ * If no index file is given, one with 2000 classes is generated.
+ */
+public class IndexFileLexerBenchmark {
+
+  /** Do not instantiate. */
+  private IndexFileLexerBenchmark() {
+    throw new Error("Do not instantiate");
+  }
+
+  /**
+   * Runs the benchmark.
+   *
+   * @param args the number of iterations (optional), followed by an index file (optional)
+   * @throws IOException if the index file cannot be read
+   */
+  public static void main(String[] args) throws IOException {
+    int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+    String text =
+        args.length > 1
+            ? new String(Files.readAllBytes(Paths.get(args[1])), StandardCharsets.UTF_8)
+            : generate(2000);
+    System.out.printf("%d characters, %d iterations%n", text.length(), iterations);
+
+    // Warm up, so that all variants are compiled.
+    for (int round = 0; round < 3; round++) {
+      streamTokenizer(text);
+      indexFileLexer(text);
+      parse(text);
+    }
+
+    long chars = text.length() * (long) iterations;
+    report(
+        "StreamTokenizer",
+        chars,
+        () -> {
+          for (int it = 0; it < iterations; it++) {
+            streamTokenizer(text);
+          }
+        });
+    report(
+        "IndexFileLexer",
+        chars,
+        () -> {
+          for (int it = 0; it < iterations; it++) {
+            indexFileLexer(text);
+          }
+        });
+    report(
+        "IndexFileParser",
+        chars,
+        () -> {
+          for (int it = 0; it < iterations; it++) {
+            parse(text);
+          }
+        });
+  }
+
+  /**
+   * Tokenizes the given text with a StreamTokenizer.
+   *
+   * @param text an index file
+   * @return the number of tokens
+   */
+  private static int streamTokenizer(String text) {
+    StreamTokenizer st = new StreamTokenizer(new LineNumberReader(new StringReader(text)));
+    st.slashSlashComments(true);
+    st.ordinaryChar('.');
+    st.ordinaryChar('/');
+    st.wordChars('-', '-');
+    st.wordChars('0', '9');
+    st.wordChars('_', '_');
+    st.wordChars('$', '$');
+    int tokens = 0;
+    try {
+      while (st.nextToken() != StreamTokenizer.TT_EOF) {
+        tokens++;
+      }
+    } catch (IOException e) {
+      throw new Error(e);
+    }
+    return tokens;
+  }
+
+  /**
+   * Tokenizes the given text with an IndexFileLexer.
+   *
+   * @param text an index file
+   * @return the number of tokens
+   */
+  private static int indexFileLexer(String text) {
+    IndexFileLexer lexer = new IndexFileLexer(new LineNumberReader(new StringReader(text)));
+    int tokens = 0;
+    try {
+      while (lexer.nextToken() != IndexFileLexer.TT_EOF) {
+        tokens++;
+      }
+    } catch (IOException e) {
+      throw new Error(e);
+    }
+    return tokens;
+  }
+
+  /**
+   * Parses the given text into a new scene.
+   *
+   * @param text an index file
+   */
+  private static void parse(String text) {
+    try {
+      IndexFileParser.parse(
+          new LineNumberReader(new StringReader(text)), "IndexFileLexerBenchmark", new AScene());
+    } catch (IOException | ParseException e) {
+      throw new Error(e);
+    }
+  }
+
+  /**
+   * Runs one variant of the benchmark and prints its throughput and allocation per character.
+   *
+   * @param name the name of the variant
+   * @param chars the number of characters that the variant reads
+   * @param variant the variant
+   */
+  private static void report(String name, long chars, Runnable variant) {
+    Measurement<Void> m =
+        Measurement.allocated(
+            () -> {
+              variant.run();
+              return null;
+            });
+    System.out.printf(
+        "%-16s %10.1f Mchars/s %10.2f bytes/char%n",
+        name, chars * 1000.0 / m.nanos, (double) m.bytes / chars);
+  }
+
+  /**
+   * Returns an index file with the given number of classes, each of which has annotated fields,
+   * methods, parameters, locals, and type arguments.
+   *
+   * @param classes the number of classes
+   * @return an index file
+   */
+  static String generate(int classes) {
+    StringBuilder sb = new StringBuilder();
+    sb.append("package p:\n");
+    sb.append("annotation @A: @java.lang.annotation.Retention(value=RUNTIME)\n");
+    sb.append("  int value\n  String name\n  double weight\n  long[] ids\n\n");
+    sb.append("annotation @B: @java.lang.annotation.Retention(value=CLASS)\n\n");
+    for (int c = 0; c < classes; c++) {
+      sb.append("// class number ").append(c).append('\n');
+      sb.append("class C").append(c).append(": @B\n");
+      sb.append("  field f").append(c).append(": @A(value=").append(c).append(")\n");
+      sb.append("    type: @B\n      inner-type 3, 0: @B\n");
+      sb.append("  method m").append(c).append("(ILjava/lang/String;[J)Ljava/util/List;: @B\n");
+      sb.append("    return: @A(value=-1, name=\"m\\t").append(c).append("\")\n");
+      sb.append("      inner-type 3, 0, 2, 0: @B\n");
+      sb.append("    parameter #0:\n      type: @A(weight=1.0E-5, ids={1L, ")
+          .append(c * 1000L)
+          .append("L})\n");
+      sb.append("    local 2 #5+12:\n      type: @B\n");
+      sb.append("    new *0:\n      inner-type 0, 0: @A(weight=-0.25)\n\n");
+    }
+    return sb.toString();
+  }
+}
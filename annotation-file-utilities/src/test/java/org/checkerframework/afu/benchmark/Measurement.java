@@ -0,0 +1,104 @@
+package org.checkerframework.afu.benchmark;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+
+/**
+ * The time that a piece of work of a benchmark took, and either the bytes that it allocated or the
+ * bytes of heap that its result retains. The {@code report} method of each benchmark prints these
+ * in its own units.
+ *
+ * @param <T> the type of the result of the work
+ */
+final class Measurement<T> {
+
+  /** A piece of work to measure. */
+  interface Work<T, E extends Exception> {
+    /**
+     * Does the work.
+     *
+     * @return the result of the work
+     * @throws E if the work fails
+     */
+    T run() throws E;
+  }
+
+  /** The result of the work. */
+  final T result;
+
+  /** The time that the work took, in nanoseconds. */
+  final long nanos;
+
+  /** The bytes that the work allocated, or that its result retains. */
+  final long bytes;
+
+  /**
+   * Creates a new Measurement.
+   *
+   * @param result the result of the work
+   * @param nanos the time that the work took, in nanoseconds
+   * @param bytes the bytes that the work allocated, or that its result retains
+   */
+  private Measurement(T result, long nanos, long bytes) {
+    this.result = result;
+    this.nanos = nanos;
+    this.bytes = bytes;
+  }
+
+  /**
+   * Does the given work in the current thread, and measures its time and the bytes that it
+   * allocates.
+   *
+   * @param <T> the type of the result of the work
+   * @param <E> the type of exception that the work throws
+   * @param work the work
+   * @return the measurement of {@code work}
+   * @throws E if the work fails
+   */
+  @SuppressWarnings("deprecation") // Thread.getId(), whose replacement is not in JDK 8
+  static <T, E extends Exception> Measurement<T> allocated(Work<T, E> work) throws E {
+    com.sun.management.ThreadMXBean bean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    long threadId = Thread.currentThread().getId();
+    long bytesBefore = bean.getThreadAllocatedBytes(threadId);
+    long nanosBefore = System.nanoTime();
+    T result = work.run();
+    long nanos = System.nanoTime() - nanosBefore;
+    long bytes = bean.getThreadAllocatedBytes(threadId) - bytesBefore;
+    return new Measurement<>(result, nanos, bytes);
+  }
+
+  /**
+   * Does the given work, and measures its time and the heap that its result retains after garbage
+   * collection.
+   *
+   * @param <T> the type of the result of the work
+   * @param <E> the type of exception that the work throws
+   * @param work the work
+   * @return the measurement of {@code work}
+   * @throws E if the work fails
+   */
+  static <T, E extends Exception> Measurement<T> retained(Work<T, E> work) throws E {
+    MemoryMXBean bean = ManagementFactory.getMemoryMXBean();
+    long before = usedHeap(bean);
+    long nanosBefore = System.nanoTime();
+    T result = work.run();
+    long nanos = System.nanoTime() - nanosBefore;
+    long bytes = usedHeap(bean) - before;
+    // The result is reachable until here, because the new Measurement refers to it.
+    return new Measurement<>(result, nanos, bytes);
+  }
+
+  /**
+   * Returns the size of the heap after garbage collection.
+   *
+   * @param bean the memory bean of this virtual machine
+   * @return the number of bytes used in the heap
+   */
+  private static long usedHeap(MemoryMXBean bean) {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return bean.getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,5 @@
+/**
+ * The classes in this package are benchmarks, not JUnit tests. Run one with the Gradle task {@code
+ * benchmark}, for example {@code ./gradlew benchmark -Pbenchmark=DebugWriterBenchmark}.
+ */
+package org.checkerframework.afu.benchmark;
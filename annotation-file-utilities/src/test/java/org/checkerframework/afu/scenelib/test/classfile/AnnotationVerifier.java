@@ -39,8 +39,8 @@ public class AnnotationVerifier {
    * the class.
    */
   public AnnotationVerifier() {
-    originalVisitor = new ClassRecorder(Opcodes.ASM8);
-    newVisitor = new ClassRecorder(Opcodes.ASM8);
+    originalVisitor = new ClassRecorder(Opcodes.ASM9);
+    newVisitor = new ClassRecorder(Opcodes.ASM9);
   }
 
   /**
@@ -1,10 +1,23 @@
 package org.checkerframework.afu.scenelib.test.classfile;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 import junit.framework.TestResult;
 import junit.framework.TestSuite;
 import org.checkerframework.afu.scenelib.el.AScene;
@@ -30,6 +43,10 @@ import org.objectweb.asm.ClassReader;
  *       file, and check them against the annotations from the index file.
  * </ul>
  *
+ * <p>The insertAll tests insert annotations into a whole jar file or class directory, and check
+ * that the entries without annotations to insert are copied unchanged. The readAll tests read the
+ * annotations of a whole jar file, class directory, or module.
+ *
  * To create a new test, do something like the following with a properly-functioning version of AFU:
  *
  * <ul>
@@ -536,6 +553,238 @@ public class AnnotationsTest {
         nameClass("TestMethodReturnTypeGenericArray.class"));
   }
 
+  /** The names of the entries of the jar file and class directory of the insertAll tests. */
+  private static final String[] insertAllEntryNames = {
+    "README.md",
+    "annotations/tests/classfile/cases/TestClassNonEmpty.class",
+    "annotations/tests/classfile/cases/TestFieldSimple.class"
+  };
+
+  /** The entry of {@link #insertAllEntryNames} that TestFieldSimple.jaif annotates. */
+  private static final String insertAllAnnotatedEntry =
+      "annotations/tests/classfile/cases/TestFieldSimple.class";
+
+  /**
+   * Returns the contents of a jar entry for the insertAll and readAll tests. A class file is read
+   * from {@link #CLASS_FILE_BASE}; any other entry contains some text.
+   *
+   * @param name the name of the entry, such as one of {@link #insertAllEntryNames}
+   * @return the contents of the entry
+   * @throws IOException if the contents cannot be read
+   */
+  private byte[] insertAllEntry(String name) throws IOException {
+    if (!name.endsWith(".class")) {
+      return "Not a class file.\n".getBytes(StandardCharsets.UTF_8);
+    }
+    return Files.readAllBytes(Paths.get(nameClass(name.substring(name.lastIndexOf('/') + 1))));
+  }
+
+  /**
+   * Asserts that the given jar file, written by {@link ClassFileWriter#insertAll}, has the entries
+   * of the insertAll tests, in order; that the annotated class has the annotations of its expected
+   * version; and that all the other entries are unchanged, byte for byte.
+   *
+   * @param dir a temporary directory
+   * @param outputJar the jar file written by {@link ClassFileWriter#insertAll}
+   * @throws IOException if the jar file cannot be read
+   */
+  private void assertInsertedAll(Path dir, Path outputJar) throws IOException {
+    List<String> names = new ArrayList<>();
+    try (ZipInputStream in = new ZipInputStream(Files.newInputStream(outputJar))) {
+      for (ZipEntry entry; (entry = in.getNextEntry()) != null; ) {
+        String name = entry.getName();
+        names.add(name);
+        ByteArrayOutputStream contents = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n; (n = in.read(buffer)) != -1; ) {
+          contents.write(buffer, 0, n);
+        }
+        byte[] expected = insertAllEntry(name);
+        if (name.equals(insertAllAnnotatedEntry)) {
+          Assert.assertFalse(name, Arrays.equals(expected, contents.toByteArray()));
+          Path generated = dir.resolve("TestFieldSimple_Generated.class");
+          Files.write(generated, contents.toByteArray());
+          assertClassAnnotations(
+              nameClass("TestFieldSimple_Expected.class"), generated.toString());
+        } else {
+          Assert.assertArrayEquals(name, expected, contents.toByteArray());
+        }
+      }
+    }
+    Assert.assertEquals(Arrays.asList(insertAllEntryNames), names);
+  }
+
+  /**
+   * Deletes a directory and everything in it.
+   *
+   * @param dir the directory to delete
+   * @throws IOException if the directory cannot be read
+   */
+  private static void deleteDirectory(Path dir) throws IOException {
+    try (Stream<Path> files = Files.walk(dir)) {
+      files.sorted(Comparator.reverseOrder()).forEach(f -> f.toFile().delete());
+    }
+  }
+
+  /** Runs a test that inserts annotations into a whole jar file, using several threads. */
+  @Test
+  public void testInsertAllJar() throws IOException {
+    Path dir = Files.createTempDirectory("AnnotationsTest");
+    try {
+      Path inputJar = dir.resolve("in.jar");
+      try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(inputJar))) {
+        for (String name : insertAllEntryNames) {
+          out.putNextEntry(new ZipEntry(name));
+          out.write(insertAllEntry(name));
+          out.closeEntry();
+        }
+      }
+      Path outputJar = dir.resolve("out.jar");
+      ClassFileWriter.insertAll(
+          createScene(nameIndex("TestFieldSimple.jaif")),
+          inputJar.toString(),
+          outputJar.toString(),
+          true,
+          2);
+      assertInsertedAll(dir, outputJar);
+    } finally {
+      deleteDirectory(dir);
+    }
+  }
+
+  /** Runs a test that inserts annotations into a class directory, from the command line. */
+  @Test
+  public void testInsertAllDirectory() throws IOException {
+    Path dir = Files.createTempDirectory("AnnotationsTest");
+    try {
+      Path classes = dir.resolve("classes");
+      for (String name : insertAllEntryNames) {
+        Path file = classes.resolve(name);
+        Files.createDirectories(file.getParent());
+        Files.write(file, insertAllEntry(name));
+      }
+      Path outputJar = dir.resolve("out.jar");
+      try {
+        ClassFileWriter.main(
+            new String[] {
+              "--output=" + outputJar,
+              "--threads=2",
+              classes.toString(),
+              nameIndex("TestFieldSimple.jaif")
+            });
+      } finally {
+        // The options are static fields, so restore them for the other tests.
+        ClassFileWriter.output = null;
+        ClassFileWriter.threads = 1;
+      }
+      assertInsertedAll(dir, outputJar);
+    } finally {
+      deleteDirectory(dir);
+    }
+  }
+
+  /**
+   * Returns the scene that {@link ClassFileReader#read} reads from the given class files.
+   *
+   * @param classNames the names of class files in {@link #CLASS_FILE_BASE}
+   * @return the annotations of the class files
+   */
+  private AScene readClasses(String... classNames) {
+    AScene scene = new AScene();
+    for (String className : classNames) {
+      readClass(nameClass(className), scene);
+    }
+    return scene;
+  }
+
+  /**
+   * Runs a test that reads the annotations of a whole jar file, using several threads. The jar file
+   * also has a malformed class file, and entries that are not classes, which are skipped.
+   */
+  @Test
+  public void testReadAllJar() throws IOException {
+    Path dir = Files.createTempDirectory("AnnotationsTest");
+    try {
+      String cases = "annotations/tests/classfile/cases/";
+      byte[] fieldSimple = insertAllEntry(cases + "TestFieldSimple_Expected.class");
+      Path jar = dir.resolve("in.jar");
+      try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(jar))) {
+        out.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+        out.write("Manifest-Version: 1.0\n".getBytes(StandardCharsets.UTF_8));
+        out.putNextEntry(new ZipEntry(cases + "Broken.class"));
+        out.write(Arrays.copyOf(fieldSimple, 20));
+        out.putNextEntry(new ZipEntry(cases + "TestClassNonEmpty_Expected.class"));
+        out.write(insertAllEntry(cases + "TestClassNonEmpty_Expected.class"));
+        out.putNextEntry(new ZipEntry(cases + "TestFieldSimple_Expected.class"));
+        out.write(fieldSimple);
+        out.putNextEntry(new ZipEntry("README.md"));
+        out.write(insertAllEntry("README.md"));
+        out.closeEntry();
+      }
+      AScene scene = new AScene();
+      Assert.assertEquals(2, ClassFileReader.readAll(scene, jar.toString(), 2));
+      Assert.assertEquals(
+          readClasses("TestClassNonEmpty_Expected.class", "TestFieldSimple_Expected.class"), scene);
+    } finally {
+      deleteDirectory(dir);
+    }
+  }
+
+  /**
+   * Runs a test that extracts the annotations of a class directory from the command line, into one
+   * index file and into one index file per package.
+   */
+  @Test
+  public void testReadAllPerPackage() throws IOException {
+    Path dir = Files.createTempDirectory("AnnotationsTest");
+    try {
+      Path classes = dir.resolve("classes");
+      for (String className : new String[] {"TestClassNonEmpty", "TestFieldSimple"}) {
+        Path file = classes.resolve("annotations/tests/classfile/cases/" + className + ".class");
+        Files.createDirectories(file.getParent());
+        Files.copy(Paths.get(nameClass(className + "_Expected.class")), file);
+      }
+      Path jaif = dir.resolve("all.jaif");
+      Path packages = dir.resolve("packages");
+      try {
+        ClassFileReader.main(new String[] {"--output=" + jaif, "--threads=2", classes.toString()});
+        ClassFileReader.main(
+            new String[] {"--output=" + packages, "--per-package", classes.toString()});
+      } finally {
+        // The options are static fields, so restore them for the other tests.
+        ClassFileReader.output = null;
+        ClassFileReader.per_package = false;
+        ClassFileReader.threads = 1;
+      }
+      List<String> files = new ArrayList<>();
+      try (Stream<Path> list = Files.list(packages)) {
+        list.forEach(f -> files.add(f.getFileName().toString()));
+      }
+      Assert.assertEquals(Arrays.asList("annotations.tests.classfile.cases.jaif"), files);
+      AScene scene = createScene(jaif.toString());
+      Assert.assertEquals(scene, createScene(packages.resolve(files.get(0)).toString()));
+      Assert.assertFalse(
+          scene.classes.get("annotations.tests.classfile.cases.TestFieldSimple").isEmpty());
+    } finally {
+      deleteDirectory(dir);
+    }
+  }
+
+  /** Runs a test that reads the annotations of a module of the running JDK. */
+  @Test
+  public void testReadAllJrt() throws IOException {
+    if (System.getProperty("java.specification.version").startsWith("1.")) {
+      // There are no modules before JDK 9.
+      return;
+    }
+    AScene scene = new AScene();
+    Assert.assertTrue(ClassFileReader.readAll(scene, "jrt:/java.base", 2) > 1000);
+    Assert.assertFalse(scene.classes.get("java.lang.Deprecated").tlAnnotationsHere.isEmpty());
+    // A sealed class, in JDK 17 and later.
+    Assert.assertNotNull(scene.classes.get("java.lang.reflect.Executable"));
+    Assert.assertNull(scene.classes.get("module-info"));
+  }
+
   //   // Call javap programmatically.
   //   public static void javap(InputStream is, PrintStream ps) {
   //     JavapEnvironment env = new JavapEnvironment();
@@ -1,5 +1,6 @@
 package org.checkerframework.afu.scenelib.test.classfile;
 
+import com.sun.source.tree.Tree;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -7,15 +8,22 @@ import java.io.LineNumberReader;
 import java.io.StringWriter;
 import java.lang.annotation.RetentionPolicy;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.TreeSet;
 import org.checkerframework.afu.scenelib.Annotation;
 import org.checkerframework.afu.scenelib.AnnotationBuilder;
 import org.checkerframework.afu.scenelib.AnnotationFactory;
+import org.checkerframework.afu.scenelib.AnnotationInterner;
 import org.checkerframework.afu.scenelib.Annotations;
 import org.checkerframework.afu.scenelib.ArrayBuilder;
 import org.checkerframework.afu.scenelib.el.AClass;
@@ -35,6 +43,9 @@ import org.checkerframework.afu.scenelib.field.ArrayAFT;
 import org.checkerframework.afu.scenelib.field.BasicAFT;
 import org.checkerframework.afu.scenelib.field.ClassTokenAFT;
 import org.checkerframework.afu.scenelib.field.EnumAFT;
+import org.checkerframework.afu.scenelib.io.ASTPath;
+import org.checkerframework.afu.scenelib.io.BinarySceneReader;
+import org.checkerframework.afu.scenelib.io.BinarySceneWriter;
 import org.checkerframework.afu.scenelib.io.IndexFileParser;
 import org.checkerframework.afu.scenelib.io.IndexFileWriter;
 import org.checkerframework.checker.nullness.qual.NonNull;
@@ -534,6 +545,250 @@ public class TestSceneLib {
     Assert.assertEquals(scene3, scene4);
   }
 
+  @Test
+  public void testParseFloatingPoint() throws Exception {
+    String index =
+        "package: annotation @Num: @Retention(CLASS)\n"
+            + "  float f\n  double d\n  long l\n  float[] fs\n  double[] ds\n"
+            + "class Bar: @Num(f=1.0E-5, d=-2.5E300, l=9007199254740993L,"
+            + " fs={3.4028235E38, 1.5f, NaN, -Infinity, 0.0f/0.0f},"
+            + " ds={0.1, 4.9E-324, Infinity, 0.0/0.0, 1e3})";
+    AScene scene = newScene();
+    IndexFileParser.parseString(index, "testParseFloatingPoint()", scene);
+    Annotation a = scene.classes.get("Bar").lookup("Num");
+    Assert.assertEquals(1.0E-5f, a.getFieldValue("f"));
+    Assert.assertEquals(-2.5E300, a.getFieldValue("d"));
+    Assert.assertEquals(9007199254740993L, a.getFieldValue("l"));
+    Assert.assertEquals(
+        Arrays.asList(3.4028235E38f, 1.5f, Float.NaN, Float.NEGATIVE_INFINITY, Float.NaN),
+        a.getFieldValue("fs"));
+    Assert.assertEquals(
+        Arrays.asList(0.1, 4.9E-324, Double.POSITIVE_INFINITY, Double.NaN, 1000.0),
+        a.getFieldValue("ds"));
+
+    // can we read it back in and get the same thing?
+    StringWriter sw = new StringWriter();
+    IndexFileWriter.write(scene, sw);
+    AScene scene2 = newScene();
+    IndexFileParser.parseString(sw.toString(), "testParseFloatingPoint()", scene2);
+    Assert.assertEquals(scene, scene2);
+  }
+
+  @Test
+  public void testParseFileSelectedClasses() throws Exception {
+    String index =
+        "package p:\n"
+            + "annotation @A: @Retention(RUNTIME)\n  Class value\n  String annotation\n"
+            + "class Skipped: @A(value=java.lang.String.class, annotation=\"class\")\n"
+            + "  field annotation: @A(value=int[].class)\n"
+            + "  method annotation(Ljava/lang/annotation/Annotation;)V:\n"
+            + "annotation @B:\n"
+            + "class Read: @B\n"
+            + "package q:\n"
+            + "class Skipped:\n  field f: @p.B\n";
+    Path file = Files.createTempFile("testParseFileSelectedClasses", ".jaif");
+    try {
+      Files.write(file, index.getBytes(StandardCharsets.UTF_8));
+      AScene scene = newScene();
+      Map<String, AnnotationDef> defs =
+          IndexFileParser.parseFile(file.toString(), scene, c -> !c.endsWith("Skipped"));
+      Assert.assertTrue(defs.containsKey("p.A"));
+      Assert.assertTrue(defs.containsKey("p.B"));
+      Assert.assertEquals(
+          new TreeSet<>(Arrays.asList("p.package-info", "p.Read", "q.package-info")),
+          new TreeSet<>(scene.classes.keySet()));
+      Assert.assertNotNull(scene.classes.get("p.Read").lookup("p.B"));
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  void doBinaryRoundTripTest(LineNumberReader r, String filename) throws Exception {
+    AScene s1 = newScene(), s2 = newScene();
+    IndexFileParser.parse(r, filename, s1);
+    Path file = Files.createTempFile("doBinaryRoundTripTest", ".bin");
+    try {
+      BinarySceneWriter.write(s1, file.toString());
+      BinarySceneReader.read(file.toString(), s2);
+    } finally {
+      Files.delete(file);
+    }
+    Assert.assertEquals(s1, s2);
+    StringWriter sbw1 = new StringWriter(), sbw2 = new StringWriter();
+    IndexFileWriter.write(s1, sbw1);
+    IndexFileWriter.write(s2, sbw2);
+    Assert.assertEquals(sbw1.toString(), sbw2.toString());
+  }
+
+  @Test
+  public void testBinaryRoundTripOne() throws Exception {
+    LineNumberReader fr = openPackagedIndexFile("test1.jaif");
+    doBinaryRoundTripTest(fr, "test1.jaif");
+  }
+
+  @Test
+  public void testBinaryRoundTripTwo() throws Exception {
+    LineNumberReader fr = openPackagedIndexFile("test2.jaif");
+    doBinaryRoundTripTest(fr, "test2.jaif");
+  }
+
+  @Test
+  public void testBinarySelectedClasses() throws Exception {
+    AScene s1 = newScene(), s2 = newScene();
+    IndexFileParser.parse(openPackagedIndexFile("test1.jaif"), "test1.jaif", s1);
+    Path file = Files.createTempFile("testBinarySelectedClasses", ".bin");
+    try {
+      BinarySceneWriter.write(s1, file.toString());
+      BinarySceneReader.read(file.toString(), s2, c -> c.equals("p1.Bar"));
+    } finally {
+      Files.delete(file);
+    }
+    Assert.assertEquals(Collections.singleton("p1.Bar"), s2.classes.keySet());
+    Assert.assertEquals(s1.classes.get("p1.Bar"), s2.classes.get("p1.Bar"));
+
+    // Annotations of the same type share one definition, and standard definitions are reused.
+    Annotation a = s2.classes.get("p1.Bar").lookup("p2.E");
+    Assert.assertEquals("class [[I", a.fieldValues.get("fifth").toString());
+    Annotation aa = (Annotation) ((List<?>) a.fieldValues.get("first")).get(0);
+    Assert.assertSame(aa.def(), ((Annotation) ((List<?>) a.fieldValues.get("first")).get(1)).def());
+    Assert.assertEquals(RetentionPolicy.CLASS, a.def().retention());
+  }
+
+  /** An index file in which the same annotations are written several times. */
+  static final String internIndex =
+      "package p:\n"
+          + "annotation @A: @java.lang.annotation.Retention(value=RUNTIME)\n"
+          + "  String[] value\n"
+          + "annotation @B: @java.lang.annotation.Retention(value=CLASS)\n"
+          + "class C%d: @A({\"x\", \"y\"}) @B\n"
+          + "  field f: @A({\"x\", \"y\"}) @B\n";
+
+  @Test
+  public void testInterning() throws Exception {
+    AScene s = newScene();
+    // Each index file defines @A and @B anew.
+    IndexFileParser.parseString(String.format(internIndex, 1), "one.jaif", s);
+    IndexFileParser.parseString(String.format(internIndex, 2), "two.jaif", s);
+    Annotation a1 = s.classes.get("p.C1").lookup("p.A");
+    Annotation a2 = s.classes.get("p.C2").fields.get("f").lookup("p.A");
+    Assert.assertSame(a1, s.classes.get("p.C1").fields.get("f").lookup("p.A"));
+    Assert.assertSame(a2, s.classes.get("p.C2").lookup("p.A"));
+    Assert.assertSame(
+        s.classes.get("p.C1").lookup("p.B").def(),
+        s.classes.get("p.C1").fields.get("f").lookup("p.B").def());
+    Assert.assertEquals(
+        RetentionPolicy.CLASS, s.classes.get("p.C2").lookup("p.B").def().retention());
+    // Definitions from different index files are kept apart, so that each has its own source.
+    Assert.assertEquals(a1, a2);
+    Assert.assertNotSame(a1, a2);
+    Assert.assertTrue(a1.def().source.contains("one.jaif"));
+    Assert.assertTrue(a2.def().source.contains("two.jaif"));
+
+    // Without a pool, the annotations are equal but distinct.
+    AScene plain = new AScene((AnnotationInterner) null);
+    IndexFileParser.parseString(String.format(internIndex, 1), "one.jaif", plain);
+    Annotation b1 = plain.classes.get("p.C1").lookup("p.A");
+    Annotation b2 = plain.classes.get("p.C1").fields.get("f").lookup("p.A");
+    Assert.assertNotSame(b1, b2);
+    Assert.assertEquals(b1, b2);
+    Assert.assertEquals(a1, b1);
+    Assert.assertEquals(a1.hashCode(), b1.hashCode());
+
+    // Interning an equal annotation with an equal but distinct definition from the same source
+    // yields the pooled one.
+    Assert.assertSame(a1, s.interner.intern(b1));
+    Assert.assertSame(a1.def(), s.interner.intern(b1.def()));
+    Assert.assertSame(Annotations.adRetention, s.interner.intern(Annotations.adRetention));
+  }
+
+  /**
+   * Returns the path "Method.body, Block.statement 0, Variable.initializer, NewArray.type depth".
+   *
+   * @param depth the argument of the last entry
+   * @return a new path to an array level in the initializer of the first local variable
+   */
+  private static ASTPath newArrayInitializerPath(int depth) {
+    return ASTPath.empty()
+        .extend(new ASTPath.ASTEntry(Tree.Kind.METHOD, ASTPath.BODY))
+        .extend(new ASTPath.ASTEntry(Tree.Kind.BLOCK, ASTPath.STATEMENT, 0))
+        .extend(new ASTPath.ASTEntry(Tree.Kind.VARIABLE, ASTPath.INITIALIZER))
+        .extendNewArray(depth);
+  }
+
+  @Test
+  public void testASTPath() {
+    ASTPath p = newArrayInitializerPath(1);
+    ASTPath q = newArrayInitializerPath(1);
+    Assert.assertNotSame(p, q);
+    Assert.assertEquals(4, p.size());
+    Assert.assertEquals(p, q);
+    Assert.assertEquals(p.hashCode(), q.hashCode());
+    Assert.assertEquals(0, p.compareTo(q));
+    Assert.assertEquals(p.toString(), q.toString());
+
+    ASTPath parent = p.getParentPath();
+    Assert.assertEquals(3, parent.size());
+    Assert.assertEquals(4, p.size());
+    Assert.assertTrue(parent.compareTo(p) < 0);
+    Assert.assertTrue(p.compareTo(parent) > 0);
+    Assert.assertEquals(p, parent.extendNewArray(1));
+    Assert.assertNotEquals(p, parent.extendNewArray(0));
+    Assert.assertTrue(parent.extendNewArray(0).compareTo(p) < 0);
+    Assert.assertEquals(Tree.Kind.VARIABLE, parent.getLast().getTreeKind());
+    Assert.assertEquals(Tree.Kind.BLOCK, p.get(1).getTreeKind());
+    Assert.assertEquals(ASTPath.empty(), p.pop().pop().pop().pop());
+    Assert.assertTrue(ASTPath.empty().compareTo(p) < 0);
+  }
+
+  @Test
+  public void testLazyElements() {
+    AScene s = newScene();
+    AClass c = s.classes.getVivify("Foo");
+    Assert.assertTrue(c.methods.isEmpty());
+    Assert.assertTrue(c.methods.keySet().isEmpty());
+    Assert.assertNull(c.methods.remove("m()V"));
+    c.methods.clear();
+    Assert.assertEquals(Collections.emptyMap(), c.fields);
+    Assert.assertEquals(newScene().classes.getVivify("Foo"), c);
+
+    // Views taken before the backing map exists reflect the entries put later.
+    Set<String> names = c.methods.keySet();
+    Collection<AMethod> values = c.methods.values();
+    Set<Entry<String, AMethod>> entries = c.methods.entrySet();
+    Assert.assertTrue(names.isEmpty());
+
+    AMethod m = c.methods.getVivify("m()V");
+    Assert.assertSame(m, c.methods.get("m()V"));
+    Assert.assertEquals(Collections.singleton("m()V"), c.methods.keySet());
+    Assert.assertEquals(Collections.singleton("m()V"), names);
+    Assert.assertTrue(values.contains(m));
+    Assert.assertEquals(c.methods.entrySet(), entries);
+
+    // The annotation set keeps insertion order as it grows and shrinks.
+    Annotation b = Annotations.createValueAnnotation(adAuthor, "b");
+    Annotation a = Annotations.createValueAnnotation(adAuthor, "a");
+    Set<Annotation> annos = m.tlAnnotationsHere;
+    Assert.assertTrue(annos.add(b));
+    Assert.assertFalse(annos.add(b));
+    Assert.assertEquals(Collections.singleton(b), annos);
+    Assert.assertEquals(Collections.singleton(b).hashCode(), annos.hashCode());
+    Iterator<Annotation> iter = annos.iterator();
+    Assert.assertSame(b, iter.next());
+    iter.remove();
+    Assert.assertTrue(annos.isEmpty());
+    annos.add(b);
+    annos.add(a);
+    Assert.assertEquals(Arrays.asList(b, a), new ArrayList<>(annos));
+    Assert.assertTrue(annos.remove(b));
+    Assert.assertEquals(Collections.singletonList(a), new ArrayList<>(annos));
+
+    c.methods.prune();
+    Assert.assertFalse(c.methods.isEmpty());
+    m.tlAnnotationsHere.clear();
+    c.methods.prune();
+    Assert.assertTrue(c.methods.isEmpty());
+  }
+
   @Test
   public void testPrune() {
     AScene s1 = newScene(), s2 = newScene();